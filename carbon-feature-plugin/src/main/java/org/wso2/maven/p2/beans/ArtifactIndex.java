@@ -0,0 +1,210 @@
+/*
+ *  Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.wso2.maven.p2.beans;
+
+import org.wso2.maven.p2.utils.BundleUtils;
+import org.wso2.maven.p2.utils.OsgiVersion;
+import org.wso2.maven.p2.utils.VersionRange;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * Immutable index of the maven dependencies of a project, categorized into OSGi bundles and Carbon features.
+ * <p>
+ * Bundles are indexed by symbolic name and OSGi version, features by feature id (maven artifact id) and OSGi version
+ * and every artifact by its maven GAV. Versions are normalized into the OSGi format when the index is built and when
+ * it is queried, hence a maven version such as 4.2.0-SNAPSHOT and the bundle version 4.2.0.SNAPSHOT resolve to the
+ * same entry. In addition, the versions of each bundle and feature are kept sorted, so that version range and match
+ * rule queries are answered in logarithmic time. The index is built once per execution by
+ * {@link org.wso2.maven.p2.utils.DependencyResolver#getDependenciesForProject} and shared by the generators.
+ * </p>
+ *
+ * @since 2.1.1
+ */
+public class ArtifactIndex {
+
+    private final Map<String, CarbonArtifact> bundles;
+    private final Map<String, CarbonArtifact> features;
+    private final Map<String, CarbonArtifact> artifacts;
+
+    /**
+     * Versions of each bundle and feature, keyed by the symbolic name and the feature id respectively.
+     */
+    private final Map<String, NavigableMap<OsgiVersion, CarbonArtifact>> bundleVersions = new HashMap<>();
+    private final Map<String, NavigableMap<OsgiVersion, CarbonArtifact>> featureVersions = new HashMap<>();
+
+    /**
+     * Canonical instances of the OSGi versions seen while building the index, keyed by the raw version.
+     */
+    private final Map<String, String> osgiVersions;
+
+    /**
+     * Builds the index from the resolved bundles and features. Bundles must have their symbolic name and bundle
+     * version populated. If two artifacts share the same key, the last one wins.
+     *
+     * @param bundleArtifacts  {@code Collection<CarbonArtifact>} dependencies which are OSGi bundles
+     * @param featureArtifacts {@code Collection<CarbonArtifact>} dependencies which are Carbon features
+     */
+    public ArtifactIndex(Collection<CarbonArtifact> bundleArtifacts, Collection<CarbonArtifact> featureArtifacts) {
+        Map<String, String> versions = new HashMap<>();
+        Map<String, CarbonArtifact> bundleMap = new HashMap<>();
+        Map<String, CarbonArtifact> featureMap = new HashMap<>();
+        Map<String, CarbonArtifact> artifactMap = new HashMap<>();
+
+        for (CarbonArtifact bundle : bundleArtifacts) {
+            String version = versions.computeIfAbsent(bundle.getBundleVersion(), BundleUtils::getOSGIVersion);
+            bundleMap.put(createKey(bundle.getSymbolicName(), version), bundle);
+            addVersion(bundleVersions, bundle.getSymbolicName(), version, bundle);
+            artifactMap.put(createGAVKey(bundle.getGroupId(), bundle.getArtifactId(), bundle.getVersion()), bundle);
+        }
+        for (CarbonArtifact feature : featureArtifacts) {
+            String version = versions.computeIfAbsent(feature.getVersion(), BundleUtils::getOSGIVersion);
+            featureMap.put(createKey(feature.getArtifactId(), version), feature);
+            addVersion(featureVersions, feature.getArtifactId(), version, feature);
+            artifactMap.put(createGAVKey(feature.getGroupId(), feature.getArtifactId(), feature.getVersion()),
+                    feature);
+        }
+        this.osgiVersions = versions;
+        this.bundles = Collections.unmodifiableMap(bundleMap);
+        this.features = Collections.unmodifiableMap(featureMap);
+        this.artifacts = Collections.unmodifiableMap(artifactMap);
+    }
+
+    /**
+     * Returns the bundle with the given symbolic name and version.
+     *
+     * @param symbolicName {@code String} OSGi symbolic name of the bundle
+     * @param version      {@code String} version of the bundle, either in maven or OSGi format
+     * @return {@link CarbonArtifact} representing the bundle or null if the bundle is not a dependency
+     */
+    public CarbonArtifact getBundle(String symbolicName, String version) {
+        if (symbolicName == null || version == null) {
+            return null;
+        }
+        return bundles.get(createKey(symbolicName, normalize(version)));
+    }
+
+    /**
+     * Returns the feature with the given feature id and version.
+     *
+     * @param featureId {@code String} id of the feature, which is the maven artifact id of the feature
+     * @param version   {@code String} version of the feature, either in maven or OSGi format
+     * @return {@link CarbonArtifact} representing the feature or null if the feature is not a dependency
+     */
+    public CarbonArtifact getFeature(String featureId, String version) {
+        if (featureId == null || version == null) {
+            return null;
+        }
+        return features.get(createKey(featureId, normalize(version)));
+    }
+
+    /**
+     * Returns the bundle with the highest version among the bundles with the given symbolic name whose versions are
+     * within the given range.
+     *
+     * @param symbolicName {@code String} OSGi symbolic name of the bundle
+     * @param range        {@link VersionRange}
+     * @return {@link CarbonArtifact} or null if no bundle matches
+     */
+    public CarbonArtifact findHighestBundle(String symbolicName, VersionRange range) {
+        Map.Entry<OsgiVersion, CarbonArtifact> entry = select(bundleVersions, symbolicName, range).lastEntry();
+        return entry != null ? entry.getValue() : null;
+    }
+
+    /**
+     * Returns the feature with the highest version among the features with the given feature id whose versions are
+     * within the given range.
+     *
+     * @param featureId {@code String} id of the feature, which is the maven artifact id of the feature
+     * @param range     {@link VersionRange}
+     * @return {@link CarbonArtifact} or null if no feature matches
+     */
+    public CarbonArtifact findHighestFeature(String featureId, VersionRange range) {
+        Map.Entry<OsgiVersion, CarbonArtifact> entry = select(featureVersions, featureId, range).lastEntry();
+        return entry != null ? entry.getValue() : null;
+    }
+
+    /**
+     * Returns the bundle or feature with the given maven coordinates.
+     *
+     * @param groupId    {@code String} maven group id
+     * @param artifactId {@code String} maven artifact id
+     * @param version    {@code String} maven version
+     * @return {@link CarbonArtifact} or null if the artifact is not a dependency
+     */
+    public CarbonArtifact getArtifact(String groupId, String artifactId, String version) {
+        return artifacts.get(createGAVKey(groupId, artifactId, version));
+    }
+
+    /**
+     * Returns all the bundles in the index.
+     *
+     * @return {@code Collection<CarbonArtifact>}
+     */
+    public Collection<CarbonArtifact> getBundles() {
+        return bundles.values();
+    }
+
+    /**
+     * Returns all the features in the index.
+     *
+     * @return {@code Collection<CarbonArtifact>}
+     */
+    public Collection<CarbonArtifact> getFeatures() {
+        return features.values();
+    }
+
+    private static void addVersion(Map<String, NavigableMap<OsgiVersion, CarbonArtifact>> index, String id,
+                                   String osgiVersion, CarbonArtifact artifact) {
+        OsgiVersion version;
+        try {
+            version = OsgiVersion.parse(osgiVersion);
+        } catch (IllegalArgumentException e) {
+            // Versions which cannot be ordered remain accessible through the exact lookups
+            return;
+        }
+        index.computeIfAbsent(id, key -> new TreeMap<>()).put(version, artifact);
+    }
+
+    private static NavigableMap<OsgiVersion, CarbonArtifact> select(
+            Map<String, NavigableMap<OsgiVersion, CarbonArtifact>> index, String id, VersionRange range) {
+        NavigableMap<OsgiVersion, CarbonArtifact> versions = index.get(id);
+        if (versions == null) {
+            return Collections.emptyNavigableMap();
+        }
+        return range.select(versions);
+    }
+
+    private String normalize(String version) {
+        String osgiVersion = osgiVersions.get(version);
+        return osgiVersion != null ? osgiVersion : BundleUtils.getOSGIVersion(version);
+    }
+
+    private static String createKey(String id, String osgiVersion) {
+        // '/' is neither allowed in an OSGi identifier nor in a version, hence the key is unambiguous.
+        return id + "/" + osgiVersion;
+    }
+
+    private static String createGAVKey(String groupId, String artifactId, String version) {
+        return groupId + ":" + artifactId + ":" + version;
+    }
+}
@@ -24,22 +24,28 @@ import org.apache.maven.project.MavenProject;
 import org.apache.maven.project.MavenProjectHelper;
 import org.codehaus.plexus.util.DirectoryScanner;
 import org.codehaus.plexus.util.FileUtils;
+import org.wso2.maven.p2.beans.ArtifactIndex;
 import org.wso2.maven.p2.beans.CarbonArtifact;
 import org.wso2.maven.p2.exceptions.CarbonArtifactNotFoundException;
 import org.wso2.maven.p2.exceptions.MissingRequiredPropertyException;
+import org.wso2.maven.p2.exceptions.UnsupportedMetadataException;
 import org.wso2.maven.p2.feature.generate.utils.FeatureFileGeneratorUtils;
+import org.wso2.maven.p2.metadata.MetadataFragment;
 import org.wso2.maven.p2.utils.BundleUtils;
 import org.wso2.maven.p2.utils.DependencyResolver;
 import org.wso2.maven.p2.utils.FileManagementUtil;
+import org.wso2.maven.p2.utils.TreeSynchronizer;
+import org.wso2.maven.p2.utils.VersionRange;
 import org.xml.sax.SAXException;
 
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
+import java.util.Set;
 import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.transform.TransformerException;
 
@@ -63,20 +69,12 @@ public class FeatureGenerator {
     private File featurePropertyFile;
     private File featureManifestFile;
     private File featureZipFile;
+    private File metadataFragmentFile;
 
     /**
-     * Represents the bundles in which the feature being created depends on.
-     * key - maven ${artifactId}_${version}
-     * value - CarbonArtifact object representing the dependent bundle
+     * Represents the bundles and features in which the feature being created depends on.
      */
-    private Map<String, CarbonArtifact> dependentBundles;
-
-    /**
-     * Represents the features in which the feature being created depends on.
-     * key - maven ${artifactId}_${version}
-     * value - CarbonArtifact object representing the dependent feature
-     */
-    private Map<String, CarbonArtifact> dependentFeatures;
+    private ArtifactIndex dependencies;
 
     private Log log;
 
@@ -110,12 +108,13 @@ public class FeatureGenerator {
             copyFeatureResources();
             generateFeatureOutputFiles();
             copyAllIncludedArtifacts();
+            createMetadataFragment();
             createFeatureArchive();
             deployArtifact();
             performMopUp();
         } catch (IOException | TransformerException | ParserConfigurationException | SAXException e) {
             throw new MojoExecutionException(e.getMessage(), e);
-        } catch (CarbonArtifactNotFoundException | MissingRequiredPropertyException e) {
+        } catch (CarbonArtifactNotFoundException | MissingRequiredPropertyException | IllegalArgumentException e) {
             throw new MojoFailureException(e.getMessage(), e);
         }
     }
@@ -128,11 +127,8 @@ public class FeatureGenerator {
      */
     private void resolveMavenProjectDependencies() throws IOException {
         this.log.info("Inspecting maven dependencies.");
-        List<HashMap<String, CarbonArtifact>> artifacts = DependencyResolver.getDependenciesForProject(project,
-                resourceBundle.getRepositorySystem(),
+        dependencies = DependencyResolver.getDependenciesForProject(project, resourceBundle.getRepositorySystem(),
                 resourceBundle.getRemoteRepositories(), resourceBundle.getLocalRepository());
-        dependentBundles = artifacts.get(0);
-        dependentFeatures = artifacts.get(1);
     }
 
     /**
@@ -144,25 +140,29 @@ public class FeatureGenerator {
     private void populateRequiredArtifactData() throws CarbonArtifactNotFoundException {
         populateBundleDataFromCache();
         populateFeatureDataFromCache();
+        populateImportFeatureDataFromCache();
     }
 
     /**
      * The generated bundle beans using the configuration fed into the plugin contain only fewer details. Thus traverse
      * through the maven dependencies specified in the pom and update the bundle beans with extra details gathered from
-     * dependencies.
+     * dependencies. A bundle version given as a range, i.e. [1.0.0,2.0.0), is resolved to the highest matching
+     * version among the dependencies.
      *
      * @throws CarbonArtifactNotFoundException
      */
     private void populateBundleDataFromCache() throws CarbonArtifactNotFoundException {
         for (Bundle bundle : resourceBundle.getBundles()) {
-            String key = bundle.getSymbolicName() + "_" + bundle.getOSGIVersion();
-            CarbonArtifact artifact = dependentBundles.get(key);
-            if (artifact == null) {
-                key = bundle.getSymbolicName() + "_" + bundle.getVersion();
-                artifact = dependentBundles.get(key);
+            CarbonArtifact artifact;
+            if (VersionRange.isRange(bundle.getVersion())) {
+                artifact = dependencies.findHighestBundle(bundle.getSymbolicName(),
+                        VersionRange.parse(bundle.getVersion()));
+            } else {
+                artifact = dependencies.getBundle(bundle.getSymbolicName(), bundle.getVersion());
             }
             if (artifact == null) {
-                throw new CarbonArtifactNotFoundException("Bundle " + key + " is not found in project dependency list");
+                throw new CarbonArtifactNotFoundException("Bundle " + bundle.getSymbolicName() + "_" +
+                        bundle.getVersion() + " is not found in project dependency list");
             }
             artifact.copyTo(bundle);
         }
@@ -177,16 +177,43 @@ public class FeatureGenerator {
      */
     private void populateFeatureDataFromCache() throws CarbonArtifactNotFoundException {
         for (Feature feature : resourceBundle.getIncludeFeatures()) {
-            String key = feature.getId() + ".feature" + "_" + feature.getVersion();
-            CarbonArtifact artifact = dependentFeatures.get(key);
+            String featureId = feature.getId() + ".feature";
+            CarbonArtifact artifact = dependencies.getFeature(featureId, feature.getVersion());
             if (artifact == null) {
-                throw new CarbonArtifactNotFoundException("Feature " + key
+                throw new CarbonArtifactNotFoundException("Feature " + featureId + "_" + feature.getVersion()
                         + " is not found in project dependency list");
             }
             artifact.copyTo(feature);
         }
     }
 
+    /**
+     * Import features are not required to be dependencies of the project, unless their version is given as a range.
+     * Such a range is resolved to the highest matching version among the dependencies, as the feature manifest only
+     * accepts a version together with a match rule.
+     *
+     * @throws CarbonArtifactNotFoundException
+     */
+    private void populateImportFeatureDataFromCache() throws CarbonArtifactNotFoundException {
+        List<Feature> importFeatures = resourceBundle.getImportFeatures();
+        if (importFeatures == null) {
+            return;
+        }
+        for (Feature feature : importFeatures) {
+            if (!VersionRange.isRange(feature.getVersion())) {
+                continue;
+            }
+            String featureId = feature.getId() + ".feature";
+            CarbonArtifact artifact = dependencies.findHighestFeature(featureId,
+                    VersionRange.parse(feature.getVersion()));
+            if (artifact == null) {
+                throw new CarbonArtifactNotFoundException("No version of feature " + featureId + " within "
+                        + feature.getVersion() + " is found in project dependency list");
+            }
+            artifact.copyTo(feature);
+        }
+    }
+
     /**
      * Generates feature.xml, features.properties, manifest file for the feature and p2inf file.
      *
@@ -220,6 +247,7 @@ public class FeatureGenerator {
         p2InfFile = new File(featureIdFolder, "p2.inf");
         featureManifestFile = new File(featureMetaInfFolder, "MANIFEST.MF");
         featureZipFile = new File(destFolder, project.getArtifactId() + "-" + project.getVersion() + ".zip");
+        metadataFragmentFile = MetadataFragment.getFragmentFile(featureZipFile);
         if (!featureMetaInfFolder.mkdirs()) {
             throw new IOException("Unable to create folder " + featureMetaInfFolder.getAbsolutePath());
         }
@@ -282,6 +310,35 @@ public class FeatureGenerator {
         }
     }
 
+    /**
+     * Generates the p2 metadata fragment of the features and bundles in the output folder. The IUs of included features
+     * are taken from the fragments attached next to their zips, when available. A feature or bundle that cannot be
+     * published without the p2 publisher leaves the feature without a fragment.
+     *
+     * @throws IOException
+     */
+    private void createMetadataFragment() throws IOException {
+        if (!resourceBundle.isMetadataFragment()) {
+            return;
+        }
+        List<MetadataFragment> includedFragments = new ArrayList<>();
+        for (Feature includedFeature : resourceBundle.getIncludeFeatures()) {
+            File fragmentFile = MetadataFragment.getFragmentFile(includedFeature.getArtifact().getFile());
+            if (fragmentFile.isFile()) {
+                includedFragments.add(MetadataFragment.read(fragmentFile));
+            }
+        }
+        try {
+            MetadataFragment.generate(rowOutputFolder, includedFragments).write(metadataFragmentFile);
+            this.log.info("Generated p2 metadata fragment: " + metadataFragmentFile.getAbsolutePath());
+        } catch (UnsupportedMetadataException e) {
+            this.log.info("Skipping the p2 metadata fragment: " + e.getMessage());
+            if (metadataFragmentFile.exists() && !metadataFragmentFile.delete()) {
+                throw new IOException("Unable to delete " + metadataFragmentFile.getAbsolutePath());
+            }
+        }
+    }
+
     /**
      * Zip the created features folder.
      */
@@ -296,6 +353,10 @@ public class FeatureGenerator {
             project.getArtifact().setFile(featureZipFile);
             projectHelper.attachArtifact(project, "zip", null, featureZipFile);
         }
+        if (resourceBundle.isMetadataFragment() && metadataFragmentFile.exists()) {
+            projectHelper.attachArtifact(project, MetadataFragment.TYPE, MetadataFragment.CLASSIFIER,
+                    metadataFragmentFile);
+        }
     }
 
     /**
@@ -306,6 +367,7 @@ public class FeatureGenerator {
     private void copyFeatureResources() throws IOException {
         //The following code was taken from the maven bundle plugin and updated suit the purpose
         List<Resource> resources = project.getResources();
+        TreeSynchronizer synchronizer = new TreeSynchronizer(0, false);
         for (Resource resource : resources) {
             String sourcePath = resource.getDirectory();
             if (Paths.get(sourcePath).toFile().exists()) {
@@ -325,23 +387,16 @@ public class FeatureGenerator {
                 scanner.addDefaultExcludes();
                 scanner.scan();
 
-                List<String> includedFiles = Arrays.asList(scanner.getIncludedFiles());
+                Set<String> includedFiles = new HashSet<>(Arrays.asList(scanner.getIncludedFiles()));
                 this.log.info("   " + resource.getDirectory());
-                for (String name : includedFiles) {
-                    File fromPath = new File(sourcePath, name);
-                    File toPath = new File(featureIdFolder, name);
-
-                    try {
-                        if (fromPath.isDirectory() && !toPath.exists()) {
-                            if (!toPath.mkdirs()) {
-                                throw new IOException("Unable create directory: " + toPath.getAbsolutePath());
-                            }
-                        } else {
-                            FileManagementUtil.copy(fromPath, toPath);
-                        }
-                    } catch (IOException e) {
-                        throw new IOException("Unable copy resources: " + resource.getDirectory(), e);
+                try {
+                    TreeSynchronizer.Result result = synchronizer.synchronize(new File(sourcePath), featureIdFolder,
+                            includedFiles::contains);
+                    for (String link : result.getSkippedLinks()) {
+                        this.log.warn("   Skipping symbolic link " + link + " which is not a link to a file");
                     }
+                } catch (IOException e) {
+                    throw new IOException("Unable copy resources: " + resource.getDirectory(), e);
                 }
             }
         }
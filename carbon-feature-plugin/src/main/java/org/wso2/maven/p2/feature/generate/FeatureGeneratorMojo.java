@@ -105,6 +105,14 @@ public class FeatureGeneratorMojo extends AbstractMojo {
     @Parameter
     private List<Advice> adviceFileContents;
 
+    /**
+     * Whether to generate the p2 metadata of the feature and its bundles, and attach it next to the feature zip with
+     * the p2metadata classifier. The generate-repo goal merges the attached metadata instead of generating it again
+     * when it generates the repository metadata natively.
+     */
+    @Parameter(property = "p2.metadataFragment", defaultValue = "false")
+    private boolean metadataFragment;
+
     @Component
     private RepositorySystem repositorySystem;
 
@@ -154,6 +162,7 @@ public class FeatureGeneratorMojo extends AbstractMojo {
         resourceBundle.setImportFeatures(importFeatures);
         resourceBundle.setIncludeFeatures(includeFeatures);
         resourceBundle.setAdviceFileContent(adviceFileContents);
+        resourceBundle.setMetadataFragment(metadataFragment);
         resourceBundle.setRepositorySystem(repositorySystem);
         resourceBundle.setLocalRepository(localRepository);
         resourceBundle.setRemoteRepositories(remoteRepositories);
@@ -52,6 +52,7 @@ public class FeatureResourceBundle {
     private List<Feature> importFeatures;
     private List<Feature> includedFeatures;
     private List<Advice> adviceFileContent;
+    private boolean metadataFragment;
 
     private RepositorySystem repositorySystem;
     private MavenProject project;
@@ -431,6 +432,24 @@ public class FeatureResourceBundle {
         this.projectHelper = projectHelper;
     }
 
+    /**
+     * Returns whether the p2 metadata fragment of the feature is generated and attached next to the feature zip.
+     *
+     * @return true if the fragment is generated
+     */
+    public boolean isMetadataFragment() {
+        return metadataFragment;
+    }
+
+    /**
+     * Sets whether the p2 metadata fragment of the feature is generated and attached next to the feature zip.
+     *
+     * @param metadataFragment whether the fragment is generated
+     */
+    public void setMetadataFragment(boolean metadataFragment) {
+        this.metadataFragment = metadataFragment;
+    }
+
     /**
      * Sets the Log.
      *
@@ -21,26 +21,21 @@ import org.w3c.dom.Element;
 import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
 import org.wso2.maven.p2.exceptions.MissingRequiredPropertyException;
-import org.wso2.maven.p2.feature.generate.Advice;
 import org.wso2.maven.p2.feature.generate.Bundle;
 import org.wso2.maven.p2.feature.generate.Feature;
 import org.wso2.maven.p2.feature.generate.FeatureResourceBundle;
 import org.wso2.maven.p2.utils.BundleUtils;
 import org.wso2.maven.p2.utils.P2Utils;
-import org.wso2.maven.p2.utils.PropertyReplacer;
 import org.xml.sax.SAXException;
 
-import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
-import java.io.UnsupportedEncodingException;
 import java.io.Writer;
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -192,67 +187,29 @@ public class FeatureFileGeneratorUtils {
      *
      * @param resourceBundle containing the project resources
      * @param p2InfFile      File object representing the p2inf file
-     * @throws IOException throws when unable to read or create p2.inf file
+     * @throws IOException throws when unable to read or create p2.inf file or when the properties in it cannot be
+     *                     resolved
      */
     public static void createP2Inf(FeatureResourceBundle resourceBundle, File p2InfFile) throws IOException {
-
-        List<Advice> list = resourceBundle.getAdviceFileContent();
-        List<String> p2infStringList = null;
         if (p2InfFile.exists()) {
-            p2infStringList = readAdviceFile(p2InfFile.getAbsolutePath());
             resourceBundle.getLog().info("Updating Advice file (p2.inf)");
         } else {
             resourceBundle.getLog().info("Generating Advice file (p2.inf)");
         }
 
-        try (Writer writer = new OutputStreamWriter(new FileOutputStream(p2InfFile.getAbsolutePath()),
-                DEFAULT_ENCODING);
-             PrintWriter pw = new PrintWriter(writer)) {
-            Properties properties = new Properties();
-            properties.setProperty("feature.version", BundleUtils.getOSGIVersion(resourceBundle.getVersion()));
-            if (p2infStringList != null && p2infStringList.size() > 0) {
-                // writing the strings after replacing ${feature.version}
-                p2infStringList.forEach(p2InfEntry ->
-                        pw.write(PropertyReplacer.replaceProperties(p2InfEntry, properties) + LINE_SEPARATOR));
-            }
-            if (list != null && list.size() != 0) {
-                int nextIndex = P2Utils.getLastIndexOfProperties(p2InfFile) + 1;
-                for (Advice category : list) {
-                    pw.write(LINE_SEPARATOR + "properties." + nextIndex + ".name=" + category.getName());
-                    pw.write(LINE_SEPARATOR + "properties." + nextIndex + ".value=" + category.getValue());
-                    nextIndex++;
-                }
-            }
-        } catch (UnsupportedEncodingException e) {
-            resourceBundle.getLog().error("Unable to read p2.inf file. Unsupported encoding in existing file.");
-            throw e;
+        Properties properties = new Properties();
+        properties.setProperty("feature.version", BundleUtils.getOSGIVersion(resourceBundle.getVersion()));
+        // existing entries are written after replacing ${feature.version}
+        P2InfMerger merger = new P2InfMerger(properties::getProperty);
+        try {
+            merger.merge(p2InfFile, resourceBundle.getAdviceFileContent());
         } catch (IOException e) {
             throw new IOException("Unable to create/open p2.inf file", e);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Unable to resolve properties in p2.inf file", e);
         }
     }
 
-    /**
-     * Read a given advice file in the pom.xml and return the items in the advice file in a String list.
-     *
-     * @param absolutePath Path to the advice file
-     * @return List&lt;String&gt; containing items in the given advice file
-     * @throws IOException throws when an error occurs when reading p2.inf file
-     */
-    private static List<String> readAdviceFile(String absolutePath) throws IOException {
-        List<String> stringList = new ArrayList<>();
-        String inputLine;
-
-        try (InputStreamReader reader = new InputStreamReader(new FileInputStream(absolutePath), DEFAULT_ENCODING);
-             BufferedReader br = new BufferedReader(reader)) {
-            while ((inputLine = br.readLine()) != null) {
-                stringList.add(inputLine);
-            }
-        } catch (IOException e) {
-            throw new IOException("Error while reading from p2.inf file", e);
-        }
-        return stringList;
-    }
-
     /**
      * Generates the feature.xml file for a feature.
      *
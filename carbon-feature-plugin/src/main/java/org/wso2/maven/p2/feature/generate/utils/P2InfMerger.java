@@ -0,0 +1,185 @@
+/*
+ *  Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.wso2.maven.p2.feature.generate.utils;
+
+import org.wso2.maven.p2.feature.generate.Advice;
+import org.wso2.maven.p2.utils.PropertyTemplate;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Streaming merge engine for p2 advice files (p2.inf).
+ * <p>
+ * The existing advice is read once, line by line. Each line is written out with its property placeholders resolved,
+ * while the highest index of the properties section is recorded. The indices of the requires, instructions and units
+ * sections are left alone, as the new advice entries are properties, which are appended after the highest property
+ * index. The merged advice is written to a temporary file next to the advice file, which replaces the advice file
+ * only once it is complete, hence the advice file is never truncated before it has been read and a failed merge
+ * leaves it untouched.
+ * </p>
+ *
+ * @since 2.1.1
+ */
+public class P2InfMerger {
+
+    private static final String LINE_SEPARATOR = System.lineSeparator();
+    private static final String PROPERTIES_PREFIX = "properties";
+
+    private final Function<String, String> properties;
+    private int lastPropertyIndex;
+    private boolean continuation;
+
+    /**
+     * Constructs a P2InfMerger.
+     *
+     * @param properties {@code Function<String, String>} resolving the placeholders in the existing advice, returning
+     *                   null for undefined properties
+     */
+    public P2InfMerger(Function<String, String> properties) {
+        this.properties = properties;
+    }
+
+    /**
+     * Merges the given advice entries as properties into the given advice file, creating the file if it does not
+     * exist.
+     *
+     * @param p2InfFile {@link File} advice file
+     * @param advices   {@code List<Advice>} entries to add to the properties section, may be null
+     * @throws IOException if the advice file cannot be read or written
+     */
+    public void merge(File p2InfFile, List<Advice> advices) throws IOException {
+        Path target = p2InfFile.getAbsoluteFile().toPath();
+        Path directory = p2InfFile.getAbsoluteFile().getParentFile().toPath();
+        Path temp = Files.createTempFile(directory, p2InfFile.getName(), ".tmp");
+        reset();
+        try {
+            try (Writer writer = new BufferedWriter(new OutputStreamWriter(Files.newOutputStream(temp),
+                    StandardCharsets.UTF_8))) {
+                if (Files.exists(target)) {
+                    try (Reader reader = new InputStreamReader(Files.newInputStream(target), StandardCharsets.UTF_8)) {
+                        copy(reader, writer);
+                    }
+                }
+                writeAdvices(writer, advices == null ? Collections.emptyList() : advices);
+            }
+            moveReplacing(temp, target);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private void copy(Reader reader, Writer writer) throws IOException {
+        BufferedReader in = new BufferedReader(reader);
+        String line;
+        while ((line = in.readLine()) != null) {
+            record(line);
+            writer.write(PropertyTemplate.compile(line).render(properties));
+            writer.write(LINE_SEPARATOR);
+        }
+    }
+
+    private void writeAdvices(Writer writer, List<Advice> advices) throws IOException {
+        for (Advice advice : advices) {
+            lastPropertyIndex++;
+            writer.write(LINE_SEPARATOR + "properties." + lastPropertyIndex + ".name=" + advice.getName());
+            writer.write(LINE_SEPARATOR + "properties." + lastPropertyIndex + ".value=" + advice.getValue());
+        }
+    }
+
+    private void reset() {
+        lastPropertyIndex = -1;
+        continuation = false;
+    }
+
+    /**
+     * Records the index of a line of the advice file if it is a property entry. The file follows the java properties
+     * file format, hence continuation lines and comments are skipped.
+     */
+    private void record(String line) {
+        boolean continued = continuation;
+        continuation = endsWithContinuation(line);
+        if (continued) {
+            return;
+        }
+        int start = 0;
+        int length = line.length();
+        while (start < length && Character.isWhitespace(line.charAt(start))) {
+            start++;
+        }
+        if (start == length || line.charAt(start) == '#' || line.charAt(start) == '!') {
+            continuation = false;
+            return;
+        }
+        int dot = line.indexOf('.', start);
+        if (dot < 0) {
+            return;
+        }
+        if (dot - start != PROPERTIES_PREFIX.length() ||
+                !line.regionMatches(true, start, PROPERTIES_PREFIX, 0, PROPERTIES_PREFIX.length())) {
+            return;
+        }
+        int index = 0;
+        int position = dot + 1;
+        while (position < length && position - dot <= 9 && isDigit(line.charAt(position))) {
+            index = index * 10 + (line.charAt(position) - '0');
+            position++;
+        }
+        if (position > dot + 1 && position < length && (line.charAt(position) == '.' || isSeparator(line, position))) {
+            lastPropertyIndex = Math.max(lastPropertyIndex, index);
+        }
+    }
+
+    private static boolean endsWithContinuation(String line) {
+        int backslashes = 0;
+        for (int i = line.length() - 1; i >= 0 && line.charAt(i) == '\\'; i--) {
+            backslashes++;
+        }
+        return (backslashes & 1) != 0;
+    }
+
+    private static boolean isSeparator(String line, int position) {
+        char c = line.charAt(position);
+        return c == '=' || c == ':' || Character.isWhitespace(c);
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static void moveReplacing(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+}
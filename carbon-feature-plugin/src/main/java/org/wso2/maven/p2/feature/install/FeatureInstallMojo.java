@@ -15,7 +15,6 @@
  */
 package org.wso2.maven.p2.feature.install;
 
-import org.apache.maven.plugin.AbstractMojo;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
 import org.apache.maven.plugins.annotations.Component;
@@ -24,6 +23,7 @@ import org.apache.maven.plugins.annotations.Mojo;
 import org.apache.maven.plugins.annotations.Parameter;
 import org.apache.maven.project.MavenProject;
 import org.eclipse.sisu.equinox.launching.internal.P2ApplicationLauncher;
+import org.wso2.maven.p2.utils.AbstractP2ApplicationMojo;
 import org.wso2.maven.p2.utils.P2Constants;
 
 import java.net.URL;
@@ -36,7 +36,7 @@ import java.util.List;
  * @since 2.0.0
  */
 @Mojo(name = "install", defaultPhase = LifecyclePhase.PACKAGE)
-public class FeatureInstallMojo extends AbstractMojo {
+public class FeatureInstallMojo extends AbstractP2ApplicationMojo {
 
 
     /**
@@ -110,6 +110,7 @@ public class FeatureInstallMojo extends AbstractMojo {
         resourceBundle.setProject(this.project);
         resourceBundle.setLauncher(this.launcher);
         resourceBundle.setForkedProcessTimeoutInSeconds(this.forkedProcessTimeoutInSeconds);
+        resourceBundle.setForkOptions(createForkOptions());
         resourceBundle.setLog(getLog());
         return new FeatureInstaller(resourceBundle);
     }
@@ -19,6 +19,7 @@ package org.wso2.maven.p2.feature.install;
 import org.apache.maven.plugin.logging.Log;
 import org.apache.maven.project.MavenProject;
 import org.eclipse.sisu.equinox.launching.internal.P2ApplicationLauncher;
+import org.wso2.maven.p2.utils.ForkOptions;
 
 import java.net.URL;
 import java.util.List;
@@ -41,6 +42,7 @@ public class FeatureInstallResourceBundle {
     private MavenProject project;
     private P2ApplicationLauncher launcher;
     private int forkedProcessTimeoutInSeconds;
+    private ForkOptions forkOptions;
     private Log log;
 
     /**
@@ -185,6 +187,24 @@ public class FeatureInstallResourceBundle {
         this.forkedProcessTimeoutInSeconds = forkedProcessTimeoutInSeconds;
     }
 
+    /**
+     * Returns the options of the JVM forked to run the director.
+     *
+     * @return {@link ForkOptions}
+     */
+    public ForkOptions getForkOptions() {
+        return forkOptions;
+    }
+
+    /**
+     * Sets the options of the JVM forked to run the director.
+     *
+     * @param forkOptions {@link ForkOptions}
+     */
+    public void setForkOptions(ForkOptions forkOptions) {
+        this.forkOptions = forkOptions;
+    }
+
     /**
      * Returns the Log.
      *
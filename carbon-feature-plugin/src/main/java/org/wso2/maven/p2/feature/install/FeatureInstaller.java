@@ -22,6 +22,7 @@ import org.apache.maven.plugin.logging.Log;
 import org.apache.maven.project.MavenProject;
 import org.wso2.maven.p2.utils.FileManagementUtil;
 import org.wso2.maven.p2.utils.P2ApplicationLaunchManager;
+import org.wso2.maven.p2.utils.P2AreaLock;
 
 import java.io.File;
 import java.io.FileOutputStream;
@@ -66,7 +67,7 @@ public class FeatureInstaller {
      * @throws MojoFailureException   throws when the tool breaks for any configuration issues
      */
     public void install() throws MojoExecutionException, MojoFailureException {
-        try {
+        try (P2AreaLock ignored = P2AreaLock.lockProfile(destination, resourceBundle.getProfile(), log)) {
             writeEclipseIni();
             installFeatures();
             updateProfileConfigIni();
@@ -89,17 +90,21 @@ public class FeatureInstaller {
      * Calls the P2ApplicationLauncher and install the features.
      *
      * @throws MojoFailureException throws when the director application fail to install any given feature.
+     * @throws IOException          throws when unable to lock the bundle pool
      */
-    private void installFeatures() throws MojoFailureException {
+    private void installFeatures() throws MojoFailureException, IOException {
         String installIUs = extractIUsToInstall();
         this.log.info("Running Equinox P2 Director Application");
-        P2ApplicationLaunchManager launcher = new P2ApplicationLaunchManager(resourceBundle.getLauncher());
+        P2ApplicationLaunchManager launcher = new P2ApplicationLaunchManager(resourceBundle.getLauncher(),
+                resourceBundle.getForkOptions(), this.log);
         launcher.setWorkingDirectory(project.getBasedir());
         launcher.setApplicationName(PUBLISHER_APPLICATION);
         launcher.addArgumentsToInstallFeatures(resourceBundle.getRepository().toExternalForm(),
                 installIUs, destination,
                 resourceBundle.getProfile());
-        launcher.performAction(resourceBundle.getForkedProcessTimeoutInSeconds());
+        try (P2AreaLock ignored = P2AreaLock.lockBundlePool(destination, log)) {
+            launcher.performAction(resourceBundle.getForkedProcessTimeoutInSeconds());
+        }
     }
 
     /**
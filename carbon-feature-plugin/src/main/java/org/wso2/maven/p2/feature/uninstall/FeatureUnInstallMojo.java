@@ -16,7 +16,6 @@
 
 package org.wso2.maven.p2.feature.uninstall;
 
-import org.apache.maven.plugin.AbstractMojo;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
 import org.apache.maven.plugins.annotations.Component;
@@ -25,6 +24,7 @@ import org.apache.maven.plugins.annotations.Mojo;
 import org.apache.maven.plugins.annotations.Parameter;
 import org.apache.maven.project.MavenProject;
 import org.eclipse.sisu.equinox.launching.internal.P2ApplicationLauncher;
+import org.wso2.maven.p2.utils.AbstractP2ApplicationMojo;
 
 import java.util.List;
 
@@ -34,7 +34,7 @@ import java.util.List;
  * @since 2.0.0
  */
 @Mojo(name = "uninstall", defaultPhase = LifecyclePhase.PACKAGE)
-public class FeatureUnInstallMojo extends AbstractMojo {
+public class FeatureUnInstallMojo extends AbstractP2ApplicationMojo {
 
     /**
      * Destination to which the features should be installed
@@ -84,9 +84,10 @@ public class FeatureUnInstallMojo extends AbstractMojo {
         unInstaller.setProfile(this.profile);
         unInstaller.setProject(this.project);
         unInstaller.setForkedProcessTimeoutInSeconds(this.forkedProcessTimeoutInSeconds);
+        unInstaller.setForkOptions(createForkOptions());
+        unInstaller.setLog(this.getLog());
 
         this.getLog().info("Running Equinox P2 Director Application");
         unInstaller.uninstallFeatures();
     }
-
 }
@@ -17,10 +17,14 @@
 package org.wso2.maven.p2.feature.uninstall;
 
 import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugin.logging.Log;
 import org.apache.maven.project.MavenProject;
 import org.eclipse.sisu.equinox.launching.internal.P2ApplicationLauncher;
+import org.wso2.maven.p2.utils.ForkOptions;
 import org.wso2.maven.p2.utils.P2ApplicationLaunchManager;
+import org.wso2.maven.p2.utils.P2AreaLock;
 
+import java.io.IOException;
 import java.util.List;
 
 /**
@@ -36,6 +40,8 @@ public class FeatureUnInstaller {
     private MavenProject project;
     private P2ApplicationLauncher launcher;
     private int forkedProcessTimeoutInSeconds;
+    private ForkOptions forkOptions;
+    private Log log;
 
     private static final String PUBLISHER_APPLICATION = "org.eclipse.equinox.p2.director";
 
@@ -74,11 +80,18 @@ public class FeatureUnInstaller {
      */
     private void uninstallFeatures(String uninstallUIs) throws MojoFailureException {
         if (project != null) {
-            P2ApplicationLaunchManager launcher = new P2ApplicationLaunchManager(this.launcher);
+            P2ApplicationLaunchManager launcher = new P2ApplicationLaunchManager(this.launcher, this.forkOptions,
+                    this.log);
             launcher.setWorkingDirectory(project.getBasedir());
             launcher.setApplicationName(PUBLISHER_APPLICATION);
             launcher.addArgumentsToUnInstallFeatures(uninstallUIs, destination, profile);
-            launcher.performAction(forkedProcessTimeoutInSeconds);
+            // The director also writes the shared agent area, hence the bundle pool is locked as during installation.
+            try (P2AreaLock ignored = P2AreaLock.lockProfile(destination, profile, log);
+                 P2AreaLock ignoredPool = P2AreaLock.lockBundlePool(destination, log)) {
+                launcher.performAction(forkedProcessTimeoutInSeconds);
+            } catch (IOException e) {
+                throw new MojoFailureException("Unable to lock the p2 area of the profile " + profile, e);
+            }
         }
     }
 
@@ -135,4 +148,22 @@ public class FeatureUnInstaller {
     public void setForkedProcessTimeoutInSeconds(int forkedProcessTimeoutInSeconds) {
         this.forkedProcessTimeoutInSeconds = forkedProcessTimeoutInSeconds;
     }
+
+    /**
+     * Sets the options of the JVM forked to run the director.
+     *
+     * @param forkOptions {@link ForkOptions}
+     */
+    public void setForkOptions(ForkOptions forkOptions) {
+        this.forkOptions = forkOptions;
+    }
+
+    /**
+     * Sets the maven logger.
+     *
+     * @param log {@link Log}
+     */
+    public void setLog(Log log) {
+        this.log = log;
+    }
 }
@@ -0,0 +1,474 @@
+/*
+ *  Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.wso2.maven.p2.metadata;
+
+import org.apache.maven.plugin.logging.Log;
+import org.wso2.maven.p2.utils.DigestUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLEventFactory;
+import javax.xml.stream.XMLEventReader;
+import javax.xml.stream.XMLEventWriter;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.events.Attribute;
+import javax.xml.stream.events.StartElement;
+import javax.xml.stream.events.XMLEvent;
+
+/**
+ * Computes and verifies the checksums of the artifacts of a p2 simple repository. Files are hashed on a pool of
+ * worker threads, each file being read once through a memory mapping and fed to the MD5 and SHA-256 digests together.
+ * <p>
+ * The checksums are recorded in the properties of the artifact descriptors, under the names used by p2:
+ * {@code download.checksum.sha-256} and {@code download.checksum.md5}, along with {@code download.md5} for older
+ * clients, and {@code artifact.checksum.sha-256} for descriptors of the canonical form of an artifact.
+ * </p>
+ *
+ * @since 2.1.1
+ */
+public class ArtifactChecksums {
+
+    public static final String DOWNLOAD_SHA256 = "download.checksum.sha-256";
+    public static final String DOWNLOAD_CHECKSUM_MD5 = "download.checksum.md5";
+    public static final String ARTIFACT_SHA256 = "artifact.checksum.sha-256";
+
+    private static final long MAPPING_SIZE = 64L * 1024 * 1024;
+    private static final String ENCODING = "UTF-8";
+
+    private final int threads;
+    private final Log log;
+
+    /**
+     * Constructs an ArtifactChecksums.
+     *
+     * @param threads number of worker threads hashing files, or 0 or less for one per available processor
+     * @param log     {@link Log}
+     */
+    public ArtifactChecksums(int threads, Log log) {
+        this.threads = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        this.log = log;
+    }
+
+    /**
+     * Computes the checksums of the artifacts of the given repository and records them in its artifact metadata,
+     * which is rewritten in the format, jar or xml, it was read from. Artifacts whose checksums were recorded by a
+     * previous run are not hashed again, as long as their file still has the recorded download size: the p2
+     * publisher appends to the repository and leaves the descriptors and files of published artifacts as they are.
+     *
+     * @param repositoryDirectory {@link File} directory of the repository
+     * @return number of artifact descriptors whose checksums were recorded by this call
+     * @throws IOException if an artifact cannot be read or the metadata cannot be written
+     */
+    public int record(File repositoryDirectory) throws IOException {
+        long start = System.nanoTime();
+        List<ArtifactDescriptor> artifacts = MetadataRepositoryReader.readArtifactRepository(repositoryDirectory);
+        List<String[]> rules = MetadataRepositoryFilter.readMappingRules(repositoryDirectory);
+        List<File> files = new ArrayList<>();
+        int previouslyRecorded = 0;
+        for (ArtifactDescriptor artifact : artifacts) {
+            File file = MetadataRepositoryFilter.locateArtifact(repositoryDirectory, rules, artifact);
+            if (file == null || !file.isFile()) {
+                log.debug("No file for artifact " + artifact.getKey().getId() + " " + artifact.getKey().getVersion() +
+                        ", its checksums are not recorded");
+                files.add(null);
+            } else if (isRecorded(artifact, file)) {
+                previouslyRecorded++;
+                files.add(null);
+            } else {
+                files.add(file);
+            }
+        }
+        Map<File, Digests> digests = digest(files);
+        List<Map<String, String>> additions = new ArrayList<>();
+        int recorded = 0;
+        long bytes = 0;
+        for (int i = 0; i < artifacts.size(); i++) {
+            Digests fileDigests = files.get(i) != null ? digests.get(files.get(i)) : null;
+            if (fileDigests == null) {
+                additions.add(null);
+                continue;
+            }
+            Map<String, String> properties = new LinkedHashMap<>();
+            properties.put(ArtifactDescriptor.DOWNLOAD_MD5, fileDigests.md5);
+            properties.put(DOWNLOAD_CHECKSUM_MD5, fileDigests.md5);
+            properties.put(DOWNLOAD_SHA256, fileDigests.sha256);
+            if (artifacts.get(i).getProperties().get("format") == null) {
+                properties.put(ARTIFACT_SHA256, fileDigests.sha256);
+            }
+            additions.add(properties);
+            recorded++;
+            bytes += fileDigests.size;
+        }
+        if (recorded > 0) {
+            updateProperties(repositoryDirectory, artifacts, additions);
+        }
+        log.info("Recorded the checksums of " + recorded + " artifact(s), " + previouslyRecorded +
+                " recorded by a previous run " + describeThroughput(bytes, System.nanoTime() - start));
+        return recorded;
+    }
+
+    /**
+     * Verifies the artifacts of the given repository against the checksums and sizes recorded in its artifact
+     * metadata.
+     *
+     * @param repositoryDirectory {@link File} directory of the repository
+     * @return {@link Verification}
+     * @throws IOException if the metadata cannot be read
+     */
+    public Verification verify(File repositoryDirectory) throws IOException {
+        long start = System.nanoTime();
+        List<ArtifactDescriptor> artifacts = MetadataRepositoryReader.readArtifactRepository(repositoryDirectory);
+        List<String[]> rules = MetadataRepositoryFilter.readMappingRules(repositoryDirectory);
+        Verification verification = new Verification();
+        List<File> files = new ArrayList<>();
+        for (ArtifactDescriptor artifact : artifacts) {
+            File file = MetadataRepositoryFilter.locateArtifact(repositoryDirectory, rules, artifact);
+            if (file == null) {
+                verification.unverified++;
+                files.add(null);
+            } else if (!file.isFile()) {
+                verification.failures.add(describe(artifact) + ": " + file.getAbsolutePath() + " is missing");
+                files.add(null);
+            } else {
+                files.add(file);
+            }
+        }
+        Map<File, Digests> digests;
+        try {
+            digests = digest(files);
+        } catch (IOException e) {
+            verification.failures.add(e.getMessage());
+            return verification;
+        }
+        for (int i = 0; i < artifacts.size(); i++) {
+            File file = files.get(i);
+            if (file == null) {
+                continue;
+            }
+            ArtifactDescriptor artifact = artifacts.get(i);
+            Digests fileDigests = digests.get(file);
+            Map<String, String> properties = artifact.getProperties();
+            String md5 = properties.get(DOWNLOAD_CHECKSUM_MD5);
+            if (md5 == null) {
+                md5 = properties.get(ArtifactDescriptor.DOWNLOAD_MD5);
+            }
+            int failures = verification.failures.size();
+            boolean checked = false;
+            checked |= check(verification, artifact, "size", properties.get(ArtifactDescriptor.DOWNLOAD_SIZE),
+                    Long.toString(fileDigests.size));
+            checked |= check(verification, artifact, "SHA-256", properties.get(DOWNLOAD_SHA256), fileDigests.sha256);
+            checked |= check(verification, artifact, "MD5", md5, fileDigests.md5);
+            if (!checked) {
+                verification.unverified++;
+            } else if (verification.failures.size() == failures) {
+                verification.verified++;
+            }
+        }
+        for (Digests fileDigests : digests.values()) {
+            verification.bytes += fileDigests.size;
+        }
+        verification.nanos = System.nanoTime() - start;
+        return verification;
+    }
+
+    /**
+     * Returns a description of the throughput of hashing the given number of bytes in the given time.
+     *
+     * @param bytes number of bytes hashed
+     * @param nanos time taken in nanoseconds
+     * @return {@code String}
+     */
+    public String describeThroughput(long bytes, long nanos) {
+        double seconds = Math.max(nanos, 1) / 1e9;
+        return String.format("(%,d bytes in %,.2f s, %,.1f MB/s on %d thread(s))", bytes, seconds,
+                bytes / seconds / (1024 * 1024), threads);
+    }
+
+    /**
+     * Returns whether the checksums of the given artifact were recorded before, for the size its file still has.
+     */
+    private static boolean isRecorded(ArtifactDescriptor artifact, File file) {
+        Map<String, String> properties = artifact.getProperties();
+        return properties.get(DOWNLOAD_SHA256) != null && properties.get(DOWNLOAD_CHECKSUM_MD5) != null &&
+                Long.toString(file.length()).equals(properties.get(ArtifactDescriptor.DOWNLOAD_SIZE));
+    }
+
+    private static boolean check(Verification verification, ArtifactDescriptor artifact, String name,
+                                 String expected, String actual) {
+        if (expected == null) {
+            return false;
+        }
+        if (!expected.equalsIgnoreCase(actual)) {
+            verification.failures.add(describe(artifact) + ": " + name + " is " + actual + ", expected " + expected);
+        }
+        return true;
+    }
+
+    private static String describe(ArtifactDescriptor artifact) {
+        InstallableUnit.ArtifactKey key = artifact.getKey();
+        String format = artifact.getProperties().get("format");
+        return key.getClassifier() + "/" + key.getId() + "/" + key.getVersion() + (format != null ? "/" + format : "");
+    }
+
+    /**
+     * Hashes the given files on the worker pool. Null entries are ignored.
+     */
+    private Map<File, Digests> digest(List<File> files) throws IOException {
+        Map<File, Future<Digests>> futures = new LinkedHashMap<>();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            for (File file : files) {
+                if (file != null && !futures.containsKey(file)) {
+                    futures.put(file, executor.submit(() -> digest(file)));
+                }
+            }
+            Map<File, Digests> digests = new LinkedHashMap<>();
+            for (Map.Entry<File, Future<Digests>> future : futures.entrySet()) {
+                try {
+                    digests.put(future.getKey(), future.getValue().get());
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    if (cause instanceof IOException) {
+                        throw (IOException) cause;
+                    }
+                    throw new IOException("Unable to hash " + future.getKey().getAbsolutePath(), cause);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted while hashing the artifacts", e);
+                }
+            }
+            return digests;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static Digests digest(File file) throws IOException {
+        MessageDigest md5 = DigestUtils.newDigest(DigestUtils.MD5);
+        MessageDigest sha256 = DigestUtils.newDigest(DigestUtils.SHA_256);
+        long size;
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            size = channel.size();
+            for (long position = 0; position < size; position += MAPPING_SIZE) {
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position,
+                        Math.min(MAPPING_SIZE, size - position));
+                md5.update(buffer.duplicate());
+                sha256.update(buffer);
+            }
+        }
+        return new Digests(DigestUtils.toHex(md5.digest()), DigestUtils.toHex(sha256.digest()), size);
+    }
+
+    /**
+     * Sets the given properties on the artifact descriptors of the repository, the nth map of properties applying to
+     * the nth descriptor. The metadata is rewritten as a stream of xml events, leaving the rest of it as it is.
+     */
+    private static void updateProperties(File repositoryDirectory, List<ArtifactDescriptor> artifacts,
+                                         List<Map<String, String>> additions) throws IOException {
+        MetadataRepositoryWriter.writeFile(repositoryDirectory, MetadataRepositoryWriter.ARTIFACTS_XML,
+                MetadataRepositoryWriter.ARTIFACTS_JAR,
+                new File(repositoryDirectory, MetadataRepositoryWriter.ARTIFACTS_JAR).isFile(), outputStream ->
+                        MetadataRepositoryReader.readFile(repositoryDirectory, MetadataRepositoryWriter.ARTIFACTS_XML,
+                                MetadataRepositoryWriter.ARTIFACTS_JAR, inputStream -> {
+                                    copyWithProperties(inputStream, outputStream, artifacts, additions);
+                                    return null;
+                                }));
+    }
+
+    private static void copyWithProperties(InputStream inputStream, OutputStream outputStream,
+                                           List<ArtifactDescriptor> artifacts, List<Map<String, String>> additions)
+            throws IOException {
+        try {
+            XMLInputFactory inputFactory = XMLInputFactory.newInstance();
+            inputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+            inputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+            XMLEventReader reader = inputFactory.createXMLEventReader(inputStream);
+            XMLEventWriter writer = XMLOutputFactory.newInstance().createXMLEventWriter(outputStream, ENCODING);
+            XMLEventFactory events = XMLEventFactory.newInstance();
+            int depth = 0;
+            int index = -1;
+            Map<String, String> current = null;
+            boolean propertiesWritten = false;
+            while (reader.hasNext()) {
+                XMLEvent event = reader.nextEvent();
+                if (event.isStartElement()) {
+                    StartElement start = event.asStartElement();
+                    String name = start.getName().getLocalPart();
+                    depth++;
+                    if (depth == 3 && "artifact".equals(name)) {
+                        index++;
+                        if (index >= artifacts.size()) {
+                            throw new IOException("The artifact repository changed while it was being updated");
+                        }
+                        current = additions.get(index);
+                        propertiesWritten = false;
+                    } else if (current != null && depth == 4 && "properties".equals(name)) {
+                        Map<String, String> merged = new LinkedHashMap<>(artifacts.get(index).getProperties());
+                        merged.putAll(current);
+                        event = withAttribute(events, start, "size", Integer.toString(merged.size()));
+                    } else if (current != null && depth == 5 && "property".equals(name) &&
+                            current.containsKey(attribute(start, "name"))) {
+                        skipElement(reader);
+                        depth--;
+                        continue;
+                    }
+                } else if (event.isEndElement()) {
+                    String name = event.asEndElement().getName().getLocalPart();
+                    if (current != null && depth == 4 && "properties".equals(name)) {
+                        writeProperties(writer, events, current);
+                        propertiesWritten = true;
+                    } else if (current != null && depth == 3 && "artifact".equals(name) && !propertiesWritten) {
+                        writer.add(events.createStartElement("", "", "properties"));
+                        writer.add(events.createAttribute("size", Integer.toString(current.size())));
+                        writeProperties(writer, events, current);
+                        writer.add(events.createEndElement("", "", "properties"));
+                    }
+                    depth--;
+                }
+                writer.add(event);
+            }
+            writer.flush();
+            writer.close();
+            reader.close();
+        } catch (XMLStreamException e) {
+            throw new IOException("Unable to update the artifact repository", e);
+        }
+    }
+
+    private static void writeProperties(XMLEventWriter writer, XMLEventFactory events, Map<String, String> properties)
+            throws XMLStreamException {
+        for (Map.Entry<String, String> property : properties.entrySet()) {
+            writer.add(events.createStartElement("", "", "property"));
+            writer.add(events.createAttribute("name", property.getKey()));
+            writer.add(events.createAttribute("value", property.getValue()));
+            writer.add(events.createEndElement("", "", "property"));
+        }
+    }
+
+    private static void skipElement(XMLEventReader reader) throws XMLStreamException {
+        int depth = 1;
+        while (depth > 0 && reader.hasNext()) {
+            XMLEvent event = reader.nextEvent();
+            if (event.isStartElement()) {
+                depth++;
+            } else if (event.isEndElement()) {
+                depth--;
+            }
+        }
+    }
+
+    private static StartElement withAttribute(XMLEventFactory events, StartElement start, String name, String value) {
+        List<Attribute> attributes = new ArrayList<>();
+        Iterator<?> iterator = start.getAttributes();
+        while (iterator.hasNext()) {
+            Attribute attribute = (Attribute) iterator.next();
+            if (!name.equals(attribute.getName().getLocalPart())) {
+                attributes.add(attribute);
+            }
+        }
+        attributes.add(events.createAttribute(name, value));
+        return events.createStartElement(start.getName(), attributes.iterator(), start.getNamespaces());
+    }
+
+    private static String attribute(StartElement element, String name) {
+        Attribute attribute = element.getAttributeByName(new QName(name));
+        return attribute != null ? attribute.getValue() : null;
+    }
+
+    /**
+     * Digests of an artifact file.
+     */
+    private static final class Digests {
+
+        private final String md5;
+        private final String sha256;
+        private final long size;
+
+        private Digests(String md5, String sha256, long size) {
+            this.md5 = md5;
+            this.sha256 = sha256;
+            this.size = size;
+        }
+    }
+
+    /**
+     * Outcome of verifying the artifacts of a repository.
+     */
+    public static final class Verification {
+
+        private final List<String> failures = new ArrayList<>();
+        private int verified;
+        private int unverified;
+        private long bytes;
+        private long nanos;
+
+        /**
+         * Returns the artifacts which failed verification, with the reason of each failure.
+         *
+         * @return {@code List<String>}
+         */
+        public List<String> getFailures() {
+            return Collections.unmodifiableList(failures);
+        }
+
+        /**
+         * Returns the number of artifacts verified against a recorded checksum or size.
+         *
+         * @return int
+         */
+        public int getVerified() {
+            return verified;
+        }
+
+        /**
+         * Returns the number of artifacts which could not be verified, as the repository records no checksum or size
+         * for them or does not store their file.
+         *
+         * @return int
+         */
+        public int getUnverified() {
+            return unverified;
+        }
+
+        public long getBytes() {
+            return bytes;
+        }
+
+        public long getNanos() {
+            return nanos;
+        }
+    }
+}
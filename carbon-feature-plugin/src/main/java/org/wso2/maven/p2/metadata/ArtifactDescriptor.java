@@ -0,0 +1,73 @@
+/*
+ *  Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.wso2.maven.p2.metadata;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bean class representing an artifact of a p2 artifact repository, as written to its artifacts.xml.
+ *
+ * @since 2.1.1
+ */
+public class ArtifactDescriptor {
+
+    /**
+     * Size of the artifact in bytes.
+     */
+    public static final String ARTIFACT_SIZE = "artifact.size";
+
+    /**
+     * Size of the artifact file to download in bytes.
+     */
+    public static final String DOWNLOAD_SIZE = "download.size";
+
+    /**
+     * MD5 checksum of the artifact file to download.
+     */
+    public static final String DOWNLOAD_MD5 = "download.md5";
+
+    /**
+     * Content type of the artifact file to download, set for artifacts published from a directory.
+     */
+    public static final String DOWNLOAD_CONTENT_TYPE = "download.contentType";
+
+    private final InstallableUnit.ArtifactKey key;
+    private final Map<String, String> properties = new LinkedHashMap<>();
+
+    /**
+     * Constructs an ArtifactDescriptor.
+     *
+     * @param key {@link InstallableUnit.ArtifactKey} key of the artifact
+     */
+    public ArtifactDescriptor(InstallableUnit.ArtifactKey key) {
+        this.key = key;
+    }
+
+    public InstallableUnit.ArtifactKey getKey() {
+        return key;
+    }
+
+    /**
+     * Returns the properties of the artifact, in insertion order.
+     *
+     * @return {@code Map<String, String>} modifiable map of the properties
+     */
+    public Map<String, String> getProperties() {
+        return properties;
+    }
+}
@@ -0,0 +1,145 @@
+/*
+ *  Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.wso2.maven.p2.metadata;
+
+import org.wso2.maven.p2.utils.OsgiVersion;
+import org.wso2.maven.p2.utils.VersionRange;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * Resolves the requirements of IUs against the capabilities provided by a set of IUs, i.e. the IUs of a repository.
+ * <p>
+ * The providers of each capability are indexed by the version they provide it at, so that a requirement is resolved by
+ * selecting the providers within its range. Capabilities whose version cannot be parsed are not indexed, and a
+ * requirement whose range cannot be parsed is satisfied by every provider of the capability.
+ * </p>
+ *
+ * @since 2.1.1
+ */
+public class CapabilityResolver {
+
+    private final Map<String, NavigableMap<OsgiVersion, List<InstallableUnit>>> providers = new HashMap<>();
+
+    /**
+     * Constructs a CapabilityResolver indexing the capabilities of the given IUs.
+     *
+     * @param units {@code Collection<InstallableUnit>} IUs providing the capabilities
+     */
+    public CapabilityResolver(Collection<InstallableUnit> units) {
+        for (InstallableUnit unit : units) {
+            for (InstallableUnit.Capability capability : unit.getProvides()) {
+                OsgiVersion version = parseVersion(capability.getVersion());
+                if (version != null) {
+                    providers.computeIfAbsent(capability.getNamespace() + "/" + capability.getName(),
+                            name -> new TreeMap<>()).computeIfAbsent(version, v -> new ArrayList<>()).add(unit);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the IUs satisfying the given requirement.
+     *
+     * @param requirement {@link InstallableUnit.Requirement}
+     * @param highestOnly whether to return only the providers of the highest version within the requirement range,
+     *                    which p2 picks when it installs from these IUs alone, rather than the providers of every
+     *                    version within the range
+     * @return {@code List<InstallableUnit>}
+     */
+    public List<InstallableUnit> findProviders(InstallableUnit.Requirement requirement, boolean highestOnly) {
+        if (requirement.getName() == null) {
+            return Collections.emptyList();
+        }
+        NavigableMap<OsgiVersion, List<InstallableUnit>> candidates =
+                providers.get(requirement.getNamespace() + "/" + requirement.getName());
+        if (candidates == null) {
+            return Collections.emptyList();
+        }
+        NavigableMap<OsgiVersion, List<InstallableUnit>> selected;
+        String range = requirement.getRange();
+        try {
+            if (range == null || range.trim().isEmpty()) {
+                selected = candidates;
+            } else if (VersionRange.isRange(range)) {
+                selected = VersionRange.parse(range).select(candidates);
+            } else {
+                selected = candidates.tailMap(OsgiVersion.parse(range.trim()), true);
+            }
+        } catch (IllegalArgumentException e) {
+            return flatten(candidates);
+        }
+        if (selected.isEmpty()) {
+            return Collections.emptyList();
+        }
+        return highestOnly ? selected.lastEntry().getValue() : flatten(selected);
+    }
+
+    /**
+     * Returns the IUs satisfying the greedy requirements of the given IU, i.e. the IUs p2 would install with it.
+     *
+     * @param unit        {@link InstallableUnit}
+     * @param highestOnly whether to return only the providers of the highest version within each requirement range
+     * @return {@code List<InstallableUnit>}
+     */
+    public List<InstallableUnit> findRequired(InstallableUnit unit, boolean highestOnly) {
+        List<InstallableUnit> required = new ArrayList<>();
+        for (InstallableUnit.Requirement requirement : unit.getRequires()) {
+            if (requirement.isGreedy()) {
+                required.addAll(findProviders(requirement, highestOnly));
+            }
+        }
+        return required;
+    }
+
+    /**
+     * Parses the given version, returning null rather than failing when it is not a valid OSGi version.
+     *
+     * @param version {@code String} version, may be null
+     * @return {@link OsgiVersion} or null
+     */
+    public static OsgiVersion parseVersion(String version) {
+        try {
+            return version == null ? null : OsgiVersion.parse(version);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Returns the given artifact key as {@code classifier/id/version}.
+     *
+     * @param key {@link InstallableUnit.ArtifactKey}
+     * @return {@code String}
+     */
+    public static String toString(InstallableUnit.ArtifactKey key) {
+        return key.getClassifier() + "/" + key.getId() + "/" + key.getVersion();
+    }
+
+    private static List<InstallableUnit> flatten(NavigableMap<OsgiVersion, List<InstallableUnit>> providers) {
+        List<InstallableUnit> all = new ArrayList<>();
+        providers.values().forEach(all::addAll);
+        return all;
+    }
+}
@@ -0,0 +1,338 @@
+/*
+ *  Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.wso2.maven.p2.metadata;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Bean class representing a p2 installable unit (IU), as written to the content.xml of a metadata repository.
+ *
+ * @since 2.1.1
+ */
+public class InstallableUnit {
+
+    private final String id;
+    private final String version;
+    private boolean singleton;
+    private String updateRange;
+    private String filter;
+    private String touchpointId = "null";
+    private String touchpointVersion = "0.0.0";
+    private String licenseUrl;
+    private String licenseText;
+    private String copyrightUrl;
+    private String copyrightText;
+    private final Map<String, String> properties = new LinkedHashMap<>();
+    private final List<Capability> provides = new ArrayList<>();
+    private final List<Requirement> requires = new ArrayList<>();
+    private final List<ArtifactKey> artifacts = new ArrayList<>();
+    private final Map<String, String> instructions = new LinkedHashMap<>();
+
+    /**
+     * Constructs an InstallableUnit.
+     *
+     * @param id      {@code String} id of the IU
+     * @param version {@code String} OSGi version of the IU
+     */
+    public InstallableUnit(String id, String version) {
+        this.id = id;
+        this.version = version;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getVersion() {
+        return version;
+    }
+
+    public boolean isSingleton() {
+        return singleton;
+    }
+
+    public void setSingleton(boolean singleton) {
+        this.singleton = singleton;
+    }
+
+    /**
+     * Returns the version range of the IUs this IU updates, which have the same id.
+     *
+     * @return {@code String} or null if the IU does not have an update descriptor
+     */
+    public String getUpdateRange() {
+        return updateRange;
+    }
+
+    public void setUpdateRange(String updateRange) {
+        this.updateRange = updateRange;
+    }
+
+    /**
+     * Returns the LDAP filter restricting the environments the IU applies to.
+     *
+     * @return {@code String} or null if the IU applies to any environment
+     */
+    public String getFilter() {
+        return filter;
+    }
+
+    public void setFilter(String filter) {
+        this.filter = filter;
+    }
+
+    public String getTouchpointId() {
+        return touchpointId;
+    }
+
+    public String getTouchpointVersion() {
+        return touchpointVersion;
+    }
+
+    /**
+     * Sets the touchpoint type which installs the IU.
+     *
+     * @param touchpointId      {@code String} id of the touchpoint type
+     * @param touchpointVersion {@code String} version of the touchpoint type
+     */
+    public void setTouchpoint(String touchpointId, String touchpointVersion) {
+        this.touchpointId = touchpointId;
+        this.touchpointVersion = touchpointVersion;
+    }
+
+    public String getLicenseUrl() {
+        return licenseUrl;
+    }
+
+    public String getLicenseText() {
+        return licenseText;
+    }
+
+    /**
+     * Sets the license of the IU.
+     *
+     * @param licenseUrl  {@code String} location of the license, may be null
+     * @param licenseText {@code String} text of the license
+     */
+    public void setLicense(String licenseUrl, String licenseText) {
+        this.licenseUrl = licenseUrl;
+        this.licenseText = licenseText;
+    }
+
+    public String getCopyrightUrl() {
+        return copyrightUrl;
+    }
+
+    public String getCopyrightText() {
+        return copyrightText;
+    }
+
+    /**
+     * Sets the copyright of the IU.
+     *
+     * @param copyrightUrl  {@code String} location of the copyright notice, may be null
+     * @param copyrightText {@code String} text of the copyright notice
+     */
+    public void setCopyright(String copyrightUrl, String copyrightText) {
+        this.copyrightUrl = copyrightUrl;
+        this.copyrightText = copyrightText;
+    }
+
+    /**
+     * Returns the properties of the IU, in insertion order.
+     *
+     * @return {@code Map<String, String>} modifiable map of the properties
+     */
+    public Map<String, String> getProperties() {
+        return properties;
+    }
+
+    /**
+     * Returns the capabilities provided by the IU.
+     *
+     * @return {@code List<Capability>} modifiable list of the capabilities
+     */
+    public List<Capability> getProvides() {
+        return provides;
+    }
+
+    /**
+     * Returns the requirements of the IU.
+     *
+     * @return {@code List<Requirement>} modifiable list of the requirements
+     */
+    public List<Requirement> getRequires() {
+        return requires;
+    }
+
+    /**
+     * Returns the keys of the artifacts installed by the IU.
+     *
+     * @return {@code List<ArtifactKey>} modifiable list of the artifact keys
+     */
+    public List<ArtifactKey> getArtifacts() {
+        return artifacts;
+    }
+
+    /**
+     * Returns the touchpoint instructions of the IU, keyed by the phase or instruction name.
+     *
+     * @return {@code Map<String, String>} modifiable map of the instructions
+     */
+    public Map<String, String> getInstructions() {
+        return instructions;
+    }
+
+    /**
+     * Returns the key identifying this IU within a repository.
+     *
+     * @return {@code String} id and version of the IU
+     */
+    public String getKey() {
+        return id + "/" + version;
+    }
+
+    /**
+     * A capability provided by an IU.
+     */
+    public static class Capability {
+
+        private final String namespace;
+        private final String name;
+        private final String version;
+
+        /**
+         * Constructs a Capability.
+         *
+         * @param namespace {@code String} namespace of the capability
+         * @param name      {@code String} name of the capability
+         * @param version   {@code String} OSGi version of the capability
+         */
+        public Capability(String namespace, String name, String version) {
+            this.namespace = namespace;
+            this.name = name;
+            this.version = version;
+        }
+
+        public String getNamespace() {
+            return namespace;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getVersion() {
+            return version;
+        }
+    }
+
+    /**
+     * A requirement of an IU on a capability.
+     */
+    public static class Requirement {
+
+        private final String namespace;
+        private final String name;
+        private final String range;
+        private final boolean optional;
+        private final boolean greedy;
+        private final String filter;
+
+        /**
+         * Constructs a Requirement.
+         *
+         * @param namespace {@code String} namespace of the required capability
+         * @param name      {@code String} name of the required capability
+         * @param range     {@code String} version range of the required capability, in the p2 format
+         * @param optional  whether the requirement is optional
+         * @param greedy    whether the requirement brings the capability into the installation
+         * @param filter    {@code String} LDAP filter restricting the environments of the requirement, may be null
+         */
+        public Requirement(String namespace, String name, String range, boolean optional, boolean greedy,
+                           String filter) {
+            this.namespace = namespace;
+            this.name = name;
+            this.range = range;
+            this.optional = optional;
+            this.greedy = greedy;
+            this.filter = filter;
+        }
+
+        public String getNamespace() {
+            return namespace;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getRange() {
+            return range;
+        }
+
+        public boolean isOptional() {
+            return optional;
+        }
+
+        public boolean isGreedy() {
+            return greedy;
+        }
+
+        public String getFilter() {
+            return filter;
+        }
+    }
+
+    /**
+     * Key of an artifact of an artifact repository.
+     */
+    public static class ArtifactKey {
+
+        private final String classifier;
+        private final String id;
+        private final String version;
+
+        /**
+         * Constructs an ArtifactKey.
+         *
+         * @param classifier {@code String} classifier of the artifact, i.e. osgi.bundle
+         * @param id         {@code String} id of the artifact
+         * @param version    {@code String} OSGi version of the artifact
+         */
+        public ArtifactKey(String classifier, String id, String version) {
+            this.classifier = classifier;
+            this.id = id;
+            this.version = version;
+        }
+
+        public String getClassifier() {
+            return classifier;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public String getVersion() {
+            return version;
+        }
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ *  Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.wso2.maven.p2.metadata;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Parser of OSGi manifest headers, i.e. {@code a.b;c.d;version="[1.0,2.0)";resolution:=optional, e.f}.
+ *
+ * @since 2.1.1
+ */
+final class ManifestHeader {
+
+    private ManifestHeader() {
+    }
+
+    /**
+     * Parses the given header value into its clauses.
+     *
+     * @param value {@code String} header value, may be null
+     * @return {@code List<Clause>} clauses of the header, empty if the value is null
+     * @throws IllegalArgumentException if the header is malformed
+     */
+    static List<Clause> parse(String value) {
+        if (value == null || value.trim().isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<Clause> clauses = new ArrayList<>();
+        for (String clauseText : split(value, ',')) {
+            if (clauseText.trim().isEmpty()) {
+                continue;
+            }
+            Clause clause = new Clause();
+            for (String part : split(clauseText, ';')) {
+                String trimmed = part.trim();
+                int directive = indexOfOutsideQuotes(trimmed, ":=");
+                int attribute = indexOfOutsideQuotes(trimmed, "=");
+                if (directive > 0 && directive <= attribute) {
+                    clause.directives.put(trimmed.substring(0, directive).trim(),
+                            unquote(trimmed.substring(directive + 2)));
+                } else if (attribute > 0) {
+                    clause.attributes.put(trimmed.substring(0, attribute).trim(),
+                            unquote(trimmed.substring(attribute + 1)));
+                } else if (!trimmed.isEmpty() && clause.attributes.isEmpty() && clause.directives.isEmpty()) {
+                    clause.names.add(trimmed);
+                } else {
+                    throw new IllegalArgumentException("Malformed manifest header: " + value);
+                }
+            }
+            if (clause.names.isEmpty()) {
+                throw new IllegalArgumentException("Malformed manifest header: " + value);
+            }
+            clauses.add(clause);
+        }
+        return clauses;
+    }
+
+    private static List<String> split(String value, char separator) {
+        List<String> parts = new ArrayList<>();
+        boolean quoted = false;
+        int start = 0;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"') {
+                quoted = !quoted;
+            } else if (c == separator && !quoted) {
+                parts.add(value.substring(start, i));
+                start = i + 1;
+            }
+        }
+        if (quoted) {
+            throw new IllegalArgumentException("Unterminated quote in manifest header: " + value);
+        }
+        parts.add(value.substring(start));
+        return parts;
+    }
+
+    private static int indexOfOutsideQuotes(String value, String token) {
+        boolean quoted = false;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"') {
+                quoted = !quoted;
+            } else if (!quoted && value.startsWith(token, i)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static String unquote(String value) {
+        String trimmed = value.trim();
+        if (trimmed.length() >= 2 && trimmed.charAt(0) == '"' && trimmed.charAt(trimmed.length() - 1) == '"') {
+            return trimmed.substring(1, trimmed.length() - 1);
+        }
+        return trimmed;
+    }
+
+    /**
+     * A clause of a manifest header: one or more names sharing the same attributes and directives.
+     */
+    static final class Clause {
+
+        private final List<String> names = new ArrayList<>();
+        private final Map<String, String> attributes = new HashMap<>();
+        private final Map<String, String> directives = new HashMap<>();
+
+        List<String> getNames() {
+            return names;
+        }
+
+        String getAttribute(String name) {
+            return attributes.get(name);
+        }
+
+        String getDirective(String name) {
+            return directives.get(name);
+        }
+    }
+}
@@ -0,0 +1,244 @@
+/*
+ *  Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.wso2.maven.p2.metadata;
+
+import org.apache.maven.plugin.logging.Log;
+import org.wso2.maven.p2.utils.XzCodec;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.TimeUnit;
+import java.util.jar.JarFile;
+import java.util.zip.ZipEntry;
+
+/**
+ * Writes the alternative metadata formats of a p2 repository: XZ-compressed content.xml.xz and artifacts.xml.xz, and
+ * the p2.index file which tells p2 clients the order in which to try the formats, so that they do not probe for the
+ * ones the repository does not have.
+ * <p>
+ * No XZ codec is shipped with the plugin. The XZ formats are written with the XZ for Java library
+ * ({@code org.tukaani:xz}) when it is added as a dependency of the plugin.
+ * </p>
+ *
+ * @since 2.1.1
+ */
+public final class MetadataCompression {
+
+    public static final String CONTENT = "content";
+    public static final String ARTIFACTS = "artifacts";
+    public static final String P2_INDEX = "p2.index";
+
+    private static final String XML = ".xml";
+    private static final String JAR = ".jar";
+    private static final String XZ = ".xml.xz";
+
+    private MetadataCompression() {
+    }
+
+    /**
+     * Returns whether the XZ for Java library is available to the plugin.
+     *
+     * @return true if the XZ formats can be written
+     */
+    public static boolean isXzAvailable() {
+        return XzCodec.isAvailable();
+    }
+
+    /**
+     * Writes content.xml.xz and artifacts.xml.xz from the content and artifacts of the given repository, unless they
+     * are newer than the metadata they are written from.
+     *
+     * @param repositoryDirectory {@link File} directory of the repository
+     * @throws IOException if the XZ library is not available or the files cannot be written
+     */
+    public static void writeXz(File repositoryDirectory) throws IOException {
+        for (String name : new String[]{CONTENT, ARTIFACTS}) {
+            File source = getSource(repositoryDirectory, name);
+            File target = new File(repositoryDirectory, name + XZ);
+            if (target.isFile() && target.lastModified() >= source.lastModified()) {
+                continue;
+            }
+            Path temp = Files.createTempFile(repositoryDirectory.toPath(), target.getName(), ".tmp");
+            try {
+                try (OutputStream outputStream = XzCodec.newOutputStream(new BufferedOutputStream(
+                        Files.newOutputStream(temp)), -1)) {
+                    try (InputStream inputStream = openDecoded(repositoryDirectory, source, name)) {
+                        copy(inputStream, outputStream);
+                    }
+                }
+                try {
+                    Files.move(temp, target.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                            StandardCopyOption.ATOMIC_MOVE);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(temp, target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                }
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        }
+    }
+
+    /**
+     * Deletes content.xml.xz and artifacts.xml.xz from the given repository. p2 clients prefer the XZ format when a
+     * repository has it, so these must not be left behind when the metadata is rewritten without them.
+     *
+     * @param repositoryDirectory {@link File} directory of the repository
+     * @return true if any file was deleted
+     * @throws IOException if a file cannot be deleted
+     */
+    public static boolean deleteXz(File repositoryDirectory) throws IOException {
+        boolean deleted = false;
+        for (String name : new String[]{CONTENT, ARTIFACTS}) {
+            deleted |= Files.deleteIfExists(new File(repositoryDirectory, name + XZ).toPath());
+        }
+        return deleted;
+    }
+
+    /**
+     * Writes the p2.index of the given repository, listing the XZ format first when the repository has it.
+     *
+     * @param repositoryDirectory {@link File} directory of the repository
+     * @throws IOException if the index cannot be written
+     */
+    public static void writeIndex(File repositoryDirectory) throws IOException {
+        String index = "version=1\n" +
+                "metadata.repository.factory.order=" + getFactoryOrder(repositoryDirectory, CONTENT) + "\n" +
+                "artifact.repository.factory.order=" + getFactoryOrder(repositoryDirectory, ARTIFACTS) + "\n";
+        Files.write(new File(repositoryDirectory, P2_INDEX).toPath(), index.getBytes(StandardCharsets.ISO_8859_1));
+    }
+
+    /**
+     * Writes the p2.index of the given composite repository, which tells p2 clients to load the composite metadata
+     * only.
+     *
+     * @param repositoryDirectory {@link File} directory of the repository
+     * @throws IOException if the index cannot be written
+     */
+    public static void writeCompositeIndex(File repositoryDirectory) throws IOException {
+        String index = "version=1\n" +
+                "metadata.repository.factory.order=" + MetadataRepositoryWriter.COMPOSITE_CONTENT_XML + ",\\!\n" +
+                "artifact.repository.factory.order=" + MetadataRepositoryWriter.COMPOSITE_ARTIFACTS_XML + ",\\!\n";
+        Files.write(new File(repositoryDirectory, P2_INDEX).toPath(), index.getBytes(StandardCharsets.ISO_8859_1));
+    }
+
+    /**
+     * Logs the size of each format of the content and artifacts of the given repository and the time taken to decode
+     * it, i.e. to read the XML document out of it.
+     *
+     * @param repositoryDirectory {@link File} directory of the repository
+     * @param log                 {@link Log}
+     * @throws IOException if a format cannot be read
+     */
+    public static void reportFormats(File repositoryDirectory, Log log) throws IOException {
+        log.info("Repository metadata formats:");
+        for (String name : new String[]{CONTENT, ARTIFACTS}) {
+            for (String extension : new String[]{JAR, XML, XZ}) {
+                File file = new File(repositoryDirectory, name + extension);
+                if (!file.isFile() || (XZ.equals(extension) && !isXzAvailable())) {
+                    continue;
+                }
+                long start = System.nanoTime();
+                long decodedSize;
+                try (InputStream inputStream = openDecoded(repositoryDirectory, file, name)) {
+                    decodedSize = copy(inputStream, null);
+                }
+                long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+                log.info(String.format("   %-18s %,12d bytes (%,d bytes of XML), decoded in %,d ms", file.getName(),
+                        file.length(), decodedSize, millis));
+            }
+        }
+    }
+
+    private static String getFactoryOrder(File repositoryDirectory, String name) {
+        boolean xz = new File(repositoryDirectory, name + XZ).isFile();
+        return (xz ? name + XZ + "," : "") + name + XML + ",\\!";
+    }
+
+    private static File getSource(File repositoryDirectory, String name) throws IOException {
+        File jar = new File(repositoryDirectory, name + JAR);
+        if (jar.isFile()) {
+            return jar;
+        }
+        File xml = new File(repositoryDirectory, name + XML);
+        if (xml.isFile()) {
+            return xml;
+        }
+        throw new IOException("No " + jar.getName() + " or " + xml.getName() + " in " +
+                repositoryDirectory.getAbsolutePath());
+    }
+
+    private static InputStream openDecoded(File repositoryDirectory, File file, String name) throws IOException {
+        String fileName = file.getName();
+        if (fileName.endsWith(JAR)) {
+            JarFile jarFile = new JarFile(file);
+            ZipEntry entry = jarFile.getEntry(name + XML);
+            if (entry == null) {
+                jarFile.close();
+                throw new IOException(file.getAbsolutePath() + " in " + repositoryDirectory.getAbsolutePath() +
+                        " does not contain " + name + XML);
+            }
+            return new JarEntryInputStream(jarFile, jarFile.getInputStream(entry));
+        }
+        InputStream inputStream = new BufferedInputStream(Files.newInputStream(file.toPath()));
+        return fileName.endsWith(XZ) ? XzCodec.newInputStream(inputStream) : inputStream;
+    }
+
+    private static long copy(InputStream inputStream, OutputStream outputStream) throws IOException {
+        byte[] buffer = new byte[65536];
+        long total = 0;
+        int read;
+        while ((read = inputStream.read(buffer)) != -1) {
+            if (outputStream != null) {
+                outputStream.write(buffer, 0, read);
+            }
+            total += read;
+        }
+        return total;
+    }
+
+    /**
+     * Stream of a jar entry which closes the jar along with the stream.
+     */
+    private static final class JarEntryInputStream extends FilterInputStream {
+
+        private final JarFile jarFile;
+
+        private JarEntryInputStream(JarFile jarFile, InputStream inputStream) {
+            super(inputStream);
+            this.jarFile = jarFile;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                super.close();
+            } finally {
+                jarFile.close();
+            }
+        }
+    }
+}
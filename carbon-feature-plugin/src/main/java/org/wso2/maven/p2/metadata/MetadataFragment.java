@@ -0,0 +1,352 @@
+/*
+ *  Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.wso2.maven.p2.metadata;
+
+import org.wso2.maven.p2.exceptions.UnsupportedMetadataException;
+import org.wso2.maven.p2.utils.DigestUtils;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
+
+/**
+ * The p2 metadata of a directory laid out as {@code plugins/*.jar} and {@code features/<feature>/}, i.e. an extracted
+ * feature zip. Besides the IUs, a fragment records the source file or directory each IU was generated from, so that
+ * the fragment written next to a feature zip at feature build time can be merged into a repository generated from the
+ * extracted zip without generating the IUs again. Each source is recorded with the SHA-256 hash of its content, i.e.
+ * of the bundle jar, or of the feature.xml, feature.properties and p2.inf the feature IUs are generated from, and its
+ * IUs are only reused for a source with the same content.
+ *
+ * @since 2.1.1
+ */
+public class MetadataFragment {
+
+    /**
+     * Classifier of the fragment attached to a feature artifact.
+     */
+    public static final String CLASSIFIER = "p2metadata";
+
+    /**
+     * Type of the fragment attached to a feature artifact.
+     */
+    public static final String TYPE = "xml";
+
+    private static final String PLUGINS = "plugins";
+    private static final String FEATURES = "features";
+    private static final String ENCODING = "UTF-8";
+    private static final String[] FEATURE_FILES = {"feature.xml", "feature.properties", "p2.inf"};
+
+    private final Map<String, InstallableUnit> units = new TreeMap<>();
+    private final Map<String, Source> sources = new TreeMap<>();
+
+    /**
+     * Returns the fragment file which belongs next to the given feature zip.
+     *
+     * @param featureZip {@link File} feature zip
+     * @return {@link File} fragment file, which may not exist
+     */
+    public static File getFragmentFile(File featureZip) {
+        String name = featureZip.getName();
+        if (name.endsWith(".zip")) {
+            name = name.substring(0, name.length() - ".zip".length());
+        }
+        return new File(featureZip.getParentFile(), name + "-" + CLASSIFIER + "." + TYPE);
+    }
+
+    /**
+     * Generates the fragment of the given directory. The IUs of a bundle jar or feature directory recorded by one of
+     * the given precomputed fragments under the same relative path, and with the same content hash, are taken from
+     * that fragment instead of being generated again. When the same IU is found in more than one source, the
+     * first source in path order is kept.
+     *
+     * @param directory   {@link File} directory containing the plugins and features folders
+     * @param precomputed {@code Collection<MetadataFragment>} fragments to take IUs from
+     * @return {@link MetadataFragment}
+     * @throws IOException                  if a bundle or feature cannot be read
+     * @throws UnsupportedMetadataException if a bundle or feature cannot be published without the p2 publisher
+     */
+    public static MetadataFragment generate(File directory, Collection<MetadataFragment> precomputed)
+            throws IOException, UnsupportedMetadataException {
+        MetadataFragment fragment = new MetadataFragment();
+        for (File bundleJar : listFiles(new File(directory, PLUGINS))) {
+            if (bundleJar.isFile() && !bundleJar.getName().endsWith(".jar")) {
+                continue;
+            }
+            String path = PLUGINS + "/" + bundleJar.getName();
+            long size = bundleJar.isFile() ? bundleJar.length() : -1;
+            String hash = bundleJar.isFile() ? DigestUtils.sha256(bundleJar) : null;
+            List<InstallableUnit> bundleUnits = findUnits(precomputed, path, size, hash);
+            if (bundleUnits == null) {
+                bundleUnits = Collections.singletonList(MetadataGenerator.generateBundleUnit(bundleJar));
+            }
+            fragment.addSource(new Source(path, size, hash), bundleUnits);
+        }
+        for (File featureDirectory : listFiles(new File(directory, FEATURES))) {
+            if (!featureDirectory.isDirectory()) {
+                throw new UnsupportedMetadataException("Packed feature " + featureDirectory.getName());
+            }
+            String path = FEATURES + "/" + featureDirectory.getName();
+            String hash = hashFeature(featureDirectory);
+            List<InstallableUnit> featureUnits = findUnits(precomputed, path, -1, hash);
+            if (featureUnits == null) {
+                featureUnits = MetadataGenerator.generateFeatureUnits(featureDirectory);
+            }
+            fragment.addSource(new Source(path, -1, hash), featureUnits);
+        }
+        return fragment;
+    }
+
+    /**
+     * Reads a fragment written by {@link #write(File)}.
+     *
+     * @param file {@link File} fragment file
+     * @return {@link MetadataFragment}
+     * @throws IOException if the fragment cannot be read
+     */
+    public static MetadataFragment read(File file) throws IOException {
+        MetadataFragment fragment = new MetadataFragment();
+        try (InputStream inputStream = new BufferedInputStream(Files.newInputStream(file.toPath()))) {
+            XMLStreamReader reader = MetadataRepositoryReader.createReader(inputStream);
+            try {
+                Source source = null;
+                while (reader.hasNext()) {
+                    if (reader.next() != XMLStreamConstants.START_ELEMENT) {
+                        continue;
+                    }
+                    switch (reader.getLocalName()) {
+                        case "units":
+                            for (InstallableUnit unit : MetadataRepositoryReader.readUnits(reader)) {
+                                fragment.units.put(unit.getKey(), unit);
+                            }
+                            break;
+                        case "source":
+                            source = new Source(reader.getAttributeValue(null, "path"),
+                                    Long.parseLong(reader.getAttributeValue(null, "size")),
+                                    reader.getAttributeValue(null, "sha256"));
+                            fragment.sources.put(source.getPath(), source);
+                            break;
+                        case "unit":
+                            if (source != null) {
+                                source.unitKeys.add(reader.getAttributeValue(null, "key"));
+                            }
+                            break;
+                        default:
+                            break;
+                    }
+                }
+            } finally {
+                reader.close();
+            }
+        } catch (XMLStreamException | NumberFormatException e) {
+            throw new IOException("Unable to read the p2 metadata fragment " + file.getAbsolutePath(), e);
+        }
+        return fragment;
+    }
+
+    /**
+     * Writes this fragment to the given file.
+     *
+     * @param file {@link File} fragment file
+     * @throws IOException if the fragment cannot be written
+     */
+    public void write(File file) throws IOException {
+        try (OutputStream outputStream = new BufferedOutputStream(Files.newOutputStream(file.toPath()))) {
+            XMLStreamWriter writer = XMLOutputFactory.newInstance().createXMLStreamWriter(outputStream, ENCODING);
+            writer.writeStartDocument(ENCODING, "1.0");
+            writer.writeStartElement("metadataFragment");
+            writer.writeAttribute("version", "1");
+            MetadataRepositoryWriter.writeUnits(writer, units.values());
+            writer.writeStartElement("sources");
+            writer.writeAttribute("size", Integer.toString(sources.size()));
+            for (Source source : sources.values()) {
+                writer.writeStartElement("source");
+                writer.writeAttribute("path", source.getPath());
+                writer.writeAttribute("size", Long.toString(source.getSize()));
+                if (source.getHash() != null) {
+                    writer.writeAttribute("sha256", source.getHash());
+                }
+                for (String key : source.getUnitKeys()) {
+                    writer.writeEmptyElement("unit");
+                    writer.writeAttribute("key", key);
+                }
+                writer.writeEndElement();
+            }
+            writer.writeEndElement();
+            writer.writeEndElement();
+            writer.writeEndDocument();
+            writer.close();
+        } catch (XMLStreamException e) {
+            throw new IOException("Unable to write the p2 metadata fragment " + file.getAbsolutePath(), e);
+        }
+    }
+
+    /**
+     * Returns the IUs of this fragment, sorted by id and version.
+     *
+     * @return {@code Collection<InstallableUnit>}
+     */
+    public Collection<InstallableUnit> getUnits() {
+        return Collections.unmodifiableCollection(units.values());
+    }
+
+    /**
+     * Returns the IU with the given key.
+     *
+     * @param key {@code String} key of the IU, as returned by {@link InstallableUnit#getKey()}
+     * @return {@link InstallableUnit}, null if this fragment does not contain the IU
+     */
+    public InstallableUnit getUnit(String key) {
+        return units.get(key);
+    }
+
+    /**
+     * Returns the sources of this fragment, sorted by path.
+     *
+     * @return {@code Collection<Source>}
+     */
+    public Collection<Source> getSources() {
+        return Collections.unmodifiableCollection(sources.values());
+    }
+
+    private void addSource(Source source, List<InstallableUnit> sourceUnits) {
+        for (InstallableUnit unit : sourceUnits) {
+            if (units.containsKey(unit.getKey())) {
+                continue;
+            }
+            units.put(unit.getKey(), unit);
+            source.unitKeys.add(unit.getKey());
+        }
+        if (!source.unitKeys.isEmpty()) {
+            sources.put(source.getPath(), source);
+        }
+    }
+
+    private static List<InstallableUnit> findUnits(Collection<MetadataFragment> fragments, String path, long size,
+                                                   String hash) {
+        if (hash == null) {
+            return null;
+        }
+        for (MetadataFragment fragment : fragments) {
+            Source source = fragment.sources.get(path);
+            if (source == null || source.getSize() != size || !hash.equals(source.getHash())) {
+                continue;
+            }
+            List<InstallableUnit> sourceUnits = new ArrayList<>();
+            for (String key : source.getUnitKeys()) {
+                InstallableUnit unit = fragment.getUnit(key);
+                if (unit == null) {
+                    sourceUnits = null;
+                    break;
+                }
+                sourceUnits.add(unit);
+            }
+            if (sourceUnits != null) {
+                return sourceUnits;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Hashes the files the IUs of a feature are generated from, along with their names, so that moving content from
+     * one file to another changes the hash.
+     */
+    private static String hashFeature(File featureDirectory) throws IOException {
+        MessageDigest digest = DigestUtils.newDigest(DigestUtils.SHA_256);
+        for (String name : FEATURE_FILES) {
+            File file = new File(featureDirectory, name);
+            if (file.isFile()) {
+                digest.update(name.getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) 0);
+                digest.update(DigestUtils.digest(file, DigestUtils.SHA_256));
+            }
+        }
+        return DigestUtils.toHex(digest.digest());
+    }
+
+    private static List<File> listFiles(File directory) {
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return Collections.emptyList();
+        }
+        List<File> sorted = new ArrayList<>(Arrays.asList(files));
+        sorted.sort(Comparator.comparing(File::getName));
+        return sorted;
+    }
+
+    /**
+     * A bundle jar or feature directory of a fragment, identified by its path relative to the fragment directory.
+     */
+    public static class Source {
+
+        private final String path;
+        private final long size;
+        private final String hash;
+        private final List<String> unitKeys = new ArrayList<>();
+
+        Source(String path, long size, String hash) {
+            this.path = path;
+            this.size = size;
+            this.hash = hash;
+        }
+
+        public String getPath() {
+            return path;
+        }
+
+        /**
+         * Returns the size of the bundle jar in bytes, -1 for a directory.
+         *
+         * @return size of the source
+         */
+        public long getSize() {
+            return size;
+        }
+
+        /**
+         * Returns the SHA-256 hash of the content the IUs of the source were generated from.
+         *
+         * @return {@code String} hash in hexadecimal, null if it was not recorded
+         */
+        public String getHash() {
+            return hash;
+        }
+
+        public List<String> getUnitKeys() {
+            return Collections.unmodifiableList(unitKeys);
+        }
+    }
+}
@@ -0,0 +1,588 @@
+/*
+ *  Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.wso2.maven.p2.metadata;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+import org.wso2.maven.p2.exceptions.UnsupportedMetadataException;
+import org.wso2.maven.p2.utils.DigestUtils;
+import org.wso2.maven.p2.utils.OsgiVersion;
+import org.wso2.maven.p2.utils.VersionRange;
+import org.xml.sax.SAXException;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.jar.Attributes;
+import java.util.jar.JarFile;
+import java.util.jar.Manifest;
+import java.util.zip.ZipEntry;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+
+/**
+ * Derives the p2 installable units of bundles and features the way the p2 features and bundles publisher does, without
+ * running the publisher.
+ * <p>
+ * A bundle is published as a single IU providing the bundle, its exported packages and its type, and requiring its
+ * imported packages, required bundles and fragment host. A feature is published as a group IU requiring the included
+ * plugins and features, the imported plugins and features and the feature jar IU, which installs the feature jar. The
+ * properties and requirements advised by the p2.inf of a feature are applied to its group IU. Artifacts and advice
+ * which the publisher treats in ways not reproduced here, i.e. directory-shaped bundles, feature patches, plugins not
+ * declared with {@code unpack="false"}, plugins referenced without a version, or p2.inf instructions and additional
+ * units, are reported as unsupported so that the caller can fall back to the publisher.
+ * </p>
+ *
+ * @since 2.1.1
+ */
+public final class MetadataGenerator {
+
+    public static final String NAMESPACE_IU = "org.eclipse.equinox.p2.iu";
+    public static final String NAMESPACE_BUNDLE = "osgi.bundle";
+    public static final String NAMESPACE_FRAGMENT = "osgi.fragment";
+    public static final String NAMESPACE_PACKAGE = "java.package";
+    public static final String NAMESPACE_TYPE = "org.eclipse.equinox.p2.eclipse.type";
+    public static final String NAMESPACE_FEATURE = "org.eclipse.update.feature";
+    public static final String NAMESPACE_LOCALIZATION = "org.eclipse.equinox.p2.localization";
+
+    public static final String CLASSIFIER_BUNDLE = "osgi.bundle";
+    public static final String CLASSIFIER_FEATURE = "org.eclipse.update.feature";
+
+    public static final String PROP_NAME = "org.eclipse.equinox.p2.name";
+    public static final String PROP_DESCRIPTION = "org.eclipse.equinox.p2.description";
+    public static final String PROP_PROVIDER = "org.eclipse.equinox.p2.provider";
+    public static final String PROP_CONTACT = "org.eclipse.equinox.p2.contact";
+    public static final String PROP_DOC_URL = "org.eclipse.equinox.p2.doc.url";
+    public static final String PROP_BUNDLE_LOCALIZATION = "org.eclipse.equinox.p2.bundle.localization";
+    public static final String PROP_TYPE_GROUP = "org.eclipse.equinox.p2.type.group";
+
+    public static final String FEATURE_GROUP_SUFFIX = ".feature.group";
+    public static final String FEATURE_JAR_SUFFIX = ".feature.jar";
+
+    private static final String OSGI_TOUCHPOINT = "org.eclipse.equinox.p2.osgi";
+    private static final String TOUCHPOINT_VERSION = "1.0.0";
+    private static final String TYPE_VERSION = "1.0.0";
+    private static final String ANY_VERSION = "0.0.0";
+    private static final String INSTALL_FEATURES_FILTER = "(org.eclipse.update.install.features=true)";
+    private static final String DEFAULT_BUNDLE_LOCALIZATION = "OSGI-INF/l10n/bundle";
+    private static final String DEFAULT_LOCALE = "df_LT";
+    private static final String LOCALIZED_PROPERTY_PREFIX = DEFAULT_LOCALE + ".";
+
+    private MetadataGenerator() {
+    }
+
+    /**
+     * Generates the IU of the given bundle jar.
+     *
+     * @param bundleJar {@link File} bundle jar
+     * @return {@link InstallableUnit}
+     * @throws IOException                  if the bundle cannot be read
+     * @throws UnsupportedMetadataException if the bundle cannot be published without the p2 publisher
+     */
+    public static InstallableUnit generateBundleUnit(File bundleJar) throws IOException, UnsupportedMetadataException {
+        if (!bundleJar.isFile()) {
+            throw new UnsupportedMetadataException("Directory-shaped bundle " + bundleJar.getName());
+        }
+        try (JarFile jarFile = new JarFile(bundleJar)) {
+            Manifest manifest = jarFile.getManifest();
+            Attributes attributes = manifest != null ? manifest.getMainAttributes() : null;
+            if (attributes == null || attributes.getValue("Bundle-SymbolicName") == null) {
+                throw new UnsupportedMetadataException(bundleJar.getName() + " is not an OSGi bundle");
+            }
+            if (!"2".equals(trim(attributes.getValue("Bundle-ManifestVersion")))) {
+                throw new UnsupportedMetadataException(bundleJar.getName() + " is not an OSGi R4 bundle");
+            }
+            Properties localization = null;
+            String localizationBase = attributes.getValue("Bundle-Localization");
+            ZipEntry localizationEntry = jarFile.getEntry((localizationBase != null ? localizationBase :
+                    DEFAULT_BUNDLE_LOCALIZATION) + ".properties");
+            if (localizationEntry != null) {
+                localization = new Properties();
+                try (InputStream inputStream = jarFile.getInputStream(localizationEntry)) {
+                    localization.load(inputStream);
+                }
+            }
+            return createBundleUnit(bundleJar.getName(), attributes, localization, localizationBase);
+        } catch (IllegalArgumentException e) {
+            throw new UnsupportedMetadataException("Invalid manifest in " + bundleJar.getName() + ": " +
+                    e.getMessage());
+        }
+    }
+
+    /**
+     * Generates the feature group IU and the feature jar IU of the given feature directory, which contains the
+     * feature.xml and optionally a feature.properties and a p2.inf.
+     *
+     * @param featureDirectory {@link File} directory of the feature
+     * @return {@code List<InstallableUnit>} the feature group IU followed by the feature jar IU
+     * @throws IOException                  if the feature cannot be read
+     * @throws UnsupportedMetadataException if the feature cannot be published without the p2 publisher
+     */
+    public static List<InstallableUnit> generateFeatureUnits(File featureDirectory)
+            throws IOException, UnsupportedMetadataException {
+        File featureXml = new File(featureDirectory, "feature.xml");
+        if (!featureXml.isFile()) {
+            throw new UnsupportedMetadataException("Feature " + featureDirectory.getName() +
+                    " does not have a feature.xml");
+        }
+        Element feature;
+        try {
+            DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+            Document document = factory.newDocumentBuilder().parse(featureXml);
+            feature = document.getDocumentElement();
+        } catch (ParserConfigurationException | SAXException e) {
+            throw new IOException("Unable to parse " + featureXml.getAbsolutePath(), e);
+        }
+        Properties localization = loadProperties(new File(featureDirectory, "feature.properties"));
+        Properties advice = loadProperties(new File(featureDirectory, "p2.inf"));
+        try {
+            return createFeatureUnits(featureDirectory.getName(), feature, localization, advice);
+        } catch (IllegalArgumentException e) {
+            throw new UnsupportedMetadataException("Invalid feature " + featureDirectory.getName() + ": " +
+                    e.getMessage());
+        }
+    }
+
+    /**
+     * Describes the given artifact file, computing its size and checksum.
+     *
+     * @param key  {@link InstallableUnit.ArtifactKey} key of the artifact
+     * @param file {@link File} artifact file as published to the artifact repository
+     * @return {@link ArtifactDescriptor}
+     * @throws IOException if the file cannot be read
+     */
+    public static ArtifactDescriptor describeArtifact(InstallableUnit.ArtifactKey key, File file) throws IOException {
+        ArtifactDescriptor descriptor = new ArtifactDescriptor(key);
+        String size = Long.toString(file.length());
+        descriptor.getProperties().put(ArtifactDescriptor.ARTIFACT_SIZE, size);
+        descriptor.getProperties().put(ArtifactDescriptor.DOWNLOAD_SIZE, size);
+        descriptor.getProperties().put(ArtifactDescriptor.DOWNLOAD_MD5,
+                DigestUtils.toHex(DigestUtils.digest(file, DigestUtils.MD5)));
+        if (CLASSIFIER_FEATURE.equals(key.getClassifier())) {
+            descriptor.getProperties().put(ArtifactDescriptor.DOWNLOAD_CONTENT_TYPE, "application/zip");
+        }
+        return descriptor;
+    }
+
+    private static InstallableUnit createBundleUnit(String fileName, Attributes attributes, Properties localization,
+                                                    String localizationBase) throws UnsupportedMetadataException {
+        String symbolicNameHeader = attributes.getValue("Bundle-SymbolicName");
+        ManifestHeader.Clause symbolicName = single(ManifestHeader.parse(symbolicNameHeader), fileName);
+        String id = symbolicName.getNames().get(0);
+        String versionHeader = attributes.getValue("Bundle-Version");
+        String version = versionHeader != null ? OsgiVersion.parse(versionHeader.trim()).toString() : ANY_VERSION;
+
+        InstallableUnit unit = new InstallableUnit(id, version);
+        unit.setSingleton("true".equals(trim(symbolicName.getDirective("singleton"))));
+        if (!ANY_VERSION.equals(version)) {
+            unit.setUpdateRange("[0.0.0," + version + ")");
+        }
+        addProperty(unit, PROP_NAME, attributes.getValue("Bundle-Name"), localization);
+        addProperty(unit, PROP_DESCRIPTION, attributes.getValue("Bundle-Description"), localization);
+        addProperty(unit, PROP_PROVIDER, attributes.getValue("Bundle-Vendor"), localization);
+        addProperty(unit, PROP_CONTACT, attributes.getValue("Bundle-ContactAddress"), localization);
+        addProperty(unit, PROP_DOC_URL, attributes.getValue("Bundle-DocURL"), localization);
+        if (localizationBase != null) {
+            unit.getProperties().put(PROP_BUNDLE_LOCALIZATION, localizationBase);
+        }
+
+        unit.getProvides().add(new InstallableUnit.Capability(NAMESPACE_IU, id, version));
+        unit.getProvides().add(new InstallableUnit.Capability(NAMESPACE_BUNDLE, id, version));
+        for (ManifestHeader.Clause clause : ManifestHeader.parse(attributes.getValue("Export-Package"))) {
+            String packageVersion = clause.getAttribute("version");
+            if (packageVersion == null) {
+                packageVersion = clause.getAttribute("specification-version");
+            }
+            packageVersion = packageVersion != null ? OsgiVersion.parse(packageVersion.trim()).toString() :
+                    ANY_VERSION;
+            for (String name : clause.getNames()) {
+                unit.getProvides().add(new InstallableUnit.Capability(NAMESPACE_PACKAGE, name, packageVersion));
+            }
+        }
+        String fragmentHostHeader = attributes.getValue("Fragment-Host");
+        ManifestHeader.Clause fragmentHost = fragmentHostHeader != null ?
+                single(ManifestHeader.parse(fragmentHostHeader), fileName) : null;
+        if (fragmentHost != null) {
+            unit.getProvides().add(new InstallableUnit.Capability(NAMESPACE_FRAGMENT,
+                    fragmentHost.getNames().get(0), version));
+        }
+        // the publisher types fragments as bundles too, the osgi.fragment capability tells them apart
+        unit.getProvides().add(new InstallableUnit.Capability(NAMESPACE_TYPE, "bundle", TYPE_VERSION));
+        addLocalizationCapability(unit);
+
+        for (ManifestHeader.Clause clause : ManifestHeader.parse(attributes.getValue("Require-Bundle"))) {
+            boolean optional = "optional".equals(trim(clause.getDirective("resolution")));
+            for (String name : clause.getNames()) {
+                unit.getRequires().add(new InstallableUnit.Requirement(NAMESPACE_BUNDLE, name,
+                        toRange(clause.getAttribute("bundle-version")), optional, !optional, null));
+            }
+        }
+        if (fragmentHost != null) {
+            unit.getRequires().add(new InstallableUnit.Requirement(NAMESPACE_BUNDLE, fragmentHost.getNames().get(0),
+                    toRange(fragmentHost.getAttribute("bundle-version")), false, true, null));
+        }
+        for (ManifestHeader.Clause clause : ManifestHeader.parse(attributes.getValue("Import-Package"))) {
+            boolean optional = "optional".equals(trim(clause.getDirective("resolution")));
+            String range = clause.getAttribute("version");
+            if (range == null) {
+                range = clause.getAttribute("specification-version");
+            }
+            for (String name : clause.getNames()) {
+                unit.getRequires().add(new InstallableUnit.Requirement(NAMESPACE_PACKAGE, name, toRange(range),
+                        optional, !optional, null));
+            }
+        }
+
+        unit.setFilter(trim(attributes.getValue("Eclipse-PlatformFilter")));
+        unit.getArtifacts().add(new InstallableUnit.ArtifactKey(CLASSIFIER_BUNDLE, id, version));
+        unit.setTouchpoint(OSGI_TOUCHPOINT, TOUCHPOINT_VERSION);
+        StringBuilder manifest = new StringBuilder();
+        manifest.append("Bundle-SymbolicName: ").append(symbolicNameHeader.trim()).append('\n');
+        manifest.append("Bundle-Version: ").append(versionHeader != null ? versionHeader.trim() : ANY_VERSION)
+                .append('\n');
+        if (fragmentHostHeader != null) {
+            manifest.append("Fragment-Host: ").append(fragmentHostHeader.trim()).append('\n');
+        }
+        unit.getInstructions().put("manifest", manifest.toString());
+        if ("dir".equals(trim(attributes.getValue("Eclipse-BundleShape")))) {
+            unit.getInstructions().put("zipped", "true");
+        }
+        return unit;
+    }
+
+    private static List<InstallableUnit> createFeatureUnits(String directoryName, Element feature,
+                                                            Properties localization, Properties advice)
+            throws UnsupportedMetadataException {
+        String id = feature.getAttribute("id");
+        if (id.isEmpty()) {
+            throw new UnsupportedMetadataException("Feature " + directoryName + " does not have an id");
+        }
+        String version = OsgiVersion.parse(attribute(feature, "version", ANY_VERSION)).toString();
+        String label = attribute(feature, "label", null);
+        String provider = attribute(feature, "provider-name", null);
+        String description = getText(feature, "description");
+
+        InstallableUnit group = new InstallableUnit(id + FEATURE_GROUP_SUFFIX, version);
+        group.setUpdateRange("[0.0.0," + version + ")");
+        addProperty(group, PROP_NAME, label, localization);
+        addProperty(group, PROP_DESCRIPTION, description, localization);
+        addProperty(group, PROP_PROVIDER, provider, localization);
+        group.getProperties().put(PROP_TYPE_GROUP, "true");
+        group.getProvides().add(new InstallableUnit.Capability(NAMESPACE_IU, group.getId(), version));
+        group.setFilter(createFilter(feature));
+
+        for (Element plugin : getChildren(feature, "plugin")) {
+            String pluginVersion = attribute(plugin, "version", ANY_VERSION);
+            if (ANY_VERSION.equals(pluginVersion)) {
+                throw new UnsupportedMetadataException("Feature " + id + " references plugin " +
+                        plugin.getAttribute("id") + " without a version");
+            }
+            // unpack defaults to true, so only plugins explicitly declared as jars are supported
+            if (!"false".equals(plugin.getAttribute("unpack"))) {
+                throw new UnsupportedMetadataException("Feature " + id + " does not declare plugin " +
+                        plugin.getAttribute("id") + " with unpack=\"false\"");
+            }
+            pluginVersion = OsgiVersion.parse(pluginVersion).toString();
+            group.getRequires().add(new InstallableUnit.Requirement(NAMESPACE_IU, plugin.getAttribute("id"),
+                    "[" + pluginVersion + "," + pluginVersion + "]", false, true, createFilter(plugin)));
+        }
+        for (Element include : getChildren(feature, "includes")) {
+            String includeVersion = OsgiVersion.parse(attribute(include, "version", ANY_VERSION)).toString();
+            if (ANY_VERSION.equals(includeVersion)) {
+                throw new UnsupportedMetadataException("Feature " + id + " includes feature " +
+                        include.getAttribute("id") + " without a version");
+            }
+            boolean optional = "true".equals(include.getAttribute("optional"));
+            group.getRequires().add(new InstallableUnit.Requirement(NAMESPACE_IU,
+                    include.getAttribute("id") + FEATURE_GROUP_SUFFIX,
+                    "[" + includeVersion + "," + includeVersion + "]", optional, true, createFilter(include)));
+        }
+        for (Element require : getChildren(feature, "requires")) {
+            for (Element anImport : getChildren(require, "import")) {
+                if ("true".equals(anImport.getAttribute("patch"))) {
+                    throw new UnsupportedMetadataException("Feature patch " + id);
+                }
+                String importedFeature = anImport.getAttribute("feature");
+                String name = importedFeature.isEmpty() ? anImport.getAttribute("plugin") :
+                        importedFeature + FEATURE_GROUP_SUFFIX;
+                group.getRequires().add(new InstallableUnit.Requirement(NAMESPACE_IU, name,
+                        toImportRange(attribute(anImport, "version", ANY_VERSION),
+                                attribute(anImport, "match", "compatible")), false, true, createFilter(anImport)));
+            }
+        }
+        group.getRequires().add(new InstallableUnit.Requirement(NAMESPACE_IU, id + FEATURE_JAR_SUFFIX,
+                "[" + version + "," + version + "]", false, true, INSTALL_FEATURES_FILTER));
+        setLegalTexts(group, feature, localization);
+        addLocalizationCapability(group);
+        applyAdvice(group, advice);
+
+        InstallableUnit jar = new InstallableUnit(id + FEATURE_JAR_SUFFIX, version);
+        addProperty(jar, PROP_NAME, label, localization);
+        addProperty(jar, PROP_DESCRIPTION, description, localization);
+        addProperty(jar, PROP_PROVIDER, provider, localization);
+        jar.getProvides().add(new InstallableUnit.Capability(NAMESPACE_IU, jar.getId(), version));
+        jar.getProvides().add(new InstallableUnit.Capability(NAMESPACE_TYPE, "feature", TYPE_VERSION));
+        jar.getProvides().add(new InstallableUnit.Capability(NAMESPACE_FEATURE, id, version));
+        jar.setFilter(INSTALL_FEATURES_FILTER);
+        jar.getArtifacts().add(new InstallableUnit.ArtifactKey(CLASSIFIER_FEATURE, id, version));
+        jar.setTouchpoint(OSGI_TOUCHPOINT, TOUCHPOINT_VERSION);
+        jar.getInstructions().put("zipped", "true");
+        jar.setSingleton(true);
+        setLegalTexts(jar, feature, localization);
+
+        List<InstallableUnit> units = new ArrayList<>();
+        units.add(group);
+        units.add(jar);
+        return units;
+    }
+
+    /**
+     * Applies the properties and requirements advised by a p2.inf to the given IU.
+     */
+    private static void applyAdvice(InstallableUnit unit, Properties advice) throws UnsupportedMetadataException {
+        for (String key : advice.stringPropertyNames()) {
+            if (!key.startsWith("properties.") && !key.startsWith("requires.")) {
+                throw new UnsupportedMetadataException("Unsupported p2 advice " + key + " in " + unit.getId());
+            }
+        }
+        for (int index : getAdviceIndices(advice, "properties.")) {
+            String name = advice.getProperty("properties." + index + ".name");
+            String value = advice.getProperty("properties." + index + ".value");
+            if (name == null || value == null) {
+                throw new UnsupportedMetadataException("Incomplete property advice " + index + " in " + unit.getId());
+            }
+            unit.getProperties().put(name, value);
+        }
+        for (int index : getAdviceIndices(advice, "requires.")) {
+            String prefix = "requires." + index + ".";
+            String namespace = advice.getProperty(prefix + "namespace");
+            String name = advice.getProperty(prefix + "name");
+            if (namespace == null || name == null) {
+                throw new UnsupportedMetadataException("Unsupported requirement advice " + index + " in " +
+                        unit.getId());
+            }
+            String range = advice.getProperty(prefix + "range");
+            boolean optional = Boolean.parseBoolean(advice.getProperty(prefix + "optional"));
+            String greedy = advice.getProperty(prefix + "greedy");
+            unit.getRequires().add(new InstallableUnit.Requirement(namespace, name, toRange(range), optional,
+                    greedy != null ? Boolean.parseBoolean(greedy) : true, advice.getProperty(prefix + "filter")));
+        }
+    }
+
+    private static List<Integer> getAdviceIndices(Properties advice, String prefix) throws
+            UnsupportedMetadataException {
+        List<Integer> indices = new ArrayList<>();
+        for (String key : advice.stringPropertyNames()) {
+            if (!key.startsWith(prefix)) {
+                continue;
+            }
+            int end = key.indexOf('.', prefix.length());
+            try {
+                int index = Integer.parseInt(key.substring(prefix.length(), end < 0 ? key.length() : end));
+                if (!indices.contains(index)) {
+                    indices.add(index);
+                }
+            } catch (NumberFormatException e) {
+                throw new UnsupportedMetadataException("Unsupported p2 advice " + key);
+            }
+        }
+        indices.sort(null);
+        return indices;
+    }
+
+    private static void setLegalTexts(InstallableUnit unit, Element feature, Properties localization) {
+        Element license = getFirstChild(feature, "license");
+        if (license != null) {
+            String text = license.getTextContent().trim();
+            unit.setLicense(toUri(license.getAttribute("url")), text);
+            addLocalization(unit, text, localization);
+        }
+        Element copyright = getFirstChild(feature, "copyright");
+        if (copyright != null) {
+            String text = copyright.getTextContent().trim();
+            unit.setCopyright(toUri(copyright.getAttribute("url")), text);
+            addLocalization(unit, text, localization);
+        }
+    }
+
+    /**
+     * Converts a license or copyright URL the way the publisher does, quoting the characters which are not legal in a
+     * URI, including '%'.
+     *
+     * @return the URI, or null if the URL is empty or not a valid URI
+     */
+    private static String toUri(String url) {
+        if (url == null || url.trim().isEmpty()) {
+            return null;
+        }
+        url = url.trim();
+        int colon = url.indexOf(':');
+        int hash = url.lastIndexOf('#');
+        int end = hash < 0 ? url.length() : hash;
+        try {
+            return new URI(colon < 0 ? null : url.substring(0, colon), url.substring(colon + 1, end),
+                    hash < 0 ? null : url.substring(hash + 1)).toString();
+        } catch (URISyntaxException | IndexOutOfBoundsException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Adds the given property to the IU, together with its translation if the value is a localization key.
+     */
+    private static void addProperty(InstallableUnit unit, String name, String value, Properties localization) {
+        if (value == null || value.trim().isEmpty()) {
+            return;
+        }
+        unit.getProperties().put(name, value.trim());
+        addLocalization(unit, value.trim(), localization);
+    }
+
+    private static void addLocalization(InstallableUnit unit, String value, Properties localization) {
+        if (value == null || value.length() < 2 || value.charAt(0) != '%') {
+            return;
+        }
+        String key = value.substring(1);
+        if (localization != null && localization.getProperty(key) != null) {
+            unit.getProperties().put(LOCALIZED_PROPERTY_PREFIX + key, localization.getProperty(key));
+        }
+    }
+
+    /**
+     * Adds the capability the publisher provides for the default locale to an IU with translated properties.
+     */
+    private static void addLocalizationCapability(InstallableUnit unit) {
+        if (unit.getProperties().keySet().stream().anyMatch(key -> key.startsWith(LOCALIZED_PROPERTY_PREFIX))) {
+            unit.getProvides().add(new InstallableUnit.Capability(NAMESPACE_LOCALIZATION, DEFAULT_LOCALE,
+                    TYPE_VERSION));
+        }
+    }
+
+    /**
+     * Creates the LDAP filter of the environment attributes (os, ws, arch, nl) of a feature.xml element.
+     */
+    private static String createFilter(Element element) {
+        List<String> terms = new ArrayList<>();
+        addFilterTerm(terms, "osgi.os", element.getAttribute("os"));
+        addFilterTerm(terms, "osgi.ws", element.getAttribute("ws"));
+        addFilterTerm(terms, "osgi.arch", element.getAttribute("arch"));
+        addFilterTerm(terms, "osgi.nl", element.getAttribute("nl"));
+        if (terms.isEmpty()) {
+            return null;
+        }
+        return terms.size() == 1 ? terms.get(0) : "(&" + String.join("", terms) + ")";
+    }
+
+    private static void addFilterTerm(List<String> terms, String property, String values) {
+        if (values == null || values.trim().isEmpty()) {
+            return;
+        }
+        StringBuilder term = new StringBuilder();
+        int count = 0;
+        for (String value : values.split(",")) {
+            if (!value.trim().isEmpty()) {
+                term.append('(').append(property).append('=').append(value.trim()).append(')');
+                count++;
+            }
+        }
+        if (count > 0) {
+            terms.add(count == 1 ? term.toString() : "(|" + term + ")");
+        }
+    }
+
+    /**
+     * Converts a version range or minimum version of a manifest or advice into the p2 format.
+     */
+    private static String toRange(String range) {
+        if (range == null || range.trim().isEmpty()) {
+            return ANY_VERSION;
+        }
+        if (VersionRange.isRange(range)) {
+            return VersionRange.parse(range).toMetadataString();
+        }
+        return OsgiVersion.parse(range.trim()).toString();
+    }
+
+    private static String toImportRange(String version, String match) {
+        OsgiVersion osgiVersion = OsgiVersion.parse(version.trim());
+        if (ANY_VERSION.equals(osgiVersion.toString())) {
+            return ANY_VERSION;
+        }
+        return VersionRange.forMatchRule(osgiVersion, match).toMetadataString();
+    }
+
+    private static ManifestHeader.Clause single(List<ManifestHeader.Clause> clauses, String fileName)
+            throws UnsupportedMetadataException {
+        if (clauses.size() != 1 || clauses.get(0).getNames().size() != 1) {
+            throw new UnsupportedMetadataException("Invalid manifest header in " + fileName);
+        }
+        return clauses.get(0);
+    }
+
+    private static List<Element> getChildren(Element parent, String name) {
+        List<Element> children = new ArrayList<>();
+        NodeList nodes = parent.getChildNodes();
+        for (int i = 0; i < nodes.getLength(); i++) {
+            Node node = nodes.item(i);
+            if (node instanceof Element && name.equals(node.getNodeName())) {
+                children.add((Element) node);
+            }
+        }
+        return children;
+    }
+
+    private static Element getFirstChild(Element parent, String name) {
+        List<Element> children = getChildren(parent, name);
+        return children.isEmpty() ? null : children.get(0);
+    }
+
+    private static String getText(Element parent, String name) {
+        Element child = getFirstChild(parent, name);
+        return child != null ? emptyToNull(child.getTextContent().trim()) : null;
+    }
+
+    private static String attribute(Element element, String name, String defaultValue) {
+        String value = element.getAttribute(name).trim();
+        return value.isEmpty() ? defaultValue : value;
+    }
+
+    private static String emptyToNull(String value) {
+        return value == null || value.trim().isEmpty() ? null : value.trim();
+    }
+
+    private static String trim(String value) {
+        return value != null ? value.trim() : null;
+    }
+
+    private static Properties loadProperties(File file) throws IOException {
+        Properties properties = new Properties();
+        if (file.isFile()) {
+            try (InputStream inputStream = Files.newInputStream(file.toPath())) {
+                properties.load(inputStream);
+            }
+        }
+        return properties;
+    }
+}
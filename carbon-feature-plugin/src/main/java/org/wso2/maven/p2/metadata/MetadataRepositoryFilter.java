@@ -0,0 +1,305 @@
+/*
+ *  Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.wso2.maven.p2.metadata;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Predicate;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLEventFactory;
+import javax.xml.stream.XMLEventReader;
+import javax.xml.stream.XMLEventWriter;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.events.Attribute;
+import javax.xml.stream.events.StartElement;
+import javax.xml.stream.events.XMLEvent;
+
+/**
+ * Removes IUs and artifacts from the metadata of a p2 simple repository. The metadata is filtered as a stream of xml
+ * events, so everything but the removed unit and artifact elements is kept exactly as written by the p2 publisher,
+ * and the metadata is written back in the format, jar or xml, it was read from.
+ *
+ * @since 2.1.1
+ */
+public final class MetadataRepositoryFilter {
+
+    private static final Pattern FILTER_TERM = Pattern.compile("\\(\\s*([\\w.]+)\\s*=\\s*([^)]*?)\\s*\\)");
+    private static final String REPOSITORY_URL = "${repoUrl}";
+
+    private MetadataRepositoryFilter() {
+    }
+
+    /**
+     * Removes the IUs not accepted by the given predicate from the metadata repository in the given directory.
+     *
+     * @param repositoryDirectory {@link File} directory of the repository
+     * @param retain              {@code Predicate<String>} accepting the keys of the IUs to keep, as returned by
+     *                            {@link InstallableUnit#getKey()}
+     * @return number of IUs removed
+     * @throws IOException if the repository cannot be read or written
+     */
+    public static int filterMetadataRepository(File repositoryDirectory, Predicate<String> retain)
+            throws IOException {
+        return filter(repositoryDirectory, MetadataRepositoryWriter.CONTENT_XML, MetadataRepositoryWriter.CONTENT_JAR,
+                "units", "unit", unit -> retain.test(attribute(unit, "id") + "/" + attribute(unit, "version")));
+    }
+
+    /**
+     * Removes the artifacts not accepted by the given predicate from the artifact repository in the given directory.
+     * All the descriptors of an artifact, i.e. its canonical and packed forms, are kept or removed together.
+     *
+     * @param repositoryDirectory {@link File} directory of the repository
+     * @param retain              {@code Predicate<InstallableUnit.ArtifactKey>} accepting the artifacts to keep
+     * @return number of artifact descriptors removed
+     * @throws IOException if the repository cannot be read or written
+     */
+    public static int filterArtifactRepository(File repositoryDirectory, Predicate<InstallableUnit.ArtifactKey> retain)
+            throws IOException {
+        return filter(repositoryDirectory, MetadataRepositoryWriter.ARTIFACTS_XML,
+                MetadataRepositoryWriter.ARTIFACTS_JAR, "artifacts", "artifact",
+                artifact -> retain.test(new InstallableUnit.ArtifactKey(attribute(artifact, "classifier"),
+                        attribute(artifact, "id"), attribute(artifact, "version"))));
+    }
+
+    /**
+     * Reads the mapping rules of the artifact repository in the given directory, which map artifact descriptors to
+     * the location of their files.
+     *
+     * @param repositoryDirectory {@link File} directory of the repository
+     * @return {@code List<String[]>} filter and output of each rule, in order
+     * @throws IOException if the repository cannot be read
+     */
+    public static List<String[]> readMappingRules(File repositoryDirectory) throws IOException {
+        return MetadataRepositoryReader.readFile(repositoryDirectory, MetadataRepositoryWriter.ARTIFACTS_XML,
+                MetadataRepositoryWriter.ARTIFACTS_JAR, inputStream -> {
+                    List<String[]> rules = new ArrayList<>();
+                    try {
+                        XMLEventReader reader = createEventReader(inputStream);
+                        while (reader.hasNext()) {
+                            XMLEvent event = reader.nextEvent();
+                            if (event.isStartElement() &&
+                                    "rule".equals(event.asStartElement().getName().getLocalPart())) {
+                                StartElement rule = event.asStartElement();
+                                rules.add(new String[]{attribute(rule, "filter"), attribute(rule, "output")});
+                            } else if (event.isStartElement() &&
+                                    "artifacts".equals(event.asStartElement().getName().getLocalPart())) {
+                                break;
+                            }
+                        }
+                        reader.close();
+                    } catch (XMLStreamException e) {
+                        throw new IOException("Unable to read the mapping rules of " +
+                                repositoryDirectory.getAbsolutePath(), e);
+                    }
+                    return rules;
+                });
+    }
+
+    /**
+     * Returns the file of the given artifact descriptor within the repository, according to the first mapping rule
+     * matching the descriptor.
+     *
+     * @param repositoryDirectory {@link File} directory of the repository
+     * @param rules               {@code List<String[]>} mapping rules of the repository
+     * @param descriptor          {@link ArtifactDescriptor}
+     * @return {@link File} of the artifact, null if it is not stored within the repository or no rule matches
+     */
+    public static File locateArtifact(File repositoryDirectory, List<String[]> rules, ArtifactDescriptor descriptor) {
+        if (descriptor.getProperties().containsKey("artifact.reference")) {
+            return null;
+        }
+        InstallableUnit.ArtifactKey key = descriptor.getKey();
+        for (String[] rule : rules) {
+            if (rule[0] == null || rule[1] == null || !matches(rule[0], descriptor)) {
+                continue;
+            }
+            if (!rule[1].startsWith(REPOSITORY_URL)) {
+                return null;
+            }
+            String path = rule[1].substring(REPOSITORY_URL.length()).replace("${id}", key.getId())
+                    .replace("${version}", key.getVersion()).replace("${classifier}", key.getClassifier());
+            return new File(repositoryDirectory, path);
+        }
+        return null;
+    }
+
+    private static boolean matches(String filter, ArtifactDescriptor descriptor) {
+        Matcher matcher = FILTER_TERM.matcher(filter);
+        boolean matched = false;
+        while (matcher.find()) {
+            String property = matcher.group(1);
+            String value;
+            if ("classifier".equals(property)) {
+                value = descriptor.getKey().getClassifier();
+            } else if ("id".equals(property)) {
+                value = descriptor.getKey().getId();
+            } else if ("version".equals(property)) {
+                value = descriptor.getKey().getVersion();
+            } else {
+                value = descriptor.getProperties().get(property);
+            }
+            if (!matcher.group(2).equals(value)) {
+                return false;
+            }
+            matched = true;
+        }
+        if (!matched) {
+            return false;
+        }
+        // a rule without a format term maps the canonical form only
+        return filter.contains("format=") || descriptor.getProperties().get("format") == null;
+    }
+
+    private static int filter(File repositoryDirectory, String xmlName, String jarName, String container,
+                              String item, Predicate<StartElement> retain) throws IOException {
+        int[] counts = MetadataRepositoryReader.readFile(repositoryDirectory, xmlName, jarName,
+                inputStream -> count(inputStream, container, item, retain));
+        if (counts[0] == counts[1]) {
+            return 0;
+        }
+        boolean compress = new File(repositoryDirectory, jarName).isFile();
+        MetadataRepositoryWriter.writeFile(repositoryDirectory, xmlName, jarName, compress, outputStream ->
+                MetadataRepositoryReader.readFile(repositoryDirectory, xmlName, jarName, inputStream -> {
+                    copy(inputStream, outputStream, container, item, retain, counts[0]);
+                    return null;
+                }));
+        return counts[1] - counts[0];
+    }
+
+    private static int[] count(InputStream inputStream, String container, String item, Predicate<StartElement> retain)
+            throws IOException {
+        int retained = 0;
+        int total = 0;
+        try {
+            XMLEventReader reader = createEventReader(inputStream);
+            int depth = 0;
+            int containerDepth = -1;
+            while (reader.hasNext()) {
+                XMLEvent event = reader.nextEvent();
+                if (event.isStartElement()) {
+                    String name = event.asStartElement().getName().getLocalPart();
+                    if (depth == containerDepth && item.equals(name)) {
+                        total++;
+                        if (retain.test(event.asStartElement())) {
+                            retained++;
+                        }
+                    }
+                    depth++;
+                    if (depth == 2 && container.equals(name)) {
+                        containerDepth = depth;
+                    }
+                } else if (event.isEndElement()) {
+                    depth--;
+                }
+            }
+            reader.close();
+        } catch (XMLStreamException e) {
+            throw new IOException("Unable to read the repository", e);
+        }
+        return new int[]{retained, total};
+    }
+
+    private static void copy(InputStream inputStream, OutputStream outputStream, String container, String item,
+                             Predicate<StartElement> retain, int retained) throws IOException {
+        try {
+            XMLEventReader reader = createEventReader(inputStream);
+            XMLEventWriter writer = XMLOutputFactory.newInstance().createXMLEventWriter(outputStream, "UTF-8");
+            XMLEventFactory events = XMLEventFactory.newInstance();
+            int depth = 0;
+            int containerDepth = -1;
+            int skipped = 0;
+            XMLEvent whitespace = null;
+            while (reader.hasNext()) {
+                XMLEvent event = reader.nextEvent();
+                if (skipped > 0) {
+                    if (event.isStartElement()) {
+                        skipped++;
+                    } else if (event.isEndElement()) {
+                        skipped--;
+                    }
+                    continue;
+                }
+                if (event.isCharacters() && event.asCharacters().isWhiteSpace() && depth > 0) {
+                    whitespace = event;
+                    continue;
+                }
+                if (event.isStartElement()) {
+                    StartElement start = event.asStartElement();
+                    String name = start.getName().getLocalPart();
+                    if (depth == containerDepth && item.equals(name) && !retain.test(start)) {
+                        // drop the element together with the indentation preceding it
+                        skipped = 1;
+                        whitespace = null;
+                        continue;
+                    }
+                    depth++;
+                    if (depth == 2 && container.equals(name)) {
+                        containerDepth = depth;
+                        event = withSize(events, start, retained);
+                    }
+                } else if (event.isEndElement()) {
+                    depth--;
+                }
+                if (whitespace != null) {
+                    writer.add(whitespace);
+                    whitespace = null;
+                }
+                writer.add(event);
+            }
+            writer.flush();
+            writer.close();
+            reader.close();
+        } catch (XMLStreamException e) {
+            throw new IOException("Unable to filter the repository", e);
+        }
+    }
+
+    private static StartElement withSize(XMLEventFactory events, StartElement start, int size) {
+        List<Attribute> attributes = new ArrayList<>();
+        Iterator<?> iterator = start.getAttributes();
+        while (iterator.hasNext()) {
+            Attribute attribute = (Attribute) iterator.next();
+            if ("size".equals(attribute.getName().getLocalPart())) {
+                attributes.add(events.createAttribute(attribute.getName(), Integer.toString(size)));
+            } else {
+                attributes.add(attribute);
+            }
+        }
+        return events.createStartElement(start.getName(), attributes.iterator(), start.getNamespaces());
+    }
+
+    private static String attribute(StartElement element, String name) {
+        Attribute attribute = element.getAttributeByName(new QName(name));
+        return attribute != null ? attribute.getValue() : null;
+    }
+
+    private static XMLEventReader createEventReader(InputStream inputStream) throws XMLStreamException {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        return factory.createXMLEventReader(inputStream);
+    }
+}
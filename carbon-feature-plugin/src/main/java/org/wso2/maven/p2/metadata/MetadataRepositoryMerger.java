@@ -0,0 +1,264 @@
+/*
+ *  Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.wso2.maven.p2.metadata;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.BiPredicate;
+import javax.xml.stream.XMLEventFactory;
+import javax.xml.stream.XMLEventReader;
+import javax.xml.stream.XMLEventWriter;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.events.XMLEvent;
+
+/**
+ * Merges the metadata of several p2 simple repositories into one simple repository. The unit and artifact elements
+ * are copied as a stream of xml events, so they are kept exactly as written by the p2 publisher, including the parts
+ * of the metadata {@link InstallableUnit} does not model.
+ *
+ * @since 2.1.1
+ */
+public final class MetadataRepositoryMerger {
+
+    private static final String ENCODING = "UTF-8";
+
+    private MetadataRepositoryMerger() {
+    }
+
+    /**
+     * Writes the metadata repository holding the IUs of the given repositories into the given directory. When several
+     * repositories have an IU with the same id and version, the IU of the first one is kept.
+     *
+     * @param repositoryDirectory {@link File} directory of the merged repository
+     * @param name                {@code String} name of the merged repository
+     * @param sources             {@code List<File>} directories of the repositories to merge, in order of precedence
+     * @param compress            whether to write content.jar rather than content.xml
+     * @return number of IUs of the merged repository
+     * @throws IOException if a repository cannot be read or the merged repository cannot be written
+     */
+    public static int mergeMetadataRepositories(File repositoryDirectory, String name, List<File> sources,
+                                                boolean compress) throws IOException {
+        return mergeMetadataRepositories(repositoryDirectory, name, sources, (source, key) -> true, compress);
+    }
+
+    /**
+     * Writes the metadata repository holding the IUs of the given repositories accepted by the given predicate into
+     * the given directory. When several repositories have an IU with the same id and version, the IU of the first one
+     * is kept.
+     *
+     * @param repositoryDirectory {@link File} directory of the merged repository
+     * @param name                {@code String} name of the merged repository
+     * @param sources             {@code List<File>} directories of the repositories to merge, in order of precedence
+     * @param include             {@code BiPredicate<File, String>} accepting the IUs of each repository to merge, by
+     *                            the key returned by {@link InstallableUnit#getKey()}
+     * @param compress            whether to write content.jar rather than content.xml
+     * @return number of IUs of the merged repository
+     * @throws IOException if a repository cannot be read or the merged repository cannot be written
+     */
+    public static int mergeMetadataRepositories(File repositoryDirectory, String name, List<File> sources,
+                                                BiPredicate<File, String> include, boolean compress)
+            throws IOException {
+        Set<String> seen = new HashSet<>();
+        List<boolean[]> retained = new ArrayList<>();
+        int size = 0;
+        for (File source : sources) {
+            List<String> keys = MetadataRepositoryReader.readUnitKeys(source);
+            boolean[] keep = new boolean[keys.size()];
+            for (int i = 0; i < keep.length; i++) {
+                String key = keys.get(i);
+                keep[i] = include.test(source, key) && seen.add(key);
+                size += keep[i] ? 1 : 0;
+            }
+            retained.add(keep);
+        }
+        merge(repositoryDirectory, MetadataRepositoryWriter.CONTENT_XML, MetadataRepositoryWriter.CONTENT_JAR,
+                compress, "metadataRepository", MetadataRepositoryWriter.METADATA_REPOSITORY_TYPE, name, null,
+                "units", "unit", sources, retained, size);
+        return size;
+    }
+
+    /**
+     * Writes the artifact repository holding the artifacts of the given repositories accepted by the given predicate
+     * into the given directory, with the mapping rules of {@link MetadataRepositoryWriter}. When several repositories
+     * have a descriptor of the same artifact in the same format, the descriptor of the first one is kept.
+     *
+     * @param repositoryDirectory {@link File} directory of the merged repository
+     * @param name                {@code String} name of the merged repository
+     * @param sources             {@code List<File>} directories of the repositories to merge, in order of precedence
+     * @param include             {@code BiPredicate<File, ArtifactDescriptor>} accepting the descriptors of each
+     *                            repository to merge, i.e. those whose files have been copied into the merged
+     *                            repository
+     * @param compress            whether to write artifacts.jar rather than artifacts.xml
+     * @return number of artifact descriptors of the merged repository
+     * @throws IOException if a repository cannot be read or the merged repository cannot be written
+     */
+    public static int mergeArtifactRepositories(File repositoryDirectory, String name, List<File> sources,
+                                                BiPredicate<File, ArtifactDescriptor> include, boolean compress)
+            throws IOException {
+        Set<String> seen = new HashSet<>();
+        List<boolean[]> retained = new ArrayList<>();
+        int size = 0;
+        for (File source : sources) {
+            List<ArtifactDescriptor> artifacts = MetadataRepositoryReader.readArtifactRepository(source);
+            boolean[] keep = new boolean[artifacts.size()];
+            for (int i = 0; i < keep.length; i++) {
+                ArtifactDescriptor artifact = artifacts.get(i);
+                InstallableUnit.ArtifactKey key = artifact.getKey();
+                keep[i] = include.test(source, artifact) && seen.add(key.getClassifier() + "/" + key.getId() + "/" +
+                        key.getVersion() + "/" + artifact.getProperties().get("format"));
+                size += keep[i] ? 1 : 0;
+            }
+            retained.add(keep);
+        }
+        merge(repositoryDirectory, MetadataRepositoryWriter.ARTIFACTS_XML, MetadataRepositoryWriter.ARTIFACTS_JAR,
+                compress, "artifactRepository", MetadataRepositoryWriter.ARTIFACT_REPOSITORY_TYPE, name,
+                MetadataRepositoryWriter.getArtifactMappingRules(), "artifacts", "artifact", sources, retained, size);
+        return size;
+    }
+
+    private static void merge(File repositoryDirectory, String xmlName, String jarName, boolean compress,
+                              String instruction, String type, String name, List<String[]> mappings, String container,
+                              String item, List<File> sources, List<boolean[]> retained, int size)
+            throws IOException {
+        MetadataRepositoryWriter.writeFile(repositoryDirectory, xmlName, jarName, compress, outputStream -> {
+            try {
+                XMLEventWriter writer = XMLOutputFactory.newInstance().createXMLEventWriter(outputStream, ENCODING);
+                XMLEventFactory events = XMLEventFactory.newInstance();
+                writer.add(events.createStartDocument(ENCODING, "1.0"));
+                writer.add(events.createProcessingInstruction(instruction, "version='1.1.0'"));
+                writer.add(events.createStartElement("", "", "repository"));
+                writer.add(events.createAttribute("name", name));
+                writer.add(events.createAttribute("type", type));
+                writer.add(events.createAttribute("version", "1"));
+                writeProperties(writer, events, mappings == null ?
+                        new String[][]{{"p2.timestamp", Long.toString(System.currentTimeMillis())},
+                                {"p2.compressed", Boolean.toString(compress)}} :
+                        new String[][]{{"p2.timestamp", Long.toString(System.currentTimeMillis())},
+                                {"p2.compressed", Boolean.toString(compress)}, {"publishPackFilesAsSiblings", "true"}});
+                if (mappings != null) {
+                    writer.add(events.createStartElement("", "", "mappings"));
+                    writer.add(events.createAttribute("size", Integer.toString(mappings.size())));
+                    for (String[] rule : mappings) {
+                        writer.add(events.createStartElement("", "", "rule"));
+                        writer.add(events.createAttribute("filter", rule[0]));
+                        writer.add(events.createAttribute("output", rule[1]));
+                        writer.add(events.createEndElement("", "", "rule"));
+                    }
+                    writer.add(events.createEndElement("", "", "mappings"));
+                }
+                writer.add(events.createStartElement("", "", container));
+                writer.add(events.createAttribute("size", Integer.toString(size)));
+                for (int i = 0; i < sources.size(); i++) {
+                    boolean[] keep = retained.get(i);
+                    MetadataRepositoryReader.readFile(sources.get(i), xmlName, jarName, inputStream -> {
+                        copyItems(inputStream, writer, container, item, keep);
+                        return null;
+                    });
+                }
+                writer.add(events.createEndElement("", "", container));
+                writer.add(events.createEndElement("", "", "repository"));
+                writer.add(events.createEndDocument());
+                writer.flush();
+                writer.close();
+            } catch (XMLStreamException e) {
+                throw new IOException("Unable to write the merged repository at " +
+                        repositoryDirectory.getAbsolutePath(), e);
+            }
+        });
+    }
+
+    private static void writeProperties(XMLEventWriter writer, XMLEventFactory events, String[][] properties)
+            throws XMLStreamException {
+        writer.add(events.createStartElement("", "", "properties"));
+        writer.add(events.createAttribute("size", Integer.toString(properties.length)));
+        for (String[] property : properties) {
+            writer.add(events.createStartElement("", "", "property"));
+            writer.add(events.createAttribute("name", property[0]));
+            writer.add(events.createAttribute("value", property[1]));
+            writer.add(events.createEndElement("", "", "property"));
+        }
+        writer.add(events.createEndElement("", "", "properties"));
+    }
+
+    /**
+     * Copies the items of the container element of a repository document whose index is retained.
+     */
+    private static void copyItems(InputStream inputStream, XMLEventWriter writer, String container, String item,
+                                  boolean[] keep) throws IOException {
+        try {
+            XMLInputFactory factory = XMLInputFactory.newInstance();
+            factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+            factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+            XMLEventReader reader = factory.createXMLEventReader(inputStream);
+            int depth = 0;
+            boolean inContainer = false;
+            int index = 0;
+            while (reader.hasNext()) {
+                XMLEvent event = reader.nextEvent();
+                if (event.isStartElement()) {
+                    String localName = event.asStartElement().getName().getLocalPart();
+                    if (inContainer && depth == 2 && item.equals(localName)) {
+                        if (index >= keep.length) {
+                            throw new IOException("The repository changed while it was being merged");
+                        }
+                        copyElement(event, reader, writer, keep[index++]);
+                        continue;
+                    }
+                    depth++;
+                    inContainer |= depth == 2 && container.equals(localName);
+                } else if (event.isEndElement()) {
+                    depth--;
+                    if (depth == 1 && inContainer) {
+                        break;
+                    }
+                }
+            }
+            reader.close();
+            if (index != keep.length) {
+                throw new IOException("The repository changed while it was being merged");
+            }
+        } catch (XMLStreamException e) {
+            throw new IOException("Unable to read the repository", e);
+        }
+    }
+
+    private static void copyElement(XMLEvent start, XMLEventReader reader, XMLEventWriter writer, boolean copy)
+            throws XMLStreamException {
+        if (copy) {
+            writer.add(start);
+        }
+        int depth = 1;
+        while (depth > 0 && reader.hasNext()) {
+            XMLEvent event = reader.nextEvent();
+            if (event.isStartElement()) {
+                depth++;
+            } else if (event.isEndElement()) {
+                depth--;
+            }
+            if (copy) {
+                writer.add(event);
+            }
+        }
+    }
+}
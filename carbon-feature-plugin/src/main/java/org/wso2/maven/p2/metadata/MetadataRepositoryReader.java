@@ -0,0 +1,431 @@
+/*
+ *  Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.wso2.maven.p2.metadata;
+
+import org.wso2.maven.p2.utils.DigestUtils;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.jar.JarFile;
+import java.util.zip.ZipEntry;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * Reads the IUs and artifacts of p2 simple repositories, in the format written by {@link MetadataRepositoryWriter}
+ * and by the p2 publisher.
+ *
+ * @since 2.1.1
+ */
+public final class MetadataRepositoryReader {
+
+    private MetadataRepositoryReader() {
+    }
+
+    /**
+     * Reads the IUs of the metadata repository in the given directory, from its content.jar or content.xml.
+     *
+     * @param repositoryDirectory {@link File} directory of the repository
+     * @return {@code List<InstallableUnit>} IUs of the repository
+     * @throws IOException if the directory does not contain a readable metadata repository
+     */
+    public static List<InstallableUnit> readMetadataRepository(File repositoryDirectory) throws IOException {
+        return read(repositoryDirectory, MetadataRepositoryWriter.CONTENT_XML, MetadataRepositoryWriter.CONTENT_JAR,
+                reader -> {
+                    List<InstallableUnit> units = new ArrayList<>();
+                    while (reader.hasNext()) {
+                        if (reader.next() == XMLStreamConstants.START_ELEMENT &&
+                                "units".equals(reader.getLocalName())) {
+                            units.addAll(readUnits(reader));
+                        }
+                    }
+                    return units;
+                });
+    }
+
+    /**
+     * Reads the artifacts of the artifact repository in the given directory, from its artifacts.jar or artifacts.xml.
+     *
+     * @param repositoryDirectory {@link File} directory of the repository
+     * @return {@code List<ArtifactDescriptor>} artifacts of the repository
+     * @throws IOException if the directory does not contain a readable artifact repository
+     */
+    public static List<ArtifactDescriptor> readArtifactRepository(File repositoryDirectory) throws IOException {
+        return read(repositoryDirectory, MetadataRepositoryWriter.ARTIFACTS_XML,
+                MetadataRepositoryWriter.ARTIFACTS_JAR, reader -> {
+                    List<ArtifactDescriptor> artifacts = new ArrayList<>();
+                    ArtifactDescriptor artifact = null;
+                    while (reader.hasNext()) {
+                        int event = reader.next();
+                        if (event == XMLStreamConstants.START_ELEMENT) {
+                            if ("artifact".equals(reader.getLocalName())) {
+                                artifact = new ArtifactDescriptor(readArtifactKey(reader));
+                                artifacts.add(artifact);
+                            } else if ("property".equals(reader.getLocalName()) && artifact != null) {
+                                artifact.getProperties().put(reader.getAttributeValue(null, "name"),
+                                        reader.getAttributeValue(null, "value"));
+                            }
+                        } else if (event == XMLStreamConstants.END_ELEMENT &&
+                                "artifact".equals(reader.getLocalName())) {
+                            artifact = null;
+                        }
+                    }
+                    return artifacts;
+                });
+    }
+
+    /**
+     * Reads a digest of each IU of the metadata repository in the given directory. The metadata is streamed and only
+     * the digests are kept, so that repositories of any size can be compared. The digest of an IU covers its
+     * elements, attributes and text, and ignores the order of attributes and whitespace between elements.
+     *
+     * @param repositoryDirectory {@link File} directory of the repository
+     * @return {@code Map<String, String>} SHA-256 digest of each IU in hexadecimal, by the key returned by
+     * {@link InstallableUnit#getKey()}, in the order of the repository
+     * @throws IOException if the directory does not contain a readable metadata repository
+     */
+    public static Map<String, String> readUnitDigests(File repositoryDirectory) throws IOException {
+        Map<String, String> digests = new LinkedHashMap<>();
+        for (String[] entry : readUnitEntries(repositoryDirectory, true)) {
+            digests.putIfAbsent(entry[0], entry[1]);
+        }
+        return digests;
+    }
+
+    /**
+     * Reads the keys of the IUs of the metadata repository in the given directory, streaming the metadata.
+     *
+     * @param repositoryDirectory {@link File} directory of the repository
+     * @return {@code List<String>} keys of the IUs as returned by {@link InstallableUnit#getKey()}, in the order of
+     * the repository
+     * @throws IOException if the directory does not contain a readable metadata repository
+     */
+    static List<String> readUnitKeys(File repositoryDirectory) throws IOException {
+        List<String> keys = new ArrayList<>();
+        for (String[] entry : readUnitEntries(repositoryDirectory, false)) {
+            keys.add(entry[0]);
+        }
+        return keys;
+    }
+
+    /**
+     * Reads the locations of the children of the composite metadata repository in the given directory, from its
+     * compositeContent.jar or compositeContent.xml.
+     *
+     * @param repositoryDirectory {@link File} directory of the repository
+     * @return {@code List<String>} locations of the children as written, which may be relative to the directory
+     * @throws IOException if the directory does not contain a readable composite repository
+     */
+    public static List<String> readCompositeChildren(File repositoryDirectory) throws IOException {
+        return read(repositoryDirectory, MetadataRepositoryWriter.COMPOSITE_CONTENT_XML,
+                MetadataRepositoryWriter.COMPOSITE_CONTENT_JAR, reader -> {
+                    List<String> children = new ArrayList<>();
+                    while (reader.hasNext()) {
+                        if (reader.next() == XMLStreamConstants.START_ELEMENT &&
+                                "child".equals(reader.getLocalName())) {
+                            children.add(reader.getAttributeValue(null, "location"));
+                        }
+                    }
+                    return children;
+                });
+    }
+
+    /**
+     * Reads the IUs of a units element. The reader must be positioned at the start of the units element and is left
+     * at its end.
+     *
+     * @param reader {@link XMLStreamReader}
+     * @return {@code List<InstallableUnit>}
+     * @throws XMLStreamException if the IUs cannot be read
+     */
+    public static List<InstallableUnit> readUnits(XMLStreamReader reader) throws XMLStreamException {
+        List<InstallableUnit> units = new ArrayList<>();
+        while (reader.hasNext()) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT && "unit".equals(reader.getLocalName())) {
+                units.add(readUnit(reader));
+            } else if (event == XMLStreamConstants.END_ELEMENT && "units".equals(reader.getLocalName())) {
+                break;
+            }
+        }
+        return units;
+    }
+
+    /**
+     * Creates a reader for the given stream which does not resolve DTDs or external entities.
+     *
+     * @param inputStream {@link InputStream}
+     * @return {@link XMLStreamReader}
+     * @throws XMLStreamException if the reader cannot be created
+     */
+    static XMLStreamReader createReader(InputStream inputStream) throws XMLStreamException {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        return factory.createXMLStreamReader(inputStream);
+    }
+
+    private static InstallableUnit readUnit(XMLStreamReader reader) throws XMLStreamException {
+        InstallableUnit unit = new InstallableUnit(reader.getAttributeValue(null, "id"),
+                reader.getAttributeValue(null, "version"));
+        unit.setSingleton(!"false".equals(reader.getAttributeValue(null, "singleton")));
+        String[] requirement = null;
+        String requirementFilter = null;
+        while (reader.hasNext()) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.END_ELEMENT) {
+                if ("unit".equals(reader.getLocalName())) {
+                    return unit;
+                } else if ("required".equals(reader.getLocalName()) && requirement != null) {
+                    unit.getRequires().add(new InstallableUnit.Requirement(requirement[0], requirement[1],
+                            requirement[2], "true".equals(requirement[3]), !"false".equals(requirement[4]),
+                            requirementFilter));
+                    requirement = null;
+                    requirementFilter = null;
+                }
+                continue;
+            }
+            if (event != XMLStreamConstants.START_ELEMENT) {
+                continue;
+            }
+            switch (reader.getLocalName()) {
+                case "hostRequirements":
+                case "metaRequirements":
+                case "patchScope":
+                case "changes":
+                case "lifeCycle":
+                    skipElement(reader);
+                    break;
+                case "update":
+                    unit.setUpdateRange(reader.getAttributeValue(null, "range"));
+                    break;
+                case "property":
+                    unit.getProperties().put(reader.getAttributeValue(null, "name"),
+                            reader.getAttributeValue(null, "value"));
+                    break;
+                case "provided":
+                    unit.getProvides().add(new InstallableUnit.Capability(reader.getAttributeValue(null, "namespace"),
+                            reader.getAttributeValue(null, "name"), reader.getAttributeValue(null, "version")));
+                    break;
+                case "required":
+                    requirement = new String[]{reader.getAttributeValue(null, "namespace"),
+                            reader.getAttributeValue(null, "name"), reader.getAttributeValue(null, "range"),
+                            reader.getAttributeValue(null, "optional"), reader.getAttributeValue(null, "greedy")};
+                    break;
+                case "filter":
+                    if (requirement != null) {
+                        requirementFilter = reader.getElementText().trim();
+                    } else {
+                        unit.setFilter(reader.getElementText().trim());
+                    }
+                    break;
+                case "artifact":
+                    unit.getArtifacts().add(readArtifactKey(reader));
+                    break;
+                case "touchpoint":
+                    unit.setTouchpoint(reader.getAttributeValue(null, "id"), reader.getAttributeValue(null, "version"));
+                    break;
+                case "instruction":
+                    unit.getInstructions().put(reader.getAttributeValue(null, "key"), reader.getElementText());
+                    break;
+                case "license":
+                    String licenseUrl = reader.getAttributeValue(null, "uri");
+                    unit.setLicense(licenseUrl, reader.getElementText());
+                    break;
+                case "copyright":
+                    String copyrightUrl = reader.getAttributeValue(null, "uri");
+                    unit.setCopyright(copyrightUrl, reader.getElementText());
+                    break;
+                default:
+                    break;
+            }
+        }
+        throw new XMLStreamException("Unterminated unit " + unit.getKey());
+    }
+
+    private static List<String[]> readUnitEntries(File repositoryDirectory, boolean digest) throws IOException {
+        MessageDigest messageDigest = digest ? DigestUtils.newDigest(DigestUtils.SHA_256) : null;
+        return read(repositoryDirectory, MetadataRepositoryWriter.CONTENT_XML, MetadataRepositoryWriter.CONTENT_JAR,
+                reader -> {
+                    List<String[]> entries = new ArrayList<>();
+                    int depth = 0;
+                    boolean inUnits = false;
+                    while (reader.hasNext()) {
+                        int event = reader.next();
+                        if (event == XMLStreamConstants.START_ELEMENT) {
+                            if (inUnits && depth == 2 && "unit".equals(reader.getLocalName())) {
+                                String key = reader.getAttributeValue(null, "id") + "/" +
+                                        reader.getAttributeValue(null, "version");
+                                if (messageDigest != null) {
+                                    digestElement(reader, messageDigest);
+                                    entries.add(new String[]{key, DigestUtils.toHex(messageDigest.digest())});
+                                } else {
+                                    skipElement(reader);
+                                    entries.add(new String[]{key, null});
+                                }
+                                continue;
+                            }
+                            depth++;
+                            inUnits |= depth == 2 && "units".equals(reader.getLocalName());
+                        } else if (event == XMLStreamConstants.END_ELEMENT) {
+                            depth--;
+                            if (inUnits && depth == 1) {
+                                break;
+                            }
+                        }
+                    }
+                    return entries;
+                });
+    }
+
+    /**
+     * Digests the element the reader is positioned at, leaving the reader at its end.
+     */
+    private static void digestElement(XMLStreamReader reader, MessageDigest messageDigest)
+            throws XMLStreamException {
+        int depth = 0;
+        do {
+            int event = depth == 0 ? reader.getEventType() : reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                depth++;
+                TreeMap<String, String> attributes = new TreeMap<>();
+                for (int i = 0; i < reader.getAttributeCount(); i++) {
+                    attributes.put(reader.getAttributeLocalName(i), reader.getAttributeValue(i));
+                }
+                update(messageDigest, "<" + reader.getLocalName());
+                for (Map.Entry<String, String> attribute : attributes.entrySet()) {
+                    update(messageDigest, " " + attribute.getKey() + "=" + attribute.getValue());
+                }
+                update(messageDigest, ">");
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                depth--;
+                update(messageDigest, "</" + reader.getLocalName() + ">");
+            } else if ((event == XMLStreamConstants.CHARACTERS || event == XMLStreamConstants.CDATA) &&
+                    !reader.isWhiteSpace()) {
+                update(messageDigest, reader.getText());
+            }
+        } while (depth > 0 && reader.hasNext());
+    }
+
+    private static void update(MessageDigest messageDigest, String text) {
+        messageDigest.update(text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void skipElement(XMLStreamReader reader) throws XMLStreamException {
+        int depth = 1;
+        while (depth > 0 && reader.hasNext()) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                depth++;
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                depth--;
+            }
+        }
+    }
+
+    private static InstallableUnit.ArtifactKey readArtifactKey(XMLStreamReader reader) {
+        return new InstallableUnit.ArtifactKey(reader.getAttributeValue(null, "classifier"),
+                reader.getAttributeValue(null, "id"), reader.getAttributeValue(null, "version"));
+    }
+
+    private static <T> T read(File repositoryDirectory, String xmlName, String jarName,
+                              DocumentReader<T> documentReader) throws IOException {
+        return readFile(repositoryDirectory, xmlName, jarName, inputStream -> {
+            try {
+                return readDocument(inputStream, documentReader);
+            } catch (XMLStreamException e) {
+                throw new IOException("Unable to read the repository at " + repositoryDirectory.getAbsolutePath(), e);
+            }
+        });
+    }
+
+    /**
+     * Reads a repository file, from the given jar holding the xml file if the repository has it, otherwise from the
+     * given xml file.
+     *
+     * @param repositoryDirectory {@link File} directory of the repository
+     * @param xmlName             {@code String} name of the xml file
+     * @param jarName             {@code String} name of the jar file
+     * @param contentReader       {@link ContentReader} reading the xml document
+     * @param <T>                 type of the content
+     * @return the content read
+     * @throws IOException if the repository has neither file or it cannot be read
+     */
+    static <T> T readFile(File repositoryDirectory, String xmlName, String jarName, ContentReader<T> contentReader)
+            throws IOException {
+        File jar = new File(repositoryDirectory, jarName);
+        File xml = new File(repositoryDirectory, xmlName);
+        if (jar.isFile()) {
+            try (JarFile jarFile = new JarFile(jar)) {
+                ZipEntry entry = jarFile.getEntry(xmlName);
+                if (entry == null) {
+                    throw new IOException(jar.getAbsolutePath() + " does not contain " + xmlName);
+                }
+                try (InputStream inputStream = jarFile.getInputStream(entry)) {
+                    return contentReader.read(inputStream);
+                }
+            }
+        } else if (xml.isFile()) {
+            try (InputStream inputStream = new BufferedInputStream(Files.newInputStream(xml.toPath()))) {
+                return contentReader.read(inputStream);
+            }
+        }
+        throw new IOException("No " + jarName + " or " + xmlName + " in " + repositoryDirectory.getAbsolutePath());
+    }
+
+    private static <T> T readDocument(InputStream inputStream, DocumentReader<T> documentReader)
+            throws XMLStreamException {
+        XMLStreamReader reader = createReader(inputStream);
+        try {
+            return documentReader.read(reader);
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * Reads the xml document of a repository file.
+     *
+     * @param <T> type of the content
+     */
+    interface ContentReader<T> {
+
+        T read(InputStream inputStream) throws IOException;
+    }
+
+    /**
+     * Reads the content of a repository document.
+     *
+     * @param <T> type of the content
+     */
+    private interface DocumentReader<T> {
+
+        T read(XMLStreamReader reader) throws XMLStreamException;
+    }
+}
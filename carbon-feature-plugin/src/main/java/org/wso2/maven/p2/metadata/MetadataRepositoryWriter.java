@@ -0,0 +1,431 @@
+/*
+ *  Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.wso2.maven.p2.metadata;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.jar.JarOutputStream;
+import java.util.zip.ZipEntry;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+/**
+ * Writes p2 metadata (content.xml) and artifact (artifacts.xml) repositories in the format of the simple repositories
+ * written by the p2 publisher, optionally compressed into content.jar and artifacts.jar, and composite repositories
+ * referencing other repositories. Each file is written to a
+ * temporary file first and moved into place once complete.
+ *
+ * @since 2.1.1
+ */
+public final class MetadataRepositoryWriter {
+
+    public static final String CONTENT_XML = "content.xml";
+    public static final String CONTENT_JAR = "content.jar";
+    public static final String ARTIFACTS_XML = "artifacts.xml";
+    public static final String ARTIFACTS_JAR = "artifacts.jar";
+    public static final String COMPOSITE_CONTENT_XML = "compositeContent.xml";
+    public static final String COMPOSITE_CONTENT_JAR = "compositeContent.jar";
+    public static final String COMPOSITE_ARTIFACTS_XML = "compositeArtifacts.xml";
+    public static final String COMPOSITE_ARTIFACTS_JAR = "compositeArtifacts.jar";
+
+    private static final String ENCODING = "UTF-8";
+    static final String METADATA_REPOSITORY_TYPE =
+            "org.eclipse.equinox.internal.p2.metadata.repository.LocalMetadataRepository";
+    static final String ARTIFACT_REPOSITORY_TYPE =
+            "org.eclipse.equinox.p2.artifact.repository.simpleRepository";
+    private static final String COMPOSITE_METADATA_REPOSITORY_TYPE =
+            "org.eclipse.equinox.internal.p2.metadata.repository.CompositeMetadataRepository";
+    private static final String COMPOSITE_ARTIFACT_REPOSITORY_TYPE =
+            "org.eclipse.equinox.internal.p2.artifact.repository.CompositeArtifactRepository";
+    private static final String[][] ARTIFACT_MAPPING_RULES = {
+            {"(& (classifier=osgi.bundle))", "${repoUrl}/plugins/${id}_${version}.jar"},
+            {"(& (classifier=binary))", "${repoUrl}/binary/${id}_${version}"},
+            {"(& (classifier=org.eclipse.update.feature))", "${repoUrl}/features/${id}_${version}.jar"}
+    };
+
+    private MetadataRepositoryWriter() {
+    }
+
+    /**
+     * Writes the metadata repository of the given IUs into the given directory.
+     *
+     * @param repositoryDirectory {@link File} directory of the repository
+     * @param name                {@code String} name of the repository
+     * @param units               {@code Collection<InstallableUnit>} IUs of the repository
+     * @param compress            whether to write content.jar rather than content.xml
+     * @throws IOException if the repository cannot be written
+     */
+    public static void writeMetadataRepository(File repositoryDirectory, String name,
+                                               Collection<InstallableUnit> units, boolean compress)
+            throws IOException {
+        write(repositoryDirectory, CONTENT_XML, CONTENT_JAR, compress, writer -> {
+            writer.writeProcessingInstruction("metadataRepository", "version='1.1.0'");
+            writer.writeStartElement("repository");
+            writer.writeAttribute("name", name);
+            writer.writeAttribute("type", METADATA_REPOSITORY_TYPE);
+            writer.writeAttribute("version", "1");
+            writeProperties(writer, getRepositoryProperties(compress));
+            writeUnits(writer, units);
+            writer.writeEndElement();
+        });
+    }
+
+    /**
+     * Writes the artifact repository of the given artifacts into the given directory.
+     *
+     * @param repositoryDirectory {@link File} directory of the repository
+     * @param name                {@code String} name of the repository
+     * @param artifacts           {@code Collection<ArtifactDescriptor>} artifacts of the repository
+     * @param compress            whether to write artifacts.jar rather than artifacts.xml
+     * @throws IOException if the repository cannot be written
+     */
+    public static void writeArtifactRepository(File repositoryDirectory, String name,
+                                               Collection<ArtifactDescriptor> artifacts, boolean compress)
+            throws IOException {
+        write(repositoryDirectory, ARTIFACTS_XML, ARTIFACTS_JAR, compress, writer -> {
+            writer.writeProcessingInstruction("artifactRepository", "version='1.1.0'");
+            writer.writeStartElement("repository");
+            writer.writeAttribute("name", name);
+            writer.writeAttribute("type", ARTIFACT_REPOSITORY_TYPE);
+            writer.writeAttribute("version", "1");
+            writeProperties(writer, getRepositoryProperties(compress));
+            writer.writeStartElement("mappings");
+            writer.writeAttribute("size", Integer.toString(ARTIFACT_MAPPING_RULES.length));
+            for (String[] rule : ARTIFACT_MAPPING_RULES) {
+                writer.writeEmptyElement("rule");
+                writer.writeAttribute("filter", rule[0]);
+                writer.writeAttribute("output", rule[1]);
+            }
+            writer.writeEndElement();
+            writer.writeStartElement("artifacts");
+            writer.writeAttribute("size", Integer.toString(artifacts.size()));
+            for (ArtifactDescriptor artifact : artifacts) {
+                writer.writeStartElement("artifact");
+                writeArtifactKeyAttributes(writer, artifact.getKey());
+                writeProperties(writer, artifact.getProperties());
+                writer.writeEndElement();
+            }
+            writer.writeEndElement();
+            writer.writeEndElement();
+        });
+    }
+
+    /**
+     * Writes a composite repository referencing the given child repositories into the given directory, as
+     * compositeContent.xml and compositeArtifacts.xml. The composite is loaded atomically, i.e. p2 fails to load it
+     * when any of its children cannot be loaded.
+     *
+     * @param repositoryDirectory {@link File} directory of the repository
+     * @param name                {@code String} name of the repository
+     * @param children            {@code Collection<String>} locations of the children, as URLs which may be relative
+     *                            to the repository directory
+     * @param compress            whether to write compositeContent.jar and compositeArtifacts.jar rather than the xml
+     *                            files
+     * @throws IOException if the repository cannot be written
+     */
+    public static void writeCompositeRepository(File repositoryDirectory, String name, Collection<String> children,
+                                                boolean compress) throws IOException {
+        writeComposite(repositoryDirectory, COMPOSITE_CONTENT_XML, COMPOSITE_CONTENT_JAR, compress,
+                "compositeMetadataRepository", COMPOSITE_METADATA_REPOSITORY_TYPE, name, children);
+        writeComposite(repositoryDirectory, COMPOSITE_ARTIFACTS_XML, COMPOSITE_ARTIFACTS_JAR, compress,
+                "compositeArtifactRepository", COMPOSITE_ARTIFACT_REPOSITORY_TYPE, name, children);
+    }
+
+    /**
+     * Returns the mapping rules of the artifact repositories written by this class, which place bundles in the
+     * plugins folder and features in the features folder of the repository.
+     *
+     * @return {@code List<String[]>} filter and output of each rule, in order
+     */
+    public static List<String[]> getArtifactMappingRules() {
+        List<String[]> rules = new ArrayList<>();
+        for (String[] rule : ARTIFACT_MAPPING_RULES) {
+            rules.add(rule.clone());
+        }
+        return rules;
+    }
+
+    /**
+     * Writes the given IUs as a units element.
+     *
+     * @param writer {@link XMLStreamWriter}
+     * @param units  {@code Collection<InstallableUnit>}
+     * @throws XMLStreamException if the IUs cannot be written
+     */
+    public static void writeUnits(XMLStreamWriter writer, Collection<InstallableUnit> units)
+            throws XMLStreamException {
+        writer.writeStartElement("units");
+        writer.writeAttribute("size", Integer.toString(units.size()));
+        for (InstallableUnit unit : units) {
+            writeUnit(writer, unit);
+        }
+        writer.writeEndElement();
+    }
+
+    private static void writeUnit(XMLStreamWriter writer, InstallableUnit unit) throws XMLStreamException {
+        writer.writeStartElement("unit");
+        writer.writeAttribute("id", unit.getId());
+        writer.writeAttribute("version", unit.getVersion());
+        // p2 treats an IU without the attribute as a singleton
+        if (!unit.isSingleton()) {
+            writer.writeAttribute("singleton", "false");
+        }
+        if (unit.getUpdateRange() != null) {
+            writer.writeEmptyElement("update");
+            writer.writeAttribute("id", unit.getId());
+            writer.writeAttribute("range", unit.getUpdateRange());
+            writer.writeAttribute("severity", "0");
+        }
+        writeProperties(writer, unit.getProperties());
+
+        writer.writeStartElement("provides");
+        writer.writeAttribute("size", Integer.toString(unit.getProvides().size()));
+        for (InstallableUnit.Capability capability : unit.getProvides()) {
+            writer.writeEmptyElement("provided");
+            writer.writeAttribute("namespace", capability.getNamespace());
+            writer.writeAttribute("name", capability.getName());
+            writer.writeAttribute("version", capability.getVersion());
+        }
+        writer.writeEndElement();
+
+        if (!unit.getRequires().isEmpty()) {
+            writer.writeStartElement("requires");
+            writer.writeAttribute("size", Integer.toString(unit.getRequires().size()));
+            for (InstallableUnit.Requirement requirement : unit.getRequires()) {
+                if (requirement.getFilter() != null) {
+                    writer.writeStartElement("required");
+                } else {
+                    writer.writeEmptyElement("required");
+                }
+                writer.writeAttribute("namespace", requirement.getNamespace());
+                writer.writeAttribute("name", requirement.getName());
+                writer.writeAttribute("range", requirement.getRange());
+                if (requirement.isOptional()) {
+                    writer.writeAttribute("optional", "true");
+                }
+                if (!requirement.isGreedy()) {
+                    writer.writeAttribute("greedy", "false");
+                }
+                if (requirement.getFilter() != null) {
+                    writeTextElement(writer, "filter", requirement.getFilter());
+                    writer.writeEndElement();
+                }
+            }
+            writer.writeEndElement();
+        }
+        if (unit.getFilter() != null) {
+            writeTextElement(writer, "filter", unit.getFilter());
+        }
+        if (!unit.getArtifacts().isEmpty()) {
+            writer.writeStartElement("artifacts");
+            writer.writeAttribute("size", Integer.toString(unit.getArtifacts().size()));
+            for (InstallableUnit.ArtifactKey key : unit.getArtifacts()) {
+                writer.writeEmptyElement("artifact");
+                writeArtifactKeyAttributes(writer, key);
+            }
+            writer.writeEndElement();
+        }
+
+        writer.writeEmptyElement("touchpoint");
+        writer.writeAttribute("id", unit.getTouchpointId());
+        writer.writeAttribute("version", unit.getTouchpointVersion());
+        if (!unit.getInstructions().isEmpty()) {
+            writer.writeStartElement("touchpointData");
+            writer.writeAttribute("size", "1");
+            writer.writeStartElement("instructions");
+            writer.writeAttribute("size", Integer.toString(unit.getInstructions().size()));
+            for (Map.Entry<String, String> instruction : unit.getInstructions().entrySet()) {
+                writer.writeStartElement("instruction");
+                writer.writeAttribute("key", instruction.getKey());
+                writer.writeCharacters(instruction.getValue());
+                writer.writeEndElement();
+            }
+            writer.writeEndElement();
+            writer.writeEndElement();
+        }
+        if (unit.getLicenseText() != null) {
+            writer.writeStartElement("licenses");
+            writer.writeAttribute("size", "1");
+            writer.writeStartElement("license");
+            if (unit.getLicenseUrl() != null) {
+                writer.writeAttribute("uri", unit.getLicenseUrl());
+                writer.writeAttribute("url", unit.getLicenseUrl());
+            }
+            writer.writeCharacters(unit.getLicenseText());
+            writer.writeEndElement();
+            writer.writeEndElement();
+        }
+        if (unit.getCopyrightText() != null) {
+            writer.writeStartElement("copyright");
+            if (unit.getCopyrightUrl() != null) {
+                writer.writeAttribute("uri", unit.getCopyrightUrl());
+                writer.writeAttribute("url", unit.getCopyrightUrl());
+            }
+            writer.writeCharacters(unit.getCopyrightText());
+            writer.writeEndElement();
+        }
+        writer.writeEndElement();
+    }
+
+    private static void writeComposite(File repositoryDirectory, String xmlName, String jarName, boolean compress,
+                                       String instruction, String type, String name, Collection<String> children)
+            throws IOException {
+        write(repositoryDirectory, xmlName, jarName, compress, writer -> {
+            writer.writeProcessingInstruction(instruction, "version='1.0.0'");
+            writer.writeStartElement("repository");
+            writer.writeAttribute("name", name);
+            writer.writeAttribute("type", type);
+            writer.writeAttribute("version", "1.0.0");
+            Map<String, String> properties = getRepositoryProperties(compress);
+            properties.put("p2.atomic.composite.loading", "true");
+            writeProperties(writer, properties);
+            writer.writeStartElement("children");
+            writer.writeAttribute("size", Integer.toString(children.size()));
+            for (String child : children) {
+                writer.writeEmptyElement("child");
+                writer.writeAttribute("location", child);
+            }
+            writer.writeEndElement();
+            writer.writeEndElement();
+        });
+    }
+
+    private static void writeArtifactKeyAttributes(XMLStreamWriter writer, InstallableUnit.ArtifactKey key)
+            throws XMLStreamException {
+        writer.writeAttribute("classifier", key.getClassifier());
+        writer.writeAttribute("id", key.getId());
+        writer.writeAttribute("version", key.getVersion());
+    }
+
+    private static void writeProperties(XMLStreamWriter writer, Map<String, String> properties)
+            throws XMLStreamException {
+        if (properties.isEmpty()) {
+            return;
+        }
+        writer.writeStartElement("properties");
+        writer.writeAttribute("size", Integer.toString(properties.size()));
+        for (Map.Entry<String, String> property : properties.entrySet()) {
+            writer.writeEmptyElement("property");
+            writer.writeAttribute("name", property.getKey());
+            writer.writeAttribute("value", property.getValue());
+        }
+        writer.writeEndElement();
+    }
+
+    private static void writeTextElement(XMLStreamWriter writer, String name, String text)
+            throws XMLStreamException {
+        writer.writeStartElement(name);
+        writer.writeCharacters(text);
+        writer.writeEndElement();
+    }
+
+    private static Map<String, String> getRepositoryProperties(boolean compress) {
+        Map<String, String> properties = new LinkedHashMap<>();
+        properties.put("p2.timestamp", Long.toString(System.currentTimeMillis()));
+        properties.put("p2.compressed", Boolean.toString(compress));
+        return properties;
+    }
+
+    private static void write(File repositoryDirectory, String xmlName, String jarName, boolean compress,
+                              DocumentWriter documentWriter) throws IOException {
+        writeFile(repositoryDirectory, xmlName, jarName, compress,
+                outputStream -> writeDocument(outputStream, documentWriter));
+    }
+
+    /**
+     * Writes a repository file, either as the given xml file or as the given jar holding the xml file. The file is
+     * written to a temporary file and moved into place once complete, and the other form of the file is deleted.
+     *
+     * @param repositoryDirectory {@link File} directory of the repository
+     * @param xmlName             {@code String} name of the xml file
+     * @param jarName             {@code String} name of the jar file
+     * @param compress            whether to write the jar rather than the xml file
+     * @param contentWriter       {@link ContentWriter} writing the xml document
+     * @throws IOException if the file cannot be written
+     */
+    static void writeFile(File repositoryDirectory, String xmlName, String jarName, boolean compress,
+                          ContentWriter contentWriter) throws IOException {
+        if (!repositoryDirectory.isDirectory() && !repositoryDirectory.mkdirs()) {
+            throw new IOException("Unable to create " + repositoryDirectory.getAbsolutePath());
+        }
+        String fileName = compress ? jarName : xmlName;
+        Path target = new File(repositoryDirectory, fileName).toPath();
+        Path temp = Files.createTempFile(repositoryDirectory.toPath(), fileName, ".tmp");
+        try {
+            try (OutputStream outputStream = new BufferedOutputStream(Files.newOutputStream(temp))) {
+                if (compress) {
+                    try (JarOutputStream jarOutputStream = new JarOutputStream(outputStream)) {
+                        jarOutputStream.putNextEntry(new ZipEntry(xmlName));
+                        contentWriter.write(jarOutputStream);
+                        jarOutputStream.closeEntry();
+                    }
+                } else {
+                    contentWriter.write(outputStream);
+                }
+            }
+            try {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+            Files.deleteIfExists(new File(repositoryDirectory, compress ? xmlName : jarName).toPath());
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private static void writeDocument(OutputStream outputStream, DocumentWriter documentWriter) throws IOException {
+        try {
+            XMLStreamWriter writer = XMLOutputFactory.newInstance().createXMLStreamWriter(outputStream, ENCODING);
+            writer.writeStartDocument(ENCODING, "1.0");
+            documentWriter.write(writer);
+            writer.writeEndDocument();
+            writer.flush();
+            writer.close();
+        } catch (XMLStreamException e) {
+            throw new IOException("Unable to write the repository", e);
+        }
+    }
+
+    /**
+     * Writes the xml document of a repository file.
+     */
+    interface ContentWriter {
+
+        void write(OutputStream outputStream) throws IOException;
+    }
+
+    /**
+     * Writes the root element of a repository document.
+     */
+    private interface DocumentWriter {
+
+        void write(XMLStreamWriter writer) throws XMLStreamException;
+    }
+}
@@ -0,0 +1,158 @@
+/*
+ *  Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.wso2.maven.p2.metadata;
+
+import org.apache.maven.plugin.logging.Log;
+import org.wso2.maven.p2.exceptions.UnsupportedMetadataException;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Publishes the bundles and features of a source directory, laid out as {@code plugins/*.jar} and
+ * {@code features/<feature>/}, into a new p2 repository without launching the p2 publisher.
+ * <p>
+ * Only the subset of bundles and features described in {@link MetadataGenerator} is supported. The IUs recorded by
+ * the {@link MetadataFragment} of an extracted feature zip are merged rather than generated. All the metadata is
+ * generated before anything is written, so an {@link UnsupportedMetadataException} leaves the repository untouched and
+ * the caller can fall back to the p2 publisher.
+ * </p>
+ *
+ * @since 2.1.1
+ */
+public class NativeRepositoryPublisher {
+
+    private static final String PLUGINS = "plugins";
+    private static final String FEATURES = "features";
+
+    private final File sourceDirectory;
+    private final File repositoryDirectory;
+    private final String repositoryName;
+    private final Collection<MetadataFragment> fragments;
+    private final Log log;
+
+    /**
+     * Constructs a NativeRepositoryPublisher.
+     *
+     * @param sourceDirectory     {@link File} directory containing the plugins and features folders
+     * @param repositoryDirectory {@link File} directory of the repository to generate
+     * @param repositoryName      {@code String} name of the repository
+     * @param fragments           {@code Collection<MetadataFragment>} fragments of extracted feature zips, whose IUs
+     *                            are merged instead of being generated again
+     * @param log                 {@link Log}
+     */
+    public NativeRepositoryPublisher(File sourceDirectory, File repositoryDirectory, String repositoryName,
+                                     Collection<MetadataFragment> fragments, Log log) {
+        this.sourceDirectory = sourceDirectory;
+        this.repositoryDirectory = repositoryDirectory;
+        this.repositoryName = repositoryName;
+        this.fragments = fragments;
+        this.log = log;
+    }
+
+    /**
+     * Returns whether the given directory already holds a metadata repository, which the native publisher does not
+     * append to.
+     *
+     * @param repositoryDirectory {@link File} directory of the repository
+     * @return true if the directory contains metadata
+     */
+    public static boolean hasMetadata(File repositoryDirectory) {
+        return Stream.of(MetadataRepositoryWriter.CONTENT_XML, MetadataRepositoryWriter.CONTENT_JAR,
+                "compositeContent.xml", "compositeContent.jar")
+                .anyMatch(name -> new File(repositoryDirectory, name).exists());
+    }
+
+    /**
+     * Publishes the source directory into the repository, writing compressed content.jar and artifacts.jar.
+     *
+     * @throws IOException                  if the repository cannot be written
+     * @throws UnsupportedMetadataException if any bundle or feature cannot be published without the p2 publisher
+     */
+    public void publish() throws IOException, UnsupportedMetadataException {
+        MetadataFragment metadata = MetadataFragment.generate(sourceDirectory, fragments);
+
+        List<ArtifactDescriptor> artifacts = new ArrayList<>();
+        for (MetadataFragment.Source source : metadata.getSources()) {
+            File sourceFile = new File(sourceDirectory, source.getPath());
+            for (String key : source.getUnitKeys()) {
+                for (InstallableUnit.ArtifactKey artifactKey : metadata.getUnit(key).getArtifacts()) {
+                    File target = getArtifactFile(artifactKey);
+                    if (sourceFile.isDirectory()) {
+                        zip(sourceFile, target);
+                    } else {
+                        copy(sourceFile, target);
+                    }
+                    artifacts.add(MetadataGenerator.describeArtifact(artifactKey, target));
+                }
+            }
+        }
+
+        MetadataRepositoryWriter.writeArtifactRepository(repositoryDirectory, repositoryName, artifacts, true);
+        MetadataRepositoryWriter.writeMetadataRepository(repositoryDirectory, repositoryName, metadata.getUnits(),
+                true);
+        log.info("Published " + metadata.getUnits().size() + " installable unit(s) and " + artifacts.size() +
+                " artifact(s) to " + repositoryDirectory.getAbsolutePath());
+    }
+
+    private File getArtifactFile(InstallableUnit.ArtifactKey key) throws UnsupportedMetadataException {
+        String folder;
+        if (MetadataGenerator.CLASSIFIER_BUNDLE.equals(key.getClassifier())) {
+            folder = PLUGINS;
+        } else if (MetadataGenerator.CLASSIFIER_FEATURE.equals(key.getClassifier())) {
+            folder = FEATURES;
+        } else {
+            throw new UnsupportedMetadataException("Artifact classifier " + key.getClassifier());
+        }
+        return new File(new File(repositoryDirectory, folder), key.getId() + "_" + key.getVersion() + ".jar");
+    }
+
+    private static void copy(File source, File target) throws IOException {
+        Files.createDirectories(target.getParentFile().toPath());
+        Files.copy(source.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private static void zip(File directory, File target) throws IOException {
+        Files.createDirectories(target.getParentFile().toPath());
+        Path root = directory.toPath();
+        List<Path> files;
+        try (Stream<Path> walk = Files.walk(root)) {
+            files = walk.filter(Files::isRegularFile).sorted().collect(Collectors.toList());
+        }
+        try (OutputStream outputStream = new BufferedOutputStream(Files.newOutputStream(target.toPath()));
+             ZipOutputStream zipOutputStream = new ZipOutputStream(outputStream)) {
+            for (Path file : files) {
+                String name = root.relativize(file).toString().replace(File.separatorChar, '/');
+                zipOutputStream.putNextEntry(new ZipEntry(name));
+                Files.copy(file, zipOutputStream);
+                zipOutputStream.closeEntry();
+            }
+        }
+    }
+}
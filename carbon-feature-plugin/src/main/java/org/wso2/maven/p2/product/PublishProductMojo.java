@@ -16,7 +16,6 @@
 package org.wso2.maven.p2.product;
 
 
-import org.apache.maven.plugin.AbstractMojo;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
 import org.apache.maven.plugins.annotations.Component;
@@ -24,6 +23,7 @@ import org.apache.maven.plugins.annotations.Mojo;
 import org.apache.maven.plugins.annotations.Parameter;
 import org.apache.maven.project.MavenProject;
 import org.eclipse.sisu.equinox.launching.internal.P2ApplicationLauncher;
+import org.wso2.maven.p2.utils.AbstractP2ApplicationMojo;
 import org.wso2.maven.p2.utils.P2ApplicationLaunchManager;
 
 import java.io.File;
@@ -36,7 +36,7 @@ import java.net.URL;
  * @since 2.0.0
  */
 @Mojo(name = "publish-product")
-public class PublishProductMojo extends AbstractMojo {
+public class PublishProductMojo extends AbstractP2ApplicationMojo {
 
     @Parameter(defaultValue = "${project}")
     protected MavenProject project;
@@ -87,7 +87,8 @@ public class PublishProductMojo extends AbstractMojo {
      * @throws IOException          throws if fail to read file canonical path.
      */
     private void publishProduct() throws MojoFailureException, IOException {
-        P2ApplicationLaunchManager p2LaunchManager = new P2ApplicationLaunchManager(this.launcher);
+        P2ApplicationLaunchManager p2LaunchManager = new P2ApplicationLaunchManager(this.launcher,
+                createForkOptions(), getLog());
         p2LaunchManager.setWorkingDirectory(project.getBasedir());
         p2LaunchManager.setApplicationName("org.eclipse.equinox.p2.publisher.ProductPublisher");
         p2LaunchManager.addPublishProductArguments(repositoryURL, productConfigurationFile, executable);
@@ -15,7 +15,6 @@
  */
 package org.wso2.maven.p2.profile;
 
-import org.apache.maven.plugin.AbstractMojo;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
 import org.apache.maven.plugins.annotations.Component;
@@ -24,8 +23,10 @@ import org.apache.maven.plugins.annotations.Parameter;
 import org.apache.maven.project.MavenProject;
 import org.eclipse.sisu.equinox.launching.internal.P2ApplicationLauncher;
 import org.eclipse.tycho.model.ProductConfiguration;
+import org.wso2.maven.p2.utils.AbstractP2ApplicationMojo;
 import org.wso2.maven.p2.utils.FileManagementUtil;
 import org.wso2.maven.p2.utils.P2ApplicationLaunchManager;
+import org.wso2.maven.p2.utils.P2AreaLock;
 import org.wso2.maven.p2.utils.P2Constants;
 
 import java.io.File;
@@ -38,7 +39,7 @@ import java.net.URL;
  * @since 2.0.0
  */
 @Mojo(name = "generate-profile")
-public class GenerateProfileMojo extends AbstractMojo {
+public class GenerateProfileMojo extends AbstractP2ApplicationMojo {
 
     @Parameter(required = true, defaultValue = "${project}")
     protected MavenProject project;
@@ -89,11 +90,13 @@ public class GenerateProfileMojo extends AbstractMojo {
             if (profile == null) {
                 profile = P2Constants.DEFAULT_PROFILE_ID;
             }
-            deployRepository();
-            //updating profile's config.ini p2.data.area property using relative path
-            File profileConfigIni = FileManagementUtil.getProfileConfigIniFile(targetPath.getPath(), profile);
-            FileManagementUtil.changeConfigIniProperty(profileConfigIni, "eclipse.p2.data.area",
-                    "@config.dir/../../p2/", this.getLog());
+            try (P2AreaLock ignored = P2AreaLock.lockProfile(targetPath.getPath(), profile, getLog())) {
+                deployRepository();
+                //updating profile's config.ini p2.data.area property using relative path
+                File profileConfigIni = FileManagementUtil.getProfileConfigIniFile(targetPath.getPath(), profile);
+                FileManagementUtil.changeConfigIniProperty(profileConfigIni, "eclipse.p2.data.area",
+                        "@config.dir/../../p2/", this.getLog());
+            }
         } catch (IOException e) {
             throw new MojoExecutionException(e.getMessage(), e);
         }
@@ -101,10 +104,13 @@ public class GenerateProfileMojo extends AbstractMojo {
 
     private void deployRepository() throws MojoFailureException, IOException {
         ProductConfiguration productConfiguration = ProductConfiguration.read(productConfigurationFile);
-        P2ApplicationLaunchManager p2LaunchManager = new P2ApplicationLaunchManager(this.launcher);
+        P2ApplicationLaunchManager p2LaunchManager = new P2ApplicationLaunchManager(this.launcher,
+                createForkOptions(), getLog());
         p2LaunchManager.setWorkingDirectory(project.getBasedir());
         p2LaunchManager.setApplicationName("org.eclipse.equinox.p2.director");
         p2LaunchManager.addGenerateProfileArguments(repositoryURL, productConfiguration.getId(), profile, targetPath);
-        p2LaunchManager.performAction(forkedProcessTimeoutInSeconds);
+        try (P2AreaLock ignored = P2AreaLock.lockBundlePool(targetPath.getPath(), getLog())) {
+            p2LaunchManager.performAction(forkedProcessTimeoutInSeconds);
+        }
     }
 }
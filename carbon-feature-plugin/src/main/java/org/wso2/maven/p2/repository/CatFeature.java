@@ -19,9 +19,7 @@ package org.wso2.maven.p2.repository;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.project.MavenProject;
 import org.wso2.maven.p2.utils.BundleUtils;
-
-import java.util.Properties;
-import java.util.regex.Pattern;
+import org.wso2.maven.p2.utils.PropertyReplacer;
 
 /**
  * Bean class representing a CatFeature object provided as an input param to RepositoryGeneratorMojo.
@@ -84,10 +82,11 @@ public class CatFeature {
         if (version == null) {
             throw new MojoExecutionException("Could not find the version for featureId: " + getId());
         }
-        Properties properties = project.getProperties();
-        properties.forEach((key, value) -> {
-            version = version.replaceAll(Pattern.quote("${" + key + "}"), value.toString());
-        });
+        try {
+            version = PropertyReplacer.replaceProperties(version, project.getProperties());
+        } catch (IllegalArgumentException e) {
+            throw new MojoExecutionException("Could not resolve the version for featureId: " + getId(), e);
+        }
         versionReplaced = true;
     }
 
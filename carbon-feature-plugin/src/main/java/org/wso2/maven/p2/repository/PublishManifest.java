@@ -0,0 +1,171 @@
+/*
+ *  Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.wso2.maven.p2.repository;
+
+import org.wso2.maven.p2.utils.DigestUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Properties;
+
+/**
+ * Manifest of the content published to a repository by generate-repo, used to publish only the features and bundles
+ * which are new or changed since the previous run.
+ * <p>
+ * The manifest records the SHA-256 hash of each published artifact file together with its size and modification
+ * time, so that the hash of an unchanged file is not computed again. It also records a fingerprint of the repository
+ * configuration and a stamp of the repository metadata as written by the last publication. A manifest whose
+ * repository has been deleted or modified by another tool since is discarded, which makes the next run publish
+ * everything.
+ * </p>
+ *
+ * @since 2.1.1
+ */
+public class PublishManifest {
+
+    private static final String REPOSITORY = "repository";
+    private static final String REPOSITORY_STAMP = "repository.stamp";
+    private static final String CONFIGURATION = "configuration";
+    private static final String ARTIFACT_PREFIX = "artifact.";
+    private static final String[] METADATA_FILES = {"content.jar", "content.xml", "compositeContent.jar",
+            "compositeContent.xml"};
+
+    private final File manifestFile;
+    private final File repositoryDirectory;
+    private final Properties previous = new Properties();
+    private final Properties current = new Properties();
+
+    /**
+     * Constructs a PublishManifest, loading the manifest of the previous run when it belongs to the given repository
+     * and the repository has not been changed since.
+     *
+     * @param manifestFile        {@link File} file the manifest is kept in
+     * @param repositoryDirectory {@link File} directory of the repository
+     * @throws IOException if the manifest exists but cannot be read
+     */
+    public PublishManifest(File manifestFile, File repositoryDirectory) throws IOException {
+        this.manifestFile = manifestFile;
+        this.repositoryDirectory = repositoryDirectory;
+        if (manifestFile.isFile()) {
+            Properties loaded = new Properties();
+            try (InputStream inputStream = Files.newInputStream(manifestFile.toPath())) {
+                loaded.load(inputStream);
+            }
+            String stamp = getRepositoryStamp();
+            if (repositoryDirectory.getAbsolutePath().equals(loaded.getProperty(REPOSITORY)) && stamp != null &&
+                    stamp.equals(loaded.getProperty(REPOSITORY_STAMP))) {
+                previous.putAll(loaded);
+            }
+        }
+        current.setProperty(REPOSITORY, repositoryDirectory.getAbsolutePath());
+    }
+
+    /**
+     * Returns whether the previous run published to the repository in its current state.
+     *
+     * @return true if a manifest of the previous run is available
+     */
+    public boolean hasPrevious() {
+        return !previous.isEmpty();
+    }
+
+    /**
+     * Records the fingerprint of the repository configuration, such as its name and categories.
+     *
+     * @param fingerprint {@code String}
+     * @return true if the configuration is unchanged since the previous run
+     */
+    public boolean setConfiguration(String fingerprint) {
+        current.setProperty(CONFIGURATION, fingerprint);
+        return fingerprint.equals(previous.getProperty(CONFIGURATION));
+    }
+
+    /**
+     * Records the given artifact file under the given key.
+     *
+     * @param key  {@code String} key identifying the artifact, i.e. its maven coordinates
+     * @param file {@link File} artifact file
+     * @return true if the artifact was published by the previous run with the same content
+     * @throws IOException if the file cannot be read
+     */
+    public boolean putArtifact(String key, File file) throws IOException {
+        String property = ARTIFACT_PREFIX + key;
+        String size = Long.toString(file.length());
+        String lastModified = Long.toString(file.lastModified());
+        String recorded = previous.getProperty(property);
+        String hash = null;
+        if (recorded != null) {
+            String[] parts = recorded.split(":", 3);
+            if (parts.length == 3 && parts[0].equals(size) && parts[1].equals(lastModified)) {
+                hash = parts[2];
+            }
+        }
+        if (hash == null) {
+            hash = DigestUtils.sha256(file);
+        }
+        String entry = size + ":" + lastModified + ":" + hash;
+        current.setProperty(property, entry);
+        return recorded != null && recorded.endsWith(":" + hash);
+    }
+
+    /**
+     * Writes the manifest, stamping it with the current state of the repository metadata. Must be called after the
+     * repository has been published.
+     *
+     * @throws IOException if the manifest cannot be written
+     */
+    public void save() throws IOException {
+        String stamp = getRepositoryStamp();
+        if (stamp == null) {
+            Files.deleteIfExists(manifestFile.toPath());
+            return;
+        }
+        current.setProperty(REPOSITORY_STAMP, stamp);
+        Path directory = manifestFile.getAbsoluteFile().getParentFile().toPath();
+        Files.createDirectories(directory);
+        Path temp = Files.createTempFile(directory, manifestFile.getName(), ".tmp");
+        try {
+            try (OutputStream outputStream = Files.newOutputStream(temp)) {
+                current.store(outputStream, "Content published to " + repositoryDirectory.getAbsolutePath());
+            }
+            try {
+                Files.move(temp, manifestFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                        StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, manifestFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private String getRepositoryStamp() {
+        for (String name : METADATA_FILES) {
+            File metadata = new File(repositoryDirectory, name);
+            if (metadata.isFile()) {
+                return name + ":" + metadata.length() + ":" + metadata.lastModified();
+            }
+        }
+        return null;
+    }
+}
@@ -22,18 +22,33 @@ import org.apache.maven.plugin.MojoFailureException;
 import org.apache.maven.plugin.logging.Log;
 import org.apache.maven.project.MavenProject;
 import org.codehaus.plexus.util.FileUtils;
+import org.wso2.maven.p2.beans.ArtifactIndex;
 import org.wso2.maven.p2.beans.CarbonArtifact;
 import org.wso2.maven.p2.exceptions.CarbonArtifactNotFoundException;
+import org.wso2.maven.p2.exceptions.UnsupportedMetadataException;
+import org.wso2.maven.p2.metadata.ArtifactChecksums;
+import org.wso2.maven.p2.metadata.MetadataCompression;
+import org.wso2.maven.p2.metadata.MetadataFragment;
+import org.wso2.maven.p2.metadata.NativeRepositoryPublisher;
+import org.wso2.maven.p2.repository.report.RepositoryReport;
+import org.wso2.maven.p2.utils.ArtifactPool;
 import org.wso2.maven.p2.utils.DependencyResolver;
+import org.wso2.maven.p2.utils.DigestUtils;
 import org.wso2.maven.p2.utils.FileManagementUtil;
 import org.wso2.maven.p2.utils.P2ApplicationLaunchManager;
 import org.wso2.maven.p2.utils.P2Utils;
+import org.wso2.maven.p2.utils.RepositoryArchiver;
+import org.wso2.maven.p2.utils.TreeSynchronizer;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
 import java.util.Date;
-import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
 import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.transform.TransformerException;
 
@@ -52,7 +67,9 @@ public class RepositoryGenerator {
 
     private File repoGenerationLocation;
     private File archiveFile;
-    private File categoryDefinitionFile;
+    private File publishManifestFile;
+    private File resourceListFile;
+    private File reportDirectory;
 
     private Log log;
 
@@ -61,35 +78,69 @@ public class RepositoryGenerator {
      * a command line application that is capable of generating metadata (p2 repositories) from pre-built Eclipse
      * bundles and features.
      */
-    private static final String PUBLISHER_APPLICATION = "org.eclipse.equinox.p2.publisher.FeaturesAndBundlesPublisher";
+    static final String PUBLISHER_APPLICATION = "org.eclipse.equinox.p2.publisher.FeaturesAndBundlesPublisher";
 
     /**
-     * The category publisher application (org.eclipse.equinox.p2.publisher.CategoryPublisher) is a command line
-     * application that is capable of categorizing a set of Installable Units in a given repository.
+     * The update site publisher application (org.eclipse.equinox.p2.publisher.UpdateSitePublisher) publishes the
+     * features and bundles of an update site like the features and bundles publisher, and in the same run categorizes
+     * them according to the site.xml of the update site. Hence the metadata repository is loaded and written once,
+     * instead of being rewritten by the category publisher after publishing.
      */
-    private static final String CATEGORY_PUBLISHER_APPLICATION = "org.eclipse.equinox.p2.publisher.CategoryPublisher";
+    static final String UPDATE_SITE_PUBLISHER_APPLICATION =
+            "org.eclipse.equinox.p2.publisher.UpdateSitePublisher";
+
+    static final String UPDATE_SITE_MANIFEST = "site.xml";
+
+    private static final String PUBLISH_MANIFEST = "p2-publish-manifest.properties";
+    private static final String RESOURCE_LIST = "p2-repository-resources.txt";
+    private static final String REPORT = "p2-repository-report";
 
     private P2ApplicationLaunchManager p2LaunchManager;
-    private HashMap<String, CarbonArtifact> dependentBundles;
-    private HashMap<String, CarbonArtifact> dependentFeatures;
+    private ArtifactPool artifactPool;
+    private RepositoryArchiver archiver;
+    private ArtifactIndex dependencies;
+
+    /**
+     * The features and bundles to stage and publish in this run; all the configured ones unless the repository is
+     * published incrementally.
+     */
+    private List<Feature> featuresToPublish;
+    private List<Bundle> bundlesToPublish;
+    private PublishManifest publishManifest;
 
     public RepositoryGenerator(RepositoryResourceBundle resourceBundle) {
         this.resourceBundle = resourceBundle;
         this.log = resourceBundle.getLog();
         this.project = this.resourceBundle.getProject();
-        p2LaunchManager = new P2ApplicationLaunchManager(resourceBundle.getLauncher());
+        p2LaunchManager = new P2ApplicationLaunchManager(resourceBundle.getLauncher(), resourceBundle.getForkOptions(),
+                this.log);
+        if (resourceBundle.getArtifactPool() != null) {
+            artifactPool = new ArtifactPool(resourceBundle.getArtifactPool(), this.log);
+        }
     }
 
     public void generate() throws MojoExecutionException, MojoFailureException {
         try {
+            createArchiver();
             resolveDependencies();
             populateRequiredArtifactData();
             setupTempOutputFolderStructure();
-            unzipFeaturesToOutputFolder();
-            copyBundleArtifactsToOutputFolder();
-            copyProjectResourcesToOutputFolder();
-            generateRepository();
-            updateRepositoryWithCategories();
+            createUpdateSiteManifest();
+            if (selectArtifactsToPublish()) {
+                unzipFeaturesToOutputFolder();
+                copyBundleArtifactsToOutputFolder();
+                copyProjectResourcesToOutputFolder();
+                generateRepository();
+                recordChecksums();
+                poolArtifacts();
+                savePublishManifest();
+                deleteStaleXzMetadata();
+            } else {
+                this.log.info("Repository is up to date, no features or bundles changed since the previous run");
+                copyProjectResourcesToOutputFolder();
+            }
+            writeAlternativeMetadataFormats();
+            writeReport();
             archiveGeneratedRepo();
             performMopUp();
         } catch (IOException | TransformerException | ParserConfigurationException e) {
@@ -101,11 +152,8 @@ public class RepositoryGenerator {
 
     private void resolveDependencies() throws IOException {
         this.log.info("Inspecting maven dependencies.");
-        List<HashMap<String, CarbonArtifact>> artifacts = DependencyResolver.getDependenciesForProject(project,
-                resourceBundle.getRepositorySystem(), resourceBundle.getRemoteRepositories(),
-                resourceBundle.getLocalRepository());
-        dependentBundles = artifacts.get(0);
-        dependentFeatures = artifacts.get(1);
+        dependencies = DependencyResolver.getDependenciesForProject(project, resourceBundle.getRepositorySystem(),
+                resourceBundle.getRemoteRepositories(), resourceBundle.getLocalRepository());
     }
 
     private void populateRequiredArtifactData() throws CarbonArtifactNotFoundException {
@@ -115,10 +163,10 @@ public class RepositoryGenerator {
 
     private void populateBundleDataFromCache() throws CarbonArtifactNotFoundException {
         for (Bundle bundle : resourceBundle.getBundleArtifacts()) {
-            String key = bundle.getSymbolicName() + "_" + bundle.getVersion();
-            CarbonArtifact artifact = dependentBundles.get(key);
+            CarbonArtifact artifact = dependencies.getBundle(bundle.getSymbolicName(), bundle.getVersion());
             if (artifact == null) {
-                throw new CarbonArtifactNotFoundException("Bundle not found");
+                throw new CarbonArtifactNotFoundException("Bundle " + bundle.getSymbolicName() + "_" +
+                        bundle.getVersion() + " not found");
             }
             artifact.copyTo(bundle);
         }
@@ -126,10 +174,10 @@ public class RepositoryGenerator {
 
     private void populateFeatureDataFromCache() throws CarbonArtifactNotFoundException {
         for (Feature feature : resourceBundle.getFeatureArtifacts()) {
-            String key = feature.getId() + "_" + feature.getVersion();
-            CarbonArtifact artifact = dependentFeatures.get(key);
+            CarbonArtifact artifact = dependencies.getFeature(feature.getId(), feature.getVersion());
             if (artifact == null) {
-                throw new CarbonArtifactNotFoundException("Feature " + key + " not found");
+                throw new CarbonArtifactNotFoundException("Feature " + feature.getId() + "_" + feature.getVersion() +
+                        " not found");
             }
             artifact.copyTo(feature);
             feature.setId(artifact.getArtifactId());
@@ -137,12 +185,16 @@ public class RepositoryGenerator {
     }
 
     /**
-     * Copy maven project resources located in the resources folder into mata repository.
+     * Copy maven project resources located in the resources folder into mata repository. Only new or changed resource
+     * files are copied, and the files copied by the previous run whose resources have since been removed are deleted.
      *
      * @throws IOException
      */
     private void copyProjectResourcesToOutputFolder() throws IOException {
         List<Resource> resources = project.getResources();
+        List<String> previous = TreeSynchronizer.readFileList(resourceListFile, repoGenerationLocation);
+        Set<String> current = new LinkedHashSet<>();
+        TreeSynchronizer synchronizer = new TreeSynchronizer(0, false);
         if (resources != null) {
             this.log.info("Copying resources");
             for (Resource resource : resources) {
@@ -150,38 +202,251 @@ public class RepositoryGenerator {
                     File resourceFolder = new File(resource.getDirectory());
                     if (resourceFolder.exists()) {
                         this.log.info("   " + resource.getDirectory());
-                        FileManagementUtil.copyDirectory(resourceFolder, repoGenerationLocation);
+                        TreeSynchronizer.Result result = synchronizer.synchronize(resourceFolder,
+                                repoGenerationLocation, null);
+                        current.addAll(result.getFiles());
+                        for (String link : result.getSkippedLinks()) {
+                            this.log.warn("   Skipping symbolic link " + link + " which is not a link to a file");
+                        }
+                        this.log.debug("   " + result.getCopied() + " file(s) copied, " + result.getUnchanged() +
+                                " unchanged");
                     }
                 } catch (IOException e) {
                     throw new IOException("Unable copy resources: " + resource.getDirectory(), e);
                 }
             }
         }
+        List<String> stale = new ArrayList<>(previous);
+        stale.removeAll(current);
+        int deleted = synchronizer.deleteStale(repoGenerationLocation, stale);
+        if (deleted > 0) {
+            this.log.info("Deleted " + deleted + " file(s) of resources removed since the previous run");
+        }
+        TreeSynchronizer.writeFileList(resourceListFile, repoGenerationLocation, current);
+    }
+
+    /**
+     * Creates the update site manifest (site.xml) driving the update site publisher, if categories are defined.
+     *
+     * @throws MojoExecutionException
+     * @throws TransformerException
+     * @throws ParserConfigurationException
+     */
+    private void createUpdateSiteManifest() throws MojoExecutionException, TransformerException,
+            ParserConfigurationException {
+        if (isCategoriesAvailable()) {
+            P2Utils.createCategoryFile(project, resourceBundle.getCategories(),
+                    new File(sourceDir, UPDATE_SITE_MANIFEST), true);
+        }
+    }
+
+    /**
+     * Selects the features and bundles to publish. Unless the repository is published incrementally, all the
+     * configured features and bundles are published. Otherwise only the ones whose content changed since the previous
+     * run are, or all of them when the repository configuration changed or categories are defined, as the update site
+     * publisher categorizes only the features it publishes.
+     *
+     * @return false if there is nothing to publish
+     * @throws IOException
+     */
+    private boolean selectArtifactsToPublish() throws IOException {
+        featuresToPublish = resourceBundle.getFeatureArtifacts();
+        bundlesToPublish = resourceBundle.getBundleArtifacts();
+        if (!resourceBundle.isIncremental()) {
+            return true;
+        }
+        publishManifest = new PublishManifest(publishManifestFile, repoGenerationLocation);
+        boolean configurationUnchanged = publishManifest.setConfiguration(getConfigurationFingerprint());
+        List<Feature> changedFeatures = new ArrayList<>();
+        for (Feature feature : featuresToPublish) {
+            if (!publishManifest.putArtifact("feature." + getCoordinates(feature), feature.getArtifact().getFile())) {
+                changedFeatures.add(feature);
+            }
+        }
+        List<Bundle> changedBundles = new ArrayList<>();
+        for (Bundle bundle : bundlesToPublish) {
+            if (!publishManifest.putArtifact("bundle." + getCoordinates(bundle), bundle.getArtifact().getFile())) {
+                changedBundles.add(bundle);
+            }
+        }
+        if (!configurationUnchanged) {
+            this.log.info(publishManifest.hasPrevious() ? "Repository configuration changed, publishing all " +
+                    "features and bundles" : "No manifest of a previous run, publishing all features and bundles");
+            return true;
+        }
+        if (changedFeatures.isEmpty() && changedBundles.isEmpty()) {
+            return false;
+        }
+        this.log.info(changedFeatures.size() + " feature(s) and " + changedBundles.size() + " bundle(s) changed " +
+                "since the previous run");
+        if (!isCategoriesAvailable()) {
+            featuresToPublish = changedFeatures;
+            bundlesToPublish = changedBundles;
+        }
+        return true;
+    }
+
+    private String getConfigurationFingerprint() throws IOException {
+        StringBuilder configuration = new StringBuilder(getRepositoryName()).append('\n')
+                .append(resourceBundle.isNativeMetadata()).append('\n')
+                .append(resourceBundle.isChecksums()).append('\n');
+        File updateSiteManifest = new File(sourceDir, UPDATE_SITE_MANIFEST);
+        if (updateSiteManifest.isFile()) {
+            configuration.append(new String(Files.readAllBytes(updateSiteManifest.toPath()), StandardCharsets.UTF_8));
+        }
+        return DigestUtils.sha256(configuration.toString());
+    }
+
+    private static String getCoordinates(CarbonArtifact artifact) {
+        return artifact.getGroupId() + ":" + artifact.getArtifactId() + ":" + artifact.getVersion();
+    }
+
+    private void savePublishManifest() throws IOException {
+        if (publishManifest != null) {
+            publishManifest.save();
+        }
+    }
+
+    /**
+     * Records the checksums of the artifacts of the repository in its artifact metadata, if requested. The artifacts
+     * are hashed on a worker pool once the repository is published, as the p2 publisher rewrites the artifact metadata
+     * and zips the features while publishing, and bundles are mostly staged as hard links rather than copied. Only the
+     * artifacts published by this run are hashed, those of previous runs keeping their recorded checksums.
+     *
+     * @throws IOException
+     */
+    private void recordChecksums() throws IOException {
+        if (resourceBundle.isChecksums()) {
+            new ArtifactChecksums(resourceBundle.getChecksumThreads(), this.log).record(repoGenerationLocation);
+        }
+    }
+
+    /**
+     * Replaces the artifacts of the repository by hard links to the artifact pool, if one is configured.
+     *
+     * @throws IOException
+     */
+    private void poolArtifacts() throws IOException {
+        if (artifactPool != null) {
+            artifactPool.deduplicate(new File(repoGenerationLocation, "plugins"));
+            artifactPool.deduplicate(new File(repoGenerationLocation, "features"));
+        }
+    }
+
+    /**
+     * Deletes the XZ metadata left by a previous run if this run did not ask for it, since it no longer matches the
+     * republished metadata.
+     *
+     * @throws IOException
+     */
+    private void deleteStaleXzMetadata() throws IOException {
+        if (!resourceBundle.isXzCompress() && MetadataCompression.deleteXz(repoGenerationLocation)) {
+            this.log.info("Deleted the XZ metadata of a previous run");
+        }
+    }
+
+    /**
+     * Writes the XZ metadata and the p2.index of the repository, if requested.
+     *
+     * @throws IOException
+     * @throws MojoFailureException
+     */
+    private void writeAlternativeMetadataFormats() throws IOException, MojoFailureException {
+        if (resourceBundle.isXzCompress()) {
+            if (!MetadataCompression.isXzAvailable()) {
+                throw new MojoFailureException("XZ compression requires org.tukaani:xz as a dependency of the " +
+                        "plugin");
+            }
+            this.log.info("Writing XZ compressed repository metadata");
+            MetadataCompression.writeXz(repoGenerationLocation);
+        }
+        if (resourceBundle.isXzCompress() || resourceBundle.isP2Index()) {
+            MetadataCompression.writeIndex(repoGenerationLocation);
+        }
+        if (resourceBundle.isXzCompress()) {
+            MetadataCompression.reportFormats(repoGenerationLocation, this.log);
+        }
+    }
+
+    /**
+     * Writes the report of the composition of the repository, if enabled.
+     *
+     * @throws IOException
+     */
+    private void writeReport() throws IOException {
+        if (resourceBundle.isReport()) {
+            new RepositoryReport(repoGenerationLocation, resourceBundle.getReportTop(), this.log).write(
+                    new File(reportDirectory, REPORT + ".json"), new File(reportDirectory, REPORT + ".html"));
+        }
+    }
+
+    private boolean isCategoriesAvailable() {
+        return resourceBundle.getCategories() != null && resourceBundle.getCategories().size() != 0;
     }
 
     /**
-     * Generate the repository by calling P2ApplicationLauncher.
+     * Generate the repository by calling P2ApplicationLauncher. If categories are defined, the repository is published
+     * and categorized in a single run of the update site publisher. If native metadata generation is enabled and
+     * supported for the artifacts, the repository is published without launching a p2 application, merging the p2
+     * metadata fragments attached next to the feature zips.
      *
      * @throws MojoFailureException
      */
-    private void generateRepository() throws MojoFailureException {
-        this.log.info("Running Equinox P2 Publisher Application for Repository Generation");
+    private void generateRepository() throws MojoFailureException, MojoExecutionException, IOException {
+        boolean isCategoriesAvailable = isCategoriesAvailable();
+
+        if (resourceBundle.isNativeMetadata() && !isCategoriesAvailable &&
+                !NativeRepositoryPublisher.hasMetadata(repoGenerationLocation)) {
+            this.log.info("Generating repository metadata natively");
+            try {
+                new NativeRepositoryPublisher(sourceDir, repoGenerationLocation, getRepositoryName(),
+                        readMetadataFragments(), this.log).publish();
+                return;
+            } catch (UnsupportedMetadataException e) {
+                this.log.info("Falling back to the Equinox P2 Publisher Application: " + e.getMessage());
+            }
+        }
         p2LaunchManager.setWorkingDirectory(project.getBasedir());
-        p2LaunchManager.setApplicationName(PUBLISHER_APPLICATION);
-        p2LaunchManager.addRepoGenerationArguments(sourceDir.getAbsolutePath(), resourceBundle.getRepository().
-                toString(), getRepositoryName());
+        if (isCategoriesAvailable) {
+            this.log.info("Running Equinox P2 Update Site Publisher Application for Repository Generation");
+            p2LaunchManager.setApplicationName(UPDATE_SITE_PUBLISHER_APPLICATION);
+            p2LaunchManager.addRepoGenerationWithCategoryArguments(sourceDir.getAbsolutePath(),
+                    resourceBundle.getRepository().toString(), getRepositoryName());
+        } else {
+            this.log.info("Running Equinox P2 Publisher Application for Repository Generation");
+            p2LaunchManager.setApplicationName(PUBLISHER_APPLICATION);
+            p2LaunchManager.addRepoGenerationArguments(sourceDir.getAbsolutePath(), resourceBundle.getRepository().
+                    toString(), getRepositoryName());
+        }
         p2LaunchManager.performAction(resourceBundle.getForkedProcessTimeoutInSeconds());
         this.log.info("Completed running Equinox P2 Publisher Application for Repository Generation");
     }
 
+    /**
+     * Reads the p2 metadata fragments attached next to the feature zips, if any.
+     *
+     * @return {@code List<MetadataFragment>}
+     * @throws IOException
+     */
+    private List<MetadataFragment> readMetadataFragments() throws IOException {
+        List<MetadataFragment> fragments = new ArrayList<>();
+        for (Feature feature : featuresToPublish) {
+            File fragmentFile = MetadataFragment.getFragmentFile(feature.getArtifact().getFile());
+            if (fragmentFile.isFile()) {
+                this.log.debug("Merging p2 metadata fragment " + fragmentFile.getAbsolutePath());
+                fragments.add(MetadataFragment.read(fragmentFile));
+            }
+        }
+        return fragments;
+    }
+
     /**
      * Unzip the given feature zip files into the output folder which will ultimately converted into P2 repo.
      *
      * @throws IOException
      */
     private void unzipFeaturesToOutputFolder() throws IOException {
-        List<Feature> artifacts = resourceBundle.getFeatureArtifacts();
-        for (Feature feature : artifacts) {
+        for (Feature feature : featuresToPublish) {
             try {
                 this.log.info("Extracting feature " + feature.getGroupId() + ":" +
                         feature.getArtifactId());
@@ -199,7 +464,7 @@ public class RepositoryGenerator {
      * @throws IOException
      */
     private void copyBundleArtifactsToOutputFolder() throws IOException {
-        List<Bundle> bundles = resourceBundle.getBundleArtifacts();
+        List<Bundle> bundles = bundlesToPublish;
         if (bundles.size() > 0) {
             this.log.info("Copying bundle artifacts.");
         }
@@ -208,7 +473,11 @@ public class RepositoryGenerator {
             try {
                 this.log.info("Copying bundle artifact:" + bundleArtifact.getSymbolicName());
                 File file = bundleArtifact.getArtifact().getFile();
-                FileManagementUtil.copy(file, new File(pluginsDir, file.getName()));
+                if (artifactPool != null) {
+                    artifactPool.stage(file, new File(pluginsDir, file.getName()));
+                } else {
+                    FileManagementUtil.copy(file, new File(pluginsDir, file.getName()));
+                }
             } catch (IOException e) {
                 throw new IOException("Error occurred when extracting the Feature Artifact: " +
                         bundleArtifact.toString(), e);
@@ -217,15 +486,39 @@ public class RepositoryGenerator {
     }
 
     /**
-     * Creates a zip archive from the generated repository and delete the repo.
+     * Creates the archiver of the repository if archiving is enabled, failing before the repository is generated if
+     * the archive format cannot be written.
+     *
+     * @throws MojoFailureException
+     */
+    private void createArchiver() throws MojoFailureException {
+        if (resourceBundle.isArchive()) {
+            try {
+                archiver = new RepositoryArchiver(resourceBundle.getArchiveFormat(), resourceBundle.getArchiveLevel(),
+                        resourceBundle.getArchiveThreads(), resourceBundle.getArchiveMemory(), this.log);
+            } catch (IllegalArgumentException e) {
+                throw new MojoFailureException(e.getMessage(), e);
+            }
+            if (!archiver.isAvailable()) {
+                throw new MojoFailureException("The " + archiver.getExtension() + " archive format requires " +
+                        archiver.getCodecDependency() + " as a dependency of the plugin");
+            }
+        }
+    }
+
+    /**
+     * Creates an archive from the generated repository and delete the repo.
      *
      * @throws MojoExecutionException
      */
     private void archiveGeneratedRepo() throws MojoExecutionException {
-        if (resourceBundle.isArchive()) {
+        if (archiver != null) {
             this.log.info("Generating repository archive...");
-            FileManagementUtil.zipFolder(repoGenerationLocation.toString(), archiveFile.toString(),
-                    resourceBundle.getLog());
+            try {
+                archiver.archive(repoGenerationLocation, archiveFile);
+            } catch (IOException e) {
+                throw new MojoExecutionException("Failed to archive " + repoGenerationLocation.getAbsolutePath(), e);
+            }
             this.log.info("Repository Archive: " + archiveFile.toString());
             try {
                 FileManagementUtil.deleteDirectories(repoGenerationLocation);
@@ -252,37 +545,16 @@ public class RepositoryGenerator {
 
             repoGenerationLocation = new File(resourceBundle.getRepository().getFile().replace("/",
                     File.separator));
-            archiveFile = new File(targetDir, project.getArtifactId() + "_" + project.getVersion() + ".zip");
-            categoryDefinitionFile = File.createTempFile("equinox-p2", "category");
+            archiveFile = new File(targetDir, project.getArtifactId() + "_" + project.getVersion() + "." +
+                    (archiver != null ? archiver.getExtension() : RepositoryArchiver.ZIP));
+            publishManifestFile = new File(targetDir, PUBLISH_MANIFEST);
+            resourceListFile = new File(targetDir, RESOURCE_LIST);
+            reportDirectory = targetDir;
         } catch (IOException e) {
             throw new IOException("Error occurred while creating output folder structure", e);
         }
     }
 
-    /**
-     * Update the generated repository with categories.
-     *
-     * @throws MojoExecutionException
-     */
-    private void updateRepositoryWithCategories() throws TransformerException, ParserConfigurationException,
-            MojoExecutionException, MojoFailureException {
-        boolean isCategoriesAvailable = resourceBundle.getCategories() != null &&
-                resourceBundle.getCategories().size() != 0;
-
-        if (isCategoriesAvailable) {
-            this.log.info("Running Equinox P2 Category Publisher Application for the Generated Repository");
-            P2Utils.createCategoryFile(project, resourceBundle.getCategories(), categoryDefinitionFile);
-
-            p2LaunchManager.setWorkingDirectory(project.getBasedir());
-            p2LaunchManager.setApplicationName(CATEGORY_PUBLISHER_APPLICATION);
-            p2LaunchManager.addUpdateRepoWithCategoryArguments(resourceBundle.getRepository().toString(),
-                    categoryDefinitionFile.toURI().toString());
-
-            p2LaunchManager.performAction(resourceBundle.getForkedProcessTimeoutInSeconds());
-            this.log.info("Completed running Equinox P2 Category Publisher Application for the Generated Repository");
-        }
-    }
-
     /**
      * Delete the temporary folder.
      */
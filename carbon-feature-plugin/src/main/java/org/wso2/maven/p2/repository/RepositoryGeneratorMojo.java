@@ -16,7 +16,6 @@
 package org.wso2.maven.p2.repository;
 
 import org.apache.maven.artifact.repository.ArtifactRepository;
-import org.apache.maven.plugin.AbstractMojo;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
 import org.apache.maven.plugins.annotations.Component;
@@ -26,7 +25,9 @@ import org.apache.maven.plugins.annotations.Parameter;
 import org.apache.maven.project.MavenProject;
 import org.apache.maven.repository.RepositorySystem;
 import org.eclipse.sisu.equinox.launching.internal.P2ApplicationLauncher;
+import org.wso2.maven.p2.utils.AbstractP2ApplicationMojo;
 
+import java.io.File;
 import java.net.URL;
 import java.util.List;
 
@@ -36,7 +37,7 @@ import java.util.List;
  * @since 2.0.0
  */
 @Mojo(name = "generate-repo", defaultPhase = LifecyclePhase.PACKAGE)
-public class RepositoryGeneratorMojo extends AbstractMojo {
+public class RepositoryGeneratorMojo extends AbstractP2ApplicationMojo {
 
     @Parameter
     private String name;
@@ -59,6 +60,40 @@ public class RepositoryGeneratorMojo extends AbstractMojo {
     @Parameter(defaultValue = "false")
     private boolean archive;
 
+    /**
+     * Format of the repository archive: zip, tar.zst or tar.xz. The tar formats are compressed on several threads by
+     * codecs which are not shipped with the plugin, as the commons-compress 1.9 it uses has no Zstandard support: add
+     * com.github.luben:zstd-jni (tested with 1.5.5-11, which bundles the native library of the common platforms) for
+     * tar.zst, or org.tukaani:xz (tested with 1.9) for tar.xz, to the dependencies of the carbon-feature-plugin in the
+     * plugin section of the project. The build fails before generating the repository when the codec is missing.
+     */
+    @Parameter(property = "p2.archiveFormat", defaultValue = "zip")
+    private String archiveFormat;
+
+    /**
+     * Compression level of the zip (0 to 9), tar.zst (1 to 22) or tar.xz (0 to 9) repository archive. -1 uses the
+     * default level of the format.
+     */
+    @Parameter(property = "p2.archiveLevel", defaultValue = "-1")
+    private int archiveLevel;
+
+    /**
+     * Number of threads compressing the tar.zst or tar.xz repository archive. 0 uses one thread per available
+     * processor.
+     */
+    @Parameter(property = "p2.archiveThreads", defaultValue = "0")
+    private int archiveThreads;
+
+    /**
+     * Memory in megabytes the compression of the tar.zst or tar.xz repository archive may hold. Each block in flight
+     * holds 32 MB, its data and its compressed data, and each thread an encoder whose memory grows with the level:
+     * about 2 MB for tar.zst at level 3 and 260 MB at level 22, which zstd-jni allocates outside of the heap, and
+     * 94 MB for tar.xz at level 6. Fewer threads are used when they would not fit. 0 uses a quarter of the maximum
+     * heap size.
+     */
+    @Parameter(property = "p2.archiveMemory", defaultValue = "0")
+    private int archiveMemory;
+
     @Component
     private RepositorySystem repositorySystem;
 
@@ -80,6 +115,72 @@ public class RepositoryGeneratorMojo extends AbstractMojo {
     @Parameter(defaultValue = "${p2.timeout}")
     private int forkedProcessTimeoutInSeconds;
 
+    /**
+     * Whether to generate the metadata of the repository in process, without launching the p2 publisher. Applies when
+     * no categories are defined and the target repository does not exist yet; bundles and features the native
+     * generator does not support are published by the p2 publisher instead.
+     */
+    @Parameter(property = "p2.nativeMetadata", defaultValue = "false")
+    private boolean nativeMetadata;
+
+    /**
+     * Whether to publish only the features and bundles which are new or changed since the previous run to an existing
+     * repository, according to the manifest of content hashes kept in the target directory. No p2 application is
+     * launched when nothing has changed.
+     */
+    @Parameter(property = "p2.incremental", defaultValue = "false")
+    private boolean incremental;
+
+    /**
+     * Whether to also write the repository metadata as content.xml.xz and artifacts.xml.xz, together with a p2.index
+     * listing them first, and report the size and decode time of each metadata format. Requires the XZ for Java library
+     * (org.tukaani:xz) to be added as a dependency of the plugin.
+     */
+    @Parameter(property = "p2.xzCompress", defaultValue = "false")
+    private boolean xzCompress;
+
+    /**
+     * Whether to write a p2.index file, so that p2 clients load the metadata formats the repository has without probing
+     * for the others.
+     */
+    @Parameter(property = "p2.index", defaultValue = "false")
+    private boolean p2Index;
+
+    /**
+     * Directory of a content-addressed pool shared by the repositories generated in a build. When set, each artifact
+     * of the repository is stored once in the pool and the plugins and features folders of the repository hold hard
+     * links to it.
+     */
+    @Parameter(property = "p2.artifactPool")
+    private File artifactPool;
+
+    /**
+     * Whether to compute the SHA-256 and MD5 checksums of the artifacts of the repository and record them in the
+     * artifact metadata, so that p2 clients and mirrors can verify the artifacts they download.
+     */
+    @Parameter(property = "p2.checksums", defaultValue = "false")
+    private boolean checksums;
+
+    /**
+     * Number of threads computing the checksums of the artifacts. 0 uses one thread per available processor.
+     */
+    @Parameter(property = "p2.checksumThreads", defaultValue = "0")
+    private int checksumThreads;
+
+    /**
+     * Whether to write a report of the composition of the repository, i.e. the size of each feature, the bundles
+     * shared between features or present in more than one version, and the largest artifacts, as
+     * target/p2-repository-report.json and target/p2-repository-report.html.
+     */
+    @Parameter(property = "p2.report", defaultValue = "false")
+    private boolean report;
+
+    /**
+     * Number of artifacts the repository report lists as the largest.
+     */
+    @Parameter(property = "p2.report.top", defaultValue = "20")
+    private int reportTop;
+
     /**
      * Overridden method, which will be picked up by maven execution context and execute when this mojo is referred.
      *
@@ -101,11 +202,25 @@ public class RepositoryGeneratorMojo extends AbstractMojo {
         resourceBundle.setCategories(this.categories);
         resourceBundle.setProject(this.project);
         resourceBundle.setArchive(this.archive);
+        resourceBundle.setArchiveFormat(this.archiveFormat);
+        resourceBundle.setArchiveLevel(this.archiveLevel);
+        resourceBundle.setArchiveThreads(this.archiveThreads);
+        resourceBundle.setArchiveMemory(this.archiveMemory);
+        resourceBundle.setNativeMetadata(this.nativeMetadata);
+        resourceBundle.setIncremental(this.incremental);
+        resourceBundle.setXzCompress(this.xzCompress);
+        resourceBundle.setP2Index(this.p2Index);
+        resourceBundle.setArtifactPool(this.artifactPool);
+        resourceBundle.setChecksums(this.checksums);
+        resourceBundle.setChecksumThreads(this.checksumThreads);
+        resourceBundle.setReport(this.report);
+        resourceBundle.setReportTop(this.reportTop);
         resourceBundle.setRepositorySystem(this.repositorySystem);
         resourceBundle.setLocalRepository(this.localRepository);
         resourceBundle.setRemoteRepositories(this.remoteRepositories);
         resourceBundle.setLauncher(this.launcher);
         resourceBundle.setForkedProcessTimeoutInSeconds(this.forkedProcessTimeoutInSeconds);
+        resourceBundle.setForkOptions(createForkOptions());
         resourceBundle.setLog(getLog());
         return new RepositoryGenerator(resourceBundle);
     }
@@ -21,7 +21,9 @@ import org.apache.maven.plugin.logging.Log;
 import org.apache.maven.project.MavenProject;
 import org.apache.maven.repository.RepositorySystem;
 import org.eclipse.sisu.equinox.launching.internal.P2ApplicationLauncher;
+import org.wso2.maven.p2.utils.ForkOptions;
 
+import java.io.File;
 import java.net.URL;
 import java.util.ArrayList;
 import java.util.List;
@@ -47,6 +49,19 @@ public class RepositoryResourceBundle {
 
 
     private boolean archive;
+    private String archiveFormat;
+    private int archiveLevel;
+    private int archiveThreads;
+    private int archiveMemory;
+    private boolean nativeMetadata;
+    private boolean incremental;
+    private boolean xzCompress;
+    private boolean p2Index;
+    private File artifactPool;
+    private boolean checksums;
+    private int checksumThreads;
+    private boolean report;
+    private int reportTop;
 
     private RepositorySystem repositorySystem;
     private ArtifactRepository localRepository;
@@ -54,6 +69,8 @@ public class RepositoryResourceBundle {
     private P2ApplicationLauncher launcher;
     private int forkedProcessTimeoutInSeconds;
 
+    private ForkOptions forkOptions;
+
     private Log log;
 
     public String getName() {
@@ -119,6 +136,110 @@ public class RepositoryResourceBundle {
         this.archive = archive;
     }
 
+    public String getArchiveFormat() {
+        return archiveFormat;
+    }
+
+    public void setArchiveFormat(String archiveFormat) {
+        this.archiveFormat = archiveFormat;
+    }
+
+    public int getArchiveLevel() {
+        return archiveLevel;
+    }
+
+    public void setArchiveLevel(int archiveLevel) {
+        this.archiveLevel = archiveLevel;
+    }
+
+    public int getArchiveThreads() {
+        return archiveThreads;
+    }
+
+    public void setArchiveThreads(int archiveThreads) {
+        this.archiveThreads = archiveThreads;
+    }
+
+    public int getArchiveMemory() {
+        return archiveMemory;
+    }
+
+    public void setArchiveMemory(int archiveMemory) {
+        this.archiveMemory = archiveMemory;
+    }
+
+    public boolean isNativeMetadata() {
+        return nativeMetadata;
+    }
+
+    public void setNativeMetadata(boolean nativeMetadata) {
+        this.nativeMetadata = nativeMetadata;
+    }
+
+    public boolean isIncremental() {
+        return incremental;
+    }
+
+    public void setIncremental(boolean incremental) {
+        this.incremental = incremental;
+    }
+
+    public boolean isXzCompress() {
+        return xzCompress;
+    }
+
+    public void setXzCompress(boolean xzCompress) {
+        this.xzCompress = xzCompress;
+    }
+
+    public boolean isP2Index() {
+        return p2Index;
+    }
+
+    public void setP2Index(boolean p2Index) {
+        this.p2Index = p2Index;
+    }
+
+    public File getArtifactPool() {
+        return artifactPool;
+    }
+
+    public void setArtifactPool(File artifactPool) {
+        this.artifactPool = artifactPool;
+    }
+
+    public boolean isChecksums() {
+        return checksums;
+    }
+
+    public void setChecksums(boolean checksums) {
+        this.checksums = checksums;
+    }
+
+    public int getChecksumThreads() {
+        return checksumThreads;
+    }
+
+    public void setChecksumThreads(int checksumThreads) {
+        this.checksumThreads = checksumThreads;
+    }
+
+    public boolean isReport() {
+        return report;
+    }
+
+    public void setReport(boolean report) {
+        this.report = report;
+    }
+
+    public int getReportTop() {
+        return reportTop;
+    }
+
+    public void setReportTop(int reportTop) {
+        this.reportTop = reportTop;
+    }
+
     public RepositorySystem getRepositorySystem() {
         return repositorySystem;
     }
@@ -159,6 +280,14 @@ public class RepositoryResourceBundle {
         this.forkedProcessTimeoutInSeconds = forkedProcessTimeoutInSeconds;
     }
 
+    public ForkOptions getForkOptions() {
+        return forkOptions;
+    }
+
+    public void setForkOptions(ForkOptions forkOptions) {
+        this.forkOptions = forkOptions;
+    }
+
     public Log getLog() {
         return log;
     }
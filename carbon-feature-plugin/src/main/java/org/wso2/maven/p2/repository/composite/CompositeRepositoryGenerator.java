@@ -0,0 +1,356 @@
+/*
+ *  Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.wso2.maven.p2.repository.composite;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugin.logging.Log;
+import org.wso2.maven.p2.metadata.ArtifactDescriptor;
+import org.wso2.maven.p2.metadata.InstallableUnit;
+import org.wso2.maven.p2.metadata.MetadataCompression;
+import org.wso2.maven.p2.metadata.MetadataRepositoryFilter;
+import org.wso2.maven.p2.metadata.MetadataRepositoryMerger;
+import org.wso2.maven.p2.metadata.MetadataRepositoryReader;
+import org.wso2.maven.p2.metadata.MetadataRepositoryWriter;
+import org.wso2.maven.p2.utils.FileManagementUtil;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URLConnection;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * CompositeRepositoryGenerator takes configuration data from CompositeRepositoryMojo and assembles the repository.
+ * Every child is validated first: a local child must be a p2 repository, and a remote child must serve p2 metadata.
+ *
+ * @since 2.1.1
+ */
+public class CompositeRepositoryGenerator {
+
+    private static final String[] METADATA_FILES = {MetadataRepositoryWriter.COMPOSITE_CONTENT_JAR,
+            MetadataRepositoryWriter.COMPOSITE_CONTENT_XML, MetadataRepositoryWriter.CONTENT_JAR,
+            MetadataRepositoryWriter.CONTENT_XML, "content.xml.xz"};
+    private static final String[] ARTIFACT_FILES = {MetadataRepositoryWriter.COMPOSITE_ARTIFACTS_JAR,
+            MetadataRepositoryWriter.COMPOSITE_ARTIFACTS_XML, MetadataRepositoryWriter.ARTIFACTS_JAR,
+            MetadataRepositoryWriter.ARTIFACTS_XML, "artifacts.xml.xz"};
+    private static final String[] SIMPLE_FILES = {MetadataRepositoryWriter.CONTENT_JAR,
+            MetadataRepositoryWriter.CONTENT_XML, MetadataRepositoryWriter.ARTIFACTS_JAR,
+            MetadataRepositoryWriter.ARTIFACTS_XML, "content.xml.xz", "artifacts.xml.xz"};
+    private static final String[] COMPOSITE_FILES = {MetadataRepositoryWriter.COMPOSITE_CONTENT_JAR,
+            MetadataRepositoryWriter.COMPOSITE_CONTENT_XML, MetadataRepositoryWriter.COMPOSITE_ARTIFACTS_JAR,
+            MetadataRepositoryWriter.COMPOSITE_ARTIFACTS_XML};
+    private static final String[] ARTIFACT_FOLDERS = {"plugins", "features", "binary"};
+    private static final int CONNECT_TIMEOUT = (int) TimeUnit.SECONDS.toMillis(10);
+
+    private String name;
+    private File targetRepository;
+    private List<String> children;
+    private boolean compress;
+    private boolean flatten;
+    private boolean p2Index;
+    private boolean offline;
+    private Log log;
+
+    /**
+     * Validates the children and writes the repository.
+     *
+     * @throws MojoExecutionException throws when the repository cannot be written
+     * @throws MojoFailureException   throws when a child repository is not reachable
+     */
+    public void generate() throws MojoExecutionException, MojoFailureException {
+        if (children == null || children.isEmpty()) {
+            throw new MojoFailureException("No child repositories given");
+        }
+        if (targetRepository == null) {
+            throw new MojoFailureException("No target repository given");
+        }
+        long start = System.nanoTime();
+        File target = targetRepository.getAbsoluteFile();
+        Map<String, File> locations = resolveChildren(target, children);
+        validateChildren(locations);
+        String repositoryName = name != null ? name : target.getName();
+        try {
+            if (flatten) {
+                writeFlattenedRepository(target, repositoryName, locations);
+            } else {
+                deleteFiles(target, SIMPLE_FILES);
+                MetadataRepositoryWriter.writeCompositeRepository(target, repositoryName, locations.keySet(),
+                        compress);
+                log.info("Generated composite repository " + target.getAbsolutePath() + " referencing " +
+                        locations.size() + " child repositories in " +
+                        TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + " ms");
+            }
+            if (p2Index) {
+                if (flatten) {
+                    MetadataCompression.writeIndex(target);
+                } else {
+                    MetadataCompression.writeCompositeIndex(target);
+                }
+            } else {
+                Files.deleteIfExists(new File(target, MetadataCompression.P2_INDEX).toPath());
+            }
+        } catch (IOException e) {
+            throw new MojoExecutionException("Unable to generate the repository at " + target.getAbsolutePath(), e);
+        }
+    }
+
+    /**
+     * Resolves the given child repositories against the given directory.
+     *
+     * @return {@code Map<String, File>} location of each child as written in the composite, mapped to its directory,
+     * or to null for a remote child
+     */
+    private Map<String, File> resolveChildren(File base, List<String> childLocations) throws MojoFailureException {
+        Map<String, File> resolved = new LinkedHashMap<>();
+        for (String child : childLocations) {
+            String trimmed = child.trim();
+            File directory = null;
+            String location = trimmed;
+            URI uri = toUri(trimmed);
+            if (uri != null && uri.isAbsolute() && uri.getScheme().length() > 1) {
+                if ("file".equalsIgnoreCase(uri.getScheme())) {
+                    try {
+                        directory = new File(uri);
+                    } catch (IllegalArgumentException e) {
+                        throw new MojoFailureException("Invalid child repository " + trimmed + ": " + e.getMessage(),
+                                e);
+                    }
+                }
+            } else {
+                File file = new File(trimmed);
+                directory = file.isAbsolute() ? file : new File(base, trimmed);
+            }
+            if (directory != null) {
+                directory = directory.toPath().toAbsolutePath().normalize().toFile();
+                location = toRelativeLocation(base, directory);
+            }
+            if (resolved.containsKey(location)) {
+                log.warn("Child repository " + trimmed + " is listed more than once");
+                continue;
+            }
+            resolved.put(location, directory);
+        }
+        return resolved;
+    }
+
+    private void validateChildren(Map<String, File> locations) throws MojoFailureException {
+        List<String> unreachable = new ArrayList<>();
+        for (Map.Entry<String, File> child : locations.entrySet()) {
+            File directory = child.getValue();
+            if (directory != null) {
+                if (!hasAny(directory, METADATA_FILES) || !hasAny(directory, ARTIFACT_FILES)) {
+                    unreachable.add(child.getKey() + " (" + directory.getAbsolutePath() + " is not a p2 repository)");
+                }
+            } else if (flatten) {
+                unreachable.add(child.getKey() + " (remote repositories cannot be flattened)");
+            } else if (offline) {
+                log.warn("Maven is offline, remote child repository " + child.getKey() + " is not validated");
+            } else if (!isReachable(child.getKey())) {
+                unreachable.add(child.getKey() + " (no p2 metadata found)");
+            }
+        }
+        if (!unreachable.isEmpty()) {
+            throw new MojoFailureException("Unreachable child repositories: " + String.join(", ", unreachable));
+        }
+    }
+
+    private boolean isReachable(String location) {
+        String base = location.endsWith("/") ? location : location + "/";
+        for (String metadata : METADATA_FILES) {
+            try {
+                URLConnection connection = new URI(base).resolve(metadata).toURL().openConnection();
+                connection.setConnectTimeout(CONNECT_TIMEOUT);
+                connection.setReadTimeout(CONNECT_TIMEOUT);
+                if (connection instanceof HttpURLConnection) {
+                    HttpURLConnection httpConnection = (HttpURLConnection) connection;
+                    httpConnection.setRequestMethod("HEAD");
+                    int status = httpConnection.getResponseCode();
+                    httpConnection.disconnect();
+                    if (status >= 200 && status < 300) {
+                        return true;
+                    }
+                } else {
+                    connection.getInputStream().close();
+                    return true;
+                }
+            } catch (URISyntaxException | IllegalArgumentException | IOException e) {
+                log.debug("Unable to reach " + base + metadata + ": " + e.getMessage());
+            }
+        }
+        return false;
+    }
+
+    private void writeFlattenedRepository(File target, String repositoryName, Map<String, File> locations)
+            throws IOException, MojoFailureException {
+        long start = System.nanoTime();
+        Set<File> leaves = new LinkedHashSet<>();
+        for (File directory : locations.values()) {
+            collectLeaves(directory, leaves, new HashSet<>());
+        }
+        if (leaves.contains(target)) {
+            throw new MojoFailureException("The target repository " + target.getAbsolutePath() +
+                    " cannot be one of its own children");
+        }
+        deleteFiles(target, COMPOSITE_FILES);
+        // stale XZ metadata would be preferred by p2 clients over the flattened metadata, and listed by the index
+        MetadataCompression.deleteXz(target);
+        for (String folder : ARTIFACT_FOLDERS) {
+            File artifactFolder = new File(target, folder);
+            if (artifactFolder.isDirectory()) {
+                FileManagementUtil.deleteDirectories(artifactFolder);
+            }
+        }
+
+        List<String[]> targetRules = MetadataRepositoryWriter.getArtifactMappingRules();
+        Set<String> included = new HashSet<>();
+        Set<File> staged = new HashSet<>();
+        int skipped = 0;
+        for (File leaf : leaves) {
+            List<String[]> rules = MetadataRepositoryFilter.readMappingRules(leaf);
+            for (ArtifactDescriptor artifact : MetadataRepositoryReader.readArtifactRepository(leaf)) {
+                File source = MetadataRepositoryFilter.locateArtifact(leaf, rules, artifact);
+                File destination = MetadataRepositoryFilter.locateArtifact(target, targetRules, artifact);
+                if (source == null || destination == null || !source.isFile()) {
+                    log.warn("Skipping artifact " + toString(artifact) + " of " + leaf.getAbsolutePath() +
+                            ", its file is not stored in the repository in a supported layout");
+                    skipped++;
+                    continue;
+                }
+                if (staged.add(destination)) {
+                    FileManagementUtil.linkOrCopy(source, destination);
+                }
+                included.add(leaf.getAbsolutePath() + "|" + toString(artifact));
+            }
+        }
+        List<File> sources = new ArrayList<>(leaves);
+        int units = MetadataRepositoryMerger.mergeMetadataRepositories(target, repositoryName, sources, compress);
+        int artifacts = MetadataRepositoryMerger.mergeArtifactRepositories(target, repositoryName, sources,
+                (leaf, artifact) -> included.contains(leaf.getAbsolutePath() + "|" + toString(artifact)), compress);
+        log.info("Flattened " + leaves.size() + " repositories into " + target.getAbsolutePath() + ": " + units +
+                " IU(s), " + artifacts + " artifact(s), " + staged.size() + " file(s)" +
+                (skipped > 0 ? ", " + skipped + " artifact(s) skipped" : "") + " in " +
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + " ms");
+    }
+
+    /**
+     * Collects the simple repositories under the given repository, descending into the children of composite
+     * repositories.
+     */
+    private void collectLeaves(File directory, Set<File> leaves, Set<File> visiting)
+            throws IOException, MojoFailureException {
+        if (!visiting.add(directory)) {
+            throw new MojoFailureException("Composite repository " + directory.getAbsolutePath() +
+                    " references itself");
+        }
+        if (hasAny(directory, new String[]{MetadataRepositoryWriter.COMPOSITE_CONTENT_JAR,
+                MetadataRepositoryWriter.COMPOSITE_CONTENT_XML})) {
+            Map<String, File> nested = resolveChildren(directory,
+                    MetadataRepositoryReader.readCompositeChildren(directory));
+            validateChildren(nested);
+            for (File child : nested.values()) {
+                collectLeaves(child, leaves, visiting);
+            }
+        } else {
+            leaves.add(directory);
+        }
+        visiting.remove(directory);
+    }
+
+    private static String toRelativeLocation(File base, File directory) {
+        try {
+            Path relative = base.toPath().relativize(directory.toPath());
+            String location = relative.toString().replace(File.separatorChar, '/');
+            return location.isEmpty() ? "." : location;
+        } catch (IllegalArgumentException e) {
+            // on another root, i.e. another drive on windows
+            return directory.toURI().toString();
+        }
+    }
+
+    private static URI toUri(String location) {
+        try {
+            return new URI(location);
+        } catch (URISyntaxException e) {
+            return null;
+        }
+    }
+
+    private static boolean hasAny(File directory, String[] fileNames) {
+        for (String fileName : fileNames) {
+            if (new File(directory, fileName).isFile()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void deleteFiles(File directory, String[] fileNames) throws IOException {
+        for (String fileName : fileNames) {
+            Files.deleteIfExists(new File(directory, fileName).toPath());
+        }
+    }
+
+    private static String toString(ArtifactDescriptor artifact) {
+        InstallableUnit.ArtifactKey key = artifact.getKey();
+        return key.getClassifier() + "/" + key.getId() + "/" + key.getVersion() +
+                (artifact.getProperties().containsKey("format") ? "/" + artifact.getProperties().get("format") : "");
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public void setTargetRepository(File targetRepository) {
+        this.targetRepository = targetRepository;
+    }
+
+    public void setChildren(List<String> children) {
+        this.children = children;
+    }
+
+    public void setCompress(boolean compress) {
+        this.compress = compress;
+    }
+
+    public void setFlatten(boolean flatten) {
+        this.flatten = flatten;
+    }
+
+    public void setP2Index(boolean p2Index) {
+        this.p2Index = p2Index;
+    }
+
+    public void setOffline(boolean offline) {
+        this.offline = offline;
+    }
+
+    public void setLog(Log log) {
+        this.log = log;
+    }
+}
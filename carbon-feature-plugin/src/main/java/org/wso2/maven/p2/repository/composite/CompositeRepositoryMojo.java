@@ -0,0 +1,104 @@
+/*
+ *  Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.wso2.maven.p2.repository.composite;
+
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugins.annotations.LifecyclePhase;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+
+import java.io.File;
+import java.util.List;
+
+/**
+ * Mojo which assembles a p2 repository out of existing repositories, either as a composite repository referencing
+ * them or, in flatten mode, as a simple repository holding their content.
+ *
+ * @since 2.1.1
+ */
+@Mojo(name = "generate-composite-repo", defaultPhase = LifecyclePhase.PACKAGE)
+public class CompositeRepositoryMojo extends AbstractMojo {
+
+    /**
+     * Name of the repository.
+     */
+    @Parameter(defaultValue = "${project.name}")
+    private String name;
+
+    /**
+     * Directory to write the repository to.
+     */
+    @Parameter(property = "p2.composite.repository",
+            defaultValue = "${project.build.directory}/${project.artifactId}_${project.version}")
+    private File targetRepository;
+
+    /**
+     * Child repositories, each given as a path or URL relative to the target repository, an absolute path or an
+     * absolute URL. Local children are referenced by their path relative to the target repository, so that the
+     * repositories can be moved or published together.
+     */
+    @Parameter(property = "p2.composite.children", required = true)
+    private List<String> children;
+
+    /**
+     * Whether to write the metadata compressed, i.e. compositeContent.jar rather than compositeContent.xml.
+     */
+    @Parameter(property = "p2.composite.compress", defaultValue = "true")
+    private boolean compress;
+
+    /**
+     * Whether to write a simple repository holding the IUs and artifacts of the children, rather than a composite
+     * repository referencing them. Composite children are flattened recursively; artifacts are hard linked into the
+     * repository when the file system allows it. Only local children can be flattened.
+     */
+    @Parameter(property = "p2.composite.flatten", defaultValue = "false")
+    private boolean flatten;
+
+    /**
+     * Whether to write a p2.index file, so that p2 clients load the metadata of the repository without probing for the
+     * formats it does not have.
+     */
+    @Parameter(property = "p2.index", defaultValue = "false")
+    private boolean p2Index;
+
+    /**
+     * Whether maven runs offline, in which case remote children are not validated.
+     */
+    @Parameter(defaultValue = "${settings.offline}", readonly = true)
+    private boolean offline;
+
+    /**
+     * Overridden method of AbstractMojo class. This is picked up by the maven runtime for execution.
+     *
+     * @throws MojoExecutionException throws when the repository cannot be written
+     * @throws MojoFailureException   throws when a child repository is not reachable
+     */
+    public void execute() throws MojoExecutionException, MojoFailureException {
+        CompositeRepositoryGenerator generator = new CompositeRepositoryGenerator();
+        generator.setName(this.name);
+        generator.setTargetRepository(this.targetRepository);
+        generator.setChildren(this.children);
+        generator.setCompress(this.compress);
+        generator.setFlatten(this.flatten);
+        generator.setP2Index(this.p2Index);
+        generator.setOffline(this.offline);
+        generator.setLog(this.getLog());
+        generator.generate();
+    }
+}
@@ -0,0 +1,313 @@
+/*
+ *  Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.wso2.maven.p2.repository.delta;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugin.logging.Log;
+import org.wso2.maven.p2.metadata.ArtifactDescriptor;
+import org.wso2.maven.p2.metadata.InstallableUnit;
+import org.wso2.maven.p2.metadata.MetadataCompression;
+import org.wso2.maven.p2.metadata.MetadataRepositoryFilter;
+import org.wso2.maven.p2.metadata.MetadataRepositoryMerger;
+import org.wso2.maven.p2.metadata.MetadataRepositoryReader;
+import org.wso2.maven.p2.metadata.MetadataRepositoryWriter;
+import org.wso2.maven.p2.utils.DigestUtils;
+import org.wso2.maven.p2.utils.FileManagementUtil;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * DeltaRepositoryGenerator takes configuration data from DeltaRepositoryMojo and generates the delta repository.
+ * <p>
+ * An IU is changed when its metadata differs from the IU with the same id and version in the base repository; the
+ * metadata is streamed and compared by digest, so neither repository is held in memory. An artifact is changed when
+ * its descriptor differs, or when its file differs from the file of the base repository. The delta repository is
+ * meant to be installed from together with the base repository, i.e. as a composite of both, since it does not hold
+ * the unchanged artifacts the changed IUs may require.
+ * </p>
+ *
+ * @since 2.1.1
+ */
+public class DeltaRepositoryGenerator {
+
+    private static final String[] METADATA_FILES = {MetadataRepositoryWriter.CONTENT_JAR,
+            MetadataRepositoryWriter.CONTENT_XML, MetadataRepositoryWriter.ARTIFACTS_JAR,
+            MetadataRepositoryWriter.ARTIFACTS_XML, "content.xml.xz", "artifacts.xml.xz", MetadataCompression.P2_INDEX};
+    private static final String[] ARTIFACT_FOLDERS = {"plugins", "features", "binary"};
+
+    private String name;
+    private File baseRepository;
+    private File repository;
+    private File targetRepository;
+    private File report;
+    private boolean compress;
+    private boolean p2Index;
+    private Log log;
+
+    /**
+     * Compares the repositories and writes the delta repository and the report.
+     *
+     * @throws MojoExecutionException throws when a repository cannot be read or written
+     * @throws MojoFailureException   throws when a repository is missing or is not a simple repository
+     */
+    public void generate() throws MojoExecutionException, MojoFailureException {
+        if (baseRepository == null || repository == null || targetRepository == null) {
+            throw new MojoFailureException("The base repository, the repository and the target repository must be " +
+                    "given");
+        }
+        validateRepository(baseRepository, "base repository");
+        validateRepository(repository, "repository");
+        File base = normalize(baseRepository);
+        File current = normalize(repository);
+        File target = normalize(targetRepository);
+        if (target.equals(base) || target.equals(current)) {
+            throw new MojoFailureException("The target repository " + target.getAbsolutePath() +
+                    " cannot be the base repository or the repository it is compared with");
+        }
+        try {
+            generateDelta(base, current, target, log);
+        } catch (IOException e) {
+            throw new MojoExecutionException("Unable to generate the delta repository at " + target.getAbsolutePath(),
+                    e);
+        }
+    }
+
+    private void generateDelta(File base, File current, File target, Log log) throws IOException {
+        Map<String, String> baseUnits = MetadataRepositoryReader.readUnitDigests(base);
+        Map<String, String> units = MetadataRepositoryReader.readUnitDigests(current);
+        List<String> addedUnits = new ArrayList<>();
+        List<String> changedUnits = new ArrayList<>();
+        for (Map.Entry<String, String> unit : units.entrySet()) {
+            String baseDigest = baseUnits.get(unit.getKey());
+            if (baseDigest == null) {
+                addedUnits.add(unit.getKey());
+            } else if (!baseDigest.equals(unit.getValue())) {
+                changedUnits.add(unit.getKey());
+            }
+        }
+        List<String> removedUnits = new ArrayList<>(baseUnits.keySet());
+        removedUnits.removeAll(units.keySet());
+        Set<String> deltaUnits = new HashSet<>(addedUnits);
+        deltaUnits.addAll(changedUnits);
+
+        Map<String, ArtifactDescriptor> baseArtifacts = index(MetadataRepositoryReader
+                .readArtifactRepository(base));
+        Map<String, ArtifactDescriptor> artifacts = index(MetadataRepositoryReader.readArtifactRepository(current));
+        List<String[]> baseRules = MetadataRepositoryFilter.readMappingRules(base);
+        List<String[]> rules = MetadataRepositoryFilter.readMappingRules(current);
+        List<String> addedArtifacts = new ArrayList<>();
+        List<String> changedArtifacts = new ArrayList<>();
+        Map<String, File> deltaFiles = new LinkedHashMap<>();
+        for (Map.Entry<String, ArtifactDescriptor> artifact : artifacts.entrySet()) {
+            ArtifactDescriptor baseArtifact = baseArtifacts.get(artifact.getKey());
+            File file = MetadataRepositoryFilter.locateArtifact(current, rules, artifact.getValue());
+            if (baseArtifact == null) {
+                addedArtifacts.add(artifact.getKey());
+            } else if (isChanged(baseArtifact, MetadataRepositoryFilter.locateArtifact(base, baseRules,
+                    baseArtifact), artifact.getValue(), file)) {
+                changedArtifacts.add(artifact.getKey());
+            } else {
+                continue;
+            }
+            deltaFiles.put(artifact.getKey(), file);
+        }
+        List<String> removedArtifacts = new ArrayList<>(baseArtifacts.keySet());
+        removedArtifacts.removeAll(artifacts.keySet());
+
+        for (String fileName : METADATA_FILES) {
+            Files.deleteIfExists(new File(target, fileName).toPath());
+        }
+        for (String folder : ARTIFACT_FOLDERS) {
+            File artifactFolder = new File(target, folder);
+            if (artifactFolder.isDirectory()) {
+                FileManagementUtil.deleteDirectories(artifactFolder);
+            }
+        }
+        List<String[]> targetRules = MetadataRepositoryWriter.getArtifactMappingRules();
+        Set<String> included = new HashSet<>();
+        long deltaBytes = 0;
+        for (Map.Entry<String, File> deltaFile : deltaFiles.entrySet()) {
+            File source = deltaFile.getValue();
+            File destination = MetadataRepositoryFilter.locateArtifact(target, targetRules,
+                    artifacts.get(deltaFile.getKey()));
+            if (source == null || destination == null || !source.isFile()) {
+                log.warn("Skipping artifact " + deltaFile.getKey() + ", its file is not stored in " +
+                        current.getAbsolutePath() + " in a supported layout");
+                continue;
+            }
+            FileManagementUtil.linkOrCopy(source, destination);
+            deltaBytes += source.length();
+            included.add(deltaFile.getKey());
+        }
+        String repositoryName = name != null ? name : target.getName();
+        List<File> sources = Collections.singletonList(current);
+        MetadataRepositoryMerger.mergeMetadataRepositories(target, repositoryName, sources,
+                (source, key) -> deltaUnits.contains(key), compress);
+        MetadataRepositoryMerger.mergeArtifactRepositories(target, repositoryName, sources,
+                (source, artifact) -> included.contains(toString(artifact)), compress);
+        if (p2Index) {
+            MetadataCompression.writeIndex(target);
+        }
+
+        long repositoryBytes = 0;
+        for (Map.Entry<String, ArtifactDescriptor> artifact : artifacts.entrySet()) {
+            File file = MetadataRepositoryFilter.locateArtifact(current, rules, artifact.getValue());
+            repositoryBytes += file != null ? file.length() : 0;
+        }
+        String summary = "IUs: " + addedUnits.size() + " added, " + changedUnits.size() + " changed, " +
+                removedUnits.size() + " removed, " + (units.size() - addedUnits.size() - changedUnits.size()) +
+                " unchanged\n" +
+                "Artifacts: " + addedArtifacts.size() + " added, " + changedArtifacts.size() + " changed, " +
+                removedArtifacts.size() + " removed, " +
+                (artifacts.size() - addedArtifacts.size() - changedArtifacts.size()) + " unchanged\n" +
+                "Delta size: " + deltaBytes + " of " + repositoryBytes + " bytes of artifacts\n";
+        writeReport(base, current, summary, addedUnits, changedUnits, removedUnits, addedArtifacts,
+                changedArtifacts, removedArtifacts);
+        log.info("Generated delta repository " + target.getAbsolutePath() + " against " +
+                base.getAbsolutePath());
+        for (String line : summary.split("\n")) {
+            log.info("   " + line);
+        }
+        if (report != null) {
+            log.info("Delta report written to " + report.getAbsolutePath());
+        }
+    }
+
+    private void writeReport(File base, File current, String summary, List<String> addedUnits,
+                             List<String> changedUnits, List<String> removedUnits, List<String> addedArtifacts,
+                             List<String> changedArtifacts, List<String> removedArtifacts) throws IOException {
+        if (report == null) {
+            return;
+        }
+        StringBuilder builder = new StringBuilder();
+        builder.append("Delta of ").append(current.getAbsolutePath()).append('\n');
+        builder.append("against  ").append(base.getAbsolutePath()).append("\n\n");
+        builder.append(summary).append('\n');
+        appendEntries(builder, "+ iu ", addedUnits);
+        appendEntries(builder, "~ iu ", changedUnits);
+        appendEntries(builder, "- iu ", removedUnits);
+        appendEntries(builder, "+ artifact ", addedArtifacts);
+        appendEntries(builder, "~ artifact ", changedArtifacts);
+        appendEntries(builder, "- artifact ", removedArtifacts);
+        Files.createDirectories(report.getAbsoluteFile().getParentFile().toPath());
+        Files.write(report.toPath(), builder.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void appendEntries(StringBuilder builder, String prefix, List<String> entries) {
+        List<String> sorted = new ArrayList<>(entries);
+        Collections.sort(sorted);
+        for (String entry : sorted) {
+            builder.append(prefix).append(entry).append('\n');
+        }
+    }
+
+    private static void validateRepository(File directory, String description) throws MojoFailureException {
+        if (!directory.isDirectory()) {
+            throw new MojoFailureException("The " + description + " " + directory.getAbsolutePath() +
+                    " does not exist");
+        }
+        boolean hasMetadata = new File(directory, MetadataRepositoryWriter.CONTENT_JAR).isFile() ||
+                new File(directory, MetadataRepositoryWriter.CONTENT_XML).isFile();
+        boolean hasArtifacts = new File(directory, MetadataRepositoryWriter.ARTIFACTS_JAR).isFile() ||
+                new File(directory, MetadataRepositoryWriter.ARTIFACTS_XML).isFile();
+        if (!hasMetadata || !hasArtifacts) {
+            throw new MojoFailureException("The " + description + " " + directory.getAbsolutePath() +
+                    " is not a p2 simple repository");
+        }
+    }
+
+    /**
+     * Returns whether the given artifact differs from its base. Files are compared by size, and by content when the
+     * descriptors carry no checksum of the file.
+     */
+    private static boolean isChanged(ArtifactDescriptor baseArtifact, File baseFile, ArtifactDescriptor artifact,
+                                     File file) throws IOException {
+        if (!baseArtifact.getProperties().equals(artifact.getProperties())) {
+            return true;
+        }
+        if (baseFile == null || file == null || !baseFile.isFile() || !file.isFile()) {
+            return false;
+        }
+        if (baseFile.length() != file.length()) {
+            return true;
+        }
+        boolean hasChecksum = artifact.getProperties().keySet().stream().anyMatch(property ->
+                ArtifactDescriptor.DOWNLOAD_MD5.equals(property) || property.startsWith("download.checksum."));
+        return !hasChecksum && !DigestUtils.sha256(baseFile).equals(DigestUtils.sha256(file));
+    }
+
+    private static File normalize(File file) {
+        return file.toPath().toAbsolutePath().normalize().toFile();
+    }
+
+    private static Map<String, ArtifactDescriptor> index(List<ArtifactDescriptor> artifacts) {
+        Map<String, ArtifactDescriptor> indexed = new LinkedHashMap<>();
+        for (ArtifactDescriptor artifact : artifacts) {
+            indexed.putIfAbsent(toString(artifact), artifact);
+        }
+        return indexed;
+    }
+
+    private static String toString(ArtifactDescriptor artifact) {
+        InstallableUnit.ArtifactKey key = artifact.getKey();
+        return key.getClassifier() + "/" + key.getId() + "/" + key.getVersion() +
+                (artifact.getProperties().containsKey("format") ? "/" + artifact.getProperties().get("format") : "");
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public void setBaseRepository(File baseRepository) {
+        this.baseRepository = baseRepository;
+    }
+
+    public void setRepository(File repository) {
+        this.repository = repository;
+    }
+
+    public void setTargetRepository(File targetRepository) {
+        this.targetRepository = targetRepository;
+    }
+
+    public void setReport(File report) {
+        this.report = report;
+    }
+
+    public void setCompress(boolean compress) {
+        this.compress = compress;
+    }
+
+    public void setP2Index(boolean p2Index) {
+        this.p2Index = p2Index;
+    }
+
+    public void setLog(Log log) {
+        this.log = log;
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ *  Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.wso2.maven.p2.repository.delta;
+
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugins.annotations.LifecyclePhase;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+
+import java.io.File;
+
+/**
+ * Mojo which generates a delta repository holding the IUs and artifacts of a repository which are new or changed
+ * since a previous version of it, along with a report of the differences.
+ *
+ * @since 2.1.1
+ */
+@Mojo(name = "generate-delta-repo", defaultPhase = LifecyclePhase.PACKAGE)
+public class DeltaRepositoryMojo extends AbstractMojo {
+
+    /**
+     * Name of the delta repository.
+     */
+    @Parameter(defaultValue = "${project.name}")
+    private String name;
+
+    /**
+     * Directory of the previous version of the repository, i.e. the repository of the last release.
+     */
+    @Parameter(property = "p2.delta.baseRepository", required = true)
+    private File baseRepository;
+
+    /**
+     * Directory of the current version of the repository.
+     */
+    @Parameter(property = "p2.delta.repository",
+            defaultValue = "${project.build.directory}/${project.artifactId}_${project.version}")
+    private File repository;
+
+    /**
+     * Directory to write the delta repository to.
+     */
+    @Parameter(property = "p2.delta.targetRepository",
+            defaultValue = "${project.build.directory}/${project.artifactId}_${project.version}-delta")
+    private File targetRepository;
+
+    /**
+     * File to write the report of the differences between the repositories to.
+     */
+    @Parameter(property = "p2.delta.report", defaultValue = "${project.build.directory}/p2-delta-report.txt")
+    private File report;
+
+    /**
+     * Whether to write the metadata of the delta repository compressed, i.e. content.jar rather than content.xml.
+     */
+    @Parameter(property = "p2.delta.compress", defaultValue = "true")
+    private boolean compress;
+
+    /**
+     * Whether to write a p2.index file, so that p2 clients load the metadata of the delta repository without probing
+     * for the formats it does not have.
+     */
+    @Parameter(property = "p2.index", defaultValue = "false")
+    private boolean p2Index;
+
+    /**
+     * Overridden method of AbstractMojo class. This is picked up by the maven runtime for execution.
+     *
+     * @throws MojoExecutionException throws when a repository cannot be read or written
+     * @throws MojoFailureException   throws when a repository is missing or is not a simple repository
+     */
+    public void execute() throws MojoExecutionException, MojoFailureException {
+        DeltaRepositoryGenerator generator = new DeltaRepositoryGenerator();
+        generator.setName(this.name);
+        generator.setBaseRepository(this.baseRepository);
+        generator.setRepository(this.repository);
+        generator.setTargetRepository(this.targetRepository);
+        generator.setReport(this.report);
+        generator.setCompress(this.compress);
+        generator.setP2Index(this.p2Index);
+        generator.setLog(this.getLog());
+        generator.generate();
+    }
+}
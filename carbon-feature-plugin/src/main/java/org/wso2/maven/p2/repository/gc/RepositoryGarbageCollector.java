@@ -0,0 +1,306 @@
+/*
+ *  Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.wso2.maven.p2.repository.gc;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugin.logging.Log;
+import org.wso2.maven.p2.metadata.ArtifactDescriptor;
+import org.wso2.maven.p2.metadata.CapabilityResolver;
+import org.wso2.maven.p2.metadata.InstallableUnit;
+import org.wso2.maven.p2.metadata.MetadataCompression;
+import org.wso2.maven.p2.metadata.MetadataRepositoryFilter;
+import org.wso2.maven.p2.metadata.MetadataRepositoryReader;
+import org.wso2.maven.p2.metadata.MetadataRepositoryWriter;
+import org.wso2.maven.p2.utils.OsgiVersion;
+import org.wso2.maven.p2.utils.VersionRange;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * RepositoryGarbageCollector takes configuration data from RepositoryGarbageCollectorMojo and removes the IUs and
+ * artifacts of a repository which are not reachable from the retention policy.
+ * <p>
+ * The IUs retained by the policy are the roots; every IU providing a capability the roots require, directly or
+ * transitively, is reachable. Reachability is computed conservatively: requirement filters are not evaluated and
+ * optional requirements are followed, so an IU is only removed when no configuration of a retained IU can need it.
+ * Every provider within the range of a requirement is reachable, unless the collector is restricted to the highest
+ * provider. IUs whose version cannot be parsed are always retained.
+ * </p>
+ *
+ * @since 2.1.1
+ */
+public class RepositoryGarbageCollector {
+
+    private static final String TYPE_GROUP = "org.eclipse.equinox.p2.type.group";
+    private static final String TYPE_CATEGORY = "org.eclipse.equinox.p2.type.category";
+    private static final String[] COMPOSITE_FILES = {"compositeContent.jar", "compositeContent.xml"};
+    private static final String[] METADATA_FILES = {MetadataRepositoryWriter.CONTENT_JAR,
+            MetadataRepositoryWriter.CONTENT_XML, MetadataRepositoryWriter.ARTIFACTS_JAR,
+            MetadataRepositoryWriter.ARTIFACTS_XML, "content.xml.xz", "artifacts.xml.xz"};
+
+    private File repository;
+    private int keepLatest;
+    private List<String> roots;
+    private boolean categories;
+    private boolean highestProviderOnly;
+    private boolean dryRun;
+    private Log log;
+
+    /**
+     * Collects the repository.
+     *
+     * @throws MojoExecutionException throws when the repository cannot be read or written
+     * @throws MojoFailureException   throws when no retention policy is given or the repository is not supported
+     */
+    public void collect() throws MojoExecutionException, MojoFailureException {
+        if (keepLatest <= 0 && (roots == null || roots.isEmpty()) && !categories) {
+            throw new MojoFailureException("No retention policy given: set keepLatest, roots or categories, " +
+                    "otherwise every IU of the repository would be removed");
+        }
+        if (repository == null || !repository.isDirectory()) {
+            throw new MojoFailureException("Repository " + repository + " does not exist");
+        }
+        for (String name : COMPOSITE_FILES) {
+            if (new File(repository, name).isFile()) {
+                throw new MojoFailureException(repository.getAbsolutePath() + " is a composite repository; collect " +
+                        "each of its children instead");
+            }
+        }
+        try {
+            collectRepository();
+        } catch (IOException e) {
+            throw new MojoExecutionException("Unable to collect the repository at " + repository.getAbsolutePath(),
+                    e);
+        }
+    }
+
+    private void collectRepository() throws IOException, MojoFailureException {
+        List<InstallableUnit> units = MetadataRepositoryReader.readMetadataRepository(repository);
+        boolean hasArtifacts = new File(repository, MetadataRepositoryWriter.ARTIFACTS_JAR).isFile() ||
+                new File(repository, MetadataRepositoryWriter.ARTIFACTS_XML).isFile();
+        List<ArtifactDescriptor> artifacts = hasArtifacts ?
+                MetadataRepositoryReader.readArtifactRepository(repository) : Collections.emptyList();
+
+        Set<String> reachable = findReachableUnits(units);
+        Set<String> retainedArtifacts = new HashSet<>();
+        int removedUnits = 0;
+        for (InstallableUnit unit : units) {
+            if (reachable.contains(unit.getKey())) {
+                unit.getArtifacts().forEach(key -> retainedArtifacts.add(CapabilityResolver.toString(key)));
+            } else {
+                removedUnits++;
+                log.debug("Unreachable IU " + unit.getKey());
+            }
+        }
+
+        List<String[]> rules = hasArtifacts ? MetadataRepositoryFilter.readMappingRules(repository) :
+                Collections.emptyList();
+        Set<File> retainedFiles = new HashSet<>();
+        Set<File> removedFiles = new LinkedHashSet<>();
+        int removedArtifacts = 0;
+        for (ArtifactDescriptor artifact : artifacts) {
+            File file = MetadataRepositoryFilter.locateArtifact(repository, rules, artifact);
+            if (retainedArtifacts.contains(CapabilityResolver.toString(artifact.getKey()))) {
+                if (file != null) {
+                    retainedFiles.add(file);
+                }
+            } else {
+                removedArtifacts++;
+                if (file != null) {
+                    removedFiles.add(file);
+                }
+            }
+        }
+        removedFiles.removeAll(retainedFiles);
+        long artifactBytes = 0;
+        for (File file : removedFiles) {
+            artifactBytes += file.isFile() ? file.length() : 0;
+        }
+
+        if (removedUnits == 0 && removedArtifacts == 0) {
+            log.info("All " + units.size() + " IU(s) of " + repository.getAbsolutePath() + " are reachable, " +
+                    "nothing to remove");
+            return;
+        }
+        if (dryRun) {
+            log.info("Dry run: would remove " + removedUnits + " of " + units.size() + " IU(s) and " +
+                    removedArtifacts + " of " + artifacts.size() + " artifact(s), " + removedFiles.size() +
+                    " file(s) of " + artifactBytes + " bytes, from " + repository.getAbsolutePath());
+            return;
+        }
+
+        long metadataBefore = getMetadataSize();
+        // remove the metadata before the files, so that an interrupted run does not leave dangling artifacts
+        MetadataRepositoryFilter.filterMetadataRepository(repository, reachable::contains);
+        if (hasArtifacts) {
+            MetadataRepositoryFilter.filterArtifactRepository(repository,
+                    key -> retainedArtifacts.contains(CapabilityResolver.toString(key)));
+        }
+        for (File file : removedFiles) {
+            Files.deleteIfExists(file.toPath());
+        }
+        updateAlternativeFormats();
+        long metadataBytes = metadataBefore - getMetadataSize();
+
+        log.info("Removed " + removedUnits + " of " + units.size() + " IU(s) and " + removedArtifacts + " of " +
+                artifacts.size() + " artifact(s) from " + repository.getAbsolutePath() + ", " +
+                (artifactBytes + metadataBytes) + " bytes freed (" + removedFiles.size() + " file(s) of " +
+                artifactBytes + " bytes, " + metadataBytes + " bytes of metadata)");
+    }
+
+    /**
+     * Rewrites the XZ metadata and the p2.index of the repository if it has them, so that they match the collected
+     * metadata.
+     */
+    private void updateAlternativeFormats() throws IOException, MojoFailureException {
+        boolean xz = new File(repository, MetadataCompression.CONTENT + ".xml.xz").isFile();
+        if (MetadataCompression.deleteXz(repository)) {
+            if (xz && MetadataCompression.isXzAvailable()) {
+                MetadataCompression.writeXz(repository);
+            } else {
+                log.warn("Removed the XZ metadata of " + repository.getAbsolutePath() + ", as it cannot be " +
+                        "rewritten without org.tukaani:xz as a dependency of the plugin");
+            }
+        }
+        if (new File(repository, MetadataCompression.P2_INDEX).isFile()) {
+            MetadataCompression.writeIndex(repository);
+        }
+    }
+
+    private Set<String> findReachableUnits(List<InstallableUnit> units) throws MojoFailureException {
+        Map<InstallableUnit, OsgiVersion> versions = new HashMap<>();
+        Map<String, NavigableMap<OsgiVersion, InstallableUnit>> unitsById = new HashMap<>();
+        Deque<InstallableUnit> queue = new ArrayDeque<>();
+        for (InstallableUnit unit : units) {
+            OsgiVersion version = CapabilityResolver.parseVersion(unit.getVersion());
+            if (version == null) {
+                log.debug("Retaining " + unit.getKey() + " as its version cannot be parsed");
+                queue.add(unit);
+                continue;
+            }
+            versions.put(unit, version);
+            unitsById.computeIfAbsent(unit.getId(), id -> new TreeMap<>()).put(version, unit);
+        }
+        CapabilityResolver resolver = new CapabilityResolver(units);
+
+        for (InstallableUnit unit : units) {
+            OsgiVersion version = versions.get(unit);
+            if (version == null) {
+                continue;
+            }
+            boolean group = "true".equals(unit.getProperties().get(TYPE_GROUP));
+            boolean category = "true".equals(unit.getProperties().get(TYPE_CATEGORY));
+            if ((categories && category) || (group && keepLatest > 0 &&
+                    unitsById.get(unit.getId()).tailMap(version, false).size() < keepLatest)) {
+                queue.add(unit);
+            }
+        }
+        if (roots != null) {
+            for (String root : roots) {
+                List<InstallableUnit> matched = findRoot(root.trim(), unitsById);
+                if (matched.isEmpty()) {
+                    log.warn("Root " + root + " does not match any IU of " + repository.getAbsolutePath());
+                }
+                queue.addAll(matched);
+            }
+        }
+
+        Set<String> reachable = new HashSet<>();
+        while (!queue.isEmpty()) {
+            InstallableUnit unit = queue.poll();
+            if (!reachable.add(unit.getKey())) {
+                continue;
+            }
+            queue.addAll(resolver.findRequired(unit, highestProviderOnly));
+        }
+        return reachable;
+    }
+
+    private List<InstallableUnit> findRoot(String root, Map<String, NavigableMap<OsgiVersion, InstallableUnit>>
+            unitsById) throws MojoFailureException {
+        int separator = root.indexOf('/');
+        String id = separator < 0 ? root : root.substring(0, separator);
+        NavigableMap<OsgiVersion, InstallableUnit> candidates = unitsById.get(id);
+        if (candidates == null) {
+            return Collections.emptyList();
+        }
+        if (separator < 0) {
+            return Collections.singletonList(candidates.lastEntry().getValue());
+        }
+        String version = root.substring(separator + 1).trim();
+        try {
+            if (VersionRange.isRange(version)) {
+                return new ArrayList<>(VersionRange.parse(version).select(candidates).values());
+            }
+            InstallableUnit unit = candidates.get(OsgiVersion.parse(version));
+            return unit == null ? Collections.emptyList() : Collections.singletonList(unit);
+        } catch (IllegalArgumentException e) {
+            throw new MojoFailureException("Invalid root " + root + ": " + e.getMessage(), e);
+        }
+    }
+
+    private long getMetadataSize() {
+        long size = 0;
+        for (String name : METADATA_FILES) {
+            size += new File(repository, name).length();
+        }
+        return size;
+    }
+
+    public void setRepository(File repository) {
+        this.repository = repository;
+    }
+
+    public void setKeepLatest(int keepLatest) {
+        this.keepLatest = keepLatest;
+    }
+
+    public void setRoots(List<String> roots) {
+        this.roots = roots;
+    }
+
+    public void setCategories(boolean categories) {
+        this.categories = categories;
+    }
+
+    public void setHighestProviderOnly(boolean highestProviderOnly) {
+        this.highestProviderOnly = highestProviderOnly;
+    }
+
+    public void setDryRun(boolean dryRun) {
+        this.dryRun = dryRun;
+    }
+
+    public void setLog(Log log) {
+        this.log = log;
+    }
+}
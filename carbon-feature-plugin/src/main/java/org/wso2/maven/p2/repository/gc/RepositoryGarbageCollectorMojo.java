@@ -0,0 +1,93 @@
+/*
+ *  Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.wso2.maven.p2.repository.gc;
+
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+
+import java.io.File;
+import java.util.List;
+
+/**
+ * Mojo which removes from a p2 repository the IUs and artifacts which are not reachable from a retention policy.
+ *
+ * @since 2.1.1
+ */
+@Mojo(name = "gc-repo", requiresProject = false)
+public class RepositoryGarbageCollectorMojo extends AbstractMojo {
+
+    /**
+     * Directory of the p2 simple repository to collect.
+     */
+    @Parameter(property = "p2.gc.repository", required = true)
+    private File repository;
+
+    /**
+     * Number of the latest versions of each feature to retain. 0 retains no feature by version.
+     */
+    @Parameter(property = "p2.gc.keepLatest", defaultValue = "0")
+    private int keepLatest;
+
+    /**
+     * IUs to retain, each given as {@code id}, which retains the latest version of the IU, {@code id/version} or
+     * {@code id/range}, i.e. {@code org.wso2.carbon.core.server.feature.group/[4.4.0,4.5.0)}.
+     */
+    @Parameter(property = "p2.gc.roots")
+    private List<String> roots;
+
+    /**
+     * Whether to retain the categories of the repository, along with the features they list.
+     */
+    @Parameter(property = "p2.gc.categories", defaultValue = "false")
+    private boolean categories;
+
+    /**
+     * Whether to follow only the providers of the highest version within the range of each requirement, which is
+     * what p2 picks when it installs from this repository alone. Older providers within the range are then removed,
+     * even though a client resolving against other repositories or pinning a version may still need them. By default
+     * every provider within the range is retained.
+     */
+    @Parameter(property = "p2.gc.highestProviderOnly", defaultValue = "false")
+    private boolean highestProviderOnly;
+
+    /**
+     * Whether to only report what would be removed, leaving the repository unchanged.
+     */
+    @Parameter(property = "p2.gc.dryRun", defaultValue = "false")
+    private boolean dryRun;
+
+    /**
+     * Overridden method of AbstractMojo class. This is picked up by the maven runtime for execution.
+     *
+     * @throws MojoExecutionException throws when the repository cannot be read or written
+     * @throws MojoFailureException   throws when no retention policy is given or the repository is not supported
+     */
+    public void execute() throws MojoExecutionException, MojoFailureException {
+        RepositoryGarbageCollector collector = new RepositoryGarbageCollector();
+        collector.setRepository(this.repository);
+        collector.setKeepLatest(this.keepLatest);
+        collector.setRoots(this.roots);
+        collector.setCategories(this.categories);
+        collector.setHighestProviderOnly(this.highestProviderOnly);
+        collector.setDryRun(this.dryRun);
+        collector.setLog(this.getLog());
+        collector.collect();
+    }
+}
@@ -0,0 +1,486 @@
+/*
+ *  Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.wso2.maven.p2.repository.report;
+
+import org.apache.maven.plugin.logging.Log;
+import org.wso2.maven.p2.metadata.ArtifactDescriptor;
+import org.wso2.maven.p2.metadata.CapabilityResolver;
+import org.wso2.maven.p2.metadata.InstallableUnit;
+import org.wso2.maven.p2.metadata.MetadataRepositoryFilter;
+import org.wso2.maven.p2.metadata.MetadataRepositoryReader;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipFile;
+
+/**
+ * Report of the composition of a p2 repository, written as JSON and HTML, to find out what makes a repository large.
+ * <p>
+ * The report lists the bytes of artifacts each feature brings in, along with the bytes brought in by no other
+ * feature, the bundles included by more than one feature, the bundles present in more than one version, the largest
+ * artifacts, the compression ratio of the artifacts of each type and the features of each category.
+ * </p>
+ * <p>
+ * It is computed from the published repository metadata, streamed by {@link MetadataRepositoryReader}, and the central
+ * directories of the artifact files, which give the uncompressed size of a jar without inflating it.
+ * </p>
+ *
+ * @since 2.1.1
+ */
+public class RepositoryReport {
+
+    private static final String TYPE_GROUP = "org.eclipse.equinox.p2.type.group";
+    private static final String TYPE_CATEGORY = "org.eclipse.equinox.p2.type.category";
+    private static final String NAME = "org.eclipse.equinox.p2.name";
+    private static final String BUNDLE_CLASSIFIER = "osgi.bundle";
+
+    private final File repository;
+    private final int top;
+    private final Log log;
+
+    private final Map<String, Artifact> artifacts = new LinkedHashMap<>();
+    private final Map<String, Map<String, Long>> types = new TreeMap<>();
+    private final List<Feature> features = new ArrayList<>();
+    private final Map<String, Set<String>> bundleFeatures = new TreeMap<>();
+    private final Map<String, List<String>> categories = new TreeMap<>();
+    private final Set<String> uncategorized = new TreeSet<>();
+    private long artifactBytes;
+    private long metadataBytes;
+    private int unitCount;
+
+    /**
+     * Constructs a RepositoryReport.
+     *
+     * @param repository {@link File} directory of the repository
+     * @param top        number of artifacts to list as the largest
+     * @param log        {@link Log}
+     */
+    public RepositoryReport(File repository, int top, Log log) {
+        this.repository = repository;
+        this.top = top;
+        this.log = log;
+    }
+
+    /**
+     * Computes the report and writes it to the given files.
+     *
+     * @param jsonFile {@link File} to write the JSON report to
+     * @param htmlFile {@link File} to write the HTML report to
+     * @throws IOException if the repository cannot be read or the report cannot be written
+     */
+    public void write(File jsonFile, File htmlFile) throws IOException {
+        long start = System.nanoTime();
+        List<InstallableUnit> units = MetadataRepositoryReader.readMetadataRepository(repository);
+        unitCount = units.size();
+        readArtifacts();
+        readUnits(units);
+        for (String name : new String[]{"content.jar", "content.xml", "content.xml.xz", "artifacts.jar",
+                "artifacts.xml", "artifacts.xml.xz", "p2.index"}) {
+            metadataBytes += new File(repository, name).length();
+        }
+        Files.createDirectories(jsonFile.getAbsoluteFile().getParentFile().toPath());
+        try (Writer writer = Files.newBufferedWriter(jsonFile.toPath(), StandardCharsets.UTF_8)) {
+            writeJson(writer);
+        }
+        Files.createDirectories(htmlFile.getAbsoluteFile().getParentFile().toPath());
+        try (Writer writer = Files.newBufferedWriter(htmlFile.toPath(), StandardCharsets.UTF_8)) {
+            writeHtml(writer);
+        }
+        log.info("Repository report: " + htmlFile.getAbsolutePath() + " (" + artifacts.size() + " artifacts, " +
+                formatBytes(artifactBytes) + ", computed in " + (System.nanoTime() - start) / 1000000 + " ms)");
+    }
+
+    /**
+     * Reads the canonical descriptor of each artifact, with the size of its file and, for archives, the uncompressed
+     * size of their entries.
+     */
+    private void readArtifacts() throws IOException {
+        List<String[]> rules = MetadataRepositoryFilter.readMappingRules(repository);
+        for (ArtifactDescriptor descriptor : MetadataRepositoryReader.readArtifactRepository(repository)) {
+            if (descriptor.getProperties().get("format") != null) {
+                continue;
+            }
+            InstallableUnit.ArtifactKey key = descriptor.getKey();
+            Artifact artifact = new Artifact(key);
+            File file = MetadataRepositoryFilter.locateArtifact(repository, rules, descriptor);
+            if (file != null && file.isFile()) {
+                artifact.size = file.length();
+                artifact.uncompressed = getUncompressedSize(file);
+            } else {
+                artifact.size = parseLong(descriptor.getProperties().get(ArtifactDescriptor.DOWNLOAD_SIZE));
+                artifact.uncompressed = parseLong(descriptor.getProperties().get(ArtifactDescriptor.ARTIFACT_SIZE));
+            }
+            artifacts.put(CapabilityResolver.toString(key), artifact);
+            artifactBytes += artifact.size;
+            Map<String, Long> type = types.computeIfAbsent(key.getClassifier(), classifier -> new HashMap<>());
+            type.merge("count", 1L, Long::sum);
+            type.merge("bytes", artifact.size, Long::sum);
+            type.merge("uncompressed", artifact.uncompressed, Long::sum);
+        }
+    }
+
+    /**
+     * Resolves the IUs each feature group and category includes, the same way p2 resolves greedy requirements.
+     */
+    private void readUnits(List<InstallableUnit> units) {
+        CapabilityResolver resolver = new CapabilityResolver(units);
+        Set<String> included = new HashSet<>();
+        Set<String> categorized = new HashSet<>();
+        Map<String, Integer> artifactFeatures = new HashMap<>();
+        for (InstallableUnit unit : units) {
+            if ("true".equals(unit.getProperties().get(TYPE_CATEGORY))) {
+                List<String> members = new ArrayList<>();
+                for (InstallableUnit member : resolver.findRequired(unit, true)) {
+                    members.add(member.getKey());
+                    categorized.add(member.getKey());
+                }
+                String name = unit.getProperties().get(NAME);
+                categories.put(name != null ? name : unit.getId(), members);
+            } else if ("true".equals(unit.getProperties().get(TYPE_GROUP))) {
+                Feature feature = new Feature(unit);
+                for (InstallableUnit required : resolver.findRequired(unit, true)) {
+                    if ("true".equals(required.getProperties().get(TYPE_GROUP))) {
+                        included.add(required.getKey());
+                    }
+                    for (InstallableUnit.ArtifactKey key : required.getArtifacts()) {
+                        if (BUNDLE_CLASSIFIER.equals(key.getClassifier())) {
+                            bundleFeatures.computeIfAbsent(CapabilityResolver.toString(key), k -> new TreeSet<>())
+                                    .add(unit.getKey());
+                        }
+                    }
+                }
+                collectArtifacts(feature, unit, resolver);
+                for (String key : feature.artifacts) {
+                    artifactFeatures.merge(key, 1, Integer::sum);
+                }
+                features.add(feature);
+            }
+        }
+        for (Feature feature : features) {
+            for (String key : feature.artifacts) {
+                Artifact artifact = artifacts.get(key);
+                if (artifact != null) {
+                    feature.bytes += artifact.size;
+                    if (artifactFeatures.get(key) == 1) {
+                        feature.exclusiveBytes += artifact.size;
+                    }
+                }
+            }
+            String key = feature.unit.getKey();
+            if (!included.contains(key) && !categorized.contains(key)) {
+                uncategorized.add(key);
+            }
+        }
+        features.sort(Comparator.comparingLong((Feature feature) -> feature.bytes).reversed());
+    }
+
+    /**
+     * Collects the artifacts of the IUs reachable from the given feature group, including those of nested features.
+     */
+    private static void collectArtifacts(Feature feature, InstallableUnit group, CapabilityResolver resolver) {
+        Set<String> visited = new HashSet<>();
+        Deque<InstallableUnit> queue = new ArrayDeque<>();
+        queue.add(group);
+        while (!queue.isEmpty()) {
+            InstallableUnit unit = queue.poll();
+            if (!visited.add(unit.getKey())) {
+                continue;
+            }
+            for (InstallableUnit.ArtifactKey key : unit.getArtifacts()) {
+                feature.artifacts.add(CapabilityResolver.toString(key));
+            }
+            queue.addAll(resolver.findRequired(unit, true));
+        }
+    }
+
+    /**
+     * Returns the total uncompressed size of the entries of the given archive, read from its central directory, or
+     * the size of the file if it is not an archive.
+     */
+    private long getUncompressedSize(File file) throws IOException {
+        try (ZipFile zipFile = new ZipFile(file)) {
+            long size = 0;
+            Enumeration<? extends ZipEntry> entries = zipFile.entries();
+            while (entries.hasMoreElements()) {
+                long entrySize = entries.nextElement().getSize();
+                if (entrySize > 0) {
+                    size += entrySize;
+                }
+            }
+            return size;
+        } catch (ZipException e) {
+            log.debug("Not an archive: " + file.getAbsolutePath());
+            return file.length();
+        }
+    }
+
+    private List<Map.Entry<String, List<Artifact>>> findDuplicateBundles() {
+        Map<String, List<Artifact>> versions = new TreeMap<>();
+        for (Artifact artifact : artifacts.values()) {
+            if (BUNDLE_CLASSIFIER.equals(artifact.key.getClassifier())) {
+                versions.computeIfAbsent(artifact.key.getId(), id -> new ArrayList<>()).add(artifact);
+            }
+        }
+        List<Map.Entry<String, List<Artifact>>> duplicates = new ArrayList<>();
+        for (Map.Entry<String, List<Artifact>> entry : versions.entrySet()) {
+            if (entry.getValue().size() > 1) {
+                duplicates.add(entry);
+            }
+        }
+        return duplicates;
+    }
+
+    private List<Artifact> findLargest() {
+        List<Artifact> largest = new ArrayList<>(artifacts.values());
+        largest.sort(Comparator.comparingLong((Artifact artifact) -> artifact.size).reversed());
+        return largest.subList(0, Math.min(top, largest.size()));
+    }
+
+    private Map<String, Set<String>> findSharedBundles() {
+        Map<String, Set<String>> shared = new TreeMap<>();
+        for (Map.Entry<String, Set<String>> entry : bundleFeatures.entrySet()) {
+            if (entry.getValue().size() > 1) {
+                shared.put(entry.getKey(), entry.getValue());
+            }
+        }
+        return shared;
+    }
+
+    private void writeJson(Writer writer) throws IOException {
+        writer.write("{\n  \"repository\": " + quote(repository.getAbsolutePath()) + ",\n");
+        writer.write("  \"units\": " + unitCount + ",\n  \"artifacts\": " + artifacts.size() + ",\n");
+        writer.write("  \"artifactBytes\": " + artifactBytes + ",\n  \"metadataBytes\": " + metadataBytes + ",\n");
+
+        writer.write("  \"features\": [");
+        String separator = "\n";
+        for (Feature feature : features) {
+            writer.write(separator + "    {\"id\": " + quote(feature.unit.getId()) + ", \"version\": " +
+                    quote(feature.unit.getVersion()) + ", \"artifacts\": " + feature.artifacts.size() +
+                    ", \"bytes\": " + feature.bytes + ", \"exclusiveBytes\": " + feature.exclusiveBytes + "}");
+            separator = ",\n";
+        }
+        writer.write("\n  ],\n  \"sharedBundles\": [");
+        separator = "\n";
+        for (Map.Entry<String, Set<String>> entry : findSharedBundles().entrySet()) {
+            Artifact artifact = artifacts.get(entry.getKey());
+            writer.write(separator + "    {\"bundle\": " + quote(entry.getKey()) + ", \"bytes\": " +
+                    (artifact != null ? artifact.size : 0) + ", \"features\": " + quote(entry.getValue()) + "}");
+            separator = ",\n";
+        }
+        writer.write("\n  ],\n  \"duplicateBundles\": [");
+        separator = "\n";
+        for (Map.Entry<String, List<Artifact>> entry : findDuplicateBundles()) {
+            List<String> versions = new ArrayList<>();
+            long bytes = 0;
+            for (Artifact artifact : entry.getValue()) {
+                versions.add(artifact.key.getVersion());
+                bytes += artifact.size;
+            }
+            writer.write(separator + "    {\"id\": " + quote(entry.getKey()) + ", \"versions\": " + quote(versions) +
+                    ", \"bytes\": " + bytes + "}");
+            separator = ",\n";
+        }
+        writer.write("\n  ],\n  \"largestArtifacts\": [");
+        separator = "\n";
+        for (Artifact artifact : findLargest()) {
+            writer.write(separator + "    {\"artifact\": " + quote(CapabilityResolver.toString(artifact.key)) +
+                    ", \"bytes\": " + artifact.size + ", \"uncompressedBytes\": " + artifact.uncompressed + "}");
+            separator = ",\n";
+        }
+        writer.write("\n  ],\n  \"types\": [");
+        separator = "\n";
+        for (Map.Entry<String, Map<String, Long>> entry : types.entrySet()) {
+            Map<String, Long> type = entry.getValue();
+            writer.write(separator + "    {\"classifier\": " + quote(entry.getKey()) + ", \"artifacts\": " +
+                    type.get("count") + ", \"bytes\": " + type.get("bytes") + ", \"uncompressedBytes\": " +
+                    type.get("uncompressed") + ", \"compressionRatio\": " +
+                    formatRatio(type.get("bytes"), type.get("uncompressed")) + "}");
+            separator = ",\n";
+        }
+        writer.write("\n  ],\n  \"categories\": [");
+        separator = "\n";
+        for (Map.Entry<String, List<String>> entry : categories.entrySet()) {
+            writer.write(separator + "    {\"name\": " + quote(entry.getKey()) + ", \"features\": " +
+                    quote(entry.getValue()) + "}");
+            separator = ",\n";
+        }
+        writer.write("\n  ],\n  \"uncategorizedFeatures\": " + quote(uncategorized) + "\n}\n");
+    }
+
+    private void writeHtml(Writer writer) throws IOException {
+        writer.write("<!DOCTYPE html>\n<html>\n<head>\n<meta charset=\"UTF-8\">\n<title>Repository report</title>\n");
+        writer.write("<style>body{font-family:sans-serif}table{border-collapse:collapse;margin-bottom:2em}" +
+                "td,th{border:1px solid #ccc;padding:2px 8px;text-align:left}td.n{text-align:right}</style>\n");
+        writer.write("</head>\n<body>\n<h1>" + escape(repository.getAbsolutePath()) + "</h1>\n");
+        writer.write("<p>" + unitCount + " IUs, " + artifacts.size() + " artifacts of " + formatBytes(artifactBytes) +
+                ", metadata of " + formatBytes(metadataBytes) + "</p>\n");
+
+        writer.write("<h2>Features</h2>\n<table>\n<tr><th>Feature</th><th>Artifacts</th><th>Size</th>" +
+                "<th>Size not shared with other features</th></tr>\n");
+        for (Feature feature : features) {
+            writer.write("<tr><td>" + escape(feature.unit.getKey()) + "</td><td class=\"n\">" +
+                    feature.artifacts.size() + "</td><td class=\"n\">" + formatBytes(feature.bytes) +
+                    "</td><td class=\"n\">" + formatBytes(feature.exclusiveBytes) + "</td></tr>\n");
+        }
+        writer.write("</table>\n<h2>Bundles shared between features</h2>\n<table>\n<tr><th>Bundle</th><th>Size</th>" +
+                "<th>Features</th></tr>\n");
+        for (Map.Entry<String, Set<String>> entry : findSharedBundles().entrySet()) {
+            Artifact artifact = artifacts.get(entry.getKey());
+            writer.write("<tr><td>" + escape(entry.getKey()) + "</td><td class=\"n\">" +
+                    formatBytes(artifact != null ? artifact.size : 0) + "</td><td>" +
+                    escape(String.join(", ", entry.getValue())) + "</td></tr>\n");
+        }
+        writer.write("</table>\n<h2>Bundles in more than one version</h2>\n<table>\n<tr><th>Bundle</th>" +
+                "<th>Versions</th><th>Size</th></tr>\n");
+        for (Map.Entry<String, List<Artifact>> entry : findDuplicateBundles()) {
+            List<String> versions = new ArrayList<>();
+            long bytes = 0;
+            for (Artifact artifact : entry.getValue()) {
+                versions.add(artifact.key.getVersion());
+                bytes += artifact.size;
+            }
+            writer.write("<tr><td>" + escape(entry.getKey()) + "</td><td>" + escape(String.join(", ", versions)) +
+                    "</td><td class=\"n\">" + formatBytes(bytes) + "</td></tr>\n");
+        }
+        writer.write("</table>\n<h2>Largest artifacts</h2>\n<table>\n<tr><th>Artifact</th><th>Size</th>" +
+                "<th>Uncompressed</th></tr>\n");
+        for (Artifact artifact : findLargest()) {
+            writer.write("<tr><td>" + escape(CapabilityResolver.toString(artifact.key)) + "</td><td class=\"n\">" +
+                    formatBytes(artifact.size) + "</td><td class=\"n\">" + formatBytes(artifact.uncompressed) +
+                    "</td></tr>\n");
+        }
+        writer.write("</table>\n<h2>Artifact types</h2>\n<table>\n<tr><th>Classifier</th><th>Artifacts</th>" +
+                "<th>Size</th><th>Uncompressed</th><th>Compression ratio</th></tr>\n");
+        for (Map.Entry<String, Map<String, Long>> entry : types.entrySet()) {
+            Map<String, Long> type = entry.getValue();
+            writer.write("<tr><td>" + escape(entry.getKey()) + "</td><td class=\"n\">" + type.get("count") +
+                    "</td><td class=\"n\">" + formatBytes(type.get("bytes")) + "</td><td class=\"n\">" +
+                    formatBytes(type.get("uncompressed")) + "</td><td class=\"n\">" +
+                    formatRatio(type.get("bytes"), type.get("uncompressed")) + "</td></tr>\n");
+        }
+        writer.write("</table>\n<h2>Categories</h2>\n<table>\n<tr><th>Category</th><th>Features</th></tr>\n");
+        for (Map.Entry<String, List<String>> entry : categories.entrySet()) {
+            writer.write("<tr><td>" + escape(entry.getKey()) + "</td><td>" +
+                    escape(String.join(", ", entry.getValue())) + "</td></tr>\n");
+        }
+        if (!uncategorized.isEmpty()) {
+            writer.write("<tr><td><i>None</i></td><td>" + escape(String.join(", ", uncategorized)) + "</td></tr>\n");
+        }
+        writer.write("</table>\n</body>\n</html>\n");
+    }
+
+    private static String quote(String value) {
+        StringBuilder builder = new StringBuilder("\"");
+        for (char c : value.toCharArray()) {
+            if (c == '"' || c == '\\') {
+                builder.append('\\').append(c);
+            } else if (c < 0x20) {
+                builder.append(String.format(Locale.ROOT, "\\u%04x", (int) c));
+            } else {
+                builder.append(c);
+            }
+        }
+        return builder.append('"').toString();
+    }
+
+    private static String quote(Collection<String> values) {
+        List<String> quoted = new ArrayList<>(values.size());
+        for (String value : values) {
+            quoted.add(quote(value));
+        }
+        return "[" + String.join(", ", quoted) + "]";
+    }
+
+    private static String escape(String value) {
+        return value.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;").replace("\"", "&quot;");
+    }
+
+    private static String formatBytes(long bytes) {
+        if (bytes < 1024) {
+            return bytes + " B";
+        }
+        String[] units = {"KB", "MB", "GB", "TB"};
+        double value = bytes;
+        int unit = -1;
+        while (value >= 1024 && unit < units.length - 1) {
+            value /= 1024;
+            unit++;
+        }
+        return String.format(Locale.ROOT, "%.1f %s", value, units[unit]);
+    }
+
+    private static String formatRatio(long bytes, long uncompressed) {
+        return uncompressed > 0 ? String.format(Locale.ROOT, "%.3f", (double) bytes / uncompressed) : "null";
+    }
+
+    private static long parseLong(String value) {
+        try {
+            return value == null ? 0 : Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Artifact of the repository, with its stored and uncompressed sizes.
+     */
+    private static class Artifact {
+
+        private final InstallableUnit.ArtifactKey key;
+        private long size;
+        private long uncompressed;
+
+        private Artifact(InstallableUnit.ArtifactKey key) {
+            this.key = key;
+        }
+    }
+
+    /**
+     * Feature group with the artifacts it brings into an installation.
+     */
+    private static class Feature {
+
+        private final InstallableUnit unit;
+        private final Set<String> artifacts = new HashSet<>();
+        private long bytes;
+        private long exclusiveBytes;
+
+        private Feature(InstallableUnit unit) {
+            this.unit = unit;
+        }
+    }
+}
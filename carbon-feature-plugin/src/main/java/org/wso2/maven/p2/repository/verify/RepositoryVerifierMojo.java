@@ -0,0 +1,97 @@
+/*
+ *  Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.wso2.maven.p2.repository.verify;
+
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugins.annotations.LifecyclePhase;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.wso2.maven.p2.metadata.ArtifactChecksums;
+import org.wso2.maven.p2.metadata.MetadataRepositoryWriter;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Mojo which verifies the artifacts of a p2 repository against the checksums and sizes recorded in its metadata.
+ *
+ * @since 2.1.1
+ */
+@Mojo(name = "verify-repo", defaultPhase = LifecyclePhase.VERIFY, requiresProject = false)
+public class RepositoryVerifierMojo extends AbstractMojo {
+
+    /**
+     * Directory of the p2 simple repository to verify.
+     */
+    @Parameter(property = "p2.verify.repository",
+            defaultValue = "${project.build.directory}/${project.artifactId}_${project.version}")
+    private File repository;
+
+    /**
+     * Number of threads verifying the artifacts. 0 uses one thread per available processor.
+     */
+    @Parameter(property = "p2.checksumThreads", defaultValue = "0")
+    private int threads;
+
+    /**
+     * Whether to fail when an artifact has no recorded checksum or size to verify it against.
+     */
+    @Parameter(property = "p2.verify.requireChecksums", defaultValue = "false")
+    private boolean requireChecksums;
+
+    /**
+     * Overridden method of AbstractMojo class. This is picked up by the maven runtime for execution.
+     *
+     * @throws MojoExecutionException throws when the repository metadata cannot be read
+     * @throws MojoFailureException   throws when an artifact does not match its recorded checksum or size
+     */
+    public void execute() throws MojoExecutionException, MojoFailureException {
+        if (repository == null || !repository.isDirectory()) {
+            throw new MojoFailureException("Repository " + repository + " does not exist");
+        }
+        if (!new File(repository, MetadataRepositoryWriter.ARTIFACTS_JAR).isFile() &&
+                !new File(repository, MetadataRepositoryWriter.ARTIFACTS_XML).isFile()) {
+            throw new MojoFailureException(repository.getAbsolutePath() + " is not a p2 simple repository");
+        }
+        ArtifactChecksums checksums = new ArtifactChecksums(threads, getLog());
+        ArtifactChecksums.Verification verification;
+        try {
+            verification = checksums.verify(repository);
+        } catch (IOException e) {
+            throw new MojoExecutionException("Unable to read the repository at " + repository.getAbsolutePath(), e);
+        }
+        getLog().info("Verified " + verification.getVerified() + " artifact(s) of " + repository.getAbsolutePath() +
+                " " + checksums.describeThroughput(verification.getBytes(), verification.getNanos()));
+        if (verification.getUnverified() > 0) {
+            String message = verification.getUnverified() + " artifact(s) have no recorded checksum or size, or " +
+                    "are not stored in the repository";
+            if (requireChecksums) {
+                throw new MojoFailureException(message);
+            }
+            getLog().warn(message);
+        }
+        if (!verification.getFailures().isEmpty()) {
+            for (String failure : verification.getFailures()) {
+                getLog().error("   " + failure);
+            }
+            throw new MojoFailureException(verification.getFailures().size() + " artifact(s) of " +
+                    repository.getAbsolutePath() + " failed verification");
+        }
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ *  Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.wso2.maven.p2.utils;
+
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugins.annotations.Component;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.codehaus.plexus.PlexusContainer;
+
+import java.io.File;
+import java.util.List;
+
+/**
+ * Base class of the mojos running a p2 application in a forked JVM, holding the options of the forked JVM.
+ *
+ * @since 2.1.1
+ */
+public abstract class AbstractP2ApplicationMojo extends AbstractMojo {
+
+    @Component
+    private PlexusContainer container;
+
+    /**
+     * Arguments for the JVM forked to run the p2 application, i.e. heap size, garbage collector or JIT flags.
+     */
+    @Parameter(property = "p2.jvmArgs")
+    private List<String> jvmArgs;
+
+    /**
+     * Whether the JVM forked to run the p2 application should create a class data sharing archive on its first launch
+     * and map it on later launches. Requires Java 13 or later and {@code cacheRuntime}, as the archive is only mapped
+     * by JVMs launched with the class path it was created with, which the cached Equinox runtime keeps stable.
+     */
+    @Parameter(property = "p2.classDataSharing", defaultValue = "false")
+    private boolean classDataSharing;
+
+    /**
+     * Directory keeping data reused across builds, such as the class data sharing archive of the forked JVM.
+     */
+    @Parameter(property = "p2.cacheDirectory", defaultValue = "${user.home}/.m2/carbon-p2-cache")
+    private File cacheDirectory;
+
+    /**
+     * Whether to keep the Equinox runtime the p2 applications are launched with in the cache directory, so that later
+     * launches start with an installed runtime and a warmed OSGi framework storage.
+     */
+    @Parameter(property = "p2.cacheRuntime", defaultValue = "false")
+    private boolean cacheRuntime;
+
+    /**
+     * Creates the options of the JVM forked to run the p2 application from the parameters of the mojo.
+     *
+     * @return {@link ForkOptions}
+     */
+    protected ForkOptions createForkOptions() {
+        ForkOptions forkOptions = new ForkOptions(jvmArgs, classDataSharing, cacheDirectory);
+        if (cacheRuntime) {
+            forkOptions.setRuntimeCache(new EquinoxRuntimeCache(container, cacheDirectory));
+        }
+        return forkOptions;
+    }
+}
@@ -0,0 +1,164 @@
+/*
+ *  Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.wso2.maven.p2.utils;
+
+import org.apache.maven.plugin.logging.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Content-addressed pool of repository artifacts. Each distinct artifact file is stored once in the pool under its
+ * SHA-256 hash, and the artifact files of the repositories sharing the pool are hard links to the pooled copy.
+ * <p>
+ * Pooled files are made read-only, so that a tool writing into an artifact file of one repository fails rather than
+ * changing the artifact of every repository linked to it. Hard links require the pool and the repositories to be on the
+ * same file system; when they are not, the artifacts are left as they are.
+ * </p>
+ *
+ * @since 2.1.1
+ */
+public class ArtifactPool {
+
+    private static final String HASH_DIRECTORY = "sha256";
+
+    private final File directory;
+    private final Log log;
+
+    /**
+     * Constructs an ArtifactPool.
+     *
+     * @param directory {@link File} directory of the pool, shared by the repositories
+     * @param log       {@link Log}
+     */
+    public ArtifactPool(File directory, Log log) {
+        this.directory = directory;
+        this.log = log;
+    }
+
+    /**
+     * Replaces each file under the given directory by a hard link to its pooled copy, adding the files not pooled yet
+     * to the pool. Files which already have other links are assumed to be pooled and are not hashed again.
+     *
+     * @param artifactDirectory {@link File} directory of artifacts, i.e. the plugins folder of a repository
+     * @throws IOException if a file cannot be pooled
+     */
+    public void deduplicate(File artifactDirectory) throws IOException {
+        if (!artifactDirectory.isDirectory()) {
+            return;
+        }
+        List<Path> files;
+        try (Stream<Path> walk = Files.walk(artifactDirectory.toPath())) {
+            files = walk.filter(Files::isRegularFile).collect(Collectors.toList());
+        }
+        int linked = 0;
+        int shared = 0;
+        long sharedBytes = 0;
+        for (Path file : files) {
+            if (isLinked(file)) {
+                linked++;
+                continue;
+            }
+            Path pooled;
+            try {
+                pooled = pool(file);
+            } catch (UnsupportedOperationException | FileSystemException e) {
+                log.warn("Unable to link " + artifactDirectory.getAbsolutePath() + " to the artifact pool at " +
+                        directory.getAbsolutePath() + ", the artifacts are not pooled: " + e.getMessage());
+                return;
+            }
+            if (pooled != null) {
+                shared++;
+                sharedBytes += Files.size(pooled);
+            }
+            linked++;
+        }
+        log.info("Pooled " + linked + " artifact(s) of " + artifactDirectory.getAbsolutePath() + ", " + shared +
+                " already pooled by another repository (" + (sharedBytes / 1024) + " KB)");
+    }
+
+    /**
+     * Stages the given file at the given location for publishing, as a hard link to the file when possible and as a
+     * copy otherwise.
+     *
+     * @param source {@link File} file to stage
+     * @param target {@link File} location to stage the file at
+     * @throws IOException if the file cannot be staged
+     */
+    public void stage(File source, File target) throws IOException {
+        FileManagementUtil.linkOrCopy(source, target);
+    }
+
+    /**
+     * Links the given file into the pool.
+     *
+     * @param file {@link Path} artifact file
+     * @return {@link Path} of the pooled copy if the file was a duplicate of it, null if the file was added to the pool
+     * @throws IOException if the file cannot be pooled
+     */
+    private Path pool(Path file) throws IOException {
+        String hash = DigestUtils.sha256(file.toFile());
+        Path bucket = directory.toPath().resolve(HASH_DIRECTORY).resolve(hash.substring(0, 2));
+        Path pooled = bucket.resolve(hash);
+        Files.createDirectories(bucket);
+        try {
+            Files.createLink(pooled, file);
+            if (!pooled.toFile().setReadOnly()) {
+                log.debug("Unable to make " + pooled + " read-only");
+            }
+            return null;
+        } catch (FileAlreadyExistsException e) {
+            // already pooled, possibly concurrently by another repository, link the file to that copy instead
+            log.debug("Artifact " + hash + " is already pooled");
+        }
+        if (Files.isSameFile(pooled, file)) {
+            return null;
+        }
+        if (Files.size(pooled) != Files.size(file)) {
+            throw new IOException("Pooled artifact " + pooled + " does not match the size of " + file);
+        }
+        Path link = file.resolveSibling(file.getFileName() + ".pool");
+        Files.deleteIfExists(link);
+        Files.createLink(link, pooled);
+        try {
+            Files.move(link, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(link, file, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(link);
+        }
+        return pooled;
+    }
+
+    private static boolean isLinked(Path file) {
+        try {
+            Object links = Files.getAttribute(file, "unix:nlink");
+            return links instanceof Integer && (Integer) links > 1;
+        } catch (UnsupportedOperationException | IllegalArgumentException | IOException e) {
+            return false;
+        }
+    }
+}
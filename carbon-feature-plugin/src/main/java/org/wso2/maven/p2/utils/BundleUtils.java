@@ -16,9 +16,6 @@
 
 package org.wso2.maven.p2.utils;
 
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-
 /**
  * Utility class composed of utility methods pertaining to a Bundles.
  *
@@ -26,8 +23,12 @@ import java.util.regex.Pattern;
  */
 public class BundleUtils {
 
-    private static final Pattern OSGI_VERSION_PATTERN = Pattern.compile("[0-9]+\\.[0-9]+\\.[0-9]+(\\.[0-9A-Za-z_-]+)?");
-    private static final Pattern ONLY_NUMBERS = Pattern.compile("[0-9]+");
+    /**
+     * Upper bound of the distinct versions remembered by {@link #getOSGIVersion(String)}. A build rarely sees more
+     * than a few hundred distinct versions, hence the bound only guards long running or embedded uses.
+     */
+    private static final int OSGI_VERSION_CACHE_SIZE = 4096;
+    private static final LruCache<String, String> OSGI_VERSION_CACHE = new LruCache<>(OSGI_VERSION_CACHE_SIZE);
 
     /**
      * Returns the OSGI version for the given artifact version.
@@ -36,111 +37,225 @@ public class BundleUtils {
      * @return OSGI version
      */
     public static String getOSGIVersion(String version) {
-        // This method is taken from org.apache.maven.shared.osgi.DefaultMaven2OsgiConverter to get the OSGI version
-        // from a give version artifact version.
-        String osgiVersion;
-
-        // Matcher m = P_VERSION.matcher(version);
-        // if (m.matches()) {
-        // osgiVersion = m.group(1) + "." + m.group(3);
-        // }
-
-        /* TODO need a regexp guru here */
-
-        Matcher m;
+        if (version == null) {
+            throw new NullPointerException("Version cannot be null");
+        }
+        return OSGI_VERSION_CACHE.get(version, BundleUtils::convertToOSGIVersion);
+    }
 
+    /**
+     * Converts the given artifact version to an OSGI version. The conversion follows
+     * org.apache.maven.shared.osgi.DefaultMaven2OsgiConverter step by step, but each step is done by scanning the
+     * version once instead of matching regular expressions. Unlike {@link #getOSGIVersion(String)} the result is not
+     * cached.
+     *
+     * @param version artifact version
+     * @return OSGI version
+     */
+    static String convertToOSGIVersion(String version) {
         /* if it's already OSGi compliant don't touch it */
-        m = OSGI_VERSION_PATTERN.matcher(version);
-        if (m.matches()) {
+        if (isOSGIVersion(version)) {
             return version;
         }
 
-        osgiVersion = version;
-
         /* check for dated snapshot versions with only major or major and minor */
-        Pattern datedSnapshotPattern =
-                Pattern.compile("([0-9])(\\.([0-9]))?(\\.([0-9]))?\\-([0-9]{8}\\.[0-9]{6}\\-[0-9]*)");
-        m = datedSnapshotPattern.matcher(osgiVersion);
-        if (m.matches()) {
-            String major = m.group(1);
-            String minor = (m.group(3) != null) ? m.group(3) : "0";
-            String service = (m.group(5) != null) ? m.group(5) : "0";
-            String qualifier = m.group(6).replaceAll("-", "_").replaceAll("\\.", "_");
-            osgiVersion = major + "." + minor + "." + service + "." + qualifier;
+        String osgiVersion = convertDatedSnapshotVersion(version);
+        if (osgiVersion != null) {
+            return osgiVersion;
         }
 
         /* else transform first - to . and others to _ */
-        osgiVersion = osgiVersion.replaceFirst("-", "\\.");
-        osgiVersion = osgiVersion.replaceAll("-", "_");
-        m = OSGI_VERSION_PATTERN.matcher(osgiVersion);
-        if (m.matches()) {
+        osgiVersion = replaceDashes(version);
+        if (isOSGIVersion(osgiVersion)) {
             return osgiVersion;
         }
 
-        /* remove dots in the middle of the qualifier */
-        Pattern dotsInQualifierPattern = Pattern.compile("([0-9])(\\.[0-9])?\\.([0-9A-Za-z_-]+)\\.([0-9A-Za-z_-]+)");
-        m = dotsInQualifierPattern.matcher(osgiVersion);
-        if (m.matches()) {
-            String s1 = m.group(1);
-            String s2 = m.group(2);
-            String s3 = m.group(3);
-            String s4 = m.group(4);
-
-            Matcher qualifierMatcher = ONLY_NUMBERS.matcher(s3);
-            /*
-             * if last portion before dot is only numbers then it's not in the middle of the
-             * qualifier
-             */
-            if (!qualifierMatcher.matches()) {
-                osgiVersion = s1 + s2 + "." + s3 + "_" + s4;
-            }
+        osgiVersion = removeDotsInQualifier(osgiVersion);
+        osgiVersion = fillZeros(osgiVersion);
+
+        /* if still its not OSGi version then add everything as qualifier */
+        if (!isOSGIVersion(osgiVersion)) {
+            osgiVersion = "0.0.0." + osgiVersion.replace('.', '_');
         }
+        return osgiVersion;
+    }
 
-        /* convert
-         * 1.string   -> 1.0.0.string
-         * 1.2.string -> 1.2.0.string
-         * 1          -> 1.0.0
-         * 1.1        -> 1.1.0
-         */
-        //Pattern NEED_TO_FILL_ZEROS = Pattern.compile( "([0-9])(\\.([0-9]))?\\.([0-9A-Za-z_-]+)" );
-        Pattern needToFillZerosPattern = Pattern.compile("([0-9])(\\.([0-9]))?(\\.([0-9A-Za-z_-]+))?");
-        m = needToFillZerosPattern.matcher(osgiVersion);
-        if (m.matches()) {
-            String major = m.group(1);
-            String minor = m.group(3);
-            String service = null;
-            String qualifier = m.group(5);
-
-            /* if there's no qualifier just fill with 0s */
-            if (qualifier == null) {
-                osgiVersion = getOSGIVersion(major, minor, null, null);
-            } else {
-                /* if last portion is only numbers then it's not a qualifier */
-                Matcher qualifierMatcher = ONLY_NUMBERS.matcher(qualifier);
-                if (qualifierMatcher.matches()) {
-                    if (minor == null) {
-                        minor = qualifier;
-                    } else {
-                        service = qualifier;
-                    }
-                    osgiVersion = getOSGIVersion(major, minor, service, null);
-                } else {
-                    osgiVersion = getOSGIVersion(major, minor, null, qualifier);
+    /**
+     * Checks whether the given version is of the form {@code [0-9]+.[0-9]+.[0-9]+(.[0-9A-Za-z_-]+)?}.
+     */
+    private static boolean isOSGIVersion(String version) {
+        int length = version.length();
+        int position = 0;
+        for (int part = 0; part < 3; part++) {
+            int start = position;
+            while (position < length && isDigit(version.charAt(position))) {
+                position++;
+            }
+            if (position == start) {
+                return false;
+            }
+            if (part < 2) {
+                if (position == length || version.charAt(position) != '.') {
+                    return false;
                 }
+                position++;
             }
         }
+        if (position == length) {
+            return true;
+        }
+        return version.charAt(position) == '.' && isQualifier(version, position + 1, length);
+    }
 
-        m = OSGI_VERSION_PATTERN.matcher(osgiVersion);
-        /* if still its not OSGi version then add everything as qualifier */
-        if (!m.matches()) {
-            String major = "0";
-            String minor = "0";
-            String service = "0";
-            String qualifier = osgiVersion.replaceAll("\\.", "_");
-            osgiVersion = major + "." + minor + "." + service + "." + qualifier;
+    /**
+     * Converts a dated snapshot version of the form {@code d(.d)?(.d)?-yyyyMMdd.HHmmss-n} into
+     * {@code d.d.d.yyyyMMdd_HHmmss_n}.
+     *
+     * @return converted version or null if the given version is not a dated snapshot version
+     */
+    private static String convertDatedSnapshotVersion(String version) {
+        int length = version.length();
+        if (length == 0 || !isDigit(version.charAt(0))) {
+            return null;
+        }
+        String[] numbers = {version.substring(0, 1), "0", "0"};
+        int position = 1;
+        for (int part = 1; part < 3 && position + 1 < length && version.charAt(position) == '.'; part++) {
+            if (!isDigit(version.charAt(position + 1))) {
+                return null;
+            }
+            numbers[part] = version.substring(position + 1, position + 2);
+            position += 2;
+        }
+        if (position == length || version.charAt(position) != '-') {
+            return null;
+        }
+        int timestamp = position + 1;
+        // yyyyMMdd.HHmmss-
+        if (length < timestamp + 16 || !isDigits(version, timestamp, timestamp + 8)
+                || version.charAt(timestamp + 8) != '.' || !isDigits(version, timestamp + 9, timestamp + 15)
+                || version.charAt(timestamp + 15) != '-'
+                || (length > timestamp + 16 && !isDigits(version, timestamp + 16, length))) {
+            return null;
         }
+        String qualifier = version.substring(timestamp).replace('-', '_').replace('.', '_');
+        return numbers[0] + "." + numbers[1] + "." + numbers[2] + "." + qualifier;
+    }
 
-        return osgiVersion;
+    /**
+     * Replaces the first '-' with '.' and the rest with '_'.
+     */
+    private static String replaceDashes(String version) {
+        int dash = version.indexOf('-');
+        if (dash < 0) {
+            return version;
+        }
+        char[] chars = version.toCharArray();
+        chars[dash] = '.';
+        for (int i = dash + 1; i < chars.length; i++) {
+            if (chars[i] == '-') {
+                chars[i] = '_';
+            }
+        }
+        return new String(chars);
+    }
+
+    /**
+     * Removes the dot in the middle of the qualifier of a version of the form {@code d(.d)?.qualifier.qualifier},
+     * unless the part before the dot is only numbers.
+     */
+    private static String removeDotsInQualifier(String version) {
+        String[] parts = version.split("\\.", -1);
+        if ((parts.length != 3 && parts.length != 4) || !isSingleDigit(parts[0])
+                || (parts.length == 4 && !isSingleDigit(parts[1]))) {
+            return version;
+        }
+        String first = parts[parts.length - 2];
+        String second = parts[parts.length - 1];
+        if (!isQualifier(first, 0, first.length()) || !isQualifier(second, 0, second.length())
+                || isDigits(first, 0, first.length())) {
+            return version;
+        }
+        // The missing minor version is appended as "null", which is what the original conversion does.
+        String minor = parts.length == 4 ? "." + parts[1] : "null";
+        return parts[0] + minor + "." + first + "_" + second;
+    }
+
+    /**
+     * Converts
+     * 1.string   -> 1.0.0.string
+     * 1.2.string -> 1.2.0.string
+     * 1          -> 1.0.0
+     * 1.1        -> 1.1.0
+     */
+    private static String fillZeros(String version) {
+        String[] parts = version.split("\\.", -1);
+        if (parts.length > 3 || !isSingleDigit(parts[0])) {
+            return version;
+        }
+        String major = parts[0];
+        if (parts.length == 1) {
+            return getOSGIVersion(major, null, null, null);
+        }
+        if (parts.length == 2) {
+            String qualifier = parts[1];
+            if (!isQualifier(qualifier, 0, qualifier.length())) {
+                return version;
+            }
+            /* if last portion is only numbers then it's not a qualifier */
+            if (isDigits(qualifier, 0, qualifier.length())) {
+                return getOSGIVersion(major, qualifier, null, null);
+            }
+            return getOSGIVersion(major, null, null, qualifier);
+        }
+        String minor = parts[1];
+        String qualifier = parts[2];
+        if (!isSingleDigit(minor) || !isQualifier(qualifier, 0, qualifier.length())) {
+            return version;
+        }
+        if (isDigits(qualifier, 0, qualifier.length())) {
+            return getOSGIVersion(major, minor, qualifier, null);
+        }
+        return getOSGIVersion(major, minor, null, qualifier);
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean isSingleDigit(String value) {
+        return value.length() == 1 && isDigit(value.charAt(0));
+    }
+
+    /**
+     * Checks whether the given range is non empty and only numbers.
+     */
+    private static boolean isDigits(String value, int start, int end) {
+        if (start >= end) {
+            return false;
+        }
+        for (int i = start; i < end; i++) {
+            if (!isDigit(value.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Checks whether the given range is non empty and only consists of [0-9A-Za-z_-].
+     */
+    private static boolean isQualifier(String value, int start, int end) {
+        if (start >= end) {
+            return false;
+        }
+        for (int i = start; i < end; i++) {
+            char c = value.charAt(i);
+            if (!(isDigit(c) || (c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z') || c == '_' || c == '-')) {
+                return false;
+            }
+        }
+        return true;
     }
 
     private static String getOSGIVersion(String major, String minor, String service, String qualifier) {
@@ -22,11 +22,11 @@ import org.apache.maven.model.Dependency;
 import org.apache.maven.model.DependencyManagement;
 import org.apache.maven.project.MavenProject;
 import org.apache.maven.repository.RepositorySystem;
+import org.wso2.maven.p2.beans.ArtifactIndex;
 import org.wso2.maven.p2.beans.CarbonArtifact;
 
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 import java.util.jar.JarFile;
 import java.util.jar.Manifest;
@@ -41,26 +41,21 @@ public class DependencyResolver {
 
     /**
      * Resolve the given project dependencies into CarbonArtifact objects. Dependencies are categorized into
-     * OSGI bundles and Carbon features.
+     * OSGI bundles and Carbon features and indexed for lookups by the generators.
      *
      * @param project            MavenProject  Maven Project
      * @param repositorySystem   RepositorySystem object
      * @param remoteRepositories collection of remote repositories
      * @param localRepository    local repository representation
-     * @return Return a {@code List<HashMap<String, CarbonArtifact>>}, 1st item being {@code HashMap<String,
-     * CarbonArtifact>} containing osgi bundles specified as dependencies and 2nd item being {@code HashMap<String,
-     * CarbonArtifact>} containing carbon features specified as dependencies.
+     * @return {@link ArtifactIndex} containing the osgi bundles and the carbon features specified as dependencies
      * @throws IOException throws when unable to retrieve a given maven artifact
      */
-    public static List<HashMap<String, CarbonArtifact>> getDependenciesForProject(MavenProject project, RepositorySystem
-            repositorySystem, List<ArtifactRepository> remoteRepositories, ArtifactRepository localRepository)
-            throws IOException {
+    public static ArtifactIndex getDependenciesForProject(MavenProject project, RepositorySystem repositorySystem,
+                                                          List<ArtifactRepository> remoteRepositories,
+                                                          ArtifactRepository localRepository) throws IOException {
 
-        List<HashMap<String, CarbonArtifact>> results = new ArrayList<>();
-        HashMap<String, CarbonArtifact> bundles = new HashMap<>();
-        HashMap<String, CarbonArtifact> features = new HashMap<>();
-        results.add(bundles);
-        results.add(features);
+        List<CarbonArtifact> bundles = new ArrayList<>();
+        List<CarbonArtifact> features = new ArrayList<>();
         List<Dependency> dependencies = project.getDependencies();
 
         DependencyManagement dependencyManagement = project.getDependencyManagement();
@@ -76,18 +71,15 @@ public class DependencyResolver {
             Artifact mavenArtifact = MavenUtils.getResolvedArtifact(carbonArtifact, repositorySystem,
                     remoteRepositories, localRepository);
             carbonArtifact.setArtifact(mavenArtifact);
-            String key;
             if (carbonArtifact.getType().equals("jar")) {
                 if (resolveOSGIInfo(carbonArtifact)) {
-                    key = carbonArtifact.getSymbolicName() + "_" + carbonArtifact.getBundleVersion();
-                    bundles.put(key, carbonArtifact);
+                    bundles.add(carbonArtifact);
                 }
             } else {
-                key = carbonArtifact.getArtifactId() + "_" + carbonArtifact.getVersion();
-                features.put(key, carbonArtifact);
+                features.add(carbonArtifact);
             }
         }
-        return results;
+        return new ArtifactIndex(bundles, features);
     }
 
     /**
@@ -0,0 +1,122 @@
+/*
+ *  Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.wso2.maven.p2.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Util class computing message digests of files and strings, and formatting them in hexadecimal.
+ *
+ * @since 2.1.1
+ */
+public class DigestUtils {
+
+    public static final String MD5 = "MD5";
+    public static final String SHA_1 = "SHA-1";
+    public static final String SHA_256 = "SHA-256";
+
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+    private static final int BUFFER_SIZE = 65536;
+
+    /**
+     * Returns a new message digest of the given algorithm. MD5, SHA-1 and SHA-256 are supported by every JVM.
+     *
+     * @param algorithm {@code String} name of the algorithm
+     * @return {@link MessageDigest}
+     * @throws IllegalStateException if the algorithm is not supported by the JVM
+     */
+    public static MessageDigest newDigest(String algorithm) {
+        try {
+            return MessageDigest.getInstance(algorithm);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(algorithm + " is not supported by the JVM", e);
+        }
+    }
+
+    /**
+     * Returns the digest of the content of the given file.
+     *
+     * @param file      {@link File}
+     * @param algorithm {@code String} name of the algorithm
+     * @return digest bytes
+     * @throws IOException if the file cannot be read
+     */
+    public static byte[] digest(File file, String algorithm) throws IOException {
+        MessageDigest digest = newDigest(algorithm);
+        byte[] buffer = new byte[BUFFER_SIZE];
+        try (InputStream inputStream = Files.newInputStream(file.toPath())) {
+            int read;
+            while ((read = inputStream.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        return digest.digest();
+    }
+
+    /**
+     * Returns the SHA-256 hash of the content of the given file.
+     *
+     * @param file {@link File}
+     * @return {@code String} hash in hexadecimal
+     * @throws IOException if the file cannot be read
+     */
+    public static String sha256(File file) throws IOException {
+        return toHex(digest(file, SHA_256));
+    }
+
+    /**
+     * Returns the SHA-256 hash of the UTF-8 bytes of the given string.
+     *
+     * @param value {@code String}
+     * @return {@code String} hash in hexadecimal
+     */
+    public static String sha256(String value) {
+        return toHex(newDigest(SHA_256).digest(value.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * Formats the given bytes in lower case hexadecimal.
+     *
+     * @param bytes bytes to format
+     * @return {@code String}
+     */
+    public static String toHex(byte[] bytes) {
+        return toHex(bytes, bytes.length);
+    }
+
+    /**
+     * Formats the first bytes of the given bytes in lower case hexadecimal, i.e. to shorten a hash used as a key.
+     *
+     * @param bytes  bytes to format
+     * @param length number of bytes to format
+     * @return {@code String}
+     */
+    public static String toHex(byte[] bytes, int length) {
+        char[] chars = new char[length * 2];
+        for (int i = 0; i < length; i++) {
+            chars[i * 2] = HEX_DIGITS[(bytes[i] >> 4) & 0xf];
+            chars[i * 2 + 1] = HEX_DIGITS[bytes[i] & 0xf];
+        }
+        return new String(chars);
+    }
+}
@@ -0,0 +1,402 @@
+/*
+ *  Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.wso2.maven.p2.utils;
+
+import org.apache.maven.plugin.logging.Log;
+import org.codehaus.plexus.PlexusContainer;
+import org.codehaus.plexus.component.repository.exception.ComponentLookupException;
+import org.codehaus.plexus.util.FileUtils;
+import org.eclipse.sisu.equinox.embedder.EquinoxRuntimeLocator;
+import org.eclipse.sisu.equinox.launching.BundleStartLevel;
+import org.eclipse.sisu.equinox.launching.DefaultEquinoxInstallationDescription;
+import org.eclipse.sisu.equinox.launching.EquinoxInstallation;
+import org.eclipse.sisu.equinox.launching.EquinoxInstallationDescription;
+import org.eclipse.sisu.equinox.launching.EquinoxInstallationFactory;
+import org.eclipse.sisu.equinox.launching.EquinoxLauncher;
+import org.eclipse.sisu.equinox.launching.internal.EquinoxLaunchConfiguration;
+import org.eclipse.tycho.core.osgitools.BundleReader;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Keeps the Equinox runtime used to run the p2 applications in a cache directory, so that it is materialized once
+ * rather than before every forked JVM.
+ * <p>
+ * The runtime located by Tycho is keyed by its bundles, their sizes and modification times, its platform properties
+ * and the version of the JVM running Maven. The installation of a key (config.ini and exploded bundles) is created
+ * once, under a file lock shared by concurrent builds. The configuration area, which holds the OSGi framework storage,
+ * is copied from the cache into a private directory for each launch, hence concurrent launches never share a
+ * configuration area. After the first successful launch, its configuration area is kept as the warmed configuration
+ * of the key, so that later launches start with the bundles already installed and resolved by the framework.
+ * </p>
+ *
+ * @since 2.1.1
+ */
+public class EquinoxRuntimeCache {
+
+    private static final String RUNTIME_DIRECTORY = "equinox";
+    private static final String INSTALLATION_DIRECTORY = "installation";
+    private static final String CONFIGURATION_DIRECTORY = "configuration";
+    private static final String WARM_CONFIGURATION_DIRECTORY = "configuration-warm";
+    private static final String RUNTIME_FILE = "runtime.properties";
+    private static final String LOCK_FILE = ".lock";
+    private static final String LAUNCHER_JAR_PROPERTY = "launcher.jar";
+
+    /**
+     * File locks are held per JVM, hence the threads of a parallel build are serialized by this monitor before
+     * acquiring the file lock.
+     */
+    private static final Object CACHE_MONITOR = new Object();
+
+    private static volatile LocatedRuntime locatedRuntime;
+
+    private final PlexusContainer container;
+    private final File cacheDirectory;
+
+    /**
+     * Constructs an EquinoxRuntimeCache.
+     *
+     * @param container      {@link PlexusContainer} providing the Tycho components which locate, install and launch
+     *                       the Equinox runtime
+     * @param cacheDirectory {@link File} directory keeping data reused across builds
+     */
+    public EquinoxRuntimeCache(PlexusContainer container, File cacheDirectory) {
+        this.container = container;
+        this.cacheDirectory = cacheDirectory;
+    }
+
+    /**
+     * Runs a p2 application in a JVM forked with the cached Equinox runtime.
+     *
+     * @param applicationName  {@code String} name of the p2 application
+     * @param workingDirectory {@link File} working directory of the forked JVM, may be null
+     * @param vmArguments      {@code List<String>} arguments for the forked JVM
+     * @param arguments        {@code List<String>} arguments for the p2 application
+     * @param timeoutInSeconds timeout of the forked JVM in seconds, 0 to wait without a timeout
+     * @param log              {@link Log}
+     * @return exit code of the forked JVM
+     * @throws IOException if the cached runtime cannot be created or used, in which case the application has not
+     *                     been launched
+     */
+    public int execute(String applicationName, File workingDirectory, List<String> vmArguments,
+                       List<String> arguments, int timeoutInSeconds, Log log) throws IOException {
+        LocatedRuntime runtime = locateRuntime();
+        File runtimeDirectory = new File(new File(cacheDirectory, RUNTIME_DIRECTORY), runtime.getKey());
+        File launcherJar = getInstallation(runtime, runtimeDirectory, log);
+        File warmConfiguration = new File(runtimeDirectory, WARM_CONFIGURATION_DIRECTORY);
+        boolean warm = warmConfiguration.isDirectory();
+
+        File launchDirectory = Files.createTempDirectory("p2-launch").toFile();
+        try {
+            File configuration = new File(launchDirectory, CONFIGURATION_DIRECTORY);
+            FileUtils.copyDirectoryStructure(warm ? warmConfiguration :
+                    new File(new File(runtimeDirectory, INSTALLATION_DIRECTORY), CONFIGURATION_DIRECTORY),
+                    configuration);
+            log.debug("Launching " + applicationName + " with the " + (warm ? "warmed" : "cold") +
+                    " Equinox runtime " + runtimeDirectory.getAbsolutePath());
+
+            EquinoxLaunchConfiguration launchConfiguration = new EquinoxLaunchConfiguration(
+                    new CachedInstallation(runtimeDirectory, configuration, launcherJar));
+            launchConfiguration.setWorkingDirectory(workingDirectory);
+            launchConfiguration.addProgramArguments("-configuration", configuration.getAbsolutePath());
+            if (log.isDebugEnabled()) {
+                launchConfiguration.addProgramArguments("-debug", "-consoleLog");
+            }
+            launchConfiguration.addProgramArguments("-nosplash", "-application", applicationName);
+            launchConfiguration.addProgramArguments(arguments.toArray(new String[arguments.size()]));
+            launchConfiguration.addVMArguments(vmArguments.toArray(new String[vmArguments.size()]));
+
+            int result = getLauncher().execute(launchConfiguration, timeoutInSeconds);
+            if (result == 0 && !warm) {
+                keepWarmConfiguration(configuration, runtimeDirectory, log);
+            }
+            return result;
+        } finally {
+            try {
+                FileUtils.deleteDirectory(launchDirectory);
+            } catch (IOException e) {
+                log.warn("Failed to delete temp folder " + launchDirectory);
+            }
+        }
+    }
+
+    /**
+     * Locates the Equinox runtime once per JVM, as its bundles do not change within a build.
+     */
+    private LocatedRuntime locateRuntime() throws IOException {
+        LocatedRuntime runtime = locatedRuntime;
+        if (runtime == null) {
+            synchronized (CACHE_MONITOR) {
+                runtime = locatedRuntime;
+                if (runtime == null) {
+                    runtime = new LocatedRuntime();
+                    try {
+                        lookup(EquinoxRuntimeLocator.class).locateRuntime(runtime);
+                    } catch (Exception e) {
+                        throw new IOException("Unable to locate the Equinox runtime", e);
+                    }
+                    runtime.computeKey();
+                    locatedRuntime = runtime;
+                }
+            }
+        }
+        return runtime;
+    }
+
+    /**
+     * Returns the launcher jar of the installation of the given runtime, creating the installation if it is not in the
+     * cache yet.
+     */
+    private File getInstallation(LocatedRuntime runtime, File runtimeDirectory, Log log) throws IOException {
+        File runtimeFile = new File(runtimeDirectory, RUNTIME_FILE);
+        if (!runtimeFile.isFile()) {
+            synchronized (CACHE_MONITOR) {
+                try (FileChannel channel = openLockFile(runtimeDirectory); FileLock ignored = channel.lock()) {
+                    if (!runtimeFile.isFile()) {
+                        createInstallation(runtime, runtimeDirectory, runtimeFile, log);
+                    }
+                }
+            }
+        }
+        Properties properties = new Properties();
+        try (InputStream inputStream = Files.newInputStream(runtimeFile.toPath())) {
+            properties.load(inputStream);
+        }
+        String launcherJar = properties.getProperty(LAUNCHER_JAR_PROPERTY);
+        if (launcherJar == null || !new File(launcherJar).isFile()) {
+            throw new IOException("Invalid cached Equinox runtime " + runtimeDirectory.getAbsolutePath());
+        }
+        return new File(launcherJar);
+    }
+
+    private void createInstallation(LocatedRuntime runtime, File runtimeDirectory, File runtimeFile, Log log)
+            throws IOException {
+        log.info("Caching the Equinox runtime in " + runtimeDirectory.getAbsolutePath());
+        File installationDirectory = new File(runtimeDirectory, INSTALLATION_DIRECTORY);
+        FileUtils.deleteDirectory(installationDirectory);
+        FileUtils.deleteDirectory(new File(runtimeDirectory, WARM_CONFIGURATION_DIRECTORY));
+
+        EquinoxInstallation installation;
+        try {
+            BundleReader bundleReader = lookup(BundleReader.class);
+            DefaultEquinoxInstallationDescription description = new DefaultEquinoxInstallationDescription();
+            for (File bundle : runtime.bundles) {
+                description.addBundle(bundleReader.loadManifest(bundle).toArtifactKey(), bundle);
+            }
+            for (Map.Entry<String, String> property : runtime.platformProperties.entrySet()) {
+                description.addPlatformProperty(property.getKey(), property.getValue());
+            }
+            for (BundleStartLevel startLevel : runtime.startLevels) {
+                description.addBundleStartLevel(startLevel);
+            }
+            installation = lookup(EquinoxInstallationFactory.class).createInstallation(description,
+                    installationDirectory);
+        } catch (IOException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IOException("Unable to create the Equinox runtime installation", e);
+        }
+
+        Properties properties = new Properties();
+        properties.setProperty(LAUNCHER_JAR_PROPERTY, installation.getLauncherJar().getAbsolutePath());
+        File tempFile = new File(runtimeDirectory, RUNTIME_FILE + ".tmp");
+        try (OutputStream outputStream = Files.newOutputStream(tempFile.toPath())) {
+            properties.store(outputStream, "Equinox runtime installation");
+        }
+        if (!tempFile.renameTo(runtimeFile)) {
+            throw new IOException("Unable to create " + runtimeFile.getAbsolutePath());
+        }
+    }
+
+    /**
+     * Keeps the configuration area of a successful launch as the warmed configuration of the runtime.
+     */
+    private void keepWarmConfiguration(File configuration, File runtimeDirectory, Log log) {
+        File warmConfiguration = new File(runtimeDirectory, WARM_CONFIGURATION_DIRECTORY);
+        synchronized (CACHE_MONITOR) {
+            try (FileChannel channel = openLockFile(runtimeDirectory); FileLock ignored = channel.lock()) {
+                if (warmConfiguration.isDirectory()) {
+                    return;
+                }
+                File tempDirectory = new File(runtimeDirectory, WARM_CONFIGURATION_DIRECTORY + ".tmp");
+                FileUtils.deleteDirectory(tempDirectory);
+                FileUtils.copyDirectoryStructure(configuration, tempDirectory);
+                if (!tempDirectory.renameTo(warmConfiguration)) {
+                    FileUtils.deleteDirectory(tempDirectory);
+                    log.debug("Unable to keep the warmed configuration " + warmConfiguration.getAbsolutePath());
+                }
+            } catch (IOException e) {
+                log.debug("Unable to keep the warmed configuration " + warmConfiguration.getAbsolutePath(), e);
+            }
+        }
+    }
+
+    /**
+     * Computes the key of an Equinox runtime, a SHA-1 digest over its bundles with their sizes and modification
+     * times, its platform properties, its bundle start levels and the version of the JVM. The order of the bundles
+     * does not matter.
+     *
+     * @param bundles            {@code List<File>} bundles of the runtime
+     * @param platformProperties {@code Map<String, String>} platform properties of the runtime
+     * @param startLevels        {@code List<BundleStartLevel>} start levels of the bundles
+     * @param vmVersion          {@code String} version of the JVM launching the runtime
+     * @return {@code String} hex encoded key
+     */
+    static String computeKey(List<File> bundles, Map<String, String> platformProperties,
+                             List<BundleStartLevel> startLevels, String vmVersion) {
+        List<String> entries = new ArrayList<>();
+        for (File bundle : bundles) {
+            entries.add(bundle.getPath() + '|' + bundle.length() + '|' + bundle.lastModified());
+        }
+        Collections.sort(entries);
+        for (Map.Entry<String, String> property : platformProperties.entrySet()) {
+            entries.add(property.getKey() + '=' + property.getValue());
+        }
+        for (BundleStartLevel startLevel : startLevels) {
+            entries.add(startLevel.getId() + '@' + startLevel.getLevel() + ':' + startLevel.isAutoStart());
+        }
+        entries.add(vmVersion);
+        MessageDigest digest = DigestUtils.newDigest(DigestUtils.SHA_1);
+        for (String entry : entries) {
+            digest.update(entry.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) '\n');
+        }
+        return DigestUtils.toHex(digest.digest(), 8);
+    }
+
+    private static FileChannel openLockFile(File runtimeDirectory) throws IOException {
+        if (!runtimeDirectory.isDirectory() && !runtimeDirectory.mkdirs()) {
+            throw new IOException("Unable to create " + runtimeDirectory.getAbsolutePath());
+        }
+        return FileChannel.open(new File(runtimeDirectory, LOCK_FILE).toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE);
+    }
+
+    private EquinoxLauncher getLauncher() throws IOException {
+        return lookup(EquinoxLauncher.class);
+    }
+
+    private <T> T lookup(Class<T> role) throws IOException {
+        try {
+            return role.cast(container.lookup(role.getName()));
+        } catch (ComponentLookupException e) {
+            throw new IOException("Unable to lookup " + role.getName(), e);
+        }
+    }
+
+    /**
+     * Records the Equinox runtime described by the Tycho runtime locator.
+     */
+    private static class LocatedRuntime implements EquinoxRuntimeLocator.EquinoxRuntimeDescription {
+
+        private final List<File> bundles = new ArrayList<>();
+        private final Map<String, String> platformProperties = new LinkedHashMap<>();
+        private final List<BundleStartLevel> startLevels = new ArrayList<>();
+        private String key;
+
+        @Override
+        public void addInstallation(File location) {
+            File[] plugins = new File(location, "plugins").listFiles();
+            if (plugins != null) {
+                for (File plugin : plugins) {
+                    addBundle(plugin);
+                }
+            }
+        }
+
+        @Override
+        public void addBundle(File location) {
+            bundles.add(location.getAbsoluteFile());
+        }
+
+        @Override
+        public void addExtraSystemPackage(String systemPackage) {
+            // Not used by forked p2 applications.
+        }
+
+        @Override
+        public void addPlatformProperty(String property, String value) {
+            platformProperties.put(property, value);
+        }
+
+        @Override
+        public void addBundleStartLevel(String id, int level, boolean autoStart) {
+            startLevels.add(new BundleStartLevel(id, level, autoStart));
+        }
+
+        String getKey() {
+            return key;
+        }
+
+        void computeKey() {
+            key = EquinoxRuntimeCache.computeKey(bundles, platformProperties, startLevels,
+                    System.getProperty("java.vm.version"));
+        }
+    }
+
+    /**
+     * Installation whose configuration area is a private copy of the cached one.
+     */
+    private static class CachedInstallation implements EquinoxInstallation {
+
+        private final File location;
+        private final File configurationLocation;
+        private final File launcherJar;
+
+        CachedInstallation(File runtimeDirectory, File configurationLocation, File launcherJar) {
+            this.location = new File(runtimeDirectory, INSTALLATION_DIRECTORY);
+            this.configurationLocation = configurationLocation;
+            this.launcherJar = launcherJar;
+        }
+
+        @Override
+        public File getLauncherJar() {
+            return launcherJar;
+        }
+
+        @Override
+        public File getLocation() {
+            return location;
+        }
+
+        @Override
+        public File getConfigurationLocation() {
+            return configurationLocation;
+        }
+
+        @Override
+        public EquinoxInstallationDescription getInstallationDescription() {
+            // The description is only needed to create an installation, which is done once per cache key.
+            return null;
+        }
+    }
+}
@@ -25,8 +25,12 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.util.Properties;
+import java.util.zip.Deflater;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipInputStream;
 import java.util.zip.ZipOutputStream;
@@ -82,8 +86,21 @@ public class FileManagementUtil {
      * @param log         Logger to log any warnings
      */
     public static void zipFolder(String srcFolder, String destZipFile, Log log) {
+        zipFolder(srcFolder, destZipFile, Deflater.DEFAULT_COMPRESSION, log);
+    }
+
+    /**
+     * Zip a give folder to a give output zip file with the given compression level.
+     *
+     * @param srcFolder   source folder
+     * @param destZipFile path to the output zip file
+     * @param level       compression level, 0 to 9, or -1 for the default level
+     * @param log         Logger to log any warnings
+     */
+    public static void zipFolder(String srcFolder, String destZipFile, int level, Log log) {
         try (FileOutputStream fileWriter = new FileOutputStream(destZipFile);
              ZipOutputStream zip = new ZipOutputStream(fileWriter)) {
+            zip.setLevel(level);
             addFolderContentsToZip(srcFolder, zip, log);
         } catch (IOException e) {
             log.warn("Error occurred while archiving " + srcFolder, e);
@@ -221,32 +238,6 @@ public class FileManagementUtil {
         }
     }
 
-    /**
-     * Copies all files under srcDir to dstDir. If dstDir does not exist, it will be created.
-     *
-     * @param srcDir source directory
-     * @param dstDir destination directory
-     * @throws IOException throws when fail to create the directory structure when copying files
-     */
-    public static void copyDirectory(File srcDir, File dstDir) throws IOException {
-        if (srcDir.isDirectory()) {
-            if (!dstDir.exists()) {
-                if (!dstDir.mkdirs()) {
-                    throw new IOException("Failed to create directory " + dstDir.getAbsolutePath());
-                }
-            }
-
-            String[] children = srcDir.list();
-            if (children != null) {
-                for (String child : children) {
-                    copyDirectory(new File(srcDir, child), new File(dstDir, child));
-                }
-            }
-        } else {
-            copy(srcDir, dstDir);
-        }
-    }
-
     /**
      * Copies src file to dst file. If the dst file does not exist, it is created.
      *
@@ -260,15 +251,24 @@ public class FileManagementUtil {
                 throw new IOException("Failed to create " + dst.getAbsolutePath());
             }
         }
+        Files.copy(src.toPath(), dst.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
 
-        try (InputStream in = new FileInputStream(src);
-             OutputStream out = new FileOutputStream(dst)) {
-            // Transfer bytes from in to out
-            byte[] buf = new byte[1024];
-            int len;
-            while ((len = in.read(buf)) > 0) {
-                out.write(buf, 0, len);
-            }
+    /**
+     * Creates dst file as a hard link to src file when the file system supports it, and as a copy of src file
+     * otherwise. An existing dst file is replaced.
+     *
+     * @param src source file
+     * @param dst destination file
+     * @throws IOException throws when fail to link or copy the given file
+     */
+    public static void linkOrCopy(File src, File dst) throws IOException {
+        Files.createDirectories(dst.getAbsoluteFile().getParentFile().toPath());
+        Files.deleteIfExists(dst.toPath());
+        try {
+            Files.createLink(dst.toPath(), src.toPath());
+        } catch (UnsupportedOperationException | FileSystemException e) {
+            copy(src, dst);
         }
     }
 
@@ -0,0 +1,177 @@
+/*
+ *  Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.wso2.maven.p2.utils;
+
+import org.apache.maven.plugin.logging.Log;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Options of the JVM forked to run a p2 application.
+ * <p>
+ * Besides the user given JVM arguments, the forked JVM can use an application class data sharing (AppCDS) archive kept
+ * in the cache directory. The archive is created by the first launch and mapped by every later launch, which saves
+ * loading the JDK classes used by the launcher and the framework beyond those of the default JDK archive. The Equinox
+ * launcher and bundles are signed jars, whose classes the JVM never archives. The forked JVM is the JVM running Maven,
+ * hence the archive is keyed by its version. Dynamic archives require Java 13 or later and are created automatically
+ * from Java 19 onwards; with older JVMs the option is ignored.
+ * </p>
+ * <p>
+ * A JVM only maps an archive created with the same class path. Without an {@link EquinoxRuntimeCache}, Tycho
+ * materializes the Equinox runtime into a new temp folder for every launch, so the launcher jar and hence the class
+ * path differ from one launch to the next. Class data sharing is therefore only used together with the runtime cache.
+ * </p>
+ *
+ * @since 2.1.1
+ */
+public class ForkOptions {
+
+    private static final String CDS_DIRECTORY = "cds";
+
+    private final List<String> jvmArguments;
+    private final boolean classDataSharing;
+    private final File cacheDirectory;
+
+    private EquinoxRuntimeCache runtimeCache;
+    private File archive;
+    private boolean creatingArchive;
+
+    /**
+     * Constructs ForkOptions.
+     *
+     * @param jvmArguments     {@code List<String>} arguments for the forked JVM, may be null
+     * @param classDataSharing whether the forked JVM should create and reuse a class data sharing archive
+     * @param cacheDirectory   {@link File} directory keeping data reused across builds, may be null if class data
+     *                         sharing is disabled
+     */
+    public ForkOptions(List<String> jvmArguments, boolean classDataSharing, File cacheDirectory) {
+        this.jvmArguments = jvmArguments == null ? Collections.emptyList() : new ArrayList<>(jvmArguments);
+        this.classDataSharing = classDataSharing && cacheDirectory != null;
+        this.cacheDirectory = cacheDirectory;
+    }
+
+    /**
+     * Returns the directory keeping data reused across builds.
+     *
+     * @return {@link File} or null if not configured
+     */
+    public File getCacheDirectory() {
+        return cacheDirectory;
+    }
+
+    /**
+     * Returns the cache of the Equinox runtime the p2 applications are launched with.
+     *
+     * @return {@link EquinoxRuntimeCache} or null if the runtime is materialized for each launch
+     */
+    public EquinoxRuntimeCache getRuntimeCache() {
+        return runtimeCache;
+    }
+
+    /**
+     * Sets the cache of the Equinox runtime the p2 applications are launched with.
+     *
+     * @param runtimeCache {@link EquinoxRuntimeCache}, null to materialize the runtime for each launch
+     */
+    public void setRuntimeCache(EquinoxRuntimeCache runtimeCache) {
+        this.runtimeCache = runtimeCache;
+    }
+
+    /**
+     * Returns the arguments for the next forked JVM, including the class data sharing options.
+     *
+     * @param log {@link Log} to report why class data sharing cannot be used
+     * @return {@code List<String>}
+     */
+    public List<String> getVMArguments(Log log) {
+        List<String> arguments = new ArrayList<>();
+        for (String argument : jvmArguments) {
+            if (argument != null && !argument.trim().isEmpty()) {
+                arguments.add(argument.trim());
+            }
+        }
+        archive = null;
+        creatingArchive = false;
+        if (!classDataSharing) {
+            return arguments;
+        }
+        if (runtimeCache == null) {
+            log.warn("Class data sharing for the forked p2 JVM requires the cached Equinox runtime (p2.cacheRuntime)," +
+                    " as the class path of the runtime materialized for each launch changes with every launch");
+            return arguments;
+        }
+
+        int javaVersion = getJavaFeatureVersion();
+        if (javaVersion < 13) {
+            log.warn("Class data sharing for the forked p2 JVM requires Java 13 or later, running on " +
+                    System.getProperty("java.specification.version"));
+            return arguments;
+        }
+        File directory = new File(cacheDirectory, CDS_DIRECTORY);
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            log.warn("Unable to create the class data sharing directory " + directory.getAbsolutePath());
+            return arguments;
+        }
+        archive = new File(directory, "p2-" + System.getProperty("java.vm.version").replaceAll("[^A-Za-z0-9._-]", "_")
+                + ".jsa");
+        creatingArchive = !archive.isFile();
+        if (javaVersion >= 19) {
+            arguments.add("-XX:+AutoCreateSharedArchive");
+            arguments.add("-XX:SharedArchiveFile=" + archive.getAbsolutePath());
+        } else if (creatingArchive) {
+            arguments.add("-XX:ArchiveClassesAtExit=" + archive.getAbsolutePath());
+        } else {
+            arguments.add("-XX:SharedArchiveFile=" + archive.getAbsolutePath());
+        }
+        return arguments;
+    }
+
+    /**
+     * Reports the duration of a launch using the arguments last returned by {@link #getVMArguments(Log)}, and whether
+     * it created or mapped the class data sharing archive.
+     *
+     * @param applicationName {@code String} name of the p2 application
+     * @param millis          duration of the launch in milliseconds
+     * @param log             {@link Log}
+     */
+    public void reportLaunch(String applicationName, long millis, Log log) {
+        if (archive == null) {
+            log.info(applicationName + " completed in " + millis + " ms");
+        } else if (creatingArchive) {
+            log.info(applicationName + " completed in " + millis + " ms, creating class data sharing archive " +
+                    archive.getName());
+        } else {
+            log.info(applicationName + " completed in " + millis + " ms using class data sharing archive " +
+                    archive.getName());
+        }
+    }
+
+    private static int getJavaFeatureVersion() {
+        String version = System.getProperty("java.specification.version");
+        if (version.startsWith("1.")) {
+            version = version.substring(2);
+        }
+        int end = 0;
+        while (end < version.length() && Character.isDigit(version.charAt(end))) {
+            end++;
+        }
+        return end == 0 ? 0 : Integer.parseInt(version.substring(0, end));
+    }
+}
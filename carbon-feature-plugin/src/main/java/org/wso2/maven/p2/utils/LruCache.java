@@ -0,0 +1,88 @@
+/*
+ *  Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.wso2.maven.p2.utils;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Thread safe cache with a fixed capacity, evicting the least recently used entry once the capacity is exceeded.
+ * Intended for memoizing pure conversions whose inputs repeat heavily within a build, hence values are computed
+ * outside the lock and a concurrent computation of the same key simply yields an equal value.
+ *
+ * @param <K> type of the keys
+ * @param <V> type of the values
+ * @since 2.1.1
+ */
+public class LruCache<K, V> {
+
+    private final Map<K, V> entries;
+
+    /**
+     * Constructs an LruCache.
+     *
+     * @param capacity maximum number of entries retained by the cache
+     */
+    public LruCache(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Cache capacity must be positive: " + capacity);
+        }
+        this.entries = new BoundedLinkedHashMap<>(capacity);
+    }
+
+    /**
+     * Returns the cached value for the given key, computing and caching it if absent.
+     *
+     * @param key      key of the entry, must not be null
+     * @param function function computing the value of an absent key, must not return null
+     * @return cached or computed value
+     */
+    public V get(K key, Function<? super K, ? extends V> function) {
+        V value;
+        synchronized (entries) {
+            value = entries.get(key);
+        }
+        if (value == null) {
+            value = function.apply(key);
+            synchronized (entries) {
+                entries.put(key, value);
+            }
+        }
+        return value;
+    }
+
+    /**
+     * Access ordered map which drops its eldest entry once it grows beyond the given capacity.
+     */
+    private static class BoundedLinkedHashMap<K, V> extends LinkedHashMap<K, V> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int capacity;
+
+        BoundedLinkedHashMap(int capacity) {
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+            return size() > capacity;
+        }
+    }
+}
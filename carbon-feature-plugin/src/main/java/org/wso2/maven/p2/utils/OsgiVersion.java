@@ -0,0 +1,205 @@
+/*
+ *  Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.wso2.maven.p2.utils;
+
+/**
+ * Immutable representation of an OSGi version, {@code major[.minor[.micro[.qualifier]]]}.
+ * <p>
+ * Versions are ordered as defined by the OSGi specification, i.e. numerically by major, minor and micro and then
+ * lexicographically by qualifier, where an empty qualifier sorts before any other qualifier.
+ * </p>
+ *
+ * @since 2.1.1
+ */
+public final class OsgiVersion implements Comparable<OsgiVersion> {
+
+    private final int major;
+    private final int minor;
+    private final int micro;
+    private final String qualifier;
+
+    /**
+     * Constructs an OsgiVersion.
+     *
+     * @param major     major version
+     * @param minor     minor version
+     * @param micro     micro version
+     * @param qualifier qualifier, null or empty if the version does not have a qualifier
+     */
+    public OsgiVersion(int major, int minor, int micro, String qualifier) {
+        if (major < 0 || minor < 0 || micro < 0) {
+            throw new IllegalArgumentException("Negative version component in " + major + "." + minor + "." + micro);
+        }
+        this.major = major;
+        this.minor = minor;
+        this.micro = micro;
+        this.qualifier = qualifier == null ? "" : qualifier;
+        for (int i = 0; i < this.qualifier.length(); i++) {
+            if (!isQualifierChar(this.qualifier.charAt(i))) {
+                throw new IllegalArgumentException("Invalid character in version qualifier: " + this.qualifier);
+            }
+        }
+    }
+
+    /**
+     * Parses a version which is already in the OSGi format. Missing minor and micro versions default to 0.
+     *
+     * @param version {@code String} OSGi version
+     * @return {@link OsgiVersion}
+     * @throws IllegalArgumentException if the given version is not a valid OSGi version
+     */
+    public static OsgiVersion parse(String version) {
+        if (version == null) {
+            throw new IllegalArgumentException("Version cannot be null");
+        }
+        int[] numbers = new int[3];
+        int index = 0;
+        int position = 0;
+        int length = version.length();
+        while (index < 3) {
+            int start = position;
+            long value = 0;
+            while (position < length && isDigit(version.charAt(position))) {
+                value = value * 10 + (version.charAt(position) - '0');
+                if (value > Integer.MAX_VALUE) {
+                    throw new IllegalArgumentException("Version component is too large: " + version);
+                }
+                position++;
+            }
+            if (position == start) {
+                throw new IllegalArgumentException("Invalid OSGi version: " + version);
+            }
+            numbers[index++] = (int) value;
+            if (position == length) {
+                return new OsgiVersion(numbers[0], numbers[1], numbers[2], null);
+            }
+            if (version.charAt(position) != '.') {
+                throw new IllegalArgumentException("Invalid OSGi version: " + version);
+            }
+            position++;
+        }
+        if (position == length) {
+            throw new IllegalArgumentException("Empty qualifier in OSGi version: " + version);
+        }
+        return new OsgiVersion(numbers[0], numbers[1], numbers[2], version.substring(position));
+    }
+
+    /**
+     * Converts a maven or OSGi version into an OsgiVersion.
+     *
+     * @param version {@code String} maven or OSGi version
+     * @return {@link OsgiVersion}
+     * @throws IllegalArgumentException if the given version cannot be represented as an OSGi version
+     */
+    public static OsgiVersion valueOf(String version) {
+        if (version == null) {
+            throw new IllegalArgumentException("Version cannot be null");
+        }
+        return parse(BundleUtils.getOSGIVersion(version));
+    }
+
+    /**
+     * Returns the major version.
+     *
+     * @return int
+     */
+    public int getMajor() {
+        return major;
+    }
+
+    /**
+     * Returns the minor version.
+     *
+     * @return int
+     */
+    public int getMinor() {
+        return minor;
+    }
+
+    /**
+     * Returns the micro version.
+     *
+     * @return int
+     */
+    public int getMicro() {
+        return micro;
+    }
+
+    /**
+     * Returns the qualifier of this version.
+     *
+     * @return {@code String} qualifier, empty if this version does not have a qualifier
+     */
+    public String getQualifier() {
+        return qualifier;
+    }
+
+    @Override
+    public int compareTo(OsgiVersion other) {
+        if (major != other.major) {
+            return major < other.major ? -1 : 1;
+        }
+        if (minor != other.minor) {
+            return minor < other.minor ? -1 : 1;
+        }
+        if (micro != other.micro) {
+            return micro < other.micro ? -1 : 1;
+        }
+        return qualifier.compareTo(other.qualifier);
+    }
+
+    @Override
+    public boolean equals(Object object) {
+        if (this == object) {
+            return true;
+        }
+        if (!(object instanceof OsgiVersion)) {
+            return false;
+        }
+        OsgiVersion other = (OsgiVersion) object;
+        return major == other.major && minor == other.minor && micro == other.micro &&
+                qualifier.equals(other.qualifier);
+    }
+
+    @Override
+    public int hashCode() {
+        return ((major * 31 + minor) * 31 + micro) * 31 + qualifier.hashCode();
+    }
+
+    /**
+     * Returns the canonical string representation of this version, {@code major.minor.micro[.qualifier]}.
+     *
+     * @return {@code String}
+     */
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder(16 + qualifier.length());
+        builder.append(major).append('.').append(minor).append('.').append(micro);
+        if (!qualifier.isEmpty()) {
+            builder.append('.').append(qualifier);
+        }
+        return builder.toString();
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean isQualifierChar(char c) {
+        return isDigit(c) || (c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z') || c == '_' || c == '-';
+    }
+}
@@ -17,11 +17,16 @@
 package org.wso2.maven.p2.utils;
 
 import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugin.logging.Log;
 import org.eclipse.sisu.equinox.launching.internal.P2ApplicationLauncher;
 
 import java.io.File;
 import java.io.IOException;
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Wrapper class containing P2ApplicationLauncher which makes configuring the P2ApplicationLauncher easier.
@@ -31,6 +36,12 @@ import java.net.URL;
 public class P2ApplicationLaunchManager {
 
     private final P2ApplicationLauncher launcher;
+    private final ForkOptions forkOptions;
+    private final Log log;
+    private final List<String> arguments = new ArrayList<>();
+    private final List<String> vmArguments = new ArrayList<>();
+    private String applicationName;
+    private File workingDirectory;
 
     /**
      * The constructor which initializes this class. This class wraps the P2ApplicationLauncher and expose a set
@@ -39,7 +50,21 @@ public class P2ApplicationLaunchManager {
      * @param launcher P2ApplicationLauncher which will be wrapped by this wrapper class
      */
     public P2ApplicationLaunchManager(P2ApplicationLauncher launcher) {
+        this(launcher, null, null);
+    }
+
+    /**
+     * Constructs a P2ApplicationLaunchManager which forks the p2 applications with the given JVM options and reports
+     * the duration of each launch.
+     *
+     * @param launcher    P2ApplicationLauncher which will be wrapped by this wrapper class
+     * @param forkOptions {@link ForkOptions} of the forked JVM, may be null
+     * @param log         {@link Log} to report the launches, required if fork options are given
+     */
+    public P2ApplicationLaunchManager(P2ApplicationLauncher launcher, ForkOptions forkOptions, Log log) {
         this.launcher = launcher;
+        this.forkOptions = forkOptions;
+        this.log = log;
     }
 
     /**
@@ -48,6 +73,7 @@ public class P2ApplicationLaunchManager {
      * @param workingDir File object pointing the directory
      */
     public void setWorkingDirectory(File workingDir) {
+        this.workingDirectory = workingDir;
         this.launcher.setWorkingDirectory(workingDir);
     }
 
@@ -57,6 +83,7 @@ public class P2ApplicationLaunchManager {
      * @param applicationName name of the application
      */
     public void setApplicationName(String applicationName) {
+        this.applicationName = applicationName;
         this.launcher.setApplicationName(applicationName);
     }
 
@@ -77,7 +104,7 @@ public class P2ApplicationLaunchManager {
     public void addArgumentsToInstallFeatures(String repositoryLocation,
                                               String installIUs, String destination, String profile) {
 
-        launcher.addArguments(
+        addArguments(
                 "-metadataRepository", repositoryLocation,
                 "-artifactRepository", repositoryLocation,
                 "-profileProperties", "org.eclipse.update.install.features=true",
@@ -102,7 +129,7 @@ public class P2ApplicationLaunchManager {
      */
     public void addArgumentsToUnInstallFeatures(String uninstallIUs, String destination,
                                                 String profile) {
-        launcher.addArguments(
+        addArguments(
                 "-profileProperties", "org.eclipse.update.install.features=false",
                 // a comma separated list of IUs to uninstall. Each entry in the list is in the form
                 // <id> [ '/' <version> ]
@@ -127,7 +154,7 @@ public class P2ApplicationLaunchManager {
      */
     public void addRepoGenerationArguments(String sourceDir, String metadataRepoLocation,
                                            String repositoryName) {
-        launcher.addArguments("-source", sourceDir,
+        addArguments("-source", sourceDir,
                 "-metadataRepository", metadataRepoLocation,
                 "-metadataRepositoryName", repositoryName,
                 "-artifactRepository", metadataRepoLocation,
@@ -138,6 +165,21 @@ public class P2ApplicationLaunchManager {
                 "-append");
     }
 
+    /**
+     * Sets the P2ApplicationLauncher's arguments to generate a P2 repository together with its categories. The source
+     * directory is expected to contain an update site manifest (site.xml) defining the categories, which the update
+     * site publisher applies in the same run in which it publishes the features and bundles.
+     *
+     * @param sourceDir            the location of the update site
+     * @param metadataRepoLocation the URI to the metadata repository where the installable units should be published
+     * @param repositoryName       name of the artifact repository where the artifacts should be published
+     */
+    public void addRepoGenerationWithCategoryArguments(String sourceDir, String metadataRepoLocation,
+                                                       String repositoryName) {
+        addRepoGenerationArguments(sourceDir, metadataRepoLocation, repositoryName);
+        addArguments("-categoryQualifier");
+    }
+
     /**
      * Sets the P2ApplicationLauncher's arguments and configure it to categorizing a set of Installable Units in a given
      * repository.
@@ -148,7 +190,7 @@ public class P2ApplicationLaunchManager {
      *                                   repository
      */
     public void addUpdateRepoWithCategoryArguments(String metadataRepositoryLocation, String categoryDefinitionFile) {
-        launcher.addArguments("-metadataRepository", metadataRepositoryLocation,
+        addArguments("-metadataRepository", metadataRepositoryLocation,
                 "-categoryDefinition", categoryDefinitionFile,
                 "-categoryQualifier",
                 "-compress",
@@ -166,7 +208,7 @@ public class P2ApplicationLaunchManager {
      */
     public void addPublishProductArguments(URL repositoryURL, File productConfigurationFile, String executable)
             throws IOException {
-        launcher.addArguments(
+        addArguments(
                 "-metadataRepository", repositoryURL.toString(),
                 "-artifactRepository", repositoryURL.toString(),
                 "-productFile", productConfigurationFile.getCanonicalPath(),
@@ -187,7 +229,7 @@ public class P2ApplicationLaunchManager {
      * @param targetPath    location of the components directory of the carbon distribution
      */
     public void addGenerateProfileArguments(URL repositoryURL, String id, String profile, URL targetPath) {
-        launcher.addArguments(
+        addArguments(
                 "-metadataRepository", repositoryURL.toExternalForm(),
                 "-artifactRepository", repositoryURL.toExternalForm(),
                 "-installIU", id,
@@ -212,10 +254,42 @@ public class P2ApplicationLaunchManager {
      * @throws MojoFailureException throws when unable to perform the p2 activity
      */
     public void performAction(int forkedProcessTimeoutInSeconds) throws MojoFailureException {
-        int result = launcher.execute(forkedProcessTimeoutInSeconds);
+        if (forkOptions != null) {
+            List<String> forkArguments = forkOptions.getVMArguments(log);
+            if (!forkArguments.isEmpty()) {
+                vmArguments.addAll(forkArguments);
+                launcher.addVMArguments(forkArguments.toArray(new String[forkArguments.size()]));
+            }
+        }
+        long start = System.nanoTime();
+        int result = execute(forkedProcessTimeoutInSeconds);
+        if (forkOptions != null) {
+            forkOptions.reportLaunch(applicationName, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), log);
+        }
         if (result != 0) {
             throw new MojoFailureException("P2 publisher return code was " + result);
         }
     }
 
+    /**
+     * Launches the application with the cached Equinox runtime if one is configured, falling back to the
+     * P2ApplicationLauncher, which materializes a new runtime for the launch, if the cached runtime cannot be used.
+     */
+    private int execute(int forkedProcessTimeoutInSeconds) {
+        EquinoxRuntimeCache runtimeCache = forkOptions != null ? forkOptions.getRuntimeCache() : null;
+        if (runtimeCache != null) {
+            try {
+                return runtimeCache.execute(applicationName, workingDirectory, vmArguments, arguments,
+                        forkedProcessTimeoutInSeconds, log);
+            } catch (IOException e) {
+                log.warn("Unable to use the cached Equinox runtime, launching with a new runtime", e);
+            }
+        }
+        return launcher.execute(forkedProcessTimeoutInSeconds);
+    }
+
+    private void addArguments(String... args) {
+        Collections.addAll(arguments, args);
+        launcher.addArguments(args);
+    }
 }
@@ -0,0 +1,140 @@
+/*
+ *  Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.wso2.maven.p2.utils;
+
+import org.apache.maven.plugin.logging.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Exclusive lock on a part of a shared p2 installation, i.e. a carbon distribution whose profiles share the p2 agent
+ * data area ({@code <destination>/p2}) and the bundle pool ({@code <destination>}).
+ * <p>
+ * A profile lock guards the files of a single profile, i.e. its eclipse.ini, config.ini and profile registry entries.
+ * The bundle pool lock guards a director run. A director run downloads the artifacts into the bundle pool and commits
+ * the profile within a single forked process, so the lock cannot be narrowed to the pool writes: director runs on the
+ * same destination are serialized whatever their profile, and only the work around them runs concurrently for
+ * different profiles. Profile locks must be acquired before the bundle pool lock.
+ * </p>
+ * <p>
+ * The locks are held across processes through lock files kept in {@code <destination>/p2/.locks}. File locks are held
+ * per JVM, hence the threads of a parallel build are serialized by an in-process lock before acquiring the file lock.
+ * </p>
+ *
+ * @since 2.1.1
+ */
+public final class P2AreaLock implements AutoCloseable {
+
+    private static final String LOCKS_DIRECTORY = "p2" + File.separator + ".locks";
+    private static final String BUNDLE_POOL_LOCK = "bundlepool.lock";
+    private static final ConcurrentMap<String, ReentrantLock> PROCESS_LOCKS = new ConcurrentHashMap<>();
+
+    private final ReentrantLock processLock;
+    private final FileChannel channel;
+    private final FileLock fileLock;
+
+    private P2AreaLock(ReentrantLock processLock, FileChannel channel, FileLock fileLock) {
+        this.processLock = processLock;
+        this.channel = channel;
+        this.fileLock = fileLock;
+    }
+
+    /**
+     * Locks the given profile of the given destination, waiting until the lock is available.
+     *
+     * @param destination {@code String} path of the shared installation
+     * @param profile     {@code String} id of the profile
+     * @param log         {@link Log} to report waiting for the lock
+     * @return {@link P2AreaLock} to close once the operation on the profile completes
+     * @throws IOException if the lock file cannot be created or locked
+     */
+    public static P2AreaLock lockProfile(String destination, String profile, Log log) throws IOException {
+        return lock(destination, "profile-" + profile.replaceAll("[^A-Za-z0-9._-]", "_") + ".lock",
+                "profile " + profile + " of " + destination, log);
+    }
+
+    /**
+     * Locks the bundle pool of the given destination, waiting until the lock is available.
+     *
+     * @param destination {@code String} path of the shared installation
+     * @param log         {@link Log} to report waiting for the lock
+     * @return {@link P2AreaLock} to close once the director run completes
+     * @throws IOException if the lock file cannot be created or locked
+     */
+    public static P2AreaLock lockBundlePool(String destination, Log log) throws IOException {
+        return lock(destination, BUNDLE_POOL_LOCK, "bundle pool of " + destination, log);
+    }
+
+    /**
+     * Releases the lock.
+     *
+     * @throws IOException if the lock file cannot be released
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            fileLock.release();
+        } finally {
+            try {
+                channel.close();
+            } finally {
+                processLock.unlock();
+            }
+        }
+    }
+
+    private static P2AreaLock lock(String destination, String lockFileName, String description, Log log)
+            throws IOException {
+        File directory = new File(new File(destination).getCanonicalFile(), LOCKS_DIRECTORY);
+        if (!directory.isDirectory() && !directory.mkdirs() && !directory.isDirectory()) {
+            throw new IOException("Unable to create the lock directory " + directory.getAbsolutePath());
+        }
+        File lockFile = new File(directory, lockFileName);
+        ReentrantLock processLock = PROCESS_LOCKS.computeIfAbsent(lockFile.getPath(),
+                key -> new ReentrantLock());
+        if (!processLock.tryLock()) {
+            log.info("Waiting for the lock on the " + description);
+            processLock.lock();
+        }
+        FileChannel channel = null;
+        try {
+            channel = FileChannel.open(lockFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            FileLock fileLock = channel.tryLock();
+            if (fileLock == null) {
+                log.info("Waiting for another process holding the lock on the " + description);
+                fileLock = channel.lock();
+            }
+            return new P2AreaLock(processLock, channel, fileLock);
+        } catch (IOException | RuntimeException e) {
+            try {
+                if (channel != null) {
+                    channel.close();
+                }
+            } finally {
+                processLock.unlock();
+            }
+            throw e;
+        }
+    }
+}
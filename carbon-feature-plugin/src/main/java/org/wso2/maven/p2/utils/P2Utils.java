@@ -22,16 +22,11 @@ import org.w3c.dom.Element;
 import org.wso2.maven.p2.repository.CatFeature;
 import org.wso2.maven.p2.repository.Category;
 
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.IOException;
-import java.io.InputStreamReader;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.regex.Pattern;
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
@@ -53,37 +48,6 @@ import javax.xml.transform.stream.StreamResult;
 public class P2Utils {
     private static String[] matchList = new String[]{"perfect", "equivalent", "compatible", "greaterOrEqual", "patch",
             "optional"};
-    private static final String DEFAULT_ENCODING = "UTF-8";
-
-    /**
-     * Traverse the given p2Inf file, find the last index of the property entries in the file and returns. This us
-     * used when updating the p2inf with new properties.
-     *
-     * @param p2InfFile p2Inf Flie object
-     * @return last index of the properties
-     * @throws IOException throws if unable to read the p2Inf file
-     */
-    public static int getLastIndexOfProperties(File p2InfFile) throws IOException {
-        int min = -1;
-        if (p2InfFile.exists()) {
-
-            try (InputStreamReader reader = new InputStreamReader(new FileInputStream(p2InfFile), DEFAULT_ENCODING);
-                 BufferedReader in = new BufferedReader(reader)) {
-                String line;
-                while ((line = in.readLine()) != null) {
-                    String[] split = line.split("=");
-                    String[] split2 = split[0].split(Pattern.quote("."));
-                    if (split2[0].equalsIgnoreCase("properties")) {
-                        int index = Integer.parseInt(split2[1]);
-                        if (index > min) {
-                            min = index;
-                        }
-                    }
-                }
-            }
-        }
-        return min;
-    }
 
     public static boolean isMatchString(String matchStr) {
         for (String match : matchList) {
@@ -134,6 +98,25 @@ public class P2Utils {
      */
     public static void createCategoryFile(MavenProject project, List categories, File categoryFile)
             throws ParserConfigurationException, TransformerException, MojoExecutionException {
+        createCategoryFile(project, categories, categoryFile, false);
+    }
+
+    /**
+     * Create the category file. When an update site manifest (site.xml) is requested, each feature entry also carries
+     * the url attribute required by the update site parser, so that the file can drive the update site publisher
+     * which publishes the features, bundles and categories in a single run.
+     *
+     * @param project      Maven project
+     * @param categories   categories list
+     * @param categoryFile category file
+     * @param updateSite   whether to create an update site manifest (site.xml) rather than a category.xml
+     * @throws ParserConfigurationException throws if fail to generate a manifest document
+     * @throws TransformerException         throws when fail to transform the category file
+     * @throws MojoExecutionException       throws if fail to process features
+     */
+    public static void createCategoryFile(MavenProject project, List categories, File categoryFile,
+                                          boolean updateSite)
+            throws ParserConfigurationException, TransformerException, MojoExecutionException {
 
         Map featureCategories = new HashMap();
 
@@ -156,6 +139,9 @@ public class P2Utils {
                 descriptionElement.setTextContent(cat.getDescription());
                 categoryDef.appendChild(descriptionElement);
                 ArrayList<CatFeature> processedFeatures = cat.getProcessedFeatures(project);
+                if (processedFeatures == null) {
+                    continue;
+                }
                 for (CatFeature feature : processedFeatures) {
                     if (!featureCategories.containsKey(feature.getId() + feature.getVersion())) {
                         ArrayList list = new ArrayList();
@@ -168,7 +154,7 @@ public class P2Utils {
             }
         }
 
-        for (Object object : featureCategories.entrySet()) {
+        for (Object object : featureCategories.values()) {
             if (object instanceof List) {
                 List list = (List) object;
                 CatFeature feature = (CatFeature) list.get(0);
@@ -177,6 +163,10 @@ public class P2Utils {
                 Element featureDef = doc.createElement("feature");
                 featureDef.setAttribute("id", feature.getId());
                 featureDef.setAttribute("version", BundleUtils.getOSGIVersion(feature.getVersion()));
+                if (updateSite) {
+                    featureDef.setAttribute("url", "features/" + feature.getId() + "_" +
+                            BundleUtils.getOSGIVersion(feature.getVersion()) + ".jar");
+                }
                 for (Object catId : list) {
                     Element category = doc.createElement("category");
                     category.setAttribute("name", catId.toString());
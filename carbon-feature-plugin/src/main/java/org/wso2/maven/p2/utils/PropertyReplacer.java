@@ -24,61 +24,19 @@ import java.util.Properties;
  * @since 2.0.0
  */
 public class PropertyReplacer {
-    // States of the state machine
-    private enum State {
-        NORMAL, SEEN_DOLLAR, WITHIN_BRACKET
-    }
 
     /**
      * When a property is encountered in ${variable} form, traverse through the given Properties collection and
-     * update it to the actual value.
+     * update it to the actual value. Nested placeholders, default values, ${variable:-default}, recursive expansion of
+     * property values and escaping, $${variable}, are supported as described in {@link PropertyTemplate}.
      *
      * @param origString String key in the form of ${variable}
      * @param props Properties object
      * @return actual String value represented by the orgString
+     * @throws IllegalArgumentException if a property value refers back to itself
      */
     public static String replaceProperties(final String origString, final Properties props) {
-
-        final char[] chars = origString.toCharArray();
-        StringBuilder buffer = new StringBuilder();
-        boolean properties = false;
-        State state = State.NORMAL;
-        int start = 0;
-        for (int i = 0; i < chars.length; ++i) {
-
-            char c = chars[i];
-            if (c == '$' && state != State.WITHIN_BRACKET) {  // found a "$"
-                state = State.SEEN_DOLLAR;
-            } else if (c == '{' && state == State.SEEN_DOLLAR) {  // found a "{" after "$"
-                buffer.append(origString.substring(start, i - 1));
-                state = State.WITHIN_BRACKET;
-                start = i - 1;
-            } else if (state == State.SEEN_DOLLAR) {   // just a single "$" ; no brackets
-                state = State.NORMAL;
-            } else if (c == '}' && state == State.WITHIN_BRACKET) {  // its a  ${property} sequence extract the value
-                String key = origString.substring(start + 2, i);
-                String value = props.getProperty(key);
-                if (value != null) {      // if the value of the property found; replace
-                    properties = true;
-                    buffer.append(value);
-                } else {                  // if the value of the property not give do not replace
-                    buffer.append("${");
-                    buffer.append(key);
-                    buffer.append('}');
-                }
-                start = i + 1;
-                state = State.NORMAL;
-            }
-        }
-        // No properties hence returning the original string
-        if (!properties) {
-            return origString;
-        }
-        // Collect the trailing characters
-        if (start != chars.length) {
-            buffer.append(origString.substring(start, chars.length));
-        }
-        return buffer.toString();
+        return PropertyTemplate.compile(origString).render(props::getProperty);
     }
 
 }
@@ -0,0 +1,289 @@
+/*
+ *  Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.wso2.maven.p2.utils;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * A string containing property placeholders of the form ${variable}, parsed once into literal and placeholder
+ * segments so that it can be rendered many times against a property source.
+ * <p>
+ * Besides plain placeholders, keys may themselves contain placeholders, i.e. ${a.${b}}, and a placeholder may carry
+ * a default value which is used when the property is not defined, i.e. ${key:-default}. A placeholder which cannot
+ * be resolved is left as it is. Compiled templates are cached, hence the same line or version string is parsed only
+ * once per build.
+ * </p>
+ * <p>
+ * Property values are expanded recursively: a value containing ${other} is rendered with the value of other, and a
+ * property which refers back to itself is reported with an {@link IllegalArgumentException}. This differs from the
+ * single pass replacement done before 2.1.1, which copied values as they were. A value or template which has to keep
+ * a literal ${...} escapes it with a second '$', i.e. $${key} renders as ${key}.
+ * </p>
+ *
+ * @since 2.1.1
+ */
+public final class PropertyTemplate {
+
+    private static final int TEMPLATE_CACHE_SIZE = 8192;
+    private static final LruCache<String, PropertyTemplate> TEMPLATE_CACHE = new LruCache<>(TEMPLATE_CACHE_SIZE);
+
+    private static final String PLACEHOLDER_START = "${";
+    private static final char PLACEHOLDER_END = '}';
+    private static final String DEFAULT_SEPARATOR = ":-";
+    private static final char ESCAPE = '$';
+
+    private final String source;
+    private final Segment[] segments;
+
+    private PropertyTemplate(String source, List<Segment> segments) {
+        this.source = source;
+        this.segments = segments.toArray(new Segment[segments.size()]);
+    }
+
+    /**
+     * Returns the compiled template of the given string.
+     *
+     * @param template {@code String} string which may contain property placeholders
+     * @return {@link PropertyTemplate}
+     */
+    public static PropertyTemplate compile(String template) {
+        if (template == null) {
+            throw new IllegalArgumentException("Template cannot be null");
+        }
+        return TEMPLATE_CACHE.get(template, key -> new PropertyTemplate(key, parse(key, 0, key.length())));
+    }
+
+    /**
+     * Returns whether this template contains any placeholder.
+     *
+     * @return true if rendering this template may yield a string different to its source
+     */
+    public boolean hasPlaceholders() {
+        return segments.length > 1 || (segments.length == 1 && segments[0] instanceof Placeholder);
+    }
+
+    /**
+     * Renders this template, replacing the placeholders with the values returned by the given lookup function.
+     *
+     * @param properties {@code Function<String, String>} returning the value of a property or null if the property is
+     *                   not defined
+     * @return {@code String} rendered string
+     * @throws IllegalArgumentException if a property value refers back to itself
+     */
+    public String render(Function<String, String> properties) {
+        if (!hasPlaceholders()) {
+            return getText();
+        }
+        StringBuilder builder = new StringBuilder(source.length() + 16);
+        render(segments, builder, properties, new ArrayDeque<>());
+        return builder.toString();
+    }
+
+    /**
+     * Returns the string this template was compiled from.
+     *
+     * @return {@code String}
+     */
+    @Override
+    public String toString() {
+        return source;
+    }
+
+    /**
+     * Returns the text of a template without placeholders, which differs from its source if it contains escaped
+     * placeholders.
+     */
+    private String getText() {
+        return segments.length == 0 ? "" : ((Literal) segments[0]).text;
+    }
+
+    private static void render(Segment[] segments, StringBuilder builder, Function<String, String> properties,
+                               Deque<String> expanding) {
+        for (Segment segment : segments) {
+            segment.render(builder, properties, expanding);
+        }
+    }
+
+    /**
+     * Parses the given region of the template into segments.
+     */
+    private static List<Segment> parse(String template, int start, int end) {
+        List<Segment> segments = new ArrayList<>();
+        StringBuilder literal = new StringBuilder();
+        int position = start;
+        while (position < end) {
+            int placeholder = template.indexOf(PLACEHOLDER_START, position);
+            if (placeholder < 0 || placeholder >= end - 1) {
+                literal.append(template, position, end);
+                break;
+            }
+            int close = findPlaceholderEnd(template, placeholder + 2, end);
+            if (placeholder > position && template.charAt(placeholder - 1) == ESCAPE) {
+                // An escaped placeholder is kept as text without its escape, including any placeholder within it.
+                literal.append(template, position, placeholder - 1);
+                int literalEnd = close < 0 ? placeholder + 2 : close + 1;
+                literal.append(template, placeholder, literalEnd);
+                position = literalEnd;
+                continue;
+            }
+            if (close < 0) {
+                // An unterminated placeholder is kept as text, but placeholders within it are still resolved.
+                literal.append(template, position, placeholder + 2);
+                position = placeholder + 2;
+                continue;
+            }
+            literal.append(template, position, placeholder);
+            if (literal.length() > 0) {
+                segments.add(new Literal(literal.toString()));
+                literal.setLength(0);
+            }
+            segments.add(createPlaceholder(template, placeholder, close));
+            position = close + 1;
+        }
+        if (literal.length() > 0) {
+            segments.add(new Literal(literal.toString()));
+        }
+        return segments;
+    }
+
+    private static Placeholder createPlaceholder(String template, int start, int close) {
+        int bodyStart = start + 2;
+        int separator = findDefaultSeparator(template, bodyStart, close);
+        List<Segment> key = parse(template, bodyStart, separator < 0 ? close : separator);
+        List<Segment> defaultValue = separator < 0 ? null :
+                parse(template, separator + DEFAULT_SEPARATOR.length(), close);
+        return new Placeholder(template.substring(start, close + 1), key, defaultValue);
+    }
+
+    /**
+     * Returns the index of the '}' closing the placeholder whose body starts at the given index, taking nested
+     * placeholders into account, or -1 if the placeholder is not closed.
+     */
+    private static int findPlaceholderEnd(String template, int bodyStart, int end) {
+        int depth = 0;
+        for (int i = bodyStart; i < end; i++) {
+            char c = template.charAt(i);
+            if (c == '$' && i + 1 < end && template.charAt(i + 1) == '{') {
+                depth++;
+                i++;
+            } else if (c == PLACEHOLDER_END) {
+                if (depth == 0) {
+                    return i;
+                }
+                depth--;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the index of the ":-" separating the key and the default value of a placeholder body, ignoring any
+     * separator within nested placeholders, or -1 if the placeholder does not have a default value.
+     */
+    private static int findDefaultSeparator(String template, int start, int end) {
+        int depth = 0;
+        for (int i = start; i < end - 1; i++) {
+            char c = template.charAt(i);
+            if (c == '$' && template.charAt(i + 1) == '{') {
+                depth++;
+                i++;
+            } else if (c == PLACEHOLDER_END) {
+                depth--;
+            } else if (depth == 0 && template.startsWith(DEFAULT_SEPARATOR, i)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Part of a compiled template.
+     */
+    private interface Segment {
+
+        void render(StringBuilder builder, Function<String, String> properties, Deque<String> expanding);
+    }
+
+    /**
+     * Text which is copied as it is.
+     */
+    private static final class Literal implements Segment {
+
+        private final String text;
+
+        Literal(String text) {
+            this.text = text;
+        }
+
+        @Override
+        public void render(StringBuilder builder, Function<String, String> properties, Deque<String> expanding) {
+            builder.append(text);
+        }
+    }
+
+    /**
+     * A ${key} or ${key:-default} placeholder.
+     */
+    private static final class Placeholder implements Segment {
+
+        private final String text;
+        private final Segment[] key;
+        private final Segment[] defaultValue;
+
+        Placeholder(String text, List<Segment> key, List<Segment> defaultValue) {
+            this.text = text;
+            this.key = key.toArray(new Segment[key.size()]);
+            this.defaultValue = defaultValue == null ? null : defaultValue.toArray(new Segment[defaultValue.size()]);
+        }
+
+        @Override
+        public void render(StringBuilder builder, Function<String, String> properties, Deque<String> expanding) {
+            String name;
+            if (key.length == 1 && key[0] instanceof Literal) {
+                name = ((Literal) key[0]).text;
+            } else {
+                StringBuilder keyBuilder = new StringBuilder();
+                PropertyTemplate.render(key, keyBuilder, properties, expanding);
+                name = keyBuilder.toString();
+            }
+
+            String value = properties.apply(name);
+            if (value != null) {
+                if (expanding.contains(name)) {
+                    throw new IllegalArgumentException("Cyclic property reference: " +
+                            String.join(" -> ", (Iterable<String>) expanding::descendingIterator) + " -> " + name);
+                }
+                PropertyTemplate valueTemplate = compile(value);
+                if (valueTemplate.hasPlaceholders()) {
+                    expanding.push(name);
+                    PropertyTemplate.render(valueTemplate.segments, builder, properties, expanding);
+                    expanding.pop();
+                } else {
+                    builder.append(valueTemplate.getText());
+                }
+            } else if (defaultValue != null) {
+                PropertyTemplate.render(defaultValue, builder, properties, expanding);
+            } else {
+                builder.append(text);
+            }
+        }
+    }
+}
@@ -0,0 +1,408 @@
+/*
+ *  Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.wso2.maven.p2.utils;
+
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
+import org.apache.maven.plugin.logging.Log;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.Deflater;
+
+/**
+ * Archives a generated repository as a zip, or as a tar compressed with Zstandard or XZ.
+ * <p>
+ * The tar formats stream the repository directory into the archive. The tar stream is cut into blocks which are
+ * compressed in parallel on a worker pool and written in order, each block as an independent XZ stream or Zstandard
+ * frame. Both formats allow concatenated streams, so the archive is read by the standard tools as a single tar. The
+ * codecs are looked up at runtime, so {@code com.github.luben:zstd-jni} or {@code org.tukaani:xz} has to be added as a
+ * dependency of the plugin to write the corresponding format.
+ * </p>
+ * <p>
+ * The memory held by the compression is bounded by a limit, independently of the number of threads: each block in
+ * flight holds its data and its compressed data, and each compressing thread holds an encoder. The number of threads
+ * and of blocks in flight is reduced until they fit the limit, down to a single block compressed on one thread.
+ * </p>
+ *
+ * @since 2.1.1
+ */
+public class RepositoryArchiver {
+
+    public static final String ZIP = "zip";
+    public static final String TAR_ZST = "tar.zst";
+    public static final String TAR_XZ = "tar.xz";
+
+    private static final String ZSTD = "com.github.luben.zstd.Zstd";
+    private static final int BLOCK_SIZE = 16 * 1024 * 1024;
+    private static final long MEGABYTE = 1024 * 1024;
+
+    /**
+     * Window log, chain log, hash log and strategy of the Zstandard levels 1 to 22, as defined by the default
+     * compression parameters of zstd for inputs larger than 256 KB. The strategies are numbered as in zstd, from 1 for
+     * fast to 9 for btultra2, 2 being dfast and 6 btlazy2, the first binary tree strategy.
+     */
+    private static final int[][] ZSTD_PARAMETERS = {
+            {19, 13, 14, 1}, {20, 15, 16, 1}, {21, 16, 17, 2}, {21, 18, 18, 2}, {21, 18, 19, 3}, {21, 18, 19, 4},
+            {21, 19, 20, 4}, {21, 19, 20, 5}, {22, 20, 21, 5}, {22, 21, 22, 5}, {22, 21, 22, 5}, {22, 22, 23, 5},
+            {22, 22, 22, 6}, {22, 22, 23, 6}, {22, 23, 23, 6}, {22, 22, 22, 7}, {23, 23, 22, 7}, {23, 23, 22, 8},
+            {23, 24, 22, 9}, {25, 25, 23, 9}, {26, 26, 24, 9}, {27, 27, 25, 9}};
+    private static final int ZSTD_FAST = 1;
+    private static final int ZSTD_BTLAZY2 = 6;
+    /**
+     * Memory of a Zstandard context besides its match tables: the sequence store of a 128 KB block and, for the
+     * binary tree strategies, the tables of the optimal parser, rounded up.
+     */
+    private static final long ZSTD_WORKSPACE = MEGABYTE;
+
+    private final String format;
+    private final int level;
+    private final int threads;
+    private final long memoryLimit;
+    private final Log log;
+
+    /**
+     * Constructs a RepositoryArchiver.
+     *
+     * @param format      archive format, one of {@code zip}, {@code tar.zst} and {@code tar.xz}
+     * @param level       compression level, 0 to 9 for zip and XZ and 1 to 22 for Zstandard. -1 uses the default of
+     *                    the format
+     * @param threads     number of threads compressing the archive. 0 or less uses one thread per available processor
+     * @param memoryLimit memory the compression of the tar formats may hold, in megabytes. 0 or less uses a quarter of
+     *                    the maximum heap size
+     * @param log         {@link Log}
+     * @throws IllegalArgumentException if the format or the level is not supported
+     */
+    public RepositoryArchiver(String format, int level, int threads, int memoryLimit, Log log) {
+        this.format = format == null ? ZIP : format.trim().toLowerCase(Locale.ENGLISH);
+        if (TAR_ZST.equals(this.format)) {
+            this.level = level < 0 ? 3 : checkLevel(level, 1, 22);
+        } else if (TAR_XZ.equals(this.format)) {
+            this.level = level < 0 ? 6 : checkLevel(level, 0, 9);
+        } else if (ZIP.equals(this.format)) {
+            this.level = level < 0 ? Deflater.DEFAULT_COMPRESSION : checkLevel(level, 0, 9);
+        } else {
+            throw new IllegalArgumentException("Unsupported archive format " + format + ", expected one of " + ZIP +
+                    ", " + TAR_ZST + " and " + TAR_XZ);
+        }
+        this.threads = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        this.memoryLimit = memoryLimit > 0 ? memoryLimit * MEGABYTE : Runtime.getRuntime().maxMemory() / 4;
+        this.log = log;
+    }
+
+    /**
+     * Returns the extension of the archive files written in the format of this archiver.
+     *
+     * @return {@code String}
+     */
+    public String getExtension() {
+        return format;
+    }
+
+    /**
+     * Returns the maven coordinates of the library providing the codec of the format of this archiver.
+     *
+     * @return {@code String} groupId:artifactId, or null if the format needs no additional library
+     */
+    public String getCodecDependency() {
+        return TAR_ZST.equals(format) ? "com.github.luben:zstd-jni" : TAR_XZ.equals(format) ? XzCodec.DEPENDENCY : null;
+    }
+
+    /**
+     * Returns whether the codec of the format of this archiver is available to the plugin.
+     *
+     * @return true if the archive can be written
+     */
+    public boolean isAvailable() {
+        if (TAR_XZ.equals(format)) {
+            return XzCodec.isAvailable();
+        }
+        if (!TAR_ZST.equals(format)) {
+            return true;
+        }
+        try {
+            Class.forName(ZSTD, false, RepositoryArchiver.class.getClassLoader());
+            return true;
+        } catch (ClassNotFoundException | LinkageError e) {
+            return false;
+        }
+    }
+
+    /**
+     * Archives the content of the given directory into the given file.
+     *
+     * @param directory   {@link File} directory of the repository
+     * @param archiveFile {@link File} archive file to write
+     * @throws IOException if the repository cannot be read or the archive cannot be written
+     */
+    public void archive(File directory, File archiveFile) throws IOException {
+        long start = System.nanoTime();
+        if (ZIP.equals(format)) {
+            FileManagementUtil.zipFolder(directory.toString(), archiveFile.toString(), level, log);
+            log.info("Archived the repository into " + formatMegabytes(archiveFile.length()) + " MB in " +
+                    formatSeconds(System.nanoTime() - start) + " s");
+            return;
+        }
+        Path root = directory.toPath();
+        List<Path> paths;
+        try (Stream<Path> walk = Files.walk(root)) {
+            paths = walk.filter(path -> !path.equals(root)).sorted().collect(Collectors.toList());
+        }
+        // every block in flight holds its data and its compressed data, every thread an encoder
+        long blockMemory = 2L * BLOCK_SIZE;
+        long encoderMemory = TAR_XZ.equals(format) ? XzCodec.getEncoderMemoryUsage(level) :
+                getZstdEncoderMemoryUsage(level, BLOCK_SIZE);
+        int workers = (int) Math.max(1, Math.min(threads, memoryLimit / (blockMemory + encoderMemory)));
+        int inFlight = (int) Math.max(workers, Math.min(2L * workers,
+                (memoryLimit - workers * encoderMemory) / blockMemory));
+        log.debug("Compressing the archive on " + workers + " thread(s) with up to " + inFlight + " block(s) in " +
+                "flight, within " + (memoryLimit / MEGABYTE) + " MB");
+        CountingOutputStream fileStream = new CountingOutputStream(Files.newOutputStream(archiveFile.toPath()));
+        BlockCompressorOutputStream compressor = new BlockCompressorOutputStream(fileStream, workers, inFlight);
+        try (TarArchiveOutputStream tar = new TarArchiveOutputStream(new BufferedOutputStream(compressor, 64 * 1024))) {
+            tar.setLongFileMode(TarArchiveOutputStream.LONGFILE_POSIX);
+            tar.setBigNumberMode(TarArchiveOutputStream.BIGNUMBER_POSIX);
+            for (Path path : paths) {
+                String name = root.relativize(path).toString().replace(File.separatorChar, '/');
+                boolean isDirectory = Files.isDirectory(path);
+                TarArchiveEntry entry = new TarArchiveEntry(path.toFile(), isDirectory ? name + "/" : name);
+                tar.putArchiveEntry(entry);
+                if (!isDirectory) {
+                    Files.copy(path, tar);
+                }
+                tar.closeArchiveEntry();
+            }
+        } finally {
+            compressor.shutdown();
+        }
+        long nanos = System.nanoTime() - start;
+        long bytes = compressor.getUncompressedBytes();
+        log.info("Archived " + paths.size() + " entries, " + formatMegabytes(bytes) + " MB, into " +
+                formatMegabytes(fileStream.count) + " MB (" + format + ", level " + level + ") in " +
+                formatSeconds(nanos) + " s, " + formatMegabytes(nanos > 0 ? (long) (bytes * 1e9 / nanos) : 0) +
+                " MB/s on " + workers + " thread(s)");
+    }
+
+    private byte[] compress(byte[] block, int length) throws IOException {
+        ClassLoader classLoader = RepositoryArchiver.class.getClassLoader();
+        try {
+            if (TAR_ZST.equals(format)) {
+                byte[] input = length == block.length ? block : Arrays.copyOf(block, length);
+                return (byte[]) Class.forName(ZSTD, true, classLoader).getMethod("compress", byte[].class, int.class)
+                        .invoke(null, input, level);
+            }
+            ByteArrayOutputStream outputStream = new ByteArrayOutputStream(length / 4 + 64);
+            try (OutputStream xz = XzCodec.newOutputStream(outputStream, level)) {
+                xz.write(block, 0, length);
+            }
+            return outputStream.toByteArray();
+        } catch (InvocationTargetException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IOException("Failed to compress the archive as " + format, cause);
+        } catch (ReflectiveOperationException | LinkageError e) {
+            throw new IOException("The " + format + " archive format requires " + getCodecDependency() +
+                    " as a dependency of the plugin", e);
+        }
+    }
+
+    /**
+     * Returns the memory a Zstandard context of the given level allocates to compress a block of the given size in a
+     * single call. The window is the block itself, so the memory is that of the match tables, whose sizes zstd
+     * bounds by the window: the window log is reduced to the size of the block, the hash log to one more than the
+     * window log, and the chain log so that the chain, half of it for the binary tree strategies, fits the window.
+     * The fast strategy has no chain table. It is an upper bound for the greedy and lazy strategies, whose row based
+     * match finder allocates a smaller tag table in place of the chain table.
+     *
+     * @param level     Zstandard level, 1 to 22
+     * @param blockSize size of the blocks compressed, in bytes
+     * @return memory in bytes
+     */
+    static long getZstdEncoderMemoryUsage(int level, int blockSize) {
+        int[] parameters = ZSTD_PARAMETERS[level - 1];
+        int windowLog = Math.min(parameters[0], 32 - Integer.numberOfLeadingZeros(blockSize - 1));
+        int hashLog = Math.min(parameters[2], windowLog + 1);
+        int chainLog = parameters[1];
+        int cycleLog = parameters[3] >= ZSTD_BTLAZY2 ? chainLog - 1 : chainLog;
+        if (cycleLog > windowLog) {
+            chainLog -= cycleLog - windowLog;
+        }
+        long memory = (4L << hashLog) + ZSTD_WORKSPACE;
+        if (parameters[3] != ZSTD_FAST) {
+            memory += 4L << chainLog;
+        }
+        return memory;
+    }
+
+    private static int checkLevel(int level, int minimum, int maximum) {
+        if (level < minimum || level > maximum) {
+            throw new IllegalArgumentException("Compression level " + level + " is out of the range " + minimum +
+                    " to " + maximum);
+        }
+        return level;
+    }
+
+    private static String formatMegabytes(long bytes) {
+        return String.format(Locale.ROOT, "%.1f", bytes / (1024.0 * 1024.0));
+    }
+
+    private static String formatSeconds(long nanos) {
+        return String.format(Locale.ROOT, "%.2f", nanos / 1e9);
+    }
+
+    /**
+     * Stream counting the bytes written to the underlying stream.
+     */
+    private static final class CountingOutputStream extends FilterOutputStream {
+
+        private long count;
+
+        private CountingOutputStream(OutputStream outputStream) {
+            super(outputStream);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+    }
+
+    /**
+     * Stream cutting the data written to it into blocks, which are compressed on a worker pool and written to the
+     * underlying stream in order. At most the given number of blocks are held in memory, besides the one being filled.
+     */
+    private final class BlockCompressorOutputStream extends OutputStream {
+
+        private final OutputStream outputStream;
+        private final ExecutorService executor;
+        private final int inFlight;
+        private final Deque<Future<byte[]>> pending = new ArrayDeque<>();
+        private byte[] block = new byte[BLOCK_SIZE];
+        private int position;
+        private long uncompressedBytes;
+        private boolean closed;
+
+        private BlockCompressorOutputStream(OutputStream outputStream, int workers, int inFlight) {
+            this.outputStream = outputStream;
+            this.executor = Executors.newFixedThreadPool(workers);
+            this.inFlight = inFlight;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            while (len > 0) {
+                int count = Math.min(len, block.length - position);
+                System.arraycopy(b, off, block, position, count);
+                position += count;
+                off += count;
+                len -= count;
+                if (position == block.length) {
+                    submit();
+                }
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            try {
+                if (position > 0) {
+                    submit();
+                }
+                while (!pending.isEmpty()) {
+                    writeNext();
+                }
+            } finally {
+                outputStream.close();
+            }
+        }
+
+        private void submit() throws IOException {
+            byte[] data = block;
+            int length = position;
+            uncompressedBytes += length;
+            pending.add(executor.submit(() -> compress(data, length)));
+            block = new byte[BLOCK_SIZE];
+            position = 0;
+            while (pending.size() >= inFlight) {
+                writeNext();
+            }
+        }
+
+        private void writeNext() throws IOException {
+            Future<byte[]> next = pending.poll();
+            if (next == null) {
+                return;
+            }
+            try {
+                outputStream.write(next.get());
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof IOException) {
+                    throw (IOException) cause;
+                }
+                throw new IOException("Failed to compress the archive as " + format, cause);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while compressing the archive", e);
+            }
+        }
+
+        private long getUncompressedBytes() {
+            return uncompressedBytes;
+        }
+
+        private void shutdown() {
+            executor.shutdownNow();
+        }
+    }
+}
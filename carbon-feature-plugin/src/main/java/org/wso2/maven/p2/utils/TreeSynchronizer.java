@@ -0,0 +1,363 @@
+/*
+ *  Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.wso2.maven.p2.utils;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Predicate;
+
+/**
+ * Synchronizes the files of a directory tree into another directory, copying only the files which are new or changed.
+ * <p>
+ * A target file is taken as unchanged when its size and modification time match those of the source file, or, when
+ * comparing content, when its bytes match. Copied files keep the modification time of the source file, so that the
+ * next synchronization skips them. The copies run in parallel on a worker pool.
+ * </p>
+ * <p>
+ * Symbolic links to directories are not followed, which keeps links pointing outside of the source tree or back into
+ * it from being copied. Symbolic links to files are copied as regular files holding the content of the linked file.
+ * Symbolic links found in the target tree are replaced rather than written through. Files removed from the source tree
+ * are deleted from the target tree by {@link #deleteStale(File, Collection)}, which only deletes files recorded by a
+ * previous synchronization, since the target directory may hold files of other origins.
+ * </p>
+ *
+ * @since 2.1.1
+ */
+public class TreeSynchronizer {
+
+    private static final int COMPARE_BUFFER = 64 * 1024;
+
+    private final int threads;
+    private final boolean compareContent;
+
+    /**
+     * Constructs a TreeSynchronizer.
+     *
+     * @param threads        number of threads copying files. 0 or less uses one thread per available processor
+     * @param compareContent whether to compare the bytes of files whose size matches but modification time does not,
+     *                       rather than copying them
+     */
+    public TreeSynchronizer(int threads, boolean compareContent) {
+        this.threads = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        this.compareContent = compareContent;
+    }
+
+    /**
+     * Synchronizes the files under the source directory into the target directory. Target files which have no source
+     * file are left as they are.
+     *
+     * @param source  {@link File} source directory
+     * @param target  {@link File} target directory, created if it does not exist
+     * @param include {@link Predicate} selecting files by their path relative to the source directory, or null to
+     *                synchronize every file and directory
+     * @return {@link Result}
+     * @throws IOException if the source tree cannot be read or a file cannot be copied
+     */
+    public Result synchronize(File source, File target, Predicate<String> include) throws IOException {
+        Path sourceRoot = source.toPath();
+        Path targetRoot = target.toPath();
+        Result result = new Result();
+        List<Path> copies = new ArrayList<>();
+        createDirectory(targetRoot);
+        Files.walkFileTree(sourceRoot, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                if (include == null && !dir.equals(sourceRoot)) {
+                    createDirectory(targetRoot.resolve(sourceRoot.relativize(dir).toString()));
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                String path = sourceRoot.relativize(file).toString();
+                if (include != null && !include.test(path)) {
+                    return FileVisitResult.CONTINUE;
+                }
+                BasicFileAttributes fileAttrs = attrs;
+                if (attrs.isSymbolicLink()) {
+                    try {
+                        fileAttrs = Files.readAttributes(file, BasicFileAttributes.class);
+                    } catch (NoSuchFileException e) {
+                        result.skippedLinks.add(path);
+                        return FileVisitResult.CONTINUE;
+                    }
+                }
+                if (!fileAttrs.isRegularFile()) {
+                    if (attrs.isSymbolicLink()) {
+                        result.skippedLinks.add(path);
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+                result.files.add(path);
+                if (isUnchanged(file, fileAttrs, targetRoot.resolve(path))) {
+                    result.unchanged++;
+                } else {
+                    copies.add(file);
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        copy(sourceRoot, targetRoot, copies);
+        result.copied = copies.size();
+        return result;
+    }
+
+    /**
+     * Deletes the given files from the target directory, along with the directories left empty by deleting them.
+     * Intended for the files recorded by a previous synchronization which the current one no longer produced.
+     *
+     * @param target {@link File} target directory
+     * @param paths  {@link Collection} of file paths relative to the target directory
+     * @return number of files deleted
+     * @throws IOException if a file cannot be deleted
+     */
+    public int deleteStale(File target, Collection<String> paths) throws IOException {
+        Path targetRoot = target.toPath().toAbsolutePath().normalize();
+        int deleted = 0;
+        for (String path : paths) {
+            Path file = targetRoot.resolve(path).normalize();
+            if (!file.startsWith(targetRoot) || file.equals(targetRoot) ||
+                    Files.isDirectory(file, LinkOption.NOFOLLOW_LINKS)) {
+                continue;
+            }
+            if (Files.deleteIfExists(file)) {
+                deleted++;
+                Path parent = file.getParent();
+                while (parent != null && !parent.equals(targetRoot) && isEmptyDirectory(parent)) {
+                    Files.delete(parent);
+                    parent = parent.getParent();
+                }
+            }
+        }
+        return deleted;
+    }
+
+    /**
+     * Reads a list of synchronized files written by {@link #writeFileList(File, File, Collection)}. Returns an empty
+     * list when the file does not exist or was written for another target directory.
+     *
+     * @param listFile {@link File} file holding the list
+     * @param target   {@link File} target directory the files were synchronized into
+     * @return {@link List} of file paths relative to the target directory
+     * @throws IOException if the list cannot be read
+     */
+    public static List<String> readFileList(File listFile, File target) throws IOException {
+        if (!listFile.isFile()) {
+            return Collections.emptyList();
+        }
+        List<String> lines = Files.readAllLines(listFile.toPath(), StandardCharsets.UTF_8);
+        if (lines.isEmpty() || !lines.get(0).equals(target.getAbsolutePath())) {
+            return Collections.emptyList();
+        }
+        return lines.subList(1, lines.size());
+    }
+
+    /**
+     * Writes a list of the files synchronized into the given target directory.
+     *
+     * @param listFile {@link File} file to write the list to
+     * @param target   {@link File} target directory the files were synchronized into
+     * @param paths    {@link Collection} of file paths relative to the target directory
+     * @throws IOException if the list cannot be written
+     */
+    public static void writeFileList(File listFile, File target, Collection<String> paths) throws IOException {
+        List<String> lines = new ArrayList<>(paths.size() + 1);
+        lines.add(target.getAbsolutePath());
+        lines.addAll(paths);
+        Files.createDirectories(listFile.getAbsoluteFile().getParentFile().toPath());
+        Files.write(listFile.toPath(), lines, StandardCharsets.UTF_8);
+    }
+
+    private boolean isUnchanged(Path source, BasicFileAttributes sourceAttrs, Path target) throws IOException {
+        BasicFileAttributes targetAttrs;
+        try {
+            targetAttrs = Files.readAttributes(target, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+        } catch (NoSuchFileException e) {
+            return false;
+        }
+        if (!targetAttrs.isRegularFile() || targetAttrs.size() != sourceAttrs.size()) {
+            return false;
+        }
+        if (targetAttrs.lastModifiedTime().toMillis() == sourceAttrs.lastModifiedTime().toMillis()) {
+            return true;
+        }
+        if (compareContent && contentEquals(source, target)) {
+            Files.setLastModifiedTime(target, sourceAttrs.lastModifiedTime());
+            return true;
+        }
+        return false;
+    }
+
+    private void copy(Path sourceRoot, Path targetRoot, List<Path> files) throws IOException {
+        if (files.size() < 2 || threads == 1) {
+            for (Path file : files) {
+                copyFile(file, targetRoot.resolve(sourceRoot.relativize(file).toString()));
+            }
+            return;
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, files.size()));
+        try {
+            List<Future<Void>> futures = new ArrayList<>(files.size());
+            for (Path file : files) {
+                Path target = targetRoot.resolve(sourceRoot.relativize(file).toString());
+                futures.add(executor.submit(() -> {
+                    copyFile(file, target);
+                    return null;
+                }));
+            }
+            for (Future<Void> future : futures) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    if (cause instanceof IOException) {
+                        throw (IOException) cause;
+                    }
+                    throw new IOException("Failed to copy files to " + targetRoot, cause);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted while copying files to " + targetRoot, e);
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static void copyFile(Path source, Path target) throws IOException {
+        Path parent = target.toAbsolutePath().getParent();
+        if (parent != null) {
+            createDirectory(parent);
+        }
+        Files.copy(source, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.COPY_ATTRIBUTES);
+    }
+
+    /**
+     * Creates the given directory, replacing a symbolic link or file in its place so that nothing is written through
+     * a link in the target tree.
+     */
+    private static void createDirectory(Path directory) throws IOException {
+        if (Files.isDirectory(directory, LinkOption.NOFOLLOW_LINKS)) {
+            return;
+        }
+        if (Files.isSymbolicLink(directory) || Files.isRegularFile(directory, LinkOption.NOFOLLOW_LINKS)) {
+            Files.deleteIfExists(directory);
+        }
+        Files.createDirectories(directory);
+    }
+
+    private static boolean isEmptyDirectory(Path directory) throws IOException {
+        if (!Files.isDirectory(directory, LinkOption.NOFOLLOW_LINKS)) {
+            return false;
+        }
+        String[] children = directory.toFile().list();
+        return children != null && children.length == 0;
+    }
+
+    private static boolean contentEquals(Path first, Path second) throws IOException {
+        try (InputStream firstStream = new BufferedInputStream(Files.newInputStream(first), COMPARE_BUFFER);
+             InputStream secondStream = new BufferedInputStream(Files.newInputStream(second), COMPARE_BUFFER)) {
+            byte[] firstBuffer = new byte[COMPARE_BUFFER];
+            byte[] secondBuffer = new byte[COMPARE_BUFFER];
+            while (true) {
+                int read = readFully(firstStream, firstBuffer);
+                if (read != readFully(secondStream, secondBuffer)) {
+                    return false;
+                }
+                if (read == 0) {
+                    return true;
+                }
+                for (int i = 0; i < read; i++) {
+                    if (firstBuffer[i] != secondBuffer[i]) {
+                        return false;
+                    }
+                }
+            }
+        }
+    }
+
+    private static int readFully(InputStream inputStream, byte[] buffer) throws IOException {
+        int total = 0;
+        while (total < buffer.length) {
+            int read = inputStream.read(buffer, total, buffer.length - total);
+            if (read < 0) {
+                break;
+            }
+            total += read;
+        }
+        return total;
+    }
+
+    /**
+     * Outcome of a synchronization.
+     */
+    public static class Result {
+
+        private final Set<String> files = new LinkedHashSet<>();
+        private final List<String> skippedLinks = new ArrayList<>();
+        private int copied;
+        private int unchanged;
+
+        /**
+         * Returns the paths, relative to the target directory, of the files synchronized, whether copied or unchanged.
+         *
+         * @return {@link Set}
+         */
+        public Set<String> getFiles() {
+            return files;
+        }
+
+        /**
+         * Returns the paths of symbolic links which were not synchronized, being links to directories or dangling.
+         *
+         * @return {@link List}
+         */
+        public List<String> getSkippedLinks() {
+            return skippedLinks;
+        }
+
+        public int getCopied() {
+            return copied;
+        }
+
+        public int getUnchanged() {
+            return unchanged;
+        }
+    }
+}
@@ -0,0 +1,162 @@
+/*
+ *  Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.wso2.maven.p2.utils;
+
+import java.util.Collections;
+import java.util.NavigableMap;
+
+/**
+ * Immutable interval of OSGi versions.
+ * <p>
+ * A range is either written in the OSGi interval notation, i.e. {@code [1.0.0,2.0.0)}, or derived from a version and
+ * one of the feature match rules; <i>perfect</i>, <i>equivalent</i>, <i>compatible</i> and <i>greaterOrEqual</i>.
+ * </p>
+ *
+ * @since 2.1.1
+ */
+public final class VersionRange {
+
+    private final OsgiVersion minimum;
+    private final boolean minimumInclusive;
+    private final OsgiVersion maximum;
+    private final boolean maximumInclusive;
+
+    /**
+     * Constructs a VersionRange.
+     *
+     * @param minimum          lower bound of the range
+     * @param minimumInclusive whether the lower bound is included in the range
+     * @param maximum          upper bound of the range, null if the range is not bounded above
+     * @param maximumInclusive whether the upper bound is included in the range
+     */
+    public VersionRange(OsgiVersion minimum, boolean minimumInclusive, OsgiVersion maximum,
+                        boolean maximumInclusive) {
+        if (minimum == null) {
+            throw new IllegalArgumentException("Lower bound of a version range cannot be null");
+        }
+        if (maximum != null && minimum.compareTo(maximum) > 0) {
+            throw new IllegalArgumentException("Lower bound " + minimum + " is greater than the upper bound " +
+                    maximum);
+        }
+        this.minimum = minimum;
+        this.minimumInclusive = minimumInclusive;
+        this.maximum = maximum;
+        this.maximumInclusive = maximum != null && maximumInclusive;
+    }
+
+    /**
+     * Returns whether the given version string is written in the interval notation.
+     *
+     * @param version {@code String} version or version range
+     * @return true if the given string is a version range
+     */
+    public static boolean isRange(String version) {
+        if (version == null) {
+            return false;
+        }
+        String trimmed = version.trim();
+        return !trimmed.isEmpty() && (trimmed.charAt(0) == '[' || trimmed.charAt(0) == '(');
+    }
+
+    /**
+     * Parses a version range written in the interval notation, i.e. {@code [1.0.0,2.0.0)}. The bounds may be given
+     * either in maven or OSGi format.
+     *
+     * @param range {@code String} version range
+     * @return {@link VersionRange}
+     * @throws IllegalArgumentException if the given string is not a valid version range
+     */
+    public static VersionRange parse(String range) {
+        if (!isRange(range)) {
+            throw new IllegalArgumentException("Invalid version range: " + range);
+        }
+        String trimmed = range.trim();
+        char last = trimmed.charAt(trimmed.length() - 1);
+        int separator = trimmed.indexOf(',');
+        if ((last != ']' && last != ')') || separator < 0 || separator != trimmed.lastIndexOf(',')) {
+            throw new IllegalArgumentException("Invalid version range: " + range);
+        }
+        String lower = trimmed.substring(1, separator).trim();
+        String upper = trimmed.substring(separator + 1, trimmed.length() - 1).trim();
+        if (lower.isEmpty()) {
+            throw new IllegalArgumentException("Missing lower bound in version range: " + range);
+        }
+        return new VersionRange(OsgiVersion.valueOf(lower), trimmed.charAt(0) == '[',
+                upper.isEmpty() ? null : OsgiVersion.valueOf(upper), last == ']');
+    }
+
+    /**
+     * Returns the range of versions satisfying the given match rule for the given version. <i>patch</i> and
+     * <i>optional</i> are treated as <i>perfect</i>.
+     *
+     * @param version   {@link OsgiVersion} reference version
+     * @param matchRule {@code String} one of the match rules recognized by {@link P2Utils#getMatchRule(String)}
+     * @return {@link VersionRange}
+     * @throws IllegalArgumentException if the match rule is not recognized
+     */
+    public static VersionRange forMatchRule(OsgiVersion version, String matchRule) {
+        String rule = matchRule == null ? null : P2Utils.getMatchRule(matchRule);
+        if (rule == null) {
+            throw new IllegalArgumentException("Unknown match rule: " + matchRule);
+        }
+        switch (rule) {
+            case "equivalent":
+                return new VersionRange(version, true,
+                        new OsgiVersion(version.getMajor(), version.getMinor() + 1, 0, null), false);
+            case "compatible":
+                return new VersionRange(version, true, new OsgiVersion(version.getMajor() + 1, 0, 0, null), false);
+            case "greaterOrEqual":
+                return new VersionRange(version, true, null, false);
+            default:
+                return new VersionRange(version, true, version, true);
+        }
+    }
+
+    /**
+     * Returns the view of the given version-sorted map which contains only the keys within this range. The view is
+     * obtained in logarithmic time.
+     *
+     * @param versions {@code NavigableMap<OsgiVersion, T>} map sorted by version
+     * @param <T>      type of the values
+     * @return {@code NavigableMap<OsgiVersion, T>}
+     */
+    public <T> NavigableMap<OsgiVersion, T> select(NavigableMap<OsgiVersion, T> versions) {
+        if (maximum == null) {
+            return versions.tailMap(minimum, minimumInclusive);
+        }
+        if (minimum.equals(maximum) && !(minimumInclusive && maximumInclusive)) {
+            return Collections.emptyNavigableMap();
+        }
+        return versions.subMap(minimum, minimumInclusive, maximum, maximumInclusive);
+    }
+
+    /**
+     * Returns this range in the format of p2 metadata, in which a range including its lower bound and not bounded
+     * above is written as its lower bound.
+     *
+     * @return {@code String}
+     */
+    public String toMetadataString() {
+        return maximum == null && minimumInclusive ? minimum.toString() : toString();
+    }
+
+    @Override
+    public String toString() {
+        return (minimumInclusive ? "[" : "(") + minimum + "," + (maximum == null ? "" : maximum.toString()) +
+                (maximumInclusive ? "]" : ")");
+    }
+}
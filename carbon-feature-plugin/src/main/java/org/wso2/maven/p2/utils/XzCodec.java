@@ -0,0 +1,128 @@
+/*
+ *  Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.wso2.maven.p2.utils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.InvocationTargetException;
+
+/**
+ * XZ streams of the XZ for Java library ({@code org.tukaani:xz}), which is not shipped with the plugin and is looked
+ * up at runtime when it is added as a dependency of the plugin.
+ *
+ * @since 2.1.1
+ */
+public final class XzCodec {
+
+    /**
+     * Maven coordinates of the XZ for Java library.
+     */
+    public static final String DEPENDENCY = "org.tukaani:xz";
+
+    private static final String XZ_OUTPUT_STREAM = "org.tukaani.xz.XZOutputStream";
+    private static final String XZ_INPUT_STREAM = "org.tukaani.xz.XZInputStream";
+    private static final String FILTER_OPTIONS = "org.tukaani.xz.FilterOptions";
+    private static final String LZMA2_OPTIONS = "org.tukaani.xz.LZMA2Options";
+
+    private XzCodec() {
+    }
+
+    /**
+     * Returns whether the XZ for Java library is available to the plugin.
+     *
+     * @return true if XZ streams can be created
+     */
+    public static boolean isAvailable() {
+        try {
+            Class.forName(XZ_OUTPUT_STREAM, false, XzCodec.class.getClassLoader());
+            return true;
+        } catch (ClassNotFoundException | LinkageError e) {
+            return false;
+        }
+    }
+
+    /**
+     * Returns a stream compressing the data written to it into the given stream as a single XZ stream.
+     *
+     * @param outputStream {@link OutputStream} to write the compressed data to, closed if the stream cannot be created
+     * @param preset       LZMA2 preset, 0 to 9. -1 uses the default preset of the library
+     * @return {@link OutputStream}
+     * @throws IOException if the library is not available or the stream cannot be created
+     */
+    public static OutputStream newOutputStream(OutputStream outputStream, int preset) throws IOException {
+        try {
+            ClassLoader classLoader = XzCodec.class.getClassLoader();
+            return (OutputStream) Class.forName(XZ_OUTPUT_STREAM, true, classLoader)
+                    .getConstructor(OutputStream.class, Class.forName(FILTER_OPTIONS, true, classLoader))
+                    .newInstance(outputStream, newOptions(preset));
+        } catch (ReflectiveOperationException | LinkageError e) {
+            outputStream.close();
+            throw failure(e);
+        }
+    }
+
+    /**
+     * Returns a stream decompressing the given XZ stream.
+     *
+     * @param inputStream {@link InputStream} of the compressed data, closed if the stream cannot be created
+     * @return {@link InputStream}
+     * @throws IOException if the library is not available or the stream cannot be created
+     */
+    public static InputStream newInputStream(InputStream inputStream) throws IOException {
+        try {
+            return (InputStream) Class.forName(XZ_INPUT_STREAM, true, XzCodec.class.getClassLoader())
+                    .getConstructor(InputStream.class).newInstance(inputStream);
+        } catch (ReflectiveOperationException | LinkageError e) {
+            inputStream.close();
+            throw failure(e);
+        }
+    }
+
+    /**
+     * Returns the memory an encoder of the given preset allocates, as estimated by the library.
+     *
+     * @param preset LZMA2 preset, 0 to 9. -1 uses the default preset of the library
+     * @return memory in bytes
+     * @throws IOException if the library is not available
+     */
+    public static long getEncoderMemoryUsage(int preset) throws IOException {
+        try {
+            Object options = newOptions(preset);
+            int kibibytes = (Integer) options.getClass().getMethod("getEncoderMemoryUsage").invoke(options);
+            return kibibytes * 1024L;
+        } catch (ReflectiveOperationException | LinkageError e) {
+            throw failure(e);
+        }
+    }
+
+    private static Object newOptions(int preset) throws ReflectiveOperationException {
+        Class<?> options = Class.forName(LZMA2_OPTIONS, true, XzCodec.class.getClassLoader());
+        return preset < 0 ? options.getConstructor().newInstance() :
+                options.getConstructor(int.class).newInstance(preset);
+    }
+
+    private static IOException failure(Throwable e) {
+        if (e instanceof InvocationTargetException) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                return (IOException) cause;
+            }
+        }
+        return new IOException("XZ compression requires " + DEPENDENCY + " as a dependency of the plugin", e);
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ *  Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.wso2.maven.p2.feature.generate.utils;
+
+import junit.framework.TestCase;
+import org.wso2.maven.p2.feature.generate.Advice;
+import org.wso2.maven.p2.utils.FileManagementUtil;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * Tests the index numbering and the failure handling of {@link P2InfMerger}.
+ */
+public class P2InfMergerTest extends TestCase {
+
+    private File directory;
+    private File p2Inf;
+    private final Properties properties = new Properties();
+
+    @Override
+    protected void setUp() throws Exception {
+        directory = Files.createTempDirectory("p2inf").toFile();
+        p2Inf = new File(directory, "p2.inf");
+        properties.setProperty("feature.version", "4.4.0");
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        FileManagementUtil.deleteDirectories(directory);
+    }
+
+    public void testAppendsAfterTheHighestPropertyIndex() throws Exception {
+        write("# properties.99.name=commented",
+                "properties.0.name=org.wso2.carbon.version",
+                "properties.0.value=${feature.version}",
+                "requires.7.namespace=org.eclipse.equinox.p2.iu",
+                "requires.7.name=org.wso2.carbon.core",
+                "instructions.configure=setStartLevel(startLevel:4);",
+                "units.12.id=org.wso2.carbon.config",
+                "units.12.version=${feature.version}",
+                "properties.4.name = spaced",
+                "PROPERTIES.3.value: upper case",
+                "description=text continued on \\",
+                "  properties.50.name=a continuation line",
+                "properties.x.name=not indexed");
+        new P2InfMerger(properties::getProperty).merge(p2Inf, advices("first", "second"));
+
+        List<String> expected = new ArrayList<>(Arrays.asList("# properties.99.name=commented",
+                "properties.0.name=org.wso2.carbon.version",
+                "properties.0.value=4.4.0",
+                "requires.7.namespace=org.eclipse.equinox.p2.iu",
+                "requires.7.name=org.wso2.carbon.core",
+                "instructions.configure=setStartLevel(startLevel:4);",
+                "units.12.id=org.wso2.carbon.config",
+                "units.12.version=4.4.0",
+                "properties.4.name = spaced",
+                "PROPERTIES.3.value: upper case",
+                "description=text continued on \\",
+                "  properties.50.name=a continuation line",
+                "properties.x.name=not indexed",
+                "",
+                "properties.5.name=first",
+                "properties.5.value=first-value",
+                "properties.6.name=second",
+                "properties.6.value=second-value"));
+        assertEquals(expected, read());
+    }
+
+    public void testStartsAtZeroWithoutProperties() throws Exception {
+        write("requires.3.namespace=org.eclipse.equinox.p2.iu", "units.1.id=unit");
+        new P2InfMerger(properties::getProperty).merge(p2Inf, advices("first"));
+        assertEquals(Arrays.asList("requires.3.namespace=org.eclipse.equinox.p2.iu", "units.1.id=unit", "",
+                "properties.0.name=first", "properties.0.value=first-value"), read());
+    }
+
+    public void testCreatesTheAdviceFile() throws Exception {
+        P2InfMerger merger = new P2InfMerger(properties::getProperty);
+        merger.merge(p2Inf, advices("first"));
+        assertEquals(Arrays.asList("", "properties.0.name=first", "properties.0.value=first-value"), read());
+
+        // the indices of a previous merge are not carried over
+        File other = new File(directory, "other.inf");
+        merger.merge(other, advices("other"));
+        assertEquals(Arrays.asList("", "properties.0.name=other", "properties.0.value=other-value"),
+                Files.readAllLines(other.toPath(), StandardCharsets.UTF_8));
+
+        File empty = new File(directory, "empty.inf");
+        merger.merge(empty, null);
+        assertEquals(0, empty.length());
+    }
+
+    public void testFailedMergeLeavesTheAdviceFileUntouched() throws Exception {
+        write("properties.0.name=cyclic", "properties.0.value=${a}");
+        byte[] original = Files.readAllBytes(p2Inf.toPath());
+        properties.setProperty("a", "${b}");
+        properties.setProperty("b", "${a}");
+        try {
+            new P2InfMerger(properties::getProperty).merge(p2Inf, advices("first"));
+            fail("a cyclic property was merged");
+        } catch (IllegalArgumentException expected) {
+            // the cycle is reported while the existing advice is copied
+        }
+        assertTrue(Arrays.equals(original, Files.readAllBytes(p2Inf.toPath())));
+        String[] files = directory.list();
+        assertNotNull(files);
+        assertEquals("the temporary file is left behind", Collections.singletonList("p2.inf"), Arrays.asList(files));
+    }
+
+    private void write(String... lines) throws Exception {
+        Files.write(p2Inf.toPath(), Arrays.asList(lines), StandardCharsets.UTF_8);
+    }
+
+    private List<String> read() throws Exception {
+        return Files.readAllLines(p2Inf.toPath(), StandardCharsets.UTF_8);
+    }
+
+    private static List<Advice> advices(String... names) {
+        List<Advice> advices = new ArrayList<>();
+        for (String name : names) {
+            Advice advice = new Advice();
+            advice.setName(name);
+            advice.setValue(name + "-value");
+            advices.add(advice);
+        }
+        return advices;
+    }
+}
@@ -0,0 +1,213 @@
+/*
+ *  Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.wso2.maven.p2.feature.install;
+
+import junit.framework.TestCase;
+import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.apache.maven.project.MavenProject;
+import org.wso2.maven.p2.feature.uninstall.FeatureUnInstaller;
+import org.wso2.maven.p2.utils.FileManagementUtil;
+import org.wso2.maven.p2.utils.RecordingP2ApplicationLauncher;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs install and uninstall flows of {@link FeatureInstaller} and {@link FeatureUnInstaller} concurrently on one
+ * destination. The director is replaced by a stub which records overlapping runs, and which edits the profile's
+ * config.ini and the shared agent area the way the director does, by reading, pausing and writing them back.
+ */
+public class FeatureInstallConcurrencyTest extends TestCase {
+
+    private static final int THREADS = 8;
+    private static final int FLOWS_PER_THREAD = 6;
+    private static final String[] PROFILES = {"default", "worker", "analytics", "api-store"};
+    private static final String DATA_AREA = "eclipse.p2.data.area";
+    private static final String RELATIVE_DATA_AREA = "@config.dir/../../p2/";
+    private static final String DIRECTOR_RUNS = "director.runs";
+
+    private final AtomicInteger runningDirectors = new AtomicInteger();
+    private final AtomicInteger overlappingRuns = new AtomicInteger();
+    // the threads report waiting for the locks many times
+    private final Log log = new SystemStreamLog() {
+        @Override
+        public void info(CharSequence content) {
+        }
+    };
+    private File destination;
+
+    @Override
+    protected void setUp() throws Exception {
+        destination = Files.createTempDirectory("p2-install").toFile();
+        for (String profile : PROFILES) {
+            File profileDirectory = new File(destination, profile);
+            write(new File(profileDirectory, "eclipse.ini"), "-install\n/stale/location");
+            store(FileManagementUtil.getProfileConfigIniFile(destination.getPath(), profile), new Properties());
+        }
+        store(getAgentFile(), new Properties());
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        FileManagementUtil.deleteDirectories(destination);
+    }
+
+    public void testSerializesTheDirectorRunsOfConcurrentFlows() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        List<Future<Void>> results = new ArrayList<>();
+        try {
+            for (int thread = 0; thread < THREADS; thread++) {
+                String profile = PROFILES[thread % PROFILES.length];
+                boolean installFirst = thread < PROFILES.length;
+                results.add(executor.submit((Callable<Void>) () -> {
+                    for (int flow = 0; flow < FLOWS_PER_THREAD; flow++) {
+                        // every thread ends with an install, which leaves the profile's files in their final state
+                        if (installFirst == (flow % 2 == 0) || flow == FLOWS_PER_THREAD - 1) {
+                            install(profile);
+                        } else {
+                            uninstall(profile);
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for (Future<Void> result : results) {
+                result.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals("Director runs overlapped", 0, overlappingRuns.get());
+        assertEquals(String.valueOf(THREADS * FLOWS_PER_THREAD), load(getAgentFile()).getProperty(DIRECTOR_RUNS));
+        int threadsPerProfile = THREADS / PROFILES.length;
+        for (String profile : PROFILES) {
+            Properties configIni = load(FileManagementUtil.getProfileConfigIniFile(destination.getPath(), profile));
+            assertEquals(profile, String.valueOf(threadsPerProfile * FLOWS_PER_THREAD),
+                    configIni.getProperty(DIRECTOR_RUNS));
+            assertEquals(profile, RELATIVE_DATA_AREA, configIni.getProperty(DATA_AREA));
+            assertEquals(profile, "-install\n" + destination.getPath() + File.separator + profile,
+                    new String(Files.readAllBytes(new File(destination, profile + "/eclipse.ini").toPath()),
+                            StandardCharsets.UTF_8));
+        }
+    }
+
+    private void install(String profile) throws Exception {
+        Feature feature = new Feature();
+        feature.setId("org.wso2.carbon.core.feature.group");
+        feature.setVersion("4.4.1");
+        FeatureInstallResourceBundle resourceBundle = new FeatureInstallResourceBundle();
+        resourceBundle.setDestination(destination.getPath());
+        resourceBundle.setProfile(profile);
+        resourceBundle.setRepository(new File(destination, "repository").toURI().toURL());
+        resourceBundle.setFeatures(Collections.singletonList(feature));
+        resourceBundle.setProject(new MavenProject());
+        resourceBundle.setLauncher(new RecordingP2ApplicationLauncher(this::runDirector));
+        resourceBundle.setLog(log);
+        new FeatureInstaller(resourceBundle).install();
+    }
+
+    private void uninstall(String profile) throws Exception {
+        org.wso2.maven.p2.feature.uninstall.Feature feature = new org.wso2.maven.p2.feature.uninstall.Feature();
+        feature.setId("org.wso2.carbon.core.feature.group");
+        feature.setVersion("4.4.1");
+        FeatureUnInstaller unInstaller = new FeatureUnInstaller();
+        unInstaller.setDestination(destination.getPath());
+        unInstaller.setProfile(profile);
+        unInstaller.setFeatures(Collections.singletonList(feature));
+        unInstaller.setProject(new MavenProject());
+        unInstaller.setLauncher(new RecordingP2ApplicationLauncher(this::runDirector));
+        unInstaller.setLog(log);
+        unInstaller.uninstallFeatures();
+    }
+
+    /**
+     * Stands in for the director: counts its runs in the shared agent area and in the profile's config.ini, into which
+     * an installation also writes the absolute data area the installer makes relative afterwards.
+     */
+    private int runDirector(RecordingP2ApplicationLauncher launcher) throws Exception {
+        if (runningDirectors.incrementAndGet() > 1) {
+            overlappingRuns.incrementAndGet();
+        }
+        try {
+            List<String> arguments = launcher.getArguments();
+            String profile = arguments.get(arguments.indexOf("-profile") + 1);
+            File configIniFile = FileManagementUtil.getProfileConfigIniFile(destination.getPath(), profile);
+
+            Properties agent = load(getAgentFile());
+            Properties configIni = load(configIniFile);
+            Thread.sleep(5);
+            increment(agent);
+            increment(configIni);
+            if (arguments.contains("-installIU")) {
+                configIni.setProperty(DATA_AREA, new File(destination, "p2").toURI().toString());
+            }
+            store(getAgentFile(), agent);
+            store(configIniFile, configIni);
+            return 0;
+        } finally {
+            runningDirectors.decrementAndGet();
+        }
+    }
+
+    private File getAgentFile() {
+        return new File(destination, "p2/org.eclipse.equinox.p2.engine/runs.properties");
+    }
+
+    private static void increment(Properties properties) {
+        properties.setProperty(DIRECTOR_RUNS,
+                String.valueOf(Integer.parseInt(properties.getProperty(DIRECTOR_RUNS, "0")) + 1));
+    }
+
+    private static Properties load(File file) throws IOException {
+        Properties properties = new Properties();
+        try (InputStream inputStream = Files.newInputStream(file.toPath())) {
+            properties.load(inputStream);
+        }
+        return properties;
+    }
+
+    private static void store(File file, Properties properties) throws IOException {
+        if (!file.getParentFile().isDirectory() && !file.getParentFile().mkdirs()) {
+            throw new IOException("Unable to create " + file.getParent());
+        }
+        try (OutputStream outputStream = Files.newOutputStream(file.toPath())) {
+            properties.store(outputStream, null);
+        }
+    }
+
+    private static void write(File file, String content) throws IOException {
+        if (!file.getParentFile().isDirectory() && !file.getParentFile().mkdirs()) {
+            throw new IOException("Unable to create " + file.getParent());
+        }
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+    }
+}
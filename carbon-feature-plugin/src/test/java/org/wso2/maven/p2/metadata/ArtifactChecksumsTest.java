@@ -0,0 +1,138 @@
+/*
+ *  Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.wso2.maven.p2.metadata;
+
+import junit.framework.TestCase;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.wso2.maven.p2.utils.FileManagementUtil;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.List;
+
+/**
+ * Tests the checksums {@link ArtifactChecksums} records in the artifact metadata of a repository, and the corrupted
+ * and missing artifacts it finds when verifying them.
+ */
+public class ArtifactChecksumsTest extends TestCase {
+
+    // larger than the 64 MB mapped at a time, so that the file is hashed through two mappings
+    private static final long LARGE_SIZE = 65L * 1024 * 1024 + 17;
+
+    private final ArtifactChecksums checksums = new ArtifactChecksums(2, new SystemStreamLog());
+    private File directory;
+
+    @Override
+    protected void setUp() throws Exception {
+        directory = new RepositoryFixture(Files.createTempDirectory("checksums").toFile())
+                .bundle("org.example.api", "1.0.0", "api")
+                .bundle("org.example.impl", "1.2.0", "implementation")
+                .feature("org.example", "1.0.0", "org.example.api/1.0.0", "org.example.impl/1.2.0")
+                .write(true);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        FileManagementUtil.deleteDirectories(directory);
+    }
+
+    public void testRecordsChecksumsWhichVerify() throws Exception {
+        assertEquals(3, checksums.record(directory));
+
+        for (ArtifactDescriptor artifact : MetadataRepositoryReader.readArtifactRepository(directory)) {
+            assertEquals(64, artifact.getProperties().get(ArtifactChecksums.DOWNLOAD_SHA256).length());
+            assertEquals(artifact.getProperties().get(ArtifactDescriptor.DOWNLOAD_MD5),
+                    artifact.getProperties().get(ArtifactChecksums.DOWNLOAD_CHECKSUM_MD5));
+            assertEquals(artifact.getProperties().get(ArtifactChecksums.DOWNLOAD_SHA256),
+                    artifact.getProperties().get(ArtifactChecksums.ARTIFACT_SHA256));
+        }
+        ArtifactChecksums.Verification verification = checksums.verify(directory);
+        assertEquals(verification.getFailures().toString(), 0, verification.getFailures().size());
+        assertEquals(3, verification.getVerified());
+        assertEquals(0, verification.getUnverified());
+    }
+
+    public void testHashesOnlyTheArtifactsNotRecordedBefore() throws Exception {
+        assertEquals(3, checksums.record(directory));
+        assertEquals(0, checksums.record(directory));
+
+        // an artifact republished with another size is hashed again
+        File impl = new File(directory, "plugins/org.example.impl_1.2.0.jar");
+        Files.write(impl.toPath(), new byte[]{1, 2, 3});
+        publish("org.example.impl", impl.length());
+        assertEquals(1, checksums.record(directory));
+        ArtifactChecksums.Verification verification = checksums.verify(directory);
+        assertEquals(verification.getFailures().toString(), 0, verification.getFailures().size());
+        assertEquals(3, verification.getVerified());
+    }
+
+    public void testFindsAnArtifactCorruptedWithItsSizeKept() throws Exception {
+        File api = new File(directory, "plugins/org.example.api_1.0.0.jar");
+        try (RandomAccessFile file = new RandomAccessFile(api, "rw")) {
+            file.setLength(LARGE_SIZE);
+        }
+        publish("org.example.api", LARGE_SIZE);
+        assertEquals(3, checksums.record(directory));
+        assertEquals(0, checksums.verify(directory).getFailures().size());
+
+        // a single byte changed in the second mapping of the file
+        try (RandomAccessFile file = new RandomAccessFile(api, "rw")) {
+            file.seek(LARGE_SIZE - 2);
+            file.write(0x5a);
+        }
+        assertEquals(LARGE_SIZE, api.length());
+        ArtifactChecksums.Verification verification = checksums.verify(directory);
+
+        List<String> failures = verification.getFailures();
+        assertEquals(failures.toString(), 2, failures.size());
+        assertTrue(failures.get(0), failures.get(0).startsWith("osgi.bundle/org.example.api/1.0.0: SHA-256 is "));
+        assertTrue(failures.get(1), failures.get(1).startsWith("osgi.bundle/org.example.api/1.0.0: MD5 is "));
+        assertEquals(2, verification.getVerified());
+        assertEquals(LARGE_SIZE + new File(directory, "features/org.example_1.0.0.jar").length() +
+                new File(directory, "plugins/org.example.impl_1.2.0.jar").length(), verification.getBytes());
+    }
+
+    public void testFindsAMissingArtifact() throws Exception {
+        assertEquals(3, checksums.record(directory));
+        assertTrue(new File(directory, "plugins/org.example.impl_1.2.0.jar").delete());
+
+        ArtifactChecksums.Verification verification = checksums.verify(directory);
+
+        assertEquals(1, verification.getFailures().size());
+        assertTrue(verification.getFailures().get(0), verification.getFailures().get(0).startsWith(
+                "osgi.bundle/org.example.impl/1.2.0: "));
+        assertTrue(verification.getFailures().get(0), verification.getFailures().get(0).endsWith(" is missing"));
+        assertEquals(2, verification.getVerified());
+    }
+
+    /**
+     * Describes the bundle by the given size alone, the way the publisher describes a file it publishes.
+     */
+    private void publish(String id, long size) throws IOException {
+        List<ArtifactDescriptor> artifacts = MetadataRepositoryReader.readArtifactRepository(directory);
+        for (ArtifactDescriptor artifact : artifacts) {
+            if (id.equals(artifact.getKey().getId())) {
+                artifact.getProperties().clear();
+                artifact.getProperties().put(ArtifactDescriptor.ARTIFACT_SIZE, Long.toString(size));
+                artifact.getProperties().put(ArtifactDescriptor.DOWNLOAD_SIZE, Long.toString(size));
+            }
+        }
+        MetadataRepositoryWriter.writeArtifactRepository(directory, directory.getName(), artifacts, true);
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ *  Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.wso2.maven.p2.metadata;
+
+import junit.framework.TestCase;
+import org.wso2.maven.p2.utils.FileManagementUtil;
+
+import java.io.File;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+import java.util.zip.Deflater;
+
+/**
+ * Tests that {@link MetadataFragment} only reuses the IUs of a precomputed fragment for sources with the same content.
+ */
+public class MetadataFragmentTest extends TestCase {
+
+    private File directory;
+    private File fragmentFile;
+
+    @Override
+    protected void setUp() throws Exception {
+        directory = Files.createTempDirectory("fragment").toFile();
+        fragmentFile = new File(directory, "fragment.xml");
+        File plugins = new File(directory, "plugins");
+        File feature = new File(directory, "features/f_1.0.0");
+        assertTrue(plugins.mkdirs() && feature.mkdirs());
+        writeBundle(new File(plugins, "b_1.0.0.jar"), "1.0.0");
+        writeFeature(feature, "1.0.0");
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        FileManagementUtil.deleteDirectories(directory);
+    }
+
+    public void testReusesUnchangedSources() throws Exception {
+        MetadataFragment.generate(directory, Collections.emptyList()).write(fragmentFile);
+        MetadataFragment precomputed = MetadataFragment.read(fragmentFile);
+        MetadataFragment fragment = MetadataFragment.generate(directory, Collections.singletonList(precomputed));
+
+        assertSame(precomputed.getUnit("b/1.0.0"), fragment.getUnit("b/1.0.0"));
+        assertSame(precomputed.getUnit("f.feature.group/1.0.0"), fragment.getUnit("f.feature.group/1.0.0"));
+        for (MetadataFragment.Source source : fragment.getSources()) {
+            assertNotNull(source.getPath(), source.getHash());
+        }
+    }
+
+    public void testRegeneratesChangedFeature() throws Exception {
+        MetadataFragment.generate(directory, Collections.emptyList()).write(fragmentFile);
+        MetadataFragment precomputed = MetadataFragment.read(fragmentFile);
+        writeFeature(new File(directory, "features/f_1.0.0"), "1.0.1");
+        MetadataFragment fragment = MetadataFragment.generate(directory, Collections.singletonList(precomputed));
+
+        assertNull(fragment.getUnit("f.feature.group/1.0.0"));
+        assertNotNull(fragment.getUnit("f.feature.group/1.0.1"));
+    }
+
+    public void testRegeneratesChangedBundleOfTheSameSize() throws Exception {
+        MetadataFragment.generate(directory, Collections.emptyList()).write(fragmentFile);
+        MetadataFragment precomputed = MetadataFragment.read(fragmentFile);
+        File bundle = new File(directory, "plugins/b_1.0.0.jar");
+        long size = bundle.length();
+        writeBundle(bundle, "1.0.9");
+        assertEquals(size, bundle.length());
+        MetadataFragment fragment = MetadataFragment.generate(directory, Collections.singletonList(precomputed));
+
+        assertNull(fragment.getUnit("b/1.0.0"));
+        assertNotNull(fragment.getUnit("b/1.0.9"));
+    }
+
+    private static void writeBundle(File jar, String version) throws Exception {
+        Manifest manifest = new Manifest();
+        Attributes attributes = manifest.getMainAttributes();
+        attributes.put(Attributes.Name.MANIFEST_VERSION, "1.0");
+        attributes.putValue("Bundle-ManifestVersion", "2");
+        attributes.putValue("Bundle-SymbolicName", "b");
+        attributes.putValue("Bundle-Version", version);
+        // stored uncompressed, so that versions of the same length give jars of the same size
+        try (OutputStream outputStream = Files.newOutputStream(jar.toPath());
+             JarOutputStream jarOutputStream = new JarOutputStream(outputStream)) {
+            jarOutputStream.setLevel(Deflater.NO_COMPRESSION);
+            jarOutputStream.putNextEntry(new JarEntry(JarFile.MANIFEST_NAME));
+            manifest.write(jarOutputStream);
+            jarOutputStream.closeEntry();
+        }
+    }
+
+    private static void writeFeature(File featureDirectory, String version) throws Exception {
+        String featureXml = "<?xml version='1.0' encoding='UTF-8'?>\n" +
+                "<feature id='f' label='F' version='" + version + "'>\n" +
+                "</feature>\n";
+        Files.write(new File(featureDirectory, "feature.xml").toPath(), featureXml.getBytes(StandardCharsets.UTF_8));
+    }
+}
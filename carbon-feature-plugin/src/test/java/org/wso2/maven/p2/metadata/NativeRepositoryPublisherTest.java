@@ -0,0 +1,229 @@
+/*
+ *  Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.wso2.maven.p2.metadata;
+
+import junit.framework.TestCase;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+import org.wso2.maven.p2.utils.FileManagementUtil;
+
+import java.io.File;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.JarInputStream;
+import java.util.jar.JarOutputStream;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import javax.xml.parsers.DocumentBuilderFactory;
+
+/**
+ * Tests that {@link NativeRepositoryPublisher} publishes the same metadata as the p2 features and bundles publisher.
+ * <p>
+ * The expected content.xml and artifacts.xml under {@code publisher/expected} were written by the
+ * FeaturesAndBundlesPublisher application of the Tycho 0.25.0 p2 runtime, with the arguments of
+ * {@code P2ApplicationLaunchManager#addRepoGenerationArguments}, from the bundles and features under
+ * {@code publisher/source} as assembled by {@link #assembleSource(File, File)}. Both repositories are compared after
+ * normalization, which ignores the order of elements, the {@code size} attributes, the repository timestamp and empty
+ * touchpoint data. The checksums and sizes of the feature jars are ignored too, as the publisher zips the feature
+ * directories itself and describes the directory rather than the jar.
+ * </p>
+ */
+public class NativeRepositoryPublisherTest extends TestCase {
+
+    /**
+     * Modification time of the entries of the assembled bundle jars, fixed so that their checksums are reproducible.
+     */
+    private static final long ENTRY_TIME = 1451606400000L;
+
+    private File directory;
+
+    @Override
+    protected void setUp() throws Exception {
+        directory = Files.createTempDirectory("publisher").toFile();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        FileManagementUtil.deleteDirectories(directory);
+    }
+
+    public void testPublishesTheSameMetadataAsThePublisher() throws Exception {
+        File source = new File(directory, "source");
+        File repository = new File(directory, "repository");
+        assembleSource(getResource("publisher/source"), source);
+        new NativeRepositoryPublisher(source, repository, "publisher", Collections.emptyList(),
+                new SystemStreamLog()).publish();
+
+        File expected = getResource("publisher/expected");
+        assertEquals(normalize(new File(expected, MetadataRepositoryWriter.CONTENT_XML)),
+                normalize(extract(repository, MetadataRepositoryWriter.CONTENT_JAR)));
+        assertEquals(normalize(new File(expected, MetadataRepositoryWriter.ARTIFACTS_XML)),
+                normalize(extract(repository, MetadataRepositoryWriter.ARTIFACTS_JAR)));
+    }
+
+    /**
+     * Assembles the publisher input from the fixture: every directory under plugins is packed into a bundle jar of the
+     * same name, and the feature directories are copied as they are.
+     *
+     * @param fixture {@link File} fixture directory containing the plugins and features folders
+     * @param target  {@link File} directory to assemble the publisher input into
+     * @throws Exception if the fixture cannot be read or the input cannot be written
+     */
+    public static void assembleSource(File fixture, File target) throws Exception {
+        Path root = fixture.toPath();
+        List<Path> files;
+        try (Stream<Path> walk = Files.walk(root)) {
+            files = walk.filter(Files::isRegularFile).sorted().collect(Collectors.toList());
+        }
+        for (Path file : files) {
+            Path relative = root.relativize(file);
+            if (relative.getName(0).toString().equals("plugins")) {
+                continue;
+            }
+            Path copy = target.toPath().resolve(relative);
+            Files.createDirectories(copy.getParent());
+            Files.copy(file, copy);
+        }
+        File[] bundles = new File(fixture, "plugins").listFiles(File::isDirectory);
+        assertNotNull(bundles);
+        File plugins = new File(target, "plugins");
+        assertTrue(plugins.mkdirs());
+        for (File bundle : bundles) {
+            writeJar(bundle.toPath(), new File(plugins, bundle.getName() + ".jar"));
+        }
+    }
+
+    private static void writeJar(Path bundle, File jar) throws Exception {
+        List<Path> files;
+        try (Stream<Path> walk = Files.walk(bundle)) {
+            files = walk.filter(Files::isRegularFile).collect(Collectors.toList());
+        }
+        // the manifest has to be the first entry for JarInputStream to find it
+        Collections.sort(files, (a, b) -> {
+            boolean aManifest = bundle.relativize(a).toString().replace(File.separatorChar, '/')
+                    .equals(JarFile.MANIFEST_NAME);
+            boolean bManifest = bundle.relativize(b).toString().replace(File.separatorChar, '/')
+                    .equals(JarFile.MANIFEST_NAME);
+            return aManifest != bManifest ? (aManifest ? -1 : 1) : a.compareTo(b);
+        });
+        try (OutputStream outputStream = Files.newOutputStream(jar.toPath());
+             JarOutputStream jarOutputStream = new JarOutputStream(outputStream)) {
+            for (Path file : files) {
+                JarEntry entry = new JarEntry(bundle.relativize(file).toString().replace(File.separatorChar, '/'));
+                entry.setTime(ENTRY_TIME);
+                jarOutputStream.putNextEntry(entry);
+                Files.copy(file, jarOutputStream);
+                jarOutputStream.closeEntry();
+            }
+        }
+    }
+
+    private File extract(File repository, String jarName) throws Exception {
+        File xml = new File(directory, jarName.replace(".jar", ".xml"));
+        try (InputStream inputStream = Files.newInputStream(new File(repository, jarName).toPath());
+             JarInputStream jarInputStream = new JarInputStream(inputStream)) {
+            assertNotNull(jarName, jarInputStream.getNextJarEntry());
+            Files.copy(jarInputStream, xml.toPath());
+        }
+        return xml;
+    }
+
+    /**
+     * Returns a canonical form of the given repository file, in which elements are listed with their attributes sorted
+     * and their children sorted.
+     */
+    private static String normalize(File xml) throws Exception {
+        Document document = DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(xml);
+        Element repository = document.getDocumentElement();
+        for (Element property : getElements(repository, "property")) {
+            if ("p2.timestamp".equals(property.getAttribute("name"))) {
+                property.getParentNode().removeChild(property);
+            }
+        }
+        for (Element touchpointData : getElements(repository, "touchpointData")) {
+            if (getElements(touchpointData, "instruction").isEmpty()) {
+                touchpointData.getParentNode().removeChild(touchpointData);
+            }
+        }
+        for (Element artifact : getElements(repository, "artifact")) {
+            if (MetadataGenerator.CLASSIFIER_FEATURE.equals(artifact.getAttribute("classifier"))) {
+                for (Element property : getElements(artifact, "property")) {
+                    if (property.getAttribute("name").matches("download\\.md5|download\\.size|artifact\\.size")) {
+                        property.getParentNode().removeChild(property);
+                    }
+                }
+            }
+        }
+        return canonicalize(repository, "");
+    }
+
+    private static String canonicalize(Element element, String indent) {
+        StringBuilder builder = new StringBuilder(indent).append('<').append(element.getTagName());
+        TreeMap<String, String> attributes = new TreeMap<>();
+        for (int i = 0; i < element.getAttributes().getLength(); i++) {
+            Node attribute = element.getAttributes().item(i);
+            if (!"size".equals(attribute.getNodeName())) {
+                attributes.put(attribute.getNodeName(), attribute.getNodeValue());
+            }
+        }
+        attributes.forEach((name, value) -> builder.append(' ').append(name).append("='").append(value).append('\''));
+        builder.append(">\n");
+        List<String> children = new ArrayList<>();
+        StringBuilder text = new StringBuilder();
+        for (Node child = element.getFirstChild(); child != null; child = child.getNextSibling()) {
+            if (child instanceof Element) {
+                children.add(canonicalize((Element) child, indent + "  "));
+            } else if (child.getNodeType() == Node.TEXT_NODE || child.getNodeType() == Node.CDATA_SECTION_NODE) {
+                text.append(child.getNodeValue());
+            }
+        }
+        if (!text.toString().trim().isEmpty()) {
+            builder.append(indent).append("  ").append(text.toString().trim()).append('\n');
+        }
+        Collections.sort(children);
+        children.forEach(builder::append);
+        return builder.toString();
+    }
+
+    private static List<Element> getElements(Element element, String tagName) {
+        NodeList nodes = element.getElementsByTagName(tagName);
+        List<Element> elements = new ArrayList<>();
+        for (int i = 0; i < nodes.getLength(); i++) {
+            elements.add((Element) nodes.item(i));
+        }
+        return elements;
+    }
+
+    private static File getResource(String name) throws URISyntaxException {
+        URL url = NativeRepositoryPublisherTest.class.getClassLoader().getResource(name);
+        assertNotNull(name, url);
+        return new File(url.toURI());
+    }
+}
@@ -0,0 +1,173 @@
+/*
+ *  Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.wso2.maven.p2.metadata;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Writes small p2 simple repositories for tests: bundles, feature groups including them and categories including the
+ * feature groups, with the artifact files stored in the standard layout. Each artifact is a jar holding one entry
+ * with the given content, and is described by its sizes but no checksum.
+ */
+public class RepositoryFixture {
+
+    private static final String IU_NAMESPACE = "org.eclipse.equinox.p2.iu";
+
+    private final File directory;
+    private final Map<String, InstallableUnit> units = new LinkedHashMap<>();
+    private final Map<String, String> contents = new LinkedHashMap<>();
+
+    /**
+     * Constructs a RepositoryFixture.
+     *
+     * @param directory {@link File} directory to write the repository to
+     */
+    public RepositoryFixture(File directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Adds a bundle and its artifact.
+     *
+     * @param id      {@code String} symbolic name of the bundle
+     * @param version {@code String} version of the bundle
+     * @param content {@code String} content of the single entry of the bundle jar
+     * @return this fixture
+     */
+    public RepositoryFixture bundle(String id, String version, String content) {
+        InstallableUnit unit = unit(id, version);
+        unit.getProvides().add(new InstallableUnit.Capability("osgi.bundle", id, version));
+        addArtifact(unit, "osgi.bundle", id, content);
+        return this;
+    }
+
+    /**
+     * Adds a feature group including the given IUs, and the feature jar it requires.
+     *
+     * @param id       {@code String} id of the feature, without the feature.group suffix
+     * @param version  {@code String} version of the feature
+     * @param includes {@code String} keys, {@code id/version}, of the included IUs
+     * @return this fixture
+     */
+    public RepositoryFixture feature(String id, String version, String... includes) {
+        InstallableUnit jar = unit(id + ".feature.jar", version);
+        addArtifact(jar, "org.eclipse.update.feature", id, "feature " + id + " " + version);
+        InstallableUnit group = unit(id + ".feature.group", version);
+        group.getProperties().put("org.eclipse.equinox.p2.type.group", "true");
+        require(group, jar.getKey());
+        for (String include : includes) {
+            require(group, include);
+        }
+        return this;
+    }
+
+    /**
+     * Adds a category including the given IUs.
+     *
+     * @param name     {@code String} name of the category
+     * @param includes {@code String} keys, {@code id/version}, of the included IUs
+     * @return this fixture
+     */
+    public RepositoryFixture category(String name, String... includes) {
+        InstallableUnit category = unit("category." + name.toLowerCase().replace(' ', '.'), "1.0.0");
+        category.getProperties().put("org.eclipse.equinox.p2.type.category", "true");
+        category.getProperties().put("org.eclipse.equinox.p2.name", name);
+        for (String include : includes) {
+            require(category, include);
+        }
+        return this;
+    }
+
+    /**
+     * Sets a property of an IU added before, which changes its metadata but not its artifacts.
+     *
+     * @param key   {@code String} key, {@code id/version}, of the IU
+     * @param name  {@code String} name of the property
+     * @param value {@code String} value of the property
+     * @return this fixture
+     */
+    public RepositoryFixture property(String key, String name, String value) {
+        units.get(key).getProperties().put(name, value);
+        return this;
+    }
+
+    /**
+     * Writes the repository.
+     *
+     * @param compress whether to write content.jar and artifacts.jar rather than the xml files
+     * @return {@link File} directory of the repository
+     * @throws IOException if the repository cannot be written
+     */
+    public File write(boolean compress) throws IOException {
+        List<ArtifactDescriptor> artifacts = new ArrayList<>();
+        for (InstallableUnit unit : units.values()) {
+            for (InstallableUnit.ArtifactKey key : unit.getArtifacts()) {
+                File file = MetadataRepositoryFilter.locateArtifact(directory,
+                        MetadataRepositoryWriter.getArtifactMappingRules(), new ArtifactDescriptor(key));
+                writeJar(file, contents.get(unit.getKey()));
+                ArtifactDescriptor artifact = new ArtifactDescriptor(key);
+                artifact.getProperties().put(ArtifactDescriptor.ARTIFACT_SIZE, Long.toString(file.length()));
+                artifact.getProperties().put(ArtifactDescriptor.DOWNLOAD_SIZE, Long.toString(file.length()));
+                artifacts.add(artifact);
+            }
+        }
+        MetadataRepositoryWriter.writeMetadataRepository(directory, directory.getName(), units.values(), compress);
+        MetadataRepositoryWriter.writeArtifactRepository(directory, directory.getName(), artifacts, compress);
+        return directory;
+    }
+
+    private InstallableUnit unit(String id, String version) {
+        InstallableUnit unit = new InstallableUnit(id, version);
+        unit.getProvides().add(new InstallableUnit.Capability(IU_NAMESPACE, id, version));
+        units.put(unit.getKey(), unit);
+        return unit;
+    }
+
+    private void addArtifact(InstallableUnit unit, String classifier, String id, String content) {
+        unit.getArtifacts().add(new InstallableUnit.ArtifactKey(classifier, id, unit.getVersion()));
+        contents.put(unit.getKey(), content);
+    }
+
+    private static void require(InstallableUnit unit, String key) {
+        String[] idAndVersion = key.split("/");
+        unit.getRequires().add(new InstallableUnit.Requirement(IU_NAMESPACE, idAndVersion[0],
+                "[" + idAndVersion[1] + "," + idAndVersion[1] + "]", false, true, null));
+    }
+
+    private static void writeJar(File file, String content) throws IOException {
+        Files.createDirectories(file.getParentFile().toPath());
+        try (OutputStream outputStream = Files.newOutputStream(file.toPath());
+             ZipOutputStream zipOutputStream = new ZipOutputStream(outputStream)) {
+            ZipEntry entry = new ZipEntry("content.txt");
+            // a fixed time keeps the jar of the same content byte for byte the same
+            entry.setTime(1451606400000L);
+            zipOutputStream.putNextEntry(entry);
+            zipOutputStream.write(content.getBytes(StandardCharsets.UTF_8));
+            zipOutputStream.closeEntry();
+        }
+    }
+}
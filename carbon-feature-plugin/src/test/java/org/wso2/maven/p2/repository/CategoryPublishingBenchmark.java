@@ -0,0 +1,339 @@
+/*
+ *  Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.wso2.maven.p2.repository;
+
+import org.apache.maven.project.MavenProject;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+import org.wso2.maven.p2.utils.FileManagementUtil;
+import org.wso2.maven.p2.utils.P2ApplicationLaunchManager;
+import org.wso2.maven.p2.utils.P2Utils;
+import org.wso2.maven.p2.utils.RecordingP2ApplicationLauncher;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.MalformedURLException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarInputStream;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+import javax.xml.parsers.DocumentBuilderFactory;
+
+/**
+ * Compares the time taken to publish a categorized repository in a single run of the update site publisher, as
+ * {@link RepositoryGenerator} does, with the time taken by the features and bundles publisher followed by the
+ * category publisher, as it did before.
+ * <p>
+ * The benchmark generates a publisher source of the given number of installable units, bundles and features
+ * assembled like the repository generator stages them, with the category files written by
+ * {@link P2Utils#createCategoryFile}. It publishes the source with both approaches through
+ * {@link P2ApplicationLaunchManager}, configured by
+ * {@link P2ApplicationLaunchManager#addRepoGenerationWithCategoryArguments} for the single run, and by
+ * {@link P2ApplicationLaunchManager#addRepoGenerationArguments} then
+ * {@link P2ApplicationLaunchManager#addUpdateRepoWithCategoryArguments} for the two runs. A
+ * {@link RecordingP2ApplicationLauncher} launches the configured application in a forked JVM, as the plugin does, and
+ * the time of a run includes the launch. Both approaches have to publish the same installable units, otherwise the
+ * benchmark fails.
+ * </p>
+ * <p>
+ * It is not a test, as it needs an Equinox installation containing the p2 publisher applications, such as the
+ * eclipse folder of org.eclipse.tycho:tycho-bundles-external. Run it from the test classpath with
+ * {@code java org.wso2.maven.p2.repository.CategoryPublishingBenchmark <equinox> [units] [runs]}.
+ * </p>
+ */
+public class CategoryPublishingBenchmark {
+
+    /**
+     * The application which categorized the repository after the features and bundles publisher.
+     */
+    private static final String CATEGORY_PUBLISHER_APPLICATION = "org.eclipse.equinox.p2.publisher.CategoryPublisher";
+    private static final String CATEGORY_DEFINITION = "category.xml";
+    private static final String REPOSITORY_NAME = "benchmark";
+    private static final String CATEGORY_PROPERTY = "org.eclipse.equinox.p2.type.category";
+    private static final int BUNDLES_PER_FEATURE = 48;
+    private static final int CATEGORIES = 4;
+    private static final long ENTRY_TIME = 1451606400000L;
+
+    private final File launcher;
+    private final File work;
+    private final File configuration;
+
+    private CategoryPublishingBenchmark(File equinox, File work) throws IOException {
+        File[] launchers = new File(equinox, "plugins").listFiles((dir, name) ->
+                name.startsWith("org.eclipse.equinox.launcher_") && name.endsWith(".jar"));
+        if (launchers == null || launchers.length == 0) {
+            throw new IOException("No Equinox launcher in " + equinox.getAbsolutePath());
+        }
+        this.launcher = launchers[0];
+        this.work = work;
+        this.configuration = new File(work, "configuration");
+    }
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args the Equinox installation, the number of installable units (1000 by default) and the number of
+     *             measured runs of each approach (5 by default)
+     * @throws Exception if the source cannot be generated or a publisher fails
+     */
+    public static void main(String[] args) throws Exception {
+        if (args.length == 0) {
+            System.err.println("Usage: CategoryPublishingBenchmark <equinox installation> [units] [runs]");
+            System.exit(1);
+        }
+        int units = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+        int runs = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+        File work = Files.createTempDirectory("category-publishing").toFile();
+        try {
+            new CategoryPublishingBenchmark(new File(args[0]), work).run(units, runs);
+        } finally {
+            FileManagementUtil.deleteDirectories(work);
+        }
+    }
+
+    private void run(int units, int runs) throws Exception {
+        File source = new File(work, "source");
+        int features = generateSource(source, units);
+        System.out.println("Publishing " + units + " installable units: " + features + " features, " +
+                (units - CATEGORIES - 2 * features) + " bundles and " + CATEGORIES + " categories");
+
+        // warms the OSGi framework storage and the file system cache, and checks both approaches publish alike
+        Set<String> singleRun = getUnits(publishInSingleRun(source, new File(work, "warm-single")));
+        Set<String> twoRuns = getUnits(publishInTwoRuns(source, new File(work, "warm-two")));
+        if (!singleRun.equals(twoRuns)) {
+            throw new IllegalStateException("The approaches published different units: " + singleRun.size() +
+                    " in a single run and " + twoRuns.size() + " in two runs");
+        }
+        if (singleRun.size() != units) {
+            throw new IllegalStateException(singleRun.size() + " units published instead of " + units);
+        }
+
+        long[] singleRunTimes = new long[runs];
+        long[] twoRunsTimes = new long[runs];
+        for (int i = 0; i < runs; i++) {
+            long start = System.nanoTime();
+            publishInSingleRun(source, new File(work, "single-" + i));
+            singleRunTimes[i] = (System.nanoTime() - start) / 1000000;
+            start = System.nanoTime();
+            publishInTwoRuns(source, new File(work, "two-" + i));
+            twoRunsTimes[i] = (System.nanoTime() - start) / 1000000;
+        }
+        System.out.println("Single run (update site publisher):        " + describe(singleRunTimes));
+        System.out.println("Two runs (features and bundles, category): " + describe(twoRunsTimes));
+    }
+
+    private File publishInSingleRun(File source, File repository) throws Exception {
+        P2ApplicationLaunchManager launchManager = newLaunchManager();
+        launchManager.setApplicationName(RepositoryGenerator.UPDATE_SITE_PUBLISHER_APPLICATION);
+        launchManager.addRepoGenerationWithCategoryArguments(source.getAbsolutePath(), toURL(repository),
+                REPOSITORY_NAME);
+        launchManager.performAction(0);
+        return repository;
+    }
+
+    private File publishInTwoRuns(File source, File repository) throws Exception {
+        // the features and bundles publisher ignores the site.xml the update site publisher reads
+        P2ApplicationLaunchManager launchManager = newLaunchManager();
+        launchManager.setApplicationName(RepositoryGenerator.PUBLISHER_APPLICATION);
+        launchManager.addRepoGenerationArguments(source.getAbsolutePath(), toURL(repository), REPOSITORY_NAME);
+        launchManager.performAction(0);
+
+        launchManager = newLaunchManager();
+        launchManager.setApplicationName(CATEGORY_PUBLISHER_APPLICATION);
+        launchManager.addUpdateRepoWithCategoryArguments(toURL(repository),
+                new File(work, CATEGORY_DEFINITION).toURI().toString());
+        launchManager.performAction(0);
+        return repository;
+    }
+
+    private P2ApplicationLaunchManager newLaunchManager() {
+        P2ApplicationLaunchManager launchManager = new P2ApplicationLaunchManager(
+                new RecordingP2ApplicationLauncher(this::launch));
+        launchManager.setWorkingDirectory(work);
+        return launchManager;
+    }
+
+    /**
+     * Launches the application the plugin configured with the Equinox installation of the benchmark.
+     */
+    private int launch(RecordingP2ApplicationLauncher recorded) throws Exception {
+        String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+        List<String> command = new ArrayList<>(Collections.singletonList(java));
+        command.addAll(recorded.getVMArguments());
+        command.addAll(Arrays.asList("-jar", launcher.getAbsolutePath(), "-nosplash", "-configuration",
+                configuration.getAbsolutePath(), "-application", recorded.getApplicationName()));
+        command.addAll(recorded.getArguments());
+        File output = new File(work, "launch.log");
+        Process process = new ProcessBuilder(command).directory(recorded.getWorkingDirectory())
+                .redirectErrorStream(true).redirectOutput(ProcessBuilder.Redirect.to(output)).start();
+        int exitCode = process.waitFor();
+        if (exitCode != 0) {
+            System.err.println(new String(Files.readAllBytes(output.toPath()), StandardCharsets.UTF_8));
+        }
+        return exitCode;
+    }
+
+    private static String toURL(File repository) throws MalformedURLException {
+        return repository.toURI().toURL().toString();
+    }
+
+    /**
+     * Generates the publisher source: the bundle jars under plugins, the unpacked features under features, each
+     * including {@value #BUNDLES_PER_FEATURE} bundles, and the update site manifest (site.xml) of the single run and
+     * the category definition (category.xml) of the two runs, both written by {@link P2Utils#createCategoryFile}.
+     *
+     * @return the number of features
+     */
+    private int generateSource(File source, int units) throws Exception {
+        // a feature is published as a group and a jar unit, and is followed by its bundles
+        int features = (units - CATEGORIES + BUNDLES_PER_FEATURE + 1) / (BUNDLES_PER_FEATURE + 2);
+        int bundles = units - CATEGORIES - 2 * features;
+        if (features < CATEGORIES) {
+            throw new IllegalArgumentException("At least " + (CATEGORIES * 3 + CATEGORIES) + " units are needed");
+        }
+        File plugins = new File(source, "plugins");
+        File featuresDirectory = new File(source, "features");
+        if (!plugins.mkdirs() || !featuresDirectory.mkdirs()) {
+            throw new IOException("Unable to create " + source.getAbsolutePath());
+        }
+        for (int bundle = 0; bundle < bundles; bundle++) {
+            writeBundle(new File(plugins, getBundleId(bundle) + "_1.0.0.jar"), bundle);
+        }
+
+        MavenProject project = new MavenProject();
+        List<Category> categories = new ArrayList<>();
+        for (int category = 0; category < CATEGORIES; category++) {
+            Category definition = new Category();
+            definition.setId("category" + category);
+            definition.setLabel("Category " + category);
+            definition.setFeatures(new ArrayList<>());
+            categories.add(definition);
+        }
+        for (int feature = 0; feature < features; feature++) {
+            String id = "org.wso2.benchmark.feature" + feature;
+            StringBuilder xml = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<feature id=\"")
+                    .append(id).append("\" label=\"Feature ").append(feature).append("\" version=\"1.0.0\">\n");
+            for (int bundle = feature; bundle < bundles; bundle += features) {
+                xml.append("  <plugin id=\"").append(getBundleId(bundle))
+                        .append("\" version=\"1.0.0\" unpack=\"false\"/>\n");
+            }
+            xml.append("</feature>\n");
+            File featureDirectory = new File(featuresDirectory, id + "_1.0.0");
+            if (!featureDirectory.mkdirs()) {
+                throw new IOException("Unable to create " + featureDirectory.getAbsolutePath());
+            }
+            Files.write(new File(featureDirectory, "feature.xml").toPath(),
+                    xml.toString().getBytes(StandardCharsets.UTF_8));
+            CatFeature categoryFeature = new CatFeature();
+            categoryFeature.setId(id);
+            categoryFeature.setVersion("1.0.0");
+            categoryFeature.setProject(project);
+            categories.get(feature % CATEGORIES).getFeatures().add(categoryFeature);
+        }
+        P2Utils.createCategoryFile(project, categories, new File(source, RepositoryGenerator.UPDATE_SITE_MANIFEST),
+                true);
+        P2Utils.createCategoryFile(project, categories, new File(work, CATEGORY_DEFINITION));
+        return features;
+    }
+
+    private static String getBundleId(int bundle) {
+        return "org.wso2.benchmark.bundle" + bundle;
+    }
+
+    private static void writeBundle(File jar, int bundle) throws IOException {
+        String id = getBundleId(bundle);
+        Manifest manifest = new Manifest();
+        Attributes attributes = manifest.getMainAttributes();
+        attributes.put(Attributes.Name.MANIFEST_VERSION, "1.0");
+        attributes.putValue("Bundle-ManifestVersion", "2");
+        attributes.putValue("Bundle-SymbolicName", id);
+        attributes.putValue("Bundle-Version", "1.0.0");
+        attributes.putValue("Export-Package", id + ";version=\"1.0.0\"");
+        if (bundle > 0) {
+            attributes.putValue("Import-Package", getBundleId(bundle - 1) + ";version=\"[1.0.0,2.0.0)\"");
+        }
+        try (OutputStream outputStream = Files.newOutputStream(jar.toPath());
+             JarOutputStream jarOutputStream = new JarOutputStream(outputStream)) {
+            JarEntry manifestEntry = new JarEntry("META-INF/MANIFEST.MF");
+            manifestEntry.setTime(ENTRY_TIME);
+            jarOutputStream.putNextEntry(manifestEntry);
+            manifest.write(jarOutputStream);
+            jarOutputStream.closeEntry();
+            JarEntry resource = new JarEntry(id.replace('.', '/') + "/resource.properties");
+            resource.setTime(ENTRY_TIME);
+            jarOutputStream.putNextEntry(resource);
+            jarOutputStream.write(("bundle=" + bundle + "\n").getBytes(StandardCharsets.UTF_8));
+            jarOutputStream.closeEntry();
+        }
+    }
+
+    /**
+     * Returns the id and version of the units of the compressed metadata repository at the given location.
+     */
+    private static Set<String> getUnits(File repository) throws Exception {
+        Document document;
+        try (InputStream inputStream = Files.newInputStream(new File(repository, "content.jar").toPath());
+             JarInputStream jarInputStream = new JarInputStream(inputStream)) {
+            if (jarInputStream.getNextJarEntry() == null) {
+                throw new IOException("No content.xml in " + repository.getAbsolutePath());
+            }
+            document = DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(jarInputStream);
+        }
+        Set<String> units = new TreeSet<>();
+        NodeList nodes = document.getElementsByTagName("unit");
+        for (int i = 0; i < nodes.getLength(); i++) {
+            Element unit = (Element) nodes.item(i);
+            String id = unit.getAttribute("id");
+            if (isCategory(unit)) {
+                // the ids of the category units are qualified with the location of the category definition
+                id = id.substring(id.lastIndexOf('.') + 1);
+            }
+            units.add(id + "_" + unit.getAttribute("version"));
+        }
+        return units;
+    }
+
+    private static boolean isCategory(Element unit) {
+        NodeList properties = unit.getElementsByTagName("property");
+        for (int i = 0; i < properties.getLength(); i++) {
+            Element property = (Element) properties.item(i);
+            if (CATEGORY_PROPERTY.equals(property.getAttribute("name"))) {
+                return Boolean.parseBoolean(property.getAttribute("value"));
+            }
+        }
+        return false;
+    }
+
+    private static String describe(long[] times) {
+        long[] sorted = times.clone();
+        Arrays.sort(sorted);
+        return "median " + sorted[sorted.length / 2] + " ms, min " + sorted[0] + " ms, max " +
+                sorted[sorted.length - 1] + " ms";
+    }
+}
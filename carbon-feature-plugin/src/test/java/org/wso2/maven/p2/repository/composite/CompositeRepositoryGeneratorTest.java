@@ -0,0 +1,186 @@
+/*
+ *  Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.wso2.maven.p2.repository.composite;
+
+import com.sun.net.httpserver.HttpServer;
+import junit.framework.TestCase;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.wso2.maven.p2.metadata.ArtifactDescriptor;
+import org.wso2.maven.p2.metadata.InstallableUnit;
+import org.wso2.maven.p2.metadata.MetadataRepositoryReader;
+import org.wso2.maven.p2.metadata.MetadataRepositoryWriter;
+import org.wso2.maven.p2.metadata.RepositoryFixture;
+import org.wso2.maven.p2.utils.FileManagementUtil;
+
+import java.io.File;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Tests the validation of the children by {@link CompositeRepositoryGenerator}, and the composite and flattened
+ * repositories it writes.
+ */
+public class CompositeRepositoryGeneratorTest extends TestCase {
+
+    private File directory;
+    private File target;
+
+    @Override
+    protected void setUp() throws Exception {
+        directory = Files.createTempDirectory("composite").toFile();
+        target = new File(directory, "target");
+        new RepositoryFixture(new File(directory, "first"))
+                .bundle("org.example.api", "1.0.0", "api")
+                .feature("org.example", "1.0.0", "org.example.api/1.0.0")
+                .write(true);
+        new RepositoryFixture(new File(directory, "second"))
+                .bundle("org.example.impl", "1.2.0", "impl")
+                .bundle("org.example.api", "1.0.0", "api")
+                .write(false);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        FileManagementUtil.deleteDirectories(directory);
+    }
+
+    public void testReferencesLocalChildrenRelativeToTheTarget() throws Exception {
+        generate(false, false, "../first", new File(directory, "second").getAbsolutePath(), "../first/");
+
+        assertTrue(new File(target, MetadataRepositoryWriter.COMPOSITE_CONTENT_XML).isFile());
+        assertTrue(new File(target, MetadataRepositoryWriter.COMPOSITE_ARTIFACTS_XML).isFile());
+        assertEquals(Arrays.asList("../first", "../second"), MetadataRepositoryReader.readCompositeChildren(target));
+    }
+
+    public void testFailsOnALocalChildWhichIsNotARepository() throws Exception {
+        assertTrue(new File(directory, "empty").mkdirs());
+
+        String message = assertFails(false, false, "../first", "../empty", "../missing");
+        assertTrue(message, message.contains("../empty (" + new File(directory, "empty").getAbsolutePath() +
+                " is not a p2 repository)"));
+        assertTrue(message, message.contains("../missing ("));
+        assertFalse(message, message.contains("../first"));
+        assertFalse(new File(target, MetadataRepositoryWriter.COMPOSITE_CONTENT_XML).exists());
+    }
+
+    public void testChecksThatRemoteChildrenServeMetadata() throws Exception {
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", exchange -> {
+            int status = exchange.getRequestURI().getPath().equals("/releases/content.jar") ? 200 : 404;
+            exchange.sendResponseHeaders(status, -1);
+            exchange.close();
+        });
+        server.start();
+        try {
+            String base = "http://127.0.0.1:" + server.getAddress().getPort();
+            generate(false, false, "../first", base + "/releases");
+            assertEquals(Arrays.asList("../first", base + "/releases"),
+                    MetadataRepositoryReader.readCompositeChildren(target));
+
+            String message = assertFails(false, false, "../first", base + "/releases", base + "/snapshots");
+            assertEquals("Unreachable child repositories: " + base + "/snapshots (no p2 metadata found)", message);
+
+            // offline, the remote children are referenced without being validated
+            generate(false, true, base + "/snapshots");
+            assertEquals(Collections.singletonList(base + "/snapshots"),
+                    MetadataRepositoryReader.readCompositeChildren(target));
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    public void testFlattensNestedCompositeChildren() throws Exception {
+        File nested = new File(directory, "nested");
+        CompositeRepositoryGenerator generator = createGenerator(nested, false, false, "../second");
+        generator.generate();
+        // leftovers of a previous composite or simple repository at the target
+        assertTrue(target.mkdirs());
+        Files.write(new File(target, MetadataRepositoryWriter.COMPOSITE_CONTENT_XML).toPath(), new byte[1]);
+        Files.write(new File(target, "content.xml.xz").toPath(), new byte[1]);
+        assertTrue(new File(target, "plugins").mkdirs());
+        Files.write(new File(target, "plugins/org.example.stale_1.0.0.jar").toPath(), new byte[1]);
+
+        generate(true, false, "../first", "../nested");
+
+        assertFalse(new File(target, MetadataRepositoryWriter.COMPOSITE_CONTENT_XML).exists());
+        assertFalse(new File(target, "content.xml.xz").exists());
+        Set<String> units = new TreeSet<>();
+        for (InstallableUnit unit : MetadataRepositoryReader.readMetadataRepository(target)) {
+            units.add(unit.getKey());
+        }
+        assertEquals(new TreeSet<>(Arrays.asList("org.example.api/1.0.0", "org.example.feature.jar/1.0.0",
+                "org.example.feature.group/1.0.0", "org.example.impl/1.2.0")), units);
+        List<String> artifacts = new ArrayList<>();
+        for (ArtifactDescriptor artifact : MetadataRepositoryReader.readArtifactRepository(target)) {
+            artifacts.add(artifact.getKey().getClassifier() + "/" + artifact.getKey().getId());
+        }
+        Collections.sort(artifacts);
+        // the bundle held by both children is listed once
+        assertEquals(Arrays.asList("org.eclipse.update.feature/org.example", "osgi.bundle/org.example.api",
+                "osgi.bundle/org.example.impl"), artifacts);
+        assertEquals(new TreeSet<>(Arrays.asList("org.example.api_1.0.0.jar", "org.example.impl_1.2.0.jar")),
+                new TreeSet<>(Arrays.asList(new File(target, "plugins").list())));
+        assertTrue(new File(target, "features/org.example_1.0.0.jar").isFile());
+    }
+
+    public void testFlattenRejectsRemoteAndSelfReferencingChildren() throws Exception {
+        String message = assertFails(true, false, "../first", "http://127.0.0.1:1/releases");
+        assertTrue(message, message.contains("remote repositories cannot be flattened"));
+
+        File loop = new File(directory, "loop");
+        assertTrue(loop.mkdirs());
+        MetadataRepositoryWriter.writeCompositeRepository(loop, "loop", Arrays.asList("../first", "."), false);
+        message = assertFails(true, false, "../loop");
+        assertTrue(message, message.contains("references itself"));
+
+        new RepositoryFixture(target).bundle("org.example.api", "1.0.0", "api").write(false);
+        message = assertFails(true, false, "../first", ".");
+        assertTrue(message, message.contains("cannot be one of its own children"));
+    }
+
+    private void generate(boolean flatten, boolean offline, String... children) throws Exception {
+        createGenerator(target, flatten, offline, children).generate();
+    }
+
+    private String assertFails(boolean flatten, boolean offline, String... children) throws Exception {
+        try {
+            generate(flatten, offline, children);
+            fail("The generation should fail");
+            return null;
+        } catch (MojoFailureException e) {
+            return e.getMessage();
+        }
+    }
+
+    private static CompositeRepositoryGenerator createGenerator(File repository, boolean flatten, boolean offline,
+                                                                String... children) {
+        CompositeRepositoryGenerator generator = new CompositeRepositoryGenerator();
+        generator.setTargetRepository(repository);
+        generator.setChildren(Arrays.asList(children));
+        generator.setFlatten(flatten);
+        generator.setOffline(offline);
+        generator.setLog(new SystemStreamLog());
+        return generator;
+    }
+}
@@ -0,0 +1,160 @@
+/*
+ *  Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.wso2.maven.p2.repository.delta;
+
+import junit.framework.TestCase;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.wso2.maven.p2.metadata.ArtifactDescriptor;
+import org.wso2.maven.p2.metadata.InstallableUnit;
+import org.wso2.maven.p2.metadata.MetadataRepositoryReader;
+import org.wso2.maven.p2.metadata.RepositoryFixture;
+import org.wso2.maven.p2.utils.FileManagementUtil;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Tests the IUs and artifacts {@link DeltaRepositoryGenerator} finds added, changed and removed, and the delta
+ * repository and report it writes.
+ */
+public class DeltaRepositoryGeneratorTest extends TestCase {
+
+    private File directory;
+    private File base;
+    private File current;
+    private File target;
+    private File report;
+
+    @Override
+    protected void setUp() throws Exception {
+        directory = Files.createTempDirectory("delta").toFile();
+        base = new RepositoryFixture(new File(directory, "base"))
+                .bundle("org.example.api", "1.0.0", "api")
+                .bundle("org.example.impl", "1.2.0", "implementation")
+                .bundle("org.example.old", "1.0.0", "old")
+                .feature("org.example", "1.0.0", "org.example.api/1.0.0", "org.example.impl/1.2.0")
+                .write(true);
+        // the impl bundle is rebuilt with the same version, and the feature group gains a property
+        current = new RepositoryFixture(new File(directory, "current"))
+                .bundle("org.example.api", "1.0.0", "api")
+                .bundle("org.example.impl", "1.2.0", "implementation, patched")
+                .bundle("org.example.new", "1.0.0", "new")
+                .feature("org.example", "1.0.0", "org.example.api/1.0.0", "org.example.impl/1.2.0")
+                .property("org.example.feature.group/1.0.0", "org.eclipse.equinox.p2.description", "patched")
+                .write(false);
+        target = new File(directory, "delta");
+        report = new File(directory, "reports/delta.txt");
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        FileManagementUtil.deleteDirectories(directory);
+    }
+
+    public void testHoldsTheAddedAndChangedContent() throws Exception {
+        generate(base, current, target);
+
+        Set<String> units = new TreeSet<>();
+        for (InstallableUnit unit : MetadataRepositoryReader.readMetadataRepository(target)) {
+            units.add(unit.getKey());
+        }
+        assertEquals(new TreeSet<>(Arrays.asList("org.example.feature.group/1.0.0", "org.example.new/1.0.0")),
+                units);
+        Set<String> artifacts = new TreeSet<>();
+        for (ArtifactDescriptor artifact : MetadataRepositoryReader.readArtifactRepository(target)) {
+            artifacts.add(artifact.getKey().getId());
+        }
+        assertEquals(new TreeSet<>(Arrays.asList("org.example.impl", "org.example.new")), artifacts);
+        assertEquals(new TreeSet<>(Arrays.asList("org.example.impl_1.2.0.jar", "org.example.new_1.0.0.jar")),
+                new TreeSet<>(Arrays.asList(new File(target, "plugins").list())));
+        assertFalse(new File(target, "features").exists());
+    }
+
+    public void testReportsTheAddedChangedAndRemovedContent() throws Exception {
+        generate(base, current, target);
+
+        List<String> lines = Files.readAllLines(report.toPath(), StandardCharsets.UTF_8);
+        assertTrue(lines.contains("IUs: 1 added, 1 changed, 1 removed, 3 unchanged"));
+        assertTrue(lines.contains("Artifacts: 1 added, 1 changed, 1 removed, 2 unchanged"));
+        List<String> entries = new ArrayList<>();
+        for (String line : lines) {
+            if (line.matches("[+~-] .*")) {
+                entries.add(line);
+            }
+        }
+        assertEquals(Arrays.asList(
+                "+ iu org.example.new/1.0.0",
+                "~ iu org.example.feature.group/1.0.0",
+                "- iu org.example.old/1.0.0",
+                "+ artifact osgi.bundle/org.example.new/1.0.0",
+                "~ artifact osgi.bundle/org.example.impl/1.2.0",
+                "- artifact osgi.bundle/org.example.old/1.0.0"), entries);
+    }
+
+    public void testFindsAnArtifactChangedWithTheSameSize() throws Exception {
+        File rebuilt = new RepositoryFixture(new File(directory, "rebuilt"))
+                .bundle("org.example.api", "1.0.0", "apu")
+                .write(false);
+        File original = new RepositoryFixture(new File(directory, "original"))
+                .bundle("org.example.api", "1.0.0", "api")
+                .write(false);
+        assertEquals(new File(original, "plugins/org.example.api_1.0.0.jar").length(),
+                new File(rebuilt, "plugins/org.example.api_1.0.0.jar").length());
+
+        generate(original, rebuilt, target);
+
+        List<String> lines = Files.readAllLines(report.toPath(), StandardCharsets.UTF_8);
+        assertTrue(lines.contains("IUs: 0 added, 0 changed, 0 removed, 1 unchanged"));
+        assertTrue(lines.contains("~ artifact osgi.bundle/org.example.api/1.0.0"));
+        assertTrue(new File(target, "plugins/org.example.api_1.0.0.jar").isFile());
+    }
+
+    public void testRejectsATargetWhichIsAComparedRepository() throws Exception {
+        byte[] content = Files.readAllBytes(new File(base, "content.jar").toPath());
+        assertRejected(base, current, new File(directory, "current/../base"));
+        assertRejected(base, current, new File(current.getAbsolutePath() + File.separator + "."));
+        assertTrue(Arrays.equals(content, Files.readAllBytes(new File(base, "content.jar").toPath())));
+        assertTrue(new File(base, "plugins/org.example.old_1.0.0.jar").isFile());
+        assertTrue(new File(current, "plugins/org.example.new_1.0.0.jar").isFile());
+    }
+
+    private void assertRejected(File baseRepository, File repository, File targetRepository) throws Exception {
+        try {
+            generate(baseRepository, repository, targetRepository);
+            fail("The target " + targetRepository + " should be rejected");
+        } catch (MojoFailureException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("cannot be the base repository or the repository"));
+        }
+    }
+
+    private void generate(File baseRepository, File repository, File targetRepository) throws Exception {
+        DeltaRepositoryGenerator generator = new DeltaRepositoryGenerator();
+        generator.setBaseRepository(baseRepository);
+        generator.setRepository(repository);
+        generator.setTargetRepository(targetRepository);
+        generator.setReport(report);
+        generator.setLog(new SystemStreamLog());
+        generator.generate();
+    }
+}
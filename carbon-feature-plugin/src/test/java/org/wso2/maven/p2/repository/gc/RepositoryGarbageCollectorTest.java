@@ -0,0 +1,119 @@
+/*
+ *  Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.wso2.maven.p2.repository.gc;
+
+import junit.framework.TestCase;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.wso2.maven.p2.metadata.InstallableUnit;
+import org.wso2.maven.p2.metadata.MetadataRepositoryReader;
+import org.wso2.maven.p2.utils.FileManagementUtil;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Tests the reachability computed by {@link RepositoryGarbageCollector}.
+ */
+public class RepositoryGarbageCollectorTest extends TestCase {
+
+    private File repository;
+
+    @Override
+    protected void setUp() throws Exception {
+        repository = Files.createTempDirectory("gc").toFile();
+        String content = "<?xml version='1.0' encoding='UTF-8'?>\n" +
+                "<?metadataRepository version='1.1.0'?>\n" +
+                "<repository name='test' type='org.eclipse.equinox.internal.p2.metadata.repository" +
+                ".LocalMetadataRepository' version='1'>\n" +
+                "  <units size='5'>\n" +
+                feature("1.0.0", "[1.0.0,2.0.0)") +
+                feature("0.9.0", "[1.0.0,2.0.0)") +
+                bundle("1.0.0") +
+                bundle("1.5.0") +
+                bundle("2.0.0") +
+                "  </units>\n" +
+                "</repository>\n";
+        Files.write(new File(repository, "content.xml").toPath(), content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        FileManagementUtil.deleteDirectories(repository);
+    }
+
+    public void testRetainsEveryProviderWithinRange() throws Exception {
+        collect(false);
+        assertEquals(set("f.feature.group/1.0.0", "b/1.0.0", "b/1.5.0"), readUnits());
+    }
+
+    public void testRetainsHighestProviderOnlyWhenRequested() throws Exception {
+        collect(true);
+        assertEquals(set("f.feature.group/1.0.0", "b/1.5.0"), readUnits());
+    }
+
+    private void collect(boolean highestProviderOnly) throws Exception {
+        RepositoryGarbageCollector collector = new RepositoryGarbageCollector();
+        collector.setRepository(repository);
+        collector.setKeepLatest(1);
+        collector.setHighestProviderOnly(highestProviderOnly);
+        collector.setLog(new SystemStreamLog());
+        collector.collect();
+    }
+
+    private Set<String> readUnits() throws Exception {
+        Set<String> keys = new HashSet<>();
+        for (InstallableUnit unit : MetadataRepositoryReader.readMetadataRepository(repository)) {
+            keys.add(unit.getKey());
+        }
+        return keys;
+    }
+
+    private static Set<String> set(String... keys) {
+        Set<String> set = new HashSet<>();
+        for (String key : keys) {
+            set.add(key);
+        }
+        return set;
+    }
+
+    private static String feature(String version, String range) {
+        return "    <unit id='f.feature.group' version='" + version + "'>\n" +
+                "      <properties size='1'>\n" +
+                "        <property name='org.eclipse.equinox.p2.type.group' value='true'/>\n" +
+                "      </properties>\n" +
+                "      <provides size='1'>\n" +
+                "        <provided namespace='org.eclipse.equinox.p2.iu' name='f.feature.group' version='" +
+                version + "'/>\n" +
+                "      </provides>\n" +
+                "      <requires size='1'>\n" +
+                "        <required namespace='osgi.bundle' name='b' range='" + range + "'/>\n" +
+                "      </requires>\n" +
+                "    </unit>\n";
+    }
+
+    private static String bundle(String version) {
+        return "    <unit id='b' version='" + version + "'>\n" +
+                "      <provides size='2'>\n" +
+                "        <provided namespace='org.eclipse.equinox.p2.iu' name='b' version='" + version + "'/>\n" +
+                "        <provided namespace='osgi.bundle' name='b' version='" + version + "'/>\n" +
+                "      </provides>\n" +
+                "    </unit>\n";
+    }
+}
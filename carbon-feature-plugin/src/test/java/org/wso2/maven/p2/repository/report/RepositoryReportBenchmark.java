@@ -0,0 +1,118 @@
+/*
+ *  Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.wso2.maven.p2.repository.report;
+
+import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.wso2.maven.p2.metadata.RepositoryFixture;
+import org.wso2.maven.p2.utils.FileManagementUtil;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+/**
+ * Measures the time {@link RepositoryReport} takes on a generated repository the size of a large product: bundles
+ * published in one version, a few of them in two, features including overlapping ranges of bundles and categories
+ * grouping the features. The first report is timed in a fresh JVM, as it is computed once per build, then the median
+ * of the following rounds is reported.
+ * <p>
+ * It is not a test, as its timings depend on the machine. Run it from the test classpath with
+ * {@code java org.wso2.maven.p2.repository.report.RepositoryReportBenchmark [bundles] [rounds]}.
+ * </p>
+ */
+public class RepositoryReportBenchmark {
+
+    private static final int BUNDLES_PER_FEATURE = 80;
+    private static final int FEATURES_PER_CATEGORY = 20;
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args the number of bundles (10000 by default) and of timed rounds after the first one (5 by default)
+     * @throws IOException if the repository or the report cannot be written
+     */
+    public static void main(String[] args) throws IOException {
+        int bundles = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        File directory = Files.createTempDirectory("report-benchmark").toFile();
+        try {
+            long start = System.nanoTime();
+            File repository = generate(new File(directory, "repository"), bundles);
+            System.out.println(String.format("Generated %d bundles and %d features in %d ms", bundles,
+                    bundles / (BUNDLES_PER_FEATURE / 2), (System.nanoTime() - start) / 1000000));
+
+            // the report logs its own time, which is the one measured here
+            Log log = new SystemStreamLog() {
+                @Override
+                public void info(CharSequence content) {
+                }
+            };
+            File jsonFile = new File(directory, "report.json");
+            File htmlFile = new File(directory, "report.html");
+            long[] millis = new long[rounds + 1];
+            for (int round = 0; round <= rounds; round++) {
+                start = System.nanoTime();
+                new RepositoryReport(repository, 20, log).write(jsonFile, htmlFile);
+                millis[round] = (System.nanoTime() - start) / 1000000;
+            }
+            long first = millis[0];
+            long[] following = Arrays.copyOfRange(millis, 1, millis.length);
+            Arrays.sort(following);
+            System.out.println(String.format("First report %d ms, median of %d following reports %d ms (JSON %d KB, " +
+                    "HTML %d KB)", first, rounds, rounds > 0 ? following[rounds / 2] : first,
+                    jsonFile.length() / 1024, htmlFile.length() / 1024));
+        } finally {
+            FileManagementUtil.deleteDirectories(directory);
+        }
+    }
+
+    /**
+     * Generates a repository of the given number of bundles. Each feature includes a range of bundles overlapping by
+     * half with the range of the next feature, so that most bundles are shared by two features, and every hundredth
+     * bundle is also published in a second version included by no feature.
+     */
+    private static File generate(File repository, int bundles) throws IOException {
+        RepositoryFixture fixture = new RepositoryFixture(repository);
+        for (int i = 0; i < bundles; i++) {
+            fixture.bundle(bundleId(i), "1.0.0", "bundle " + i);
+            if (i % 100 == 0) {
+                fixture.bundle(bundleId(i), "1.1.0", "bundle " + i + ", next version");
+            }
+        }
+        int features = bundles / (BUNDLES_PER_FEATURE / 2);
+        String[] categoryMembers = new String[FEATURES_PER_CATEGORY];
+        for (int feature = 0; feature < features; feature++) {
+            String[] includes = new String[BUNDLES_PER_FEATURE];
+            for (int i = 0; i < BUNDLES_PER_FEATURE; i++) {
+                includes[i] = bundleId((feature * BUNDLES_PER_FEATURE / 2 + i) % bundles) + "/1.0.0";
+            }
+            String id = "org.example.feature" + feature;
+            fixture.feature(id, "1.0.0", includes);
+            categoryMembers[feature % FEATURES_PER_CATEGORY] = id + ".feature.group/1.0.0";
+            if (feature % FEATURES_PER_CATEGORY == FEATURES_PER_CATEGORY - 1) {
+                fixture.category("Category " + feature / FEATURES_PER_CATEGORY, categoryMembers);
+            }
+        }
+        return fixture.write(true);
+    }
+
+    private static String bundleId(int index) {
+        return "org.example.bundle" + index;
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ *  Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.wso2.maven.p2.repository.report;
+
+import junit.framework.TestCase;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.wso2.maven.p2.metadata.RepositoryFixture;
+import org.wso2.maven.p2.utils.FileManagementUtil;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+
+/**
+ * Tests the JSON report {@link RepositoryReport} writes for a small repository: two categorized features sharing a
+ * bundle, an uncategorized feature and a bundle present in two versions.
+ */
+public class RepositoryReportTest extends TestCase {
+
+    private File directory;
+    private File repository;
+    private List<String> json;
+
+    @Override
+    protected void setUp() throws Exception {
+        directory = Files.createTempDirectory("report").toFile();
+        repository = new RepositoryFixture(new File(directory, "repository"))
+                .bundle("org.example.api", "1.0.0", "api")
+                .bundle("org.example.api", "1.1.0", "api, next version")
+                .bundle("org.example.impl", "1.2.0", "implementation")
+                .bundle("org.example.tools", "1.0.0", "tools")
+                .feature("org.example.core", "1.0.0", "org.example.api/1.0.0", "org.example.impl/1.2.0")
+                .feature("org.example.tools", "1.0.0", "org.example.impl/1.2.0", "org.example.tools/1.0.0")
+                .feature("org.example.next", "1.0.0", "org.example.api/1.1.0")
+                .category("Server", "org.example.core.feature.group/1.0.0", "org.example.tools.feature.group/1.0.0")
+                .write(true);
+        File jsonFile = new File(directory, "report/report.json");
+        File htmlFile = new File(directory, "report/report.html");
+        new RepositoryReport(repository, 2, new SystemStreamLog()).write(jsonFile, htmlFile);
+        json = Files.readAllLines(jsonFile.toPath(), StandardCharsets.UTF_8);
+        assertTrue(new String(Files.readAllBytes(htmlFile.toPath()), StandardCharsets.UTF_8).contains(
+                "<td>org.example.next.feature.group/1.0.0</td>"));
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        FileManagementUtil.deleteDirectories(directory);
+    }
+
+    public void testCountsUnitsAndArtifacts() throws Exception {
+        // 4 bundles, a jar and a group for each of the 3 features, and the category
+        assertLine("  \"units\": 11,");
+        assertLine("  \"artifacts\": 7,");
+        assertLine("  \"artifactBytes\": " + (sizeOf("plugins") + sizeOf("features")) + ",");
+        assertLine("  \"metadataBytes\": " + (new File(repository, "content.jar").length() +
+                new File(repository, "artifacts.jar").length()) + ",");
+        assertLine("    {\"classifier\": \"osgi.bundle\", \"artifacts\": 4, \"bytes\": " + sizeOf("plugins") +
+                ", \"uncompressedBytes\": " + "apiapi, next versionimplementationtools".length() + ", ");
+    }
+
+    public void testReportsTheBytesEachFeatureBringsIn() throws Exception {
+        long core = bundle("org.example.api_1.0.0") + bundle("org.example.impl_1.2.0") + feature("org.example.core");
+        assertLine("    {\"id\": \"org.example.core.feature.group\", \"version\": \"1.0.0\", \"artifacts\": 3, " +
+                "\"bytes\": " + core + ", \"exclusiveBytes\": " + (core - bundle("org.example.impl_1.2.0")) + "}");
+        long next = bundle("org.example.api_1.1.0") + feature("org.example.next");
+        assertLine("    {\"id\": \"org.example.next.feature.group\", \"version\": \"1.0.0\", \"artifacts\": 2, " +
+                "\"bytes\": " + next + ", \"exclusiveBytes\": " + next + "}");
+    }
+
+    public void testReportsSharedAndDuplicateBundles() throws Exception {
+        assertLine("    {\"bundle\": \"osgi.bundle/org.example.impl/1.2.0\", \"bytes\": " +
+                bundle("org.example.impl_1.2.0") + ", \"features\": [\"org.example.core.feature.group/1.0.0\", " +
+                "\"org.example.tools.feature.group/1.0.0\"]}");
+        assertEquals(1, count("{\"bundle\": "));
+        assertLine("    {\"id\": \"org.example.api\", \"versions\": [\"1.0.0\", \"1.1.0\"], \"bytes\": " +
+                (bundle("org.example.api_1.0.0") + bundle("org.example.api_1.1.0")) + "}");
+        assertEquals(1, count("\"versions\": "));
+        assertEquals(2, count("{\"artifact\": "));
+    }
+
+    public void testReportsCategoriesAndUncategorizedFeatures() throws Exception {
+        assertLine("    {\"name\": \"Server\", \"features\": [\"org.example.core.feature.group/1.0.0\", " +
+                "\"org.example.tools.feature.group/1.0.0\"]}");
+        assertLine("  \"uncategorizedFeatures\": [\"org.example.next.feature.group/1.0.0\"]");
+    }
+
+    private void assertLine(String prefix) {
+        for (String line : json) {
+            if (line.startsWith(prefix)) {
+                return;
+            }
+        }
+        fail("No line starting with " + prefix + " in\n" + String.join("\n", json));
+    }
+
+    private int count(String fragment) {
+        int count = 0;
+        for (String line : json) {
+            if (line.contains(fragment)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private long sizeOf(String folder) {
+        long size = 0;
+        File[] files = new File(repository, folder).listFiles();
+        assertNotNull(files);
+        for (File file : files) {
+            size += file.length();
+        }
+        return size;
+    }
+
+    private long bundle(String name) {
+        return new File(repository, "plugins/" + name + ".jar").length();
+    }
+
+    private long feature(String id) {
+        return new File(repository, "features/" + id + "_1.0.0.jar").length();
+    }
+}
@@ -0,0 +1,209 @@
+/*
+ *  Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.wso2.maven.p2.utils;
+
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Differential test of {@link BundleUtils#getOSGIVersion(String)} against the regex based conversion it replaced,
+ * which is kept below as the reference.
+ */
+public class BundleUtilsTest extends TestCase {
+
+    /**
+     * Versions exercising each step of the conversion: already OSGi compliant versions, dated snapshots, the first
+     * dash turned into a dot by replaceFirst, dots in the qualifier, zero filling and the fallback which turns the
+     * whole version into a qualifier.
+     */
+    private static final String[] EDGE_CASES = {
+            "1.0.0", "1.0.0.v20150101", "1.2.3.GA", "10.20.30.a-b_c", "1.0.0-SNAPSHOT", "1.0.0.", "1.0.0.-",
+            "1", "1.2", "1.2.3", "01.02.03", "0", "0.0", "1.2.3.4", "1.2.3.4.5", "1.2.3-4-5",
+            "1-SNAPSHOT", "1.2-SNAPSHOT", "1.2.3-SNAPSHOT", "1.2.3-beta-1", "1.2.3-beta.1", "1.2-beta-1",
+            "1-20150101.123456-1", "1.2-20150101.123456-12", "1.2.3-20150101.123456-3", "12-20150101.123456-1",
+            "1.2.3-20150101.123456", "1.0-alpha.1.2", "1.0.alpha.beta", "1.alpha.beta", "1.2.alpha.beta.gamma",
+            "1.0.1.beta.2", "1.5.0.wso2v1", "2.1.1.wso2v2-SNAPSHOT", "3.0.0-m1", "4.4.1-wso2v1",
+            "1.2.3.4-SNAPSHOT", "1.0.x", "1.x", "x", "x.y.z", "alpha", "RELEASE", "1.0-", "1.0--", "-1", "--",
+            "-", "", ".", "..", "1..2", "1.2..3", ".1", "1.", "1.2.", "a.1", "1.a", "1.2.a", "1_2", "1.2_3",
+            "1.0.0.v_1-2", "1.0.0.a.b", "1.0.0-a.b.c", "1.0.0 beta", "1.0 .0", "1.0.0+build", "1.0.0~rc1",
+            "9999999999.0.0", "1.9999999999", "1.2.3-9999999999", "00001", "1.00", "1.0.00", "1.0.0.000",
+            "1.2-3", "1.2-3.4", "1-2", "1-2-3", "1-a-b", "1.a-b.c-d", "1.2.a-b.c-d", "1.0.0.v1.2.3",
+            "1.2.3-RC1.wso2v1", "5.0.0-alpha-SNAPSHOT", "6.0.0-m4-SNAPSHOT", "2.0.0.alpha_1.beta",
+            "1-20150101.123456-", "1-2015010.123456-1", "1.2.3.4-20150101.123456-1", "a-20150101.123456-1",
+    };
+
+    private static final String ALPHABET = "0123456789.-_aZ";
+
+    public void testEdgeCases() {
+        for (String version : EDGE_CASES) {
+            assertEquals(version, LegacyConverter.getOSGIVersion(version), BundleUtils.getOSGIVersion(version));
+        }
+    }
+
+    public void testGeneratedVersions() {
+        Random random = new Random(20150101L);
+        for (String version : generate(random, 200000)) {
+            assertEquals(version, LegacyConverter.getOSGIVersion(version), BundleUtils.getOSGIVersion(version));
+        }
+    }
+
+    public void testRepeatedConversionsAreStable() {
+        for (String version : EDGE_CASES) {
+            String first = BundleUtils.getOSGIVersion(version);
+            assertEquals(version, first, BundleUtils.getOSGIVersion(version));
+        }
+    }
+
+    /**
+     * Generates versions made of numeric segments followed by a mix of dots, dashes and letters, so that every branch
+     * of the conversion is reached many times.
+     */
+    private static List<String> generate(Random random, int count) {
+        List<String> versions = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            StringBuilder version = new StringBuilder();
+            int segments = random.nextInt(4);
+            for (int segment = 0; segment < segments; segment++) {
+                if (segment > 0) {
+                    version.append('.');
+                }
+                version.append(random.nextInt(random.nextBoolean() ? 10 : 1000));
+            }
+            if (random.nextInt(5) == 0) {
+                version.append('-').append(20150000 + random.nextInt(10000)).append('.')
+                        .append(100000 + random.nextInt(900000));
+                if (random.nextBoolean()) {
+                    version.append('-').append(random.nextInt(20));
+                }
+            } else {
+                int tail = random.nextInt(8);
+                for (int j = 0; j < tail; j++) {
+                    version.append(ALPHABET.charAt(random.nextInt(ALPHABET.length())));
+                }
+            }
+            versions.add(version.toString());
+        }
+        return versions;
+    }
+
+    /**
+     * The conversion as implemented before the scanner, taken from DefaultMaven2OsgiConverter.
+     */
+    static final class LegacyConverter {
+
+        private static final Pattern OSGI_VERSION_PATTERN =
+                Pattern.compile("[0-9]+\\.[0-9]+\\.[0-9]+(\\.[0-9A-Za-z_-]+)?");
+        private static final Pattern ONLY_NUMBERS = Pattern.compile("[0-9]+");
+
+        static String getOSGIVersion(String version) {
+            String osgiVersion;
+            Matcher m;
+
+            m = OSGI_VERSION_PATTERN.matcher(version);
+            if (m.matches()) {
+                return version;
+            }
+
+            osgiVersion = version;
+
+            Pattern datedSnapshotPattern =
+                    Pattern.compile("([0-9])(\\.([0-9]))?(\\.([0-9]))?\\-([0-9]{8}\\.[0-9]{6}\\-[0-9]*)");
+            m = datedSnapshotPattern.matcher(osgiVersion);
+            if (m.matches()) {
+                String major = m.group(1);
+                String minor = (m.group(3) != null) ? m.group(3) : "0";
+                String service = (m.group(5) != null) ? m.group(5) : "0";
+                String qualifier = m.group(6).replaceAll("-", "_").replaceAll("\\.", "_");
+                osgiVersion = major + "." + minor + "." + service + "." + qualifier;
+            }
+
+            osgiVersion = osgiVersion.replaceFirst("-", "\\.");
+            osgiVersion = osgiVersion.replaceAll("-", "_");
+            m = OSGI_VERSION_PATTERN.matcher(osgiVersion);
+            if (m.matches()) {
+                return osgiVersion;
+            }
+
+            Pattern dotsInQualifierPattern =
+                    Pattern.compile("([0-9])(\\.[0-9])?\\.([0-9A-Za-z_-]+)\\.([0-9A-Za-z_-]+)");
+            m = dotsInQualifierPattern.matcher(osgiVersion);
+            if (m.matches()) {
+                String s1 = m.group(1);
+                String s2 = m.group(2);
+                String s3 = m.group(3);
+                String s4 = m.group(4);
+
+                Matcher qualifierMatcher = ONLY_NUMBERS.matcher(s3);
+                if (!qualifierMatcher.matches()) {
+                    osgiVersion = s1 + s2 + "." + s3 + "_" + s4;
+                }
+            }
+
+            Pattern needToFillZerosPattern = Pattern.compile("([0-9])(\\.([0-9]))?(\\.([0-9A-Za-z_-]+))?");
+            m = needToFillZerosPattern.matcher(osgiVersion);
+            if (m.matches()) {
+                String major = m.group(1);
+                String minor = m.group(3);
+                String service = null;
+                String qualifier = m.group(5);
+
+                if (qualifier == null) {
+                    osgiVersion = getOSGIVersion(major, minor, null, null);
+                } else {
+                    Matcher qualifierMatcher = ONLY_NUMBERS.matcher(qualifier);
+                    if (qualifierMatcher.matches()) {
+                        if (minor == null) {
+                            minor = qualifier;
+                        } else {
+                            service = qualifier;
+                        }
+                        osgiVersion = getOSGIVersion(major, minor, service, null);
+                    } else {
+                        osgiVersion = getOSGIVersion(major, minor, null, qualifier);
+                    }
+                }
+            }
+
+            m = OSGI_VERSION_PATTERN.matcher(osgiVersion);
+            if (!m.matches()) {
+                String qualifier = osgiVersion.replaceAll("\\.", "_");
+                osgiVersion = "0.0.0." + qualifier;
+            }
+
+            return osgiVersion;
+        }
+
+        private static String getOSGIVersion(String major, String minor, String service, String qualifier) {
+            StringBuilder sb = new StringBuilder();
+            sb.append(major != null ? major : "0");
+            sb.append('.');
+            sb.append(minor != null ? minor : "0");
+            sb.append('.');
+            sb.append(service != null ? service : "0");
+            if (qualifier != null) {
+                sb.append('.');
+                sb.append(qualifier);
+            }
+            return sb.toString();
+        }
+    }
+}
@@ -0,0 +1,53 @@
+/*
+ *  Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.wso2.maven.p2.utils;
+
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+/**
+ * Tests {@link DigestUtils} against the published test vectors of the algorithms.
+ */
+public class DigestUtilsTest extends TestCase {
+
+    public void testStringDigest() {
+        assertEquals("ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad", DigestUtils.sha256("abc"));
+    }
+
+    public void testFileDigests() throws Exception {
+        File file = File.createTempFile("digest", ".txt");
+        try {
+            Files.write(file.toPath(), "abc".getBytes(StandardCharsets.UTF_8));
+            assertEquals("ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad", DigestUtils.sha256(file));
+            assertEquals("900150983cd24fb0d6963f7d28e17f72",
+                    DigestUtils.toHex(DigestUtils.digest(file, DigestUtils.MD5)));
+            assertEquals("a9993e364706816aba3e25717850c26c9cd0d89d",
+                    DigestUtils.toHex(DigestUtils.digest(file, DigestUtils.SHA_1)));
+        } finally {
+            assertTrue(file.delete());
+        }
+    }
+
+    public void testHexPrefix() {
+        byte[] bytes = {0x00, 0x0f, (byte) 0xf0, (byte) 0xff, 0x12};
+        assertEquals("000ff0ff12", DigestUtils.toHex(bytes));
+        assertEquals("000ff0", DigestUtils.toHex(bytes, 3));
+    }
+}
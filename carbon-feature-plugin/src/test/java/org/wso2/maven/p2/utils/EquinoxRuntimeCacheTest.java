@@ -0,0 +1,300 @@
+/*
+ *  Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.wso2.maven.p2.utils;
+
+import junit.framework.TestCase;
+import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.codehaus.plexus.PlexusContainer;
+import org.eclipse.sisu.equinox.embedder.EquinoxRuntimeLocator;
+import org.eclipse.sisu.equinox.launching.BundleStartLevel;
+import org.eclipse.sisu.equinox.launching.EquinoxInstallation;
+import org.eclipse.sisu.equinox.launching.EquinoxInstallationDescription;
+import org.eclipse.sisu.equinox.launching.EquinoxInstallationFactory;
+import org.eclipse.sisu.equinox.launching.EquinoxLauncher;
+import org.eclipse.sisu.equinox.launching.EquinoxLaunchingException;
+import org.eclipse.tycho.launching.LaunchConfiguration;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tests the key of the Equinox runtimes kept by {@link EquinoxRuntimeCache}, and the warmed configuration area
+ * launches start with. The Tycho components are replaced by stubs, whose launcher runs the given {@link Launch}es
+ * against the configuration area it is given instead of forking a JVM.
+ */
+public class EquinoxRuntimeCacheTest extends TestCase {
+
+    private static final String STORAGE_FILE = "org.eclipse.osgi/framework.info";
+    private static final String VM_VERSION = "25.392-b08";
+
+    private final Log log = new SystemStreamLog();
+    private final LinkedList<Launch> launches = new LinkedList<>();
+    private final List<File> configurations = new ArrayList<>();
+    private File directory;
+    private int installations;
+    private EquinoxRuntimeCache cache;
+
+    @Override
+    protected void setUp() throws Exception {
+        directory = Files.createTempDirectory("equinox-cache").toFile();
+        cache = new EquinoxRuntimeCache(createContainer(), new File(directory, "cache"));
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        FileManagementUtil.deleteDirectories(directory);
+    }
+
+    public void testKeyIsIndependentOfTheBundleOrder() throws Exception {
+        File first = createBundle("org.eclipse.osgi", "framework");
+        File second = createBundle("org.eclipse.equinox.p2.core", "core");
+
+        assertEquals(computeKey(Arrays.asList(first, second), properties("true"), startLevels(4)),
+                computeKey(Arrays.asList(second, first), properties("true"), startLevels(4)));
+    }
+
+    public void testKeyChangesWithEachInput() throws Exception {
+        File bundle = createBundle("org.eclipse.osgi", "framework");
+        List<File> bundles = Collections.singletonList(bundle);
+        String key = computeKey(bundles, properties("true"), startLevels(4));
+
+        assertFalse(key.equals(computeKey(Arrays.asList(bundle, createBundle("org.eclipse.equinox.p2.core", "core")),
+                properties("true"), startLevels(4))));
+        assertFalse(key.equals(computeKey(bundles, properties("false"), startLevels(4))));
+        assertFalse(key.equals(computeKey(bundles, properties("true"), startLevels(3))));
+        assertFalse(key.equals(EquinoxRuntimeCache.computeKey(bundles, properties("true"), startLevels(4),
+                "25.402-b06")));
+
+        long lastModified = bundle.lastModified();
+        assertTrue(bundle.setLastModified(lastModified - 60000));
+        assertFalse(key.equals(computeKey(bundles, properties("true"), startLevels(4))));
+        assertTrue(bundle.setLastModified(lastModified));
+        assertEquals(key, computeKey(bundles, properties("true"), startLevels(4)));
+
+        // the same modification time with a different size
+        Files.write(bundle.toPath(), "patched framework".getBytes(StandardCharsets.UTF_8));
+        assertTrue(bundle.setLastModified(lastModified));
+        assertFalse(key.equals(computeKey(bundles, properties("true"), startLevels(4))));
+    }
+
+    public void testReusesTheWarmedConfigurationOfASuccessfulLaunch() throws Exception {
+        launches.add(configuration -> {
+            assertFalse(new File(configuration, STORAGE_FILE).exists());
+            assertTrue(new File(configuration, "config.ini").isFile());
+            write(new File(configuration, STORAGE_FILE), "resolved");
+            return 0;
+        });
+        launches.add(configuration -> {
+            assertEquals("resolved", read(new File(configuration, STORAGE_FILE)));
+            write(new File(configuration, STORAGE_FILE), "changed by the second launch");
+            return 0;
+        });
+        launches.add(configuration -> {
+            assertEquals("resolved", read(new File(configuration, STORAGE_FILE)));
+            return 0;
+        });
+
+        for (int i = 0; i < 3; i++) {
+            assertEquals(0, execute());
+        }
+        assertTrue(launches.isEmpty());
+        assertEquals(1, installations);
+        assertEquals(3, new HashSet<>(configurations).size());
+        for (File configuration : configurations) {
+            assertFalse(configuration.exists());
+        }
+    }
+
+    public void testLaunchesWithAPrivateCopyOfTheInstalledConfiguration() throws Exception {
+        launches.add(configuration -> {
+            write(new File(configuration, "config.ini"), "changed");
+            return 1;
+        });
+        launches.add(configuration -> {
+            assertFalse("changed".equals(read(new File(configuration, "config.ini"))));
+            return 1;
+        });
+
+        assertEquals(1, execute());
+        assertEquals(1, execute());
+        assertEquals(1, installations);
+    }
+
+    public void testFailedLaunchIsNeverKeptAsTheWarmedConfiguration() throws Exception {
+        launches.add(configuration -> {
+            write(new File(configuration, STORAGE_FILE), "failed");
+            return 13;
+        });
+        launches.add(configuration -> {
+            assertFalse(new File(configuration, STORAGE_FILE).exists());
+            write(new File(configuration, STORAGE_FILE), "crashed");
+            throw new EquinoxLaunchingException(new IOException("Forked JVM crashed"));
+        });
+        launches.add(configuration -> {
+            assertFalse(new File(configuration, STORAGE_FILE).exists());
+            write(new File(configuration, STORAGE_FILE), "resolved");
+            return 0;
+        });
+        launches.add(configuration -> {
+            assertEquals("resolved", read(new File(configuration, STORAGE_FILE)));
+            return 0;
+        });
+
+        assertEquals(13, execute());
+        assertFalse(getWarmConfiguration().exists());
+        try {
+            execute();
+            fail("The launch failure should be thrown");
+        } catch (EquinoxLaunchingException e) {
+            assertEquals("Forked JVM crashed", e.getCause().getMessage());
+        }
+        assertFalse(getWarmConfiguration().exists());
+        assertEquals(0, execute());
+        assertTrue(getWarmConfiguration().isDirectory());
+        assertEquals(0, execute());
+        assertTrue(launches.isEmpty());
+    }
+
+    private int execute() throws IOException {
+        return cache.execute("org.eclipse.equinox.p2.director", null, Collections.emptyList(),
+                Arrays.asList("-destination", directory.getAbsolutePath()), 0, log);
+    }
+
+    private File getWarmConfiguration() {
+        File[] runtimes = new File(directory, "cache/equinox").listFiles();
+        assertNotNull(runtimes);
+        assertEquals(1, runtimes.length);
+        return new File(runtimes[0], "configuration-warm");
+    }
+
+    private File createBundle(String name, String content) throws IOException {
+        File bundle = new File(directory, "plugins/" + name + "_1.0.0.jar");
+        write(bundle, content);
+        return bundle;
+    }
+
+    private static String computeKey(List<File> bundles, Map<String, String> properties,
+                                     List<BundleStartLevel> startLevels) {
+        return EquinoxRuntimeCache.computeKey(bundles, properties, startLevels, VM_VERSION);
+    }
+
+    private static Map<String, String> properties(String clean) {
+        Map<String, String> properties = new LinkedHashMap<>();
+        properties.put("osgi.install.area", "file:/tmp/equinox");
+        properties.put("osgi.clean", clean);
+        return properties;
+    }
+
+    private static List<BundleStartLevel> startLevels(int level) {
+        return Collections.singletonList(new BundleStartLevel("org.eclipse.equinox.ds", level, true));
+    }
+
+    private static void write(File file, String content) throws IOException {
+        if (!file.getParentFile().isDirectory() && !file.getParentFile().mkdirs()) {
+            throw new IOException("Unable to create " + file.getParent());
+        }
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String read(File file) throws IOException {
+        return new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Creates a container providing the stubs of the Tycho components used by the cache.
+     */
+    private PlexusContainer createContainer() {
+        Map<String, Object> components = new HashMap<>();
+        components.put(EquinoxRuntimeLocator.class.getName(), (EquinoxRuntimeLocator) description -> {
+            description.addPlatformProperty("osgi.clean", "false");
+            description.addBundleStartLevel("org.eclipse.equinox.ds", 1, true);
+        });
+        components.put(EquinoxInstallationFactory.class.getName(), (EquinoxInstallationFactory) this::install);
+        components.put(EquinoxLauncher.class.getName(), (EquinoxLauncher) this::launch);
+        return (PlexusContainer) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{PlexusContainer.class}, (proxy, method, args) -> {
+                    if ("lookup".equals(method.getName()) && args.length == 1) {
+                        return components.get(args[0]);
+                    }
+                    throw new UnsupportedOperationException(method.getName());
+                });
+    }
+
+    private EquinoxInstallation install(EquinoxInstallationDescription description, File location) {
+        installations++;
+        File launcherJar = new File(location, "plugins/org.eclipse.equinox.launcher_1.3.0.jar");
+        File configuration = new File(location, "configuration");
+        try {
+            write(launcherJar, "launcher");
+            write(new File(configuration, "config.ini"), "osgi.bundles=org.eclipse.equinox.ds@1:start");
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return new EquinoxInstallation() {
+            @Override
+            public File getLauncherJar() {
+                return launcherJar;
+            }
+
+            @Override
+            public File getLocation() {
+                return location;
+            }
+
+            @Override
+            public File getConfigurationLocation() {
+                return configuration;
+            }
+
+            @Override
+            public EquinoxInstallationDescription getInstallationDescription() {
+                return description;
+            }
+        };
+    }
+
+    private int launch(LaunchConfiguration launchConfiguration, int timeout) {
+        List<String> arguments = Arrays.asList(launchConfiguration.getProgramArguments());
+        File configuration = new File(arguments.get(arguments.indexOf("-configuration") + 1));
+        configurations.add(configuration);
+        try {
+            return launches.removeFirst().run(configuration);
+        } catch (IOException e) {
+            throw new EquinoxLaunchingException(e);
+        }
+    }
+
+    /**
+     * Forked p2 application, run against the configuration area of the launch.
+     */
+    private interface Launch {
+        int run(File configuration) throws IOException;
+    }
+}
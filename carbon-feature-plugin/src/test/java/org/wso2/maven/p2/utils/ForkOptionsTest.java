@@ -0,0 +1,91 @@
+/*
+ *  Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.wso2.maven.p2.utils;
+
+import junit.framework.TestCase;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Tests the JVM arguments {@link ForkOptions} gives the forked p2 JVM.
+ */
+public class ForkOptionsTest extends TestCase {
+
+    private File cacheDirectory;
+    private final List<String> warnings = new ArrayList<>();
+    private final SystemStreamLog log = new SystemStreamLog() {
+        @Override
+        public void warn(CharSequence content) {
+            warnings.add(content.toString());
+        }
+    };
+
+    @Override
+    protected void setUp() throws Exception {
+        cacheDirectory = Files.createTempDirectory("fork-options").toFile();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        FileManagementUtil.deleteDirectories(cacheDirectory);
+    }
+
+    public void testTrimsTheUserArguments() {
+        ForkOptions forkOptions = new ForkOptions(Arrays.asList(" -Xmx512m ", "", null), false, cacheDirectory);
+
+        assertEquals(Arrays.asList("-Xmx512m"), forkOptions.getVMArguments(log));
+        assertTrue(warnings.isEmpty());
+    }
+
+    public void testClassDataSharingRequiresTheRuntimeCache() {
+        ForkOptions forkOptions = new ForkOptions(Arrays.asList("-Xmx512m"), true, cacheDirectory);
+
+        // the runtime materialized for each launch changes the class path, so an archive would never be mapped
+        assertEquals(Arrays.asList("-Xmx512m"), forkOptions.getVMArguments(log));
+        assertEquals(1, warnings.size());
+        assertTrue(warnings.get(0).contains("p2.cacheRuntime"));
+        assertFalse(new File(cacheDirectory, "cds").exists());
+    }
+
+    public void testClassDataSharingWithTheRuntimeCache() {
+        ForkOptions forkOptions = new ForkOptions(null, true, cacheDirectory);
+        forkOptions.setRuntimeCache(new EquinoxRuntimeCache(null, cacheDirectory));
+
+        List<String> arguments = forkOptions.getVMArguments(log);
+        if (isDynamicArchiveSupported()) {
+            assertTrue(warnings.isEmpty());
+            assertFalse(arguments.isEmpty());
+            for (String argument : arguments) {
+                assertTrue(argument, argument.startsWith("-XX:"));
+            }
+        } else {
+            assertTrue(arguments.isEmpty());
+            assertEquals(1, warnings.size());
+            assertTrue(warnings.get(0).contains("Java 13"));
+        }
+    }
+
+    private static boolean isDynamicArchiveSupported() {
+        String version = System.getProperty("java.specification.version");
+        return !version.startsWith("1.") && Integer.parseInt(version.split("\\.")[0]) >= 13;
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ *  Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.wso2.maven.p2.utils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Function;
+
+/**
+ * Compares the time taken to convert maven versions into OSGi versions by the regex based conversion
+ * {@link BundleUtils} used before, by the scanner which replaced it, and by the scanner behind the cache of
+ * {@link BundleUtils#getOSGIVersion(String)}.
+ * <p>
+ * Two workloads are measured. In the repeated workload a few hundred distinct versions are converted again and again,
+ * as the generators of a build convert the versions of the same dependencies for every feature. In the distinct
+ * workload every version is new, so the cache never hits and only adds its own cost. Each converter is warmed up
+ * before its rounds are timed, and the median time of a conversion is reported.
+ * </p>
+ * <p>
+ * It is not a test, as its timings depend on the machine. Run it from the test classpath with
+ * {@code java org.wso2.maven.p2.utils.OsgiVersionConversionBenchmark [rounds]}.
+ * </p>
+ */
+public class OsgiVersionConversionBenchmark {
+
+    private static final int DISTINCT_VERSIONS = 300;
+    private static final int REPETITIONS = 50;
+    private static final int WARM_UP_ROUNDS = 20;
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args the number of timed rounds of each converter and workload (15 by default)
+     */
+    public static void main(String[] args) {
+        int rounds = args.length > 0 ? Integer.parseInt(args[0]) : 15;
+        Random random = new Random(20150101L);
+        List<String> repeated = new ArrayList<>();
+        List<String> versions = generate(random, DISTINCT_VERSIONS, 0);
+        for (int i = 0; i < REPETITIONS; i++) {
+            repeated.addAll(versions);
+        }
+        Collections.shuffle(repeated, random);
+
+        System.out.println("Repeated workload, " + DISTINCT_VERSIONS + " versions converted " + REPETITIONS +
+                " times each:");
+        run("legacy regex", BundleUtilsTest.LegacyConverter::getOSGIVersion, () -> repeated, rounds);
+        run("scanner", BundleUtils::convertToOSGIVersion, () -> repeated, rounds);
+        run("scanner with cache", BundleUtils::getOSGIVersion, () -> repeated, rounds);
+
+        System.out.println("Distinct workload, " + repeated.size() + " versions converted once each:");
+        // the micro versions keep counting across rounds and converters, so that no version is seen twice
+        int[] next = {DISTINCT_VERSIONS};
+        Workload distinct = () -> {
+            List<String> generated = generate(random, repeated.size(), next[0]);
+            next[0] += repeated.size();
+            return generated;
+        };
+        run("legacy regex", BundleUtilsTest.LegacyConverter::getOSGIVersion, distinct, rounds);
+        run("scanner", BundleUtils::convertToOSGIVersion, distinct, rounds);
+        run("scanner with cache", BundleUtils::getOSGIVersion, distinct, rounds);
+    }
+
+    private static void run(String name, Function<String, String> converter, Workload workload, int rounds) {
+        long sink = 0;
+        for (int round = 0; round < WARM_UP_ROUNDS; round++) {
+            sink += convert(converter, workload.next());
+        }
+        double[] nanosPerConversion = new double[rounds];
+        for (int round = 0; round < rounds; round++) {
+            List<String> versions = workload.next();
+            long start = System.nanoTime();
+            sink += convert(converter, versions);
+            nanosPerConversion[round] = (double) (System.nanoTime() - start) / versions.size();
+        }
+        Arrays.sort(nanosPerConversion);
+        System.out.println(String.format("  %-20s median %7.1f ns, min %7.1f ns per conversion (%d)", name,
+                nanosPerConversion[rounds / 2], nanosPerConversion[0], sink));
+    }
+
+    private static long convert(Function<String, String> converter, List<String> versions) {
+        long sink = 0;
+        for (String version : versions) {
+            sink += converter.apply(version).length();
+        }
+        return sink;
+    }
+
+    /**
+     * Generates versions in the forms found in carbon products: releases, snapshots, wso2 patched versions, dated
+     * snapshots and versions which are already OSGi compliant. The micro versions count up from the given one, so
+     * that the versions are distinct.
+     */
+    private static List<String> generate(Random random, int count, int firstMicro) {
+        List<String> versions = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int major = random.nextInt(10);
+            int minor = random.nextInt(20);
+            int micro = firstMicro + i;
+            switch (random.nextInt(6)) {
+                case 0:
+                    versions.add(major + "." + minor + "." + micro);
+                    break;
+                case 1:
+                    versions.add(major + "." + minor + "." + micro + "-SNAPSHOT");
+                    break;
+                case 2:
+                    versions.add(major + "." + minor + "." + micro + ".wso2v" + random.nextInt(5));
+                    break;
+                case 3:
+                    versions.add(major + "." + minor + "." + micro + "-wso2v" + random.nextInt(5));
+                    break;
+                case 4:
+                    versions.add(major + "." + minor + "-" + (20150101 + random.nextInt(1000)) + "." +
+                            (100000 + random.nextInt(900000)) + "-" + micro);
+                    break;
+                default:
+                    versions.add(major + "." + minor + "." + micro + "-beta-" + random.nextInt(10));
+                    break;
+            }
+        }
+        return versions;
+    }
+
+    /**
+     * Supplies the versions converted in a round.
+     */
+    private interface Workload {
+        List<String> next();
+    }
+}
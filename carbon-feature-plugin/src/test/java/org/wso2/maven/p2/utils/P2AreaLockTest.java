@@ -0,0 +1,178 @@
+/*
+ *  Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.wso2.maven.p2.utils;
+
+import junit.framework.TestCase;
+import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Stress tests {@link P2AreaLock} with the threads of a parallel build and with another process.
+ */
+public class P2AreaLockTest extends TestCase {
+
+    private static final int THREADS = 16;
+    private static final int ITERATIONS = 200;
+    private static final String[] PROFILES = {"default", "worker", "analytics", "api-store"};
+
+    private File destination;
+    // the threads report waiting for the locks thousands of times
+    private final Log log = new SystemStreamLog() {
+        @Override
+        public void info(CharSequence content) {
+        }
+    };
+
+    @Override
+    protected void setUp() throws Exception {
+        destination = Files.createTempDirectory("p2area").toFile();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        FileManagementUtil.deleteDirectories(destination);
+    }
+
+    public void testKeepsLockFilesInTheAgentArea() throws Exception {
+        try (P2AreaLock ignored = P2AreaLock.lockProfile(destination.getPath(), "default", log);
+             P2AreaLock ignoredPool = P2AreaLock.lockBundlePool(destination.getPath(), log)) {
+            File locks = new File(destination, "p2/.locks");
+            assertTrue(new File(locks, "profile-default.lock").isFile());
+            assertTrue(new File(locks, "bundlepool.lock").isFile());
+        }
+    }
+
+    public void testSerializesEachProfileAndTheBundlePool() throws Exception {
+        AtomicInteger[] profileHolders = new AtomicInteger[PROFILES.length];
+        for (int i = 0; i < PROFILES.length; i++) {
+            profileHolders[i] = new AtomicInteger();
+        }
+        AtomicInteger poolHolders = new AtomicInteger();
+        AtomicInteger profilesHeld = new AtomicInteger();
+        AtomicInteger maxProfilesHeld = new AtomicInteger();
+        AtomicInteger violations = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        List<Future<?>> futures = new ArrayList<>();
+        try {
+            for (int thread = 0; thread < THREADS; thread++) {
+                int profile = thread % PROFILES.length;
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < ITERATIONS; i++) {
+                        // the lock order of an install: the profile, then the bundle pool for the director run
+                        try (P2AreaLock ignored = P2AreaLock.lockProfile(destination.getPath(), PROFILES[profile],
+                                log)) {
+                            if (profileHolders[profile].incrementAndGet() != 1) {
+                                violations.incrementAndGet();
+                            }
+                            maxProfilesHeld.accumulateAndGet(profilesHeld.incrementAndGet(), Math::max);
+                            if (i % 2 == 0) {
+                                try (P2AreaLock ignoredPool = P2AreaLock.lockBundlePool(destination.getPath(), log)) {
+                                    if (poolHolders.incrementAndGet() != 1) {
+                                        violations.incrementAndGet();
+                                    }
+                                    Thread.yield();
+                                    poolHolders.decrementAndGet();
+                                }
+                            }
+                            Thread.yield();
+                            profilesHeld.decrementAndGet();
+                            profileHolders[profile].decrementAndGet();
+                        }
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get(2, TimeUnit.MINUTES);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals("locks held by more than one thread at once", 0, violations.get());
+        assertTrue("different profiles never held at once", maxProfilesHeld.get() > 1);
+    }
+
+    public void testWaitsForTheLockOfAnotherProcess() throws Exception {
+        String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+        Process process = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+                P2AreaLockTest.class.getName(), destination.getPath()).redirectErrorStream(true).start();
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream(),
+                    StandardCharsets.UTF_8));
+            String line;
+            do {
+                line = reader.readLine();
+                assertNotNull("the other process exited before locking the bundle pool", line);
+            } while (!line.equals("locked"));
+
+            Future<?> future = executor.submit(() -> {
+                try (P2AreaLock ignored = P2AreaLock.lockBundlePool(destination.getPath(), log)) {
+                    return null;
+                }
+            });
+            try {
+                future.get(500, TimeUnit.MILLISECONDS);
+                fail("the bundle pool was locked while another process held it");
+            } catch (TimeoutException expected) {
+                // the other process still holds the lock
+            }
+            process.getOutputStream().close();
+            future.get(1, TimeUnit.MINUTES);
+            assertEquals(0, process.waitFor());
+        } finally {
+            executor.shutdownNow();
+            process.destroy();
+        }
+    }
+
+    /**
+     * Holds the bundle pool lock of the given destination until the standard input is closed, as another process
+     * running a director would.
+     *
+     * @param args the path of the destination
+     * @throws Exception if the lock cannot be acquired
+     */
+    public static void main(String[] args) throws Exception {
+        try (P2AreaLock ignored = P2AreaLock.lockBundlePool(args[0], new SystemStreamLog())) {
+            System.out.println("locked");
+            System.out.flush();
+            while (System.in.read() >= 0) {
+                // wait for the test to close the standard input
+            }
+        }
+    }
+}
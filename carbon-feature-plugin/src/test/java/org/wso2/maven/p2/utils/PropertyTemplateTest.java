@@ -0,0 +1,114 @@
+/*
+ *  Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.wso2.maven.p2.utils;
+
+import junit.framework.TestCase;
+
+import java.util.Properties;
+
+/**
+ * Tests the placeholder syntax of {@link PropertyTemplate}.
+ */
+public class PropertyTemplateTest extends TestCase {
+
+    private final Properties properties = new Properties();
+
+    @Override
+    protected void setUp() throws Exception {
+        properties.setProperty("version", "4.4.0");
+        properties.setProperty("carbon.version", "4.4.1");
+        properties.setProperty("product", "carbon");
+        properties.setProperty("kernel", "kernel-${version}");
+        properties.setProperty("release", "${kernel}.GA");
+        properties.setProperty("literal", "$${version}");
+    }
+
+    public void testReplacesPlaceholders() {
+        assertEquals("org.wso2.carbon_4.4.0", render("org.wso2.${product}_${version}"));
+        assertEquals("no placeholders", render("no placeholders"));
+        assertEquals("$ {version} $version", render("$ {version} $version"));
+    }
+
+    public void testKeepsUnresolvedPlaceholders() {
+        assertEquals("${undefined}-4.4.0", render("${undefined}-${version}"));
+        assertEquals("4.4.0-${version", render("${version}-${version"));
+        assertEquals("${4.4.0", render("${${version}"));
+    }
+
+    public void testResolvesNestedPlaceholders() {
+        assertEquals("4.4.1", render("${${product}.version}"));
+        // an unresolved placeholder is kept as it was written
+        assertEquals("${${undefined}.version}", render("${${undefined}.version}"));
+    }
+
+    public void testUsesDefaultValues() {
+        assertEquals("4.4.0", render("${version:-1.0.0}"));
+        assertEquals("1.0.0", render("${undefined:-1.0.0}"));
+        assertEquals("", render("${undefined:-}"));
+        assertEquals("4.4.0", render("${undefined:-${version}}"));
+        assertEquals("a:-b", render("${undefined:-a:-b}"));
+        assertEquals("4.4.1", render("${${undefined:-carbon}.version}"));
+    }
+
+    public void testExpandsValuesRecursively() {
+        assertEquals("kernel-4.4.0", render("${kernel}"));
+        assertEquals("kernel-4.4.0.GA", render("${release}"));
+    }
+
+    public void testKeepsEscapedPlaceholders() {
+        assertEquals("${version}", render("$${version}"));
+        assertEquals("${version} 4.4.0", render("$${version} ${version}"));
+        assertEquals("${a.${version}}", render("$${a.${version}}"));
+        assertEquals("${version", render("$${version"));
+        assertEquals("${version}", render("${undefined:-$${version}}"));
+        // an escaped placeholder in a value is kept literally rather than expanded
+        assertEquals("${version}", render("${literal}"));
+        assertEquals("${version}", PropertyTemplate.compile("$${version}").render(key -> null));
+    }
+
+    public void testDetectsCycles() {
+        properties.setProperty("self", "${self}");
+        properties.setProperty("a", "x-${b}");
+        properties.setProperty("b", "${c}");
+        properties.setProperty("c", "${a}");
+        try {
+            render("${self}");
+            fail("a property referring to itself was rendered");
+        } catch (IllegalArgumentException expected) {
+            assertEquals("Cyclic property reference: self -> self", expected.getMessage());
+        }
+        try {
+            render("${a}");
+            fail("a cycle through several properties was rendered");
+        } catch (IllegalArgumentException expected) {
+            assertEquals("Cyclic property reference: a -> b -> c -> a", expected.getMessage());
+        }
+        // a property used twice side by side is not a cycle
+        assertEquals("4.4.0/4.4.0", render("${version}/${version}"));
+        properties.setProperty("pair", "${version}-${version}");
+        assertEquals("4.4.0-4.4.0", render("${pair}"));
+    }
+
+    public void testReplacerDelegatesToTemplates() {
+        assertEquals("kernel-4.4.0_4.4.1", PropertyReplacer.replaceProperties("${kernel}_${carbon.version}",
+                properties));
+    }
+
+    private String render(String template) {
+        return PropertyTemplate.compile(template).render(properties::getProperty);
+    }
+}
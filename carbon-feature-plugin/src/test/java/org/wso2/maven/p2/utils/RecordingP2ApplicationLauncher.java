@@ -0,0 +1,109 @@
+/*
+ *  Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.wso2.maven.p2.utils;
+
+import org.eclipse.sisu.equinox.launching.internal.P2ApplicationLauncher;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Stands in for the Tycho {@link P2ApplicationLauncher} outside of a maven build. It records the application and the
+ * arguments {@link P2ApplicationLaunchManager} configures, and runs the given {@link Launch} instead of materializing
+ * an Equinox runtime.
+ */
+public class RecordingP2ApplicationLauncher extends P2ApplicationLauncher {
+
+    private final Launch launch;
+    private final List<String> arguments = new ArrayList<>();
+    private final List<String> vmArguments = new ArrayList<>();
+    private String applicationName;
+    private File workingDirectory;
+
+    /**
+     * Constructs a RecordingP2ApplicationLauncher.
+     *
+     * @param launch {@link Launch} run for each execution
+     */
+    public RecordingP2ApplicationLauncher(Launch launch) {
+        this.launch = launch;
+    }
+
+    @Override
+    public void setWorkingDirectory(File workingDirectory) {
+        this.workingDirectory = workingDirectory;
+    }
+
+    @Override
+    public void setApplicationName(String applicationName) {
+        this.applicationName = applicationName;
+    }
+
+    @Override
+    public void addArguments(String... args) {
+        Collections.addAll(arguments, args);
+    }
+
+    @Override
+    public void addVMArguments(String... vmargs) {
+        Collections.addAll(vmArguments, vmargs);
+    }
+
+    @Override
+    public int execute(int forkedProcessTimeoutInSeconds) {
+        try {
+            return launch.run(this);
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IllegalStateException("Unable to launch " + applicationName, e);
+        }
+    }
+
+    public String getApplicationName() {
+        return applicationName;
+    }
+
+    public List<String> getArguments() {
+        return arguments;
+    }
+
+    public List<String> getVMArguments() {
+        return vmArguments;
+    }
+
+    public File getWorkingDirectory() {
+        return workingDirectory;
+    }
+
+    /**
+     * Execution of a p2 application.
+     */
+    public interface Launch {
+
+        /**
+         * Runs the application the given launcher was configured with.
+         *
+         * @param launcher {@link RecordingP2ApplicationLauncher} holding the application and its arguments
+         * @return exit code of the application
+         * @throws Exception if the application cannot be run
+         */
+        int run(RecordingP2ApplicationLauncher launcher) throws Exception;
+    }
+}
@@ -0,0 +1,244 @@
+/*
+ *  Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.wso2.maven.p2.utils;
+
+import junit.framework.TestCase;
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
+import org.apache.commons.compress.utils.CountingInputStream;
+import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Tests the archives written by {@link RepositoryArchiver}: the level of zip archives, the tar.xz and tar.zst
+ * archives read back as a single tar although each block is compressed as a stream of its own, and the memory
+ * estimated for the Zstandard encoders. The tar formats are only tested when their codec is on the test classpath.
+ */
+public class RepositoryArchiverTest extends TestCase {
+
+    // more than one block of 16 MB, so that the tar formats write several streams
+    private static final int LARGE_SIZE = 20 * 1024 * 1024;
+    private static final byte[] XZ_MAGIC = {(byte) 0xfd, '7', 'z', 'X', 'Z', 0};
+    private static final byte[] ZSTD_MAGIC = {0x28, (byte) 0xb5, 0x2f, (byte) 0xfd};
+    private static final String ZSTD_INPUT_STREAM = "com.github.luben.zstd.ZstdInputStream";
+
+    private final Log log = new SystemStreamLog();
+    private File directory;
+    private File repository;
+
+    @Override
+    protected void setUp() throws Exception {
+        directory = Files.createTempDirectory("archiver").toFile();
+        repository = new File(directory, "repository");
+        write(new File(repository, "content.xml"), text(64 * 1024, 1));
+        write(new File(repository, "plugins/org.example.api_1.0.0.jar"), text(256 * 1024, 2));
+        assertTrue(new File(repository, "binary").mkdirs());
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        FileManagementUtil.deleteDirectories(directory);
+    }
+
+    public void testWritesZipArchivesAtTheGivenLevel() throws Exception {
+        File stored = new File(directory, "stored.zip");
+        File compressed = new File(directory, "compressed.zip");
+        new RepositoryArchiver(RepositoryArchiver.ZIP, 0, 1, 0, log).archive(repository, stored);
+        new RepositoryArchiver(RepositoryArchiver.ZIP, 9, 1, 0, log).archive(repository, compressed);
+
+        assertTrue(stored.length() > (64 + 256) * 1024);
+        assertTrue(compressed.length() < stored.length() / 2);
+        for (File archive : new File[]{stored, compressed}) {
+            File extracted = new File(directory, "extracted-" + archive.getName());
+            FileManagementUtil.unzip(archive, extracted);
+            assertEquals(readTree(repository, true), readTree(extracted, true));
+        }
+    }
+
+    public void testRejectsLevelsOutOfTheRangeOfTheFormat() {
+        assertInvalid(RepositoryArchiver.ZIP, 10);
+        assertInvalid(RepositoryArchiver.TAR_XZ, 10);
+        assertInvalid(RepositoryArchiver.TAR_ZST, 0);
+        assertInvalid(RepositoryArchiver.TAR_ZST, 23);
+        assertInvalid("tar.gz", -1);
+    }
+
+    public void testWritesTarXzArchivesAsConcatenatedStreams() throws Exception {
+        RepositoryArchiver archiver = new RepositoryArchiver(RepositoryArchiver.TAR_XZ, 0, 2, 0, log);
+        if (!archiver.isAvailable()) {
+            log.warn("Skipping the tar.xz archive test, " + archiver.getCodecDependency() + " is not available");
+            return;
+        }
+        write(new File(repository, "plugins/org.example.large_1.0.0.jar"), text(LARGE_SIZE, 3));
+        File archive = new File(directory, "repository.tar.xz");
+
+        archiver.archive(repository, archive);
+
+        long tarBytes = assertRoundTrip(XzCodec.newInputStream(Files.newInputStream(archive.toPath())));
+        assertEquals(countBlocks(tarBytes), count(Files.readAllBytes(archive.toPath()), XZ_MAGIC));
+    }
+
+    public void testWritesTarZstArchivesAsConcatenatedFrames() throws Exception {
+        RepositoryArchiver archiver = new RepositoryArchiver(RepositoryArchiver.TAR_ZST, 3, 2, 0, log);
+        if (!archiver.isAvailable()) {
+            log.warn("Skipping the tar.zst archive test, " + archiver.getCodecDependency() + " is not available");
+            return;
+        }
+        write(new File(repository, "plugins/org.example.large_1.0.0.jar"), text(LARGE_SIZE, 3));
+        File archive = new File(directory, "repository.tar.zst");
+
+        archiver.archive(repository, archive);
+
+        InputStream zstd = (InputStream) Class.forName(ZSTD_INPUT_STREAM).getConstructor(InputStream.class)
+                .newInstance(Files.newInputStream(archive.toPath()));
+        long tarBytes = assertRoundTrip(zstd);
+        assertEquals(countBlocks(tarBytes), count(Files.readAllBytes(archive.toPath()), ZSTD_MAGIC));
+    }
+
+    public void testEstimatesTheZstdEncoderMemoryFromTheLevelAndTheWindow() {
+        int block = 16 * 1024 * 1024;
+        long megabyte = 1024 * 1024;
+        // fast strategy: a 64 KB hash table and no chain table
+        assertEquals(megabyte + (64 << 10), RepositoryArchiver.getZstdEncoderMemoryUsage(1, block));
+        // the default level: 512 KB of hash table and 256 KB of chain table
+        assertEquals(megabyte + (768 << 10), RepositoryArchiver.getZstdEncoderMemoryUsage(3, block));
+        assertEquals(megabyte + 80 * megabyte, RepositoryArchiver.getZstdEncoderMemoryUsage(19, block));
+        // the 128 MB window of level 22 is reduced to the block, which bounds the tables to 128 MB each
+        assertEquals(megabyte + 256 * megabyte, RepositoryArchiver.getZstdEncoderMemoryUsage(22, block));
+        assertEquals(megabyte + 16 * megabyte, RepositoryArchiver.getZstdEncoderMemoryUsage(22, 1024 * 1024));
+        // lazy2: 32 MB of hash table and 16 MB of chain table
+        assertEquals(megabyte + 48 * megabyte, RepositoryArchiver.getZstdEncoderMemoryUsage(12, block));
+    }
+
+    /**
+     * Reads the given tar stream and checks that it holds the files of the repository.
+     *
+     * @return the number of bytes of the tar
+     */
+    private long assertRoundTrip(InputStream inputStream) throws IOException {
+        Map<String, String> entries = new TreeMap<>();
+        CountingInputStream counting = new CountingInputStream(inputStream);
+        try (TarArchiveInputStream tar = new TarArchiveInputStream(counting)) {
+            TarArchiveEntry entry;
+            while ((entry = tar.getNextTarEntry()) != null) {
+                entries.put(entry.getName(), entry.isDirectory() ? "" : digest(tar));
+            }
+            // the end of archive records, up to the end of the last compressed stream
+            digest(counting);
+        }
+        assertEquals(readTree(repository, false), entries);
+        return counting.getBytesRead();
+    }
+
+    private static int countBlocks(long tarBytes) {
+        long block = 16 * 1024 * 1024;
+        assertTrue(tarBytes > block);
+        return (int) ((tarBytes + block - 1) / block);
+    }
+
+    private static int count(byte[] data, byte[] magic) {
+        int count = 0;
+        for (int i = 0; i <= data.length - magic.length; i++) {
+            if (Arrays.equals(magic, Arrays.copyOfRange(data, i, i + magic.length))) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private void assertInvalid(String format, int level) {
+        try {
+            new RepositoryArchiver(format, level, 1, 0, log);
+            fail("The level " + level + " of " + format + " should be rejected");
+        } catch (IllegalArgumentException e) {
+            assertNotNull(e.getMessage());
+        }
+    }
+
+    /**
+     * Returns the SHA-256 of the files under the given directory by path, along with its directories when the tar
+     * entries are compared, as zip archives do not record directories.
+     */
+    private static Map<String, String> readTree(File root, boolean filesOnly) throws IOException {
+        Map<String, String> tree = new TreeMap<>();
+        List<Path> paths;
+        try (Stream<Path> walk = Files.walk(root.toPath())) {
+            paths = walk.filter(path -> !path.equals(root.toPath())).collect(Collectors.toList());
+        }
+        for (Path path : paths) {
+            String name = root.toPath().relativize(path).toString().replace(File.separatorChar, '/');
+            if (!Files.isDirectory(path)) {
+                tree.put(name, DigestUtils.sha256(path.toFile()));
+            } else if (!filesOnly) {
+                tree.put(name + "/", "");
+            }
+        }
+        return tree;
+    }
+
+    private static String digest(InputStream inputStream) throws IOException {
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = inputStream.read(buffer)) >= 0) {
+            content.write(buffer, 0, read);
+        }
+        return DigestUtils.toHex(DigestUtils.newDigest(DigestUtils.SHA_256).digest(content.toByteArray()));
+    }
+
+    /**
+     * Returns text of the given size made of random words, which compresses the way class files and metadata do.
+     */
+    private static byte[] text(int size, long seed) {
+        String[] words = {"org", "wso2", "carbon", "bundle", "feature", "import", "export", "version", "class", "osgi"};
+        Random random = new Random(seed);
+        byte[] text = new byte[size];
+        int position = 0;
+        while (position < size) {
+            String word = words[random.nextInt(words.length)] + (random.nextInt(8) == 0 ? random.nextInt(1000) : "");
+            for (byte b : (word + " ").getBytes(StandardCharsets.US_ASCII)) {
+                if (position < size) {
+                    text[position++] = b;
+                }
+            }
+        }
+        return text;
+    }
+
+    private static void write(File file, byte[] content) throws IOException {
+        Files.createDirectories(file.getParentFile().toPath());
+        try (OutputStream outputStream = Files.newOutputStream(file.toPath())) {
+            outputStream.write(content);
+        }
+    }
+}
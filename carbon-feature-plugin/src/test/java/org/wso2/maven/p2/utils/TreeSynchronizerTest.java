@@ -0,0 +1,202 @@
+/*
+ *  Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.wso2.maven.p2.utils;
+
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * Tests the files {@link TreeSynchronizer} copies, skips and deletes, and the symbolic links it does not follow.
+ */
+public class TreeSynchronizerTest extends TestCase {
+
+    private static final long MODIFIED = 1451606400000L;
+
+    private File directory;
+    private File source;
+    private File target;
+
+    @Override
+    protected void setUp() throws Exception {
+        directory = Files.createTempDirectory("synchronizer").toFile();
+        source = new File(directory, "source");
+        target = new File(directory, "target");
+        write(new File(source, "p2.inf"), "instructions");
+        write(new File(source, "conf/carbon.xml"), "<Server/>");
+        write(new File(source, "conf/security/keystore.jks"), "keys");
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        FileManagementUtil.deleteDirectories(directory);
+    }
+
+    public void testSkipsFilesWithTheSameSizeAndModificationTime() throws Exception {
+        TreeSynchronizer synchronizer = new TreeSynchronizer(2, false);
+        TreeSynchronizer.Result result = synchronizer.synchronize(source, target, null);
+        assertEquals(3, result.getCopied());
+        assertEquals(0, result.getUnchanged());
+        assertEquals(new TreeSet<>(Arrays.asList("p2.inf", path("conf/carbon.xml"),
+                path("conf/security/keystore.jks"))), new TreeSet<>(result.getFiles()));
+        assertEquals(MODIFIED, new File(target, "conf/carbon.xml").lastModified());
+
+        // the same size and time: left as it is, even though the bytes differ
+        write(new File(target, "conf/carbon.xml"), "<Other/>!");
+        result = synchronizer.synchronize(source, target, null);
+        assertEquals(0, result.getCopied());
+        assertEquals(3, result.getUnchanged());
+        assertEquals("<Other/>!", read(new File(target, "conf/carbon.xml")));
+
+        // another time or another size: copied
+        assertTrue(new File(source, "conf/carbon.xml").setLastModified(MODIFIED + 60000));
+        write(new File(source, "p2.inf"), "more instructions");
+        result = synchronizer.synchronize(source, target, null);
+        assertEquals(2, result.getCopied());
+        assertEquals(1, result.getUnchanged());
+        assertEquals("<Server/>", read(new File(target, "conf/carbon.xml")));
+        assertEquals("more instructions", read(new File(target, "p2.inf")));
+        assertEquals(MODIFIED + 60000, new File(target, "conf/carbon.xml").lastModified());
+    }
+
+    public void testComparesTheContentOfFilesWithAnotherModificationTime() throws Exception {
+        new TreeSynchronizer(1, false).synchronize(source, target, null);
+        assertTrue(new File(source, "conf/carbon.xml").setLastModified(MODIFIED + 60000));
+        write(new File(source, "p2.inf"), "INSTRUCTIONS");
+        assertTrue(new File(source, "p2.inf").setLastModified(MODIFIED + 60000));
+
+        TreeSynchronizer.Result result = new TreeSynchronizer(1, true).synchronize(source, target, null);
+
+        assertEquals(1, result.getCopied());
+        assertEquals(2, result.getUnchanged());
+        assertEquals("INSTRUCTIONS", read(new File(target, "p2.inf")));
+        // the time of a file found unchanged is brought in line, so that its content is not compared again
+        assertEquals(MODIFIED + 60000, new File(target, "conf/carbon.xml").lastModified());
+    }
+
+    public void testSynchronizesOnlyTheIncludedFiles() throws Exception {
+        TreeSynchronizer.Result result = new TreeSynchronizer(2, false).synchronize(source, target,
+                path -> path.endsWith(".xml"));
+
+        assertEquals(Collections.singleton(path("conf/carbon.xml")), result.getFiles());
+        assertFalse(new File(target, "p2.inf").exists());
+        assertFalse(new File(target, "conf/security").exists());
+    }
+
+    public void testDoesNotFollowLinksToDirectories() throws Exception {
+        File outside = new File(directory, "outside");
+        write(new File(outside, "secret.txt"), "secret");
+        write(new File(outside, "shared.txt"), "shared");
+        List<Path> links = Arrays.asList(
+                Files.createSymbolicLink(new File(source, "conf/outside").toPath(), outside.toPath()),
+                Files.createSymbolicLink(new File(source, "conf/security/parent").toPath(), Paths.get("..")),
+                Files.createSymbolicLink(new File(source, "dangling.txt").toPath(), Paths.get("missing.txt")),
+                Files.createSymbolicLink(new File(source, "shared.txt").toPath(),
+                        new File(outside, "shared.txt").toPath()));
+        try {
+            TreeSynchronizer.Result result = new TreeSynchronizer(2, false).synchronize(source, target, null);
+
+            assertEquals(new TreeSet<>(Arrays.asList(path("conf/outside"), path("conf/security/parent"),
+                    "dangling.txt")), new TreeSet<>(result.getSkippedLinks()));
+            assertFalse(new File(target, "conf/outside").exists());
+            assertFalse(new File(target, "conf/security/parent").exists());
+            assertFalse(Files.exists(new File(target, "dangling.txt").toPath(), LinkOption.NOFOLLOW_LINKS));
+            // a link to a file is copied as a regular file
+            assertFalse(Files.isSymbolicLink(new File(target, "shared.txt").toPath()));
+            assertEquals("shared", read(new File(target, "shared.txt")));
+            assertEquals(4, result.getFiles().size());
+        } finally {
+            // deleteDirectories follows links, which would loop through the link to the parent directory
+            for (Path link : links) {
+                Files.delete(link);
+            }
+        }
+    }
+
+    public void testReplacesLinksInTheTargetRatherThanWritingThroughThem() throws Exception {
+        File outside = new File(directory, "outside");
+        write(new File(outside, "p2.inf"), "outside");
+        write(new File(outside, "conf/carbon.xml"), "outside");
+        assertTrue(target.mkdirs());
+        Files.createSymbolicLink(new File(target, "p2.inf").toPath(), new File(outside, "p2.inf").toPath());
+        Files.createSymbolicLink(new File(target, "conf").toPath(), new File(outside, "conf").toPath());
+
+        new TreeSynchronizer(2, false).synchronize(source, target, null);
+
+        assertFalse(Files.isSymbolicLink(new File(target, "p2.inf").toPath()));
+        assertFalse(Files.isSymbolicLink(new File(target, "conf").toPath()));
+        assertEquals("instructions", read(new File(target, "p2.inf")));
+        assertEquals("<Server/>", read(new File(target, "conf/carbon.xml")));
+        assertEquals("outside", read(new File(outside, "p2.inf")));
+        assertEquals("outside", read(new File(outside, "conf/carbon.xml")));
+    }
+
+    public void testDeletesOnlyTheRecordedStaleFiles() throws Exception {
+        TreeSynchronizer synchronizer = new TreeSynchronizer(2, false);
+        synchronizer.synchronize(source, target, null);
+        write(new File(target, "conf/security/client-truststore.jks"), "not synchronized");
+        write(new File(directory, "outside.txt"), "outside");
+
+        int deleted = synchronizer.deleteStale(target, Arrays.asList(path("conf/carbon.xml"),
+                path("conf/security/keystore.jks"), path("conf/missing.xml"), "../outside.txt", "conf", "."));
+
+        assertEquals(2, deleted);
+        assertFalse(new File(target, "conf/carbon.xml").exists());
+        assertTrue(new File(target, "conf/security/client-truststore.jks").isFile());
+        assertTrue(new File(target, "p2.inf").isFile());
+        assertTrue(new File(directory, "outside.txt").isFile());
+
+        // directories left empty are pruned, up to the target directory
+        assertEquals(2, synchronizer.deleteStale(target, Arrays.asList("p2.inf",
+                path("conf/security/client-truststore.jks"))));
+        assertFalse(new File(target, "conf").exists());
+        assertTrue(target.isDirectory());
+    }
+
+    public void testReadsTheFileListWrittenForTheSameTarget() throws Exception {
+        File listFile = new File(directory, "state/resources.txt");
+        TreeSynchronizer.writeFileList(listFile, target, Arrays.asList("p2.inf", path("conf/carbon.xml")));
+
+        assertEquals(Arrays.asList("p2.inf", path("conf/carbon.xml")), TreeSynchronizer.readFileList(listFile, target));
+        assertEquals(Collections.emptyList(), TreeSynchronizer.readFileList(listFile, source));
+        assertEquals(Collections.emptyList(), TreeSynchronizer.readFileList(new File(directory, "none.txt"), target));
+    }
+
+    private static String path(String path) {
+        return path.replace('/', File.separatorChar);
+    }
+
+    private static void write(File file, String content) throws IOException {
+        Files.createDirectories(file.getParentFile().toPath());
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+        assertTrue(file.setLastModified(MODIFIED));
+    }
+
+    private static String read(File file) throws IOException {
+        return new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+    }
+}